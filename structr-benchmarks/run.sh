@@ -0,0 +1,16 @@
+#!/bin/sh
+#
+# run.sh - runs the Structr JMH benchmarks
+#
+# All arguments are passed to JMH, e.g. "./run.sh Scripting -f 1" or "./run.sh -h".
+# The benchmarks need a running Neo4j instance, the connection URL is taken from
+# testing.connection.url and can be overridden with
+# "-jvmArgsAppend -Dstructr.benchmark.connection.url=bolt://host:port".
+#
+
+BASE_DIR=$(CDPATH= cd -- "$(dirname -- "$0")" && pwd)
+cd $BASE_DIR
+JAVA=`which java`
+LATEST=`ls target/structr-benchmarks-*.jar | grep -v 'sources.jar' | grep -v 'javadoc.jar' | sort | tail -1`
+
+$JAVA -cp "target/lib/*:$LATEST" org.openjdk.jmh.Main "$@"
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.structr.common.AccessMode;
+import org.structr.common.Permission;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Group;
+import org.structr.web.entity.Folder;
+import org.structr.web.entity.User;
+
+/**
+ * Benchmarks the permission resolution in AbstractNode.isGranted for a
+ * node the user owns, a node with a direct grant, a node that is granted
+ * to a group of the user, and a node the user cannot access.
+ */
+public class PermissionBenchmark extends StructrBenchmark {
+
+	private SecurityContext userContext = null;
+	private Folder owned                = null;
+	private Folder granted              = null;
+	private Folder groupGranted         = null;
+	private Folder denied               = null;
+
+	@Override
+	protected void setupData() throws FrameworkException {
+
+		final User user   = app.create(User.class, "user");
+		final Group group = app.create(Group.class, "group");
+
+		group.addMember(user);
+
+		userContext  = SecurityContext.getInstance(user, AccessMode.Backend);
+		owned        = app.create(Folder.class, "owned");
+		granted      = app.create(Folder.class, "granted");
+		groupGranted = app.create(Folder.class, "groupGranted");
+		denied       = app.create(Folder.class, "denied");
+
+		owned.setProperty(Folder.owner, user);
+		granted.grant(Permission.read, user);
+		groupGranted.grant(Permission.read, group);
+	}
+
+	@Benchmark
+	public boolean isGrantedOwner() {
+		return isGranted(owned);
+	}
+
+	@Benchmark
+	public boolean isGrantedDirect() {
+		return isGranted(granted);
+	}
+
+	@Benchmark
+	public boolean isGrantedGroup() {
+		return isGranted(groupGranted);
+	}
+
+	@Benchmark
+	public boolean isGrantedDenied() {
+		return isGranted(denied);
+	}
+
+	// ----- private methods -----
+	private boolean isGranted(final Folder folder) {
+		return folder.isGranted(Permission.read, userContext);
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.structr.common.error.FrameworkException;
+import org.structr.web.entity.Folder;
+
+/**
+ * Benchmarks the instantiation of nodes by the factory, for a whole result
+ * set and for a single page of a larger result.
+ */
+public class QueryBenchmark extends StructrBenchmark {
+
+	@Param({ "1000" })
+	public int count;
+
+	@Param({ "20" })
+	public int pageSize;
+
+	@Override
+	protected void setupData() throws FrameworkException {
+
+		for (int i=0; i<count; i++) {
+			app.create(Folder.class, "folder" + i);
+		}
+	}
+
+	@Benchmark
+	public List<Folder> instantiateAll() throws FrameworkException {
+
+		return app.nodeQuery(Folder.class).getAsList();
+	}
+
+	@Benchmark
+	public List<Folder> instantiatePage() throws FrameworkException {
+
+		return app.nodeQuery(Folder.class).sort(Folder.name).pageSize(pageSize).page(count / pageSize / 2).getAsList();
+	}
+}
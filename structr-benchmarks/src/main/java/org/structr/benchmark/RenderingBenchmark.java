@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.structr.common.error.FrameworkException;
+import org.structr.web.common.RenderContext;
+import org.structr.web.entity.dom.Page;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks the rendering of a page with a number of elements that
+ * contain static text and StructrScript expressions.
+ */
+public class RenderingBenchmark extends StructrBenchmark {
+
+	@Param({ "100" })
+	public int count;
+
+	private Page page = null;
+
+	@Override
+	protected void setupData() throws FrameworkException {
+
+		page = Page.createSimplePage(securityContext, "benchmark");
+
+		final Element body = (Element)page.getElementsByTagName("body").item(0);
+
+		for (int i=0; i<count; i++) {
+
+			final Element div = page.createElement("div");
+
+			div.setAttribute("class", "item-" + i);
+			div.appendChild(page.createTextNode("Item " + i + " of ${page.name}: ${capitalize(page.name)}"));
+
+			body.appendChild(div);
+		}
+	}
+
+	@Benchmark
+	public String render() throws FrameworkException {
+
+		final RenderContext renderContext = new RenderContext(securityContext);
+
+		page.render(renderContext, 0);
+
+		return StringUtils.join(renderContext.getBuffer().getQueue(), "");
+	}
+}
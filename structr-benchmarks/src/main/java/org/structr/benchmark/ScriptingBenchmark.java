@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.function.Functions;
+import org.structr.core.script.Scripting;
+import org.structr.schema.action.ActionContext;
+import org.structr.web.entity.Folder;
+
+/**
+ * Benchmarks the evaluation of StructrScript expressions and the execution
+ * of JavaScript snippets in Rhino.
+ */
+public class ScriptingBenchmark extends StructrBenchmark {
+
+	private static final String STRUCTR_SCRIPT = "concat(this.name, '-', upper(this.name), '-', length(this.name), '-', if(equal(this.name, 'folder'), 'yes', 'no'))";
+	private static final String JAVASCRIPT     = "${{ var name = Structr.get('this').name; var result = []; for (var i=0; i<10; i++) { result.push(name + i); } return result.join(','); }}";
+
+	private Folder folder = null;
+
+	@Override
+	protected void setupData() throws FrameworkException {
+		folder = app.create(Folder.class, "folder");
+	}
+
+	@Benchmark
+	public Object evaluateStructrScript() throws FrameworkException {
+
+		return Functions.evaluate(new ActionContext(securityContext), folder, STRUCTR_SCRIPT);
+	}
+
+	@Benchmark
+	public Object evaluateJavaScript() throws FrameworkException {
+
+		return Scripting.evaluate(new ActionContext(securityContext), folder, JAVASCRIPT, "benchmark");
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.structr.common.PropertyView;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.StaticValue;
+import org.structr.rest.serialization.StreamingJsonWriter;
+import org.structr.web.entity.Folder;
+
+/**
+ * Benchmarks the JSON serialization of a result in StreamingJsonWriter,
+ * with the public and the ui view.
+ */
+public class SerializationBenchmark extends StructrBenchmark {
+
+	@Param({ "100" })
+	public int count;
+
+	@Param({ PropertyView.Public, PropertyView.Ui })
+	public String view;
+
+	@Override
+	protected void setupData() throws FrameworkException {
+
+		for (int i=0; i<count; i++) {
+			app.create(Folder.class, "folder" + i);
+		}
+	}
+
+	@Benchmark
+	public String serialize() throws FrameworkException, IOException {
+
+		final StreamingJsonWriter writer = new StreamingJsonWriter(new StaticValue<>(view), false, 3);
+		final StringWriter output        = new StringWriter();
+		final List<Folder> folders       = app.nodeQuery(Folder.class).getAsList();
+
+		writer.stream(securityContext, output, new Result(folders, folders.size(), true, false), null);
+
+		return output.toString();
+	}
+}
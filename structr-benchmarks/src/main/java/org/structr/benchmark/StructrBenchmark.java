@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+
+/**
+ * Base class for all Structr benchmarks.
+ *
+ * Starts the service layer once per fork with a fresh base path, in the same
+ * way as the integration tests do, and cleans the database after the trial.
+ * The database is the Neo4j instance configured in testing.connection.url,
+ * the system property structr.benchmark.connection.url overrides it.
+ *
+ * Subclasses create their test data in {@link #setupData()}. A transaction
+ * is opened before and committed after each iteration, so the measurements
+ * do not include the cost of opening and committing transactions. Structr
+ * binds transactions to the current thread, so the benchmarks run in a
+ * single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Threads(1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Duser.timezone=UTC", "-Djava.system.class.loader=org.structr.StructrClassLoader" })
+public abstract class StructrBenchmark {
+
+	private static final Logger logger = LoggerFactory.getLogger(StructrBenchmark.class.getName());
+
+	protected SecurityContext securityContext = null;
+	protected App app                         = null;
+	private String basePath                   = null;
+	private Tx tx                             = null;
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+
+		final long timestamp = System.currentTimeMillis();
+
+		basePath = "/tmp/structr-benchmark-" + timestamp + "-" + System.nanoTime();
+
+		Settings.Services.setValue("NodeService SchemaService");
+		Settings.ConnectionUrl.setValue(System.getProperty("structr.benchmark.connection.url", Settings.TestingConnectionUrl.getValue()));
+
+		Settings.BasePath.setValue(basePath);
+		Settings.DatabasePath.setValue(basePath + "/db");
+		Settings.FilesPath.setValue(basePath + "/files");
+
+		Settings.RelationshipCacheSize.setValue(10000);
+		Settings.NodeCacheSize.setValue(10000);
+
+		Settings.SuperUserName.setValue("superadmin");
+		Settings.SuperUserPassword.setValue("sehrgeheim");
+
+		Settings.ApplicationTitle.setValue("structr benchmark app" + timestamp);
+
+		final Services services = Services.getInstance();
+
+		// wait for service layer to be initialized
+		do {
+			try {
+				Thread.sleep(100);
+			} catch (Throwable t) {
+			}
+
+		} while (!services.isInitialized());
+
+		securityContext = SecurityContext.getSuperUserInstance();
+		app             = StructrApp.getInstance(securityContext);
+
+		try (final Tx tx = app.tx()) {
+
+			setupData();
+
+			tx.success();
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void beginTx() throws FrameworkException {
+		tx = app.tx();
+	}
+
+	@TearDown(Level.Iteration)
+	public void commitTx() throws FrameworkException {
+
+		try {
+
+			tx.success();
+
+		} finally {
+
+			tx.close();
+			tx = null;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws Exception {
+
+		try (final Tx tx = app.tx()) {
+
+			for (final NodeInterface node : app.nodeQuery().getAsList()) {
+				app.delete(node);
+			}
+
+			// delete remaining nodes without UUIDs etc.
+			app.cypher("MATCH (n)-[r]-(m) DELETE n, r, m", Collections.emptyMap());
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.error("Exception while trying to clean database: {}", t);
+		}
+
+		Services.getInstance().shutdown();
+
+		try {
+
+			FileUtils.deleteDirectory(new File(basePath));
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to delete benchmark directory {}: {}", basePath, t.getMessage());
+		}
+	}
+
+	/**
+	 * Creates the test data, called in a transaction after the service
+	 * layer is started.
+	 *
+	 * @throws FrameworkException
+	 */
+	protected abstract void setupData() throws FrameworkException;
+}
@@ -42,6 +42,7 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	private final Queue<Task<T>> taskQueue     = new ConcurrentLinkedQueue<>();
 	private final AtomicBoolean acceptingTasks = new AtomicBoolean(true);
 	private AgentService agentService          = null;
+	private volatile Thread runner             = null;
 	private long averageExecutionTime          = 0;
 	private int maxAgents                      = 10;
 	private int maxQueueSize                   = 200;
@@ -56,7 +57,8 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	@Override
 	public final void run() {
 
-		agentService.notifyAgentStart(this);
+		// the agent service runs agents on pooled threads
+		runner = Thread.currentThread();
 
 		do {
 
@@ -76,7 +78,8 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 
 			if (currentTask != null) {
 
-				ReturnValue ret = null;
+				final long startTime = System.nanoTime();
+				ReturnValue ret      = null;
 
 				// only execute process if Service layer is ready
 				// (and not shutting down right now)
@@ -124,9 +127,11 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 				long endTime = System.nanoTime();
 
 				// calc. average execution time
-				averageExecutionTime += endTime;
+				averageExecutionTime += endTime - startTime;
 				averageExecutionTime /= 2;
 
+				agentService.notifyTaskFinished(currentTask, startTime);
+
 			} else {
 
 				// queue is empty, quit.
@@ -162,12 +167,26 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 		acceptingTasks.set(false);
 
 		// clear queue
-		taskQueue.clear();
+		synchronized (taskQueue) {
+
+			Task<T> task = null;
+
+			while ((task = taskQueue.poll()) != null) {
+
+				if (agentService != null) {
+					agentService.notifyTaskDropped(task);
+				}
+			}
+		}
 
 		// interrupt running process..
 		// not sure if this works... see Thread.interrupt()'s description!
 		// may not work if the processTask method itself catches the interrupt..
-		this.interrupt();
+		final Thread thread = runner;
+		if (thread != null) {
+
+			thread.interrupt();
+		}
 	}
 
 	public final void suspendAgent() {
@@ -20,55 +20,84 @@ package org.structr.agent;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Setting;
+import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
 import org.structr.core.Services;
+import org.structr.core.graph.NodeService;
 import org.structr.schema.ConfigurationProvider;
 
 /**
  * The agent service main class.
  *
- *
+ * Tasks are queued by priority and dispatched to agents as soon as they
+ * arrive. The dispatcher thread sleeps until a new task is queued or an
+ * agent finishes a task, so an idle instance does not consume any CPU.
+ * The number of agents per task type is limited by the setting
+ * <code>application.agents.maxagents</code>, which can be overridden
+ * per task type with <code>agents.&lt;TaskClass&gt;.maxagents</code>.
+ * Tasks that cannot be assigned are either held back until an agent
+ * becomes available or discarded, depending on the rejection policy.
  */
 public class AgentService extends Thread implements RunnableService {
 
 	private static final Logger logger = LoggerFactory.getLogger(AgentService.class.getName());
 
-	private final int maxAgents                          = 10;    // TODO: make configurable
-	private final Map<String, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Map<String, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Queue<Task> taskQueue                  = new ConcurrentLinkedQueue<>();
-	private Set<Class> supportedCommands                 = null;
-	private boolean run                                  = false;
+	private final Map<String, List<Agent>> runningAgents      = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<String, Class> agentClassCache          = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<String, TaskStatistics> statistics      = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Task, Long> enqueueTimes                = new ConcurrentHashMap<>();
+	private final PriorityBlockingQueue<QueuedTask> taskQueue = new PriorityBlockingQueue<>(100, new QueuedTaskComparator());
+	private final List<QueuedTask> deferredTasks              = new LinkedList<>();
+	private final AtomicLong sequence                         = new AtomicLong(0L);
+	private final Lock lock                                   = new ReentrantLock();
+	private final Condition changed                           = lock.newCondition();
+	private ExecutorService executor                          = null;
+	private Set<Class> supportedCommands                      = null;
+	private volatile boolean capacityChanged                  = false;
+	private volatile boolean run                              = false;
 
 	public AgentService() {
 
 		super("AgentService");
 		supportedCommands = new LinkedHashSet<>();
 		supportedCommands.add(ProcessTaskCommand.class);
+		supportedCommands.add(AgentStatisticsCommand.class);
 
 		super.setDaemon(true);
 	}
 
 	public void processTask(Task task) {
 
-		synchronized (taskQueue) {
+		enqueueTimes.put(task, System.nanoTime());
+		getStatistics(task.getClass()).submitted.incrementAndGet();
 
-			taskQueue.add(task);
-			logger.debug("Task {} added to task queue", task);
-		}
+		taskQueue.add(new QueuedTask(task, sequence.incrementAndGet()));
+		logger.debug("Task {} added to task queue", task);
+
+		signal(false);
 	}
 
 	@Override
@@ -78,14 +107,45 @@ public class AgentService extends Thread implements RunnableService {
 
 		while (run) {
 
-			Task nextTask = taskQueue.poll();
-			if (nextTask != null) {
+			lock.lock();
+			try {
+
+				// wait for new tasks or for agents to become available
+				while (run && taskQueue.isEmpty() && !capacityChanged) {
+					changed.await();
+				}
+
+				capacityChanged = false;
+
+			} catch (InterruptedException iex) {
 
-				assignNextAgentForTask(nextTask);
+				// stopService interrupts us
+				continue;
+
+			} finally {
+				lock.unlock();
+			}
+
+			// retry tasks that were held back first
+			synchronized (deferredTasks) {
+
+				final Iterator<QueuedTask> iterator = deferredTasks.iterator();
+				while (iterator.hasNext()) {
+
+					if (assignNextAgentForTask(iterator.next().task)) {
+						iterator.remove();
+					}
+				}
 			}
 
-			// let others act
-			try { Thread.sleep(10); } catch(Throwable ignore) {}
+			QueuedTask nextTask = null;
+
+			while ((nextTask = taskQueue.poll()) != null) {
+
+				if (!assignNextAgentForTask(nextTask.task)) {
+					reject(nextTask);
+				}
+			}
 		}
 	}
 
@@ -105,6 +165,47 @@ public class AgentService extends Thread implements RunnableService {
 		synchronized (agents) {
 			agents.remove(agent);
 		}
+
+		signal(true);
+	}
+
+	/**
+	 * Called by an agent after it processed a task, to record queue and
+	 * execution times and to wake up the dispatcher.
+	 *
+	 * @param task the task
+	 * @param startTime the time the agent started processing the task, in nanoseconds
+	 */
+	public void notifyTaskFinished(final Task task, final long startTime) {
+
+		final TaskStatistics stats = getStatistics(task.getClass());
+		final Long enqueueTime     = enqueueTimes.remove(task);
+		final long now             = System.nanoTime();
+
+		stats.completed.incrementAndGet();
+		stats.executionTime.addAndGet(now - startTime);
+
+		if (enqueueTime != null) {
+
+			final long latency = startTime - enqueueTime;
+
+			stats.latency.addAndGet(latency);
+			stats.maxLatency.accumulateAndGet(latency, Math::max);
+		}
+
+		signal(true);
+	}
+
+	/**
+	 * Called by an agent for a task that was assigned to it but will
+	 * never be processed, e.g. because the agent was killed.
+	 *
+	 * @param task the task
+	 */
+	public void notifyTaskDropped(final Task task) {
+
+		enqueueTimes.remove(task);
+		getStatistics(task.getClass()).dropped.incrementAndGet();
 	}
 
 	public Map<String, Class<? extends Agent>> getAgents() {
@@ -137,13 +238,36 @@ public class AgentService extends Thread implements RunnableService {
 	@Override
 	public void startService() throws Exception {
 
+		executor = Executors.newCachedThreadPool(r -> {
+
+			final Thread thread = new Thread(r, "Agent");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
 		run = true;
 		this.start();
 	}
 
 	@Override
 	public void stopService() {
+
 		run = false;
+
+		this.interrupt();
+
+		if (executor != null) {
+			executor.shutdown();
+		}
+
+		// tasks that were not dispatched yet are lost
+		synchronized (deferredTasks) {
+			deferredTasks.clear();
+		}
+
+		taskQueue.clear();
+		enqueueTimes.clear();
 	}
 
 	@Override
@@ -151,7 +275,7 @@ public class AgentService extends Thread implements RunnableService {
 		return true;
 	}
 
-	private void assignNextAgentForTask(Task nextTask) {
+	private boolean assignNextAgentForTask(Task nextTask) {
 
 		Class taskClass    = nextTask.getClass();
 		List<Agent> agents = getRunningAgentsForTask(taskClass);
@@ -168,36 +292,102 @@ public class AgentService extends Thread implements RunnableService {
 					// ok, task is assigned
 					logger.debug("Task assigned to agent {}", agent.getName());
 
-					return;
+					return true;
 				}
 			}
 		}
 
-		// FIXME: find better solution for hard limit here!
-		if (agents.size() < maxAgents) {
+		if (agents.size() < getMaxAgents(taskClass)) {
 
 			// if we get here, task was not assigned to any agent, need to
 			// create a new one.
 			Agent agent = createAgent(nextTask);
 
 			if ((agent != null) && agent.assignTask(nextTask)) {
-				agent.start();
-			} else {
 
-				// re-add task..
-				synchronized (taskQueue) {
-					taskQueue.add(nextTask);
+				// register the agent before it runs so that the limit is enforced
+				notifyAgentStart(agent);
+				executor.execute(agent);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void reject(final QueuedTask queuedTask) {
+
+		final Task task = queuedTask.task;
+
+		switch (getRejectionPolicy(task.getClass())) {
+
+			case "discard":
+				logger.warn("Agent limit reached for task type {}, discarding task", task.getType());
+
+				enqueueTimes.remove(task);
+				getStatistics(task.getClass()).rejected.incrementAndGet();
+				break;
+
+			default:
+				logger.debug("Agent limit reached for task type {}, holding back task", task.getType());
+
+				synchronized (deferredTasks) {
+
+					deferredTasks.add(queuedTask);
+
+					// keep deferred tasks in priority order
+					Collections.sort(deferredTasks, new QueuedTaskComparator());
 				}
+				break;
+		}
+	}
+
+	private void signal(final boolean capacity) {
+
+		lock.lock();
+		try {
+
+			if (capacity) {
+				capacityChanged = true;
 			}
-		} else {
 
-			logger.debug("Overall agents limit reached, re-queueing task");
+			changed.signal();
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int getMaxAgents(final Class taskClass) {
 
-			// re-add task..
-			synchronized (taskQueue) {
-				taskQueue.add(nextTask);
+		final Setting setting = Settings.getSetting("agents", taskClass.getSimpleName(), "maxagents");
+		if (setting != null && setting.getValue() != null) {
+
+			try {
+				return Math.max(1, Integer.parseInt(setting.getValue().toString()));
+
+			} catch (NumberFormatException nex) {
+				logger.warn("Invalid value for setting {}: {}", setting.getKey(), setting.getValue());
 			}
 		}
+
+		return Math.max(1, Settings.MaxAgents.getValue());
+	}
+
+	private String getRejectionPolicy(final Class taskClass) {
+
+		final Setting setting = Settings.getSetting("agents", taskClass.getSimpleName(), "rejection");
+		if (setting != null && setting.getValue() != null) {
+
+			return setting.getValue().toString();
+		}
+
+		return Settings.AgentRejectionPolicy.getValue();
+	}
+
+	private TaskStatistics getStatistics(final Class taskClass) {
+		return statistics.computeIfAbsent(taskClass.getName(), k -> new TaskStatistics());
 	}
 
 	/**
@@ -208,7 +398,6 @@ public class AgentService extends Thread implements RunnableService {
 	 * @return a new agent for the given task
 	 */
 	private Agent createAgent(Task forTask) {
-
 		Agent agent = null;
 
 		try {
@@ -279,7 +468,57 @@ public class AgentService extends Thread implements RunnableService {
 	 * @return tasks
 	 */
 	public Collection<Task> getTaskQueue() {
-		return (taskQueue);
+
+		final List<Task> tasks = new LinkedList<>();
+
+		for (final QueuedTask queuedTask : taskQueue) {
+			tasks.add(queuedTask.task);
+		}
+
+		return (tasks);
+	}
+
+	/**
+	 * Returns the queue depth, the number of tasks that were queued but
+	 * not finished yet and per task type counters and latencies (in
+	 * milliseconds).
+	 *
+	 * @return statistics
+	 */
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> result = new LinkedHashMap<>();
+		final Map<String, Object> types  = new LinkedHashMap<>();
+
+		result.put("queueDepth", taskQueue.size());
+
+		synchronized (deferredTasks) {
+			result.put("deferredTasks", deferredTasks.size());
+		}
+
+		result.put("pendingTasks", enqueueTimes.size());
+		result.put("taskTypes", types);
+
+		for (final Entry<String, TaskStatistics> entry : statistics.entrySet()) {
+
+			final TaskStatistics stats     = entry.getValue();
+			final Map<String, Object> data = new LinkedHashMap<>();
+			final long completed           = stats.completed.get();
+			final List<Agent> agents       = runningAgents.get(entry.getKey());
+
+			data.put("submitted",            stats.submitted.get());
+			data.put("completed",            completed);
+			data.put("rejected",             stats.rejected.get());
+			data.put("dropped",              stats.dropped.get());
+			data.put("runningAgents",        agents != null ? agents.size() : 0);
+			data.put("averageLatency",       completed > 0 ? stats.latency.get() / completed / 1000000.0 : 0.0);
+			data.put("maxLatency",           stats.maxLatency.get() / 1000000.0);
+			data.put("averageExecutionTime", completed > 0 ? stats.executionTime.get() / completed / 1000000.0 : 0.0);
+
+			types.put(entry.getKey(), data);
+		}
+
+		return result;
 	}
 
 	/**
@@ -315,9 +554,57 @@ public class AgentService extends Thread implements RunnableService {
 		return false;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return Collections.singleton(NodeService.class);
+	}
+
 	// ----- interface Feature -----
 	@Override
 	public String getModuleName() {
 		return "agents";
 	}
+
+	// ----- nested classes -----
+	private static class QueuedTask {
+
+		private Task task     = null;
+		private long sequence = 0L;
+
+		public QueuedTask(final Task task, final long sequence) {
+
+			this.task     = task;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * Orders tasks by descending priority, and by insertion order for
+	 * tasks of equal priority.
+	 */
+	private static class QueuedTaskComparator implements Comparator<QueuedTask> {
+
+		@Override
+		public int compare(final QueuedTask o1, final QueuedTask o2) {
+
+			final int priority = Integer.compare(o2.task.priority(), o1.task.priority());
+			if (priority != 0) {
+
+				return priority;
+			}
+
+			return Long.compare(o1.sequence, o2.sequence);
+		}
+	}
+
+	private static class TaskStatistics {
+
+		private final AtomicInteger submitted  = new AtomicInteger(0);
+		private final AtomicInteger completed  = new AtomicInteger(0);
+		private final AtomicInteger rejected   = new AtomicInteger(0);
+		private final AtomicInteger dropped    = new AtomicInteger(0);
+		private final AtomicLong latency       = new AtomicLong(0L);
+		private final AtomicLong maxLatency    = new AtomicLong(0L);
+		private final AtomicLong executionTime = new AtomicLong(0L);
+	}
 }
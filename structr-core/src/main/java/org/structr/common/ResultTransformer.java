@@ -21,6 +21,7 @@ package org.structr.common;
 import java.util.Map;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Result;
+import org.structr.core.app.Query;
 
 /**
  *
@@ -33,4 +34,22 @@ public interface ResultTransformer {
 	void transformInput(final SecurityContext securityContext, final Class type, final Map<String, Object> propertySet) throws FrameworkException;
 
 	boolean isPrimitiveArray();
+
+	/**
+	 * Executes the given query and transforms a single page of its result.
+	 * The default implementation transforms the complete result and pages
+	 * the transformed result, implementations can restrict the query and
+	 * transform only the objects of the requested page.
+	 *
+	 * @param securityContext
+	 * @param sourceType
+	 * @param query the sorted query for the source type, without paging
+	 * @param pageSize
+	 * @param page
+	 * @return the transformed page
+	 * @throws FrameworkException
+	 */
+	default Result transformPage(final SecurityContext securityContext, final Class sourceType, final Query query, final int pageSize, final int page) throws FrameworkException {
+		return PagingHelper.subResult(transformOutput(securityContext, sourceType, query.getResult()), pageSize, page);
+	}
 }
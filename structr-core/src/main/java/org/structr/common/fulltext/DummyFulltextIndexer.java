@@ -18,6 +18,8 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.Collections;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
@@ -36,7 +38,19 @@ public class DummyFulltextIndexer implements FulltextIndexer {
 	}
 
 	@Override
-	public GraphObjectMap getContextObject(String searchTerm, String text, int contextLength) {
+	public void removeFromFulltextIndex(final String uuid) throws FrameworkException {
+	}
+
+	@Override
+	public Map<String, Double> search(final String searchTerm, final int maxResults) throws FrameworkException {
+
+		logger.warn("No fulltext indexer installed, this is a dummy implementation that does nothing.");
+
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public GraphObjectMap getContextObject(String searchTerm, String uuid, String text, int contextLength) {
 
 		logger.warn("No fulltext indexer installed, this is a dummy implementation that does nothing.");
 
@@ -18,6 +18,7 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.Map;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 
@@ -26,5 +27,7 @@ import org.structr.core.GraphObjectMap;
 public interface FulltextIndexer {
 
 	void addToFulltextIndex(final Indexable indexable) throws FrameworkException;
-	GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength);
+	void removeFromFulltextIndex(final String uuid) throws FrameworkException;
+	Map<String, Double> search(final String searchTerm, final int maxResults) throws FrameworkException;
+	GraphObjectMap getContextObject(final String searchTerm, final String uuid, final String text, final int contextLength);
 }
@@ -230,6 +230,14 @@ public interface GraphObject {
 
 			// set primitive values directly for better performance
 			getPropertyContainer().setProperties(container.getData());
+
+			// the n-gram index is not updated by the bulk write
+			for (final PropertyKey key : properties.keySet()) {
+
+				if (key.isNgramIndexed() && container.getData().containsKey(key.dbName())) {
+					key.index(this);
+				}
+			}
 		}
 	}
 
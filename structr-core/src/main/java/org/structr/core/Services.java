@@ -25,14 +25,18 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +79,7 @@ public class Services implements StructrServices {
 	private final Set<Permission> permissionsForOwnerlessNodes = new LinkedHashSet<>();
 	private final Map<String, Object> attributes               = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Map<Class, Service> serviceCache             = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Class, Startup> startup                  = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Set<Class> registeredServiceClasses          = new LinkedHashSet<>();
 	private final Set<String> configuredServiceClasses         = new LinkedHashSet<>();
 	private LicenseManager licenseManager                      = null;
@@ -119,6 +124,8 @@ public class Services implements StructrServices {
 
 			if ((serviceClass != null) && configuredServiceClasses.contains(serviceClass.getSimpleName())) {
 
+				awaitStartup(serviceClass);
+
 				// search for already running service..
 				Service service = serviceCache.get(serviceClass);
 				if (service == null) {
@@ -218,16 +225,19 @@ public class Services implements StructrServices {
 
 		logger.info("Starting services..");
 
-		// initialize other services
+		final List<Class> serviceClasses = new LinkedList<>();
+
 		for (final String serviceClassName : configuredServiceClasses) {
 
-				Class serviceClass = getServiceClassForName(serviceClassName);
-				if (serviceClass != null) {
+			final Class serviceClass = getServiceClassForName(serviceClassName);
+			if (serviceClass != null) {
 
-					startService(serviceClass);
-				}
+				serviceClasses.add(serviceClass);
+			}
 		}
 
+		startServices(serviceClasses);
+
 		logger.info("{} service(s) processed", serviceCache.size());
 		logger.info("Registering shutdown hook.");
 
@@ -443,12 +453,22 @@ public class Services implements StructrServices {
 
 	public void startService(final Class serviceClass) {
 
+		try {
+
+			startService(serviceClass, (Service) serviceClass.newInstance());
+
+		} catch (Throwable t) {
+
+			logger.error("Service {} failed to start", serviceClass.getSimpleName(), t);
+		}
+	}
+
+	private void startService(final Class serviceClass, final Service service) {
+
 		logger.info("Creating {}..", serviceClass.getSimpleName());
 
 		try {
 
-			final Service service = (Service) serviceClass.newInstance();
-
 			if (licenseManager != null && !licenseManager.isValid(service)) {
 
 				logger.error("Configured service {} is not part of the currently licensed Structr Edition.", serviceClass.getSimpleName());
@@ -488,6 +508,126 @@ public class Services implements StructrServices {
 		}
 	}
 
+	/**
+	 * Waits for the startup of the given service if the service layer is
+	 * starting. The service and its dependencies are started in the calling
+	 * thread unless their startup has already begun in another thread, so
+	 * that a startup thread never blocks on a task queued behind it.
+	 *
+	 * @param serviceClass the service class
+	 */
+	void awaitStartup(final Class serviceClass) {
+
+		final Startup pending = startup.get(serviceClass);
+		if (pending != null) {
+
+			pending.await();
+		}
+	}
+
+	/**
+	 * Starts the given services concurrently, in the order defined by
+	 * their dependencies. Services that do not declare their dependencies
+	 * are started after all services that precede them in the given list.
+	 *
+	 * @param serviceClasses the service classes in configuration order
+	 */
+	void startServices(final List<Class> serviceClasses) {
+
+		final Map<Class, Service> instances = new LinkedHashMap<>();
+		final int threads                   = Math.max(1, Settings.ServicesStartupThreads.getValue());
+		final AtomicInteger count           = new AtomicInteger(0);
+
+		// threads created by the services inherit the daemon flag, so the startup threads must not be daemons
+		final ExecutorService executor      = Executors.newFixedThreadPool(threads, r -> new Thread(r, "ServiceStartup-" + count.incrementAndGet()));
+
+		for (final Class serviceClass : serviceClasses) {
+
+			try {
+
+				instances.put(serviceClass, (Service) serviceClass.newInstance());
+
+			} catch (Throwable t) {
+
+				logger.error("Service {} failed to start", serviceClass.getSimpleName(), t);
+			}
+		}
+
+		try {
+
+			for (final Class serviceClass : instances.keySet()) {
+
+				scheduleStartup(serviceClass, instances, executor, new LinkedHashSet<>());
+			}
+
+			for (final Startup task : startup.values()) {
+				task.done.join();
+			}
+
+		} catch (Throwable t) {
+
+			logger.error("Unable to start services", t);
+
+		} finally {
+
+			executor.shutdown();
+			startup.clear();
+		}
+	}
+
+	private Startup scheduleStartup(final Class serviceClass, final Map<Class, Service> instances, final ExecutorService executor, final Set<Class> path) {
+
+		Startup task = startup.get(serviceClass);
+		if (task == null) {
+
+			final List<Startup> dependencies                 = new LinkedList<>();
+			final Service service                            = instances.get(serviceClass);
+			final Set<Class> dependencyClasses               = new LinkedHashSet<>();
+			final Set<Class> declared                        = service.getDependencies();
+
+			path.add(serviceClass);
+
+			if (declared != null) {
+
+				dependencyClasses.addAll(declared);
+
+			} else {
+
+				// no dependencies declared, start after all preceding services
+				for (final Class preceding : instances.keySet()) {
+
+					if (preceding.equals(serviceClass)) {
+						break;
+					}
+
+					dependencyClasses.add(preceding);
+				}
+			}
+
+			for (final Class dependency : dependencyClasses) {
+
+				if (path.contains(dependency)) {
+
+					logger.warn("Circular dependency between {} and {}, ignoring.", serviceClass.getSimpleName(), dependency.getSimpleName());
+
+				} else if (instances.containsKey(dependency)) {
+
+					dependencies.add(scheduleStartup(dependency, instances, executor, path));
+				}
+			}
+
+			path.remove(serviceClass);
+
+			task = new Startup(serviceClass, service, dependencies);
+
+			startup.put(serviceClass, task);
+
+			CompletableFuture.allOf(dependencies.stream().map(d -> d.done).toArray(CompletableFuture[]::new)).thenRunAsync(task::run, executor);
+		}
+
+		return task;
+	}
+
 	public void shutdownService(final String serviceName) {
 
 		final Class serviceClass = getServiceClassForName(serviceName);
@@ -712,4 +852,58 @@ public class Services implements StructrServices {
 
 		return false;
 	}
+
+	// ----- nested classes -----
+	/**
+	 * The startup of a single service. The service is started by the first
+	 * thread that calls {@link #run()}, which is either a startup thread
+	 * once all dependencies are started, or a thread that requests a
+	 * command of the service and calls {@link #await()}.
+	 */
+	private class Startup {
+
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+		private final AtomicBoolean claimed        = new AtomicBoolean(false);
+		private List<Startup> dependencies         = null;
+		private Class serviceClass                 = null;
+		private Service service                    = null;
+
+		public Startup(final Class serviceClass, final Service service, final List<Startup> dependencies) {
+
+			this.serviceClass = serviceClass;
+			this.service      = service;
+			this.dependencies = dependencies;
+		}
+
+		public void await() {
+
+			if (done.isDone()) {
+				return;
+			}
+
+			// dependencies first, circular dependencies were removed when scheduling
+			for (final Startup dependency : dependencies) {
+				dependency.await();
+			}
+
+			run();
+
+			done.join();
+		}
+
+		public void run() {
+
+			if (claimed.compareAndSet(false, true)) {
+
+				try {
+
+					startService(serviceClass, service);
+
+				} finally {
+
+					done.complete(null);
+				}
+			}
+		}
+	}
 }
@@ -39,6 +39,15 @@ public interface Query<T extends GraphObject> extends Iterable<T> {
 	public List<T> getAsList() throws FrameworkException;
 	public T getFirst() throws FrameworkException;
 
+	/**
+	 * Returns the results of this query as they are read from the database,
+	 * must be consumed in the transaction that executed the query.
+	 *
+	 * @return the results
+	 * @throws FrameworkException
+	 */
+	public Iterable<T> getResultStream() throws FrameworkException;
+
 	// ----- builder methods -----
 	public Query<T> disableSorting();
 	public Query<T> sort(final PropertyKey key);
@@ -65,6 +74,7 @@ public interface Query<T extends GraphObject> extends Iterable<T> {
 	public Query<T> location(final String street, final String postalCode, final String city, final String country, final double distance);
 	public Query<T> location(final String street, final String postalCode, final String city, final String state, final String country, final double distance);
 	public Query<T> location(final String street, final String house, final String postalCode, final String city, final String state, final String country, final double distance);
+	public Query<T> boundingBox(final double south, final double west, final double north, final double east);
 
 	default public <P> Query<T> and(final String name, final P value) {
 
@@ -1503,8 +1503,14 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	@Override
 	public final void removeFromIndex() {
 
-		final Index<Node> index = Services.getInstance().getService(NodeService.class).getNodeIndex();
-		index.remove(dbNode);
+		// the node index only maintains n-gram entries, skip the delete query
+		// for types without n-gram indexed properties (entries of properties
+		// that are no longer n-gram indexed only add search candidates)
+		if (hasNgramIndexedProperties()) {
+
+			final Index<Node> index = Services.getInstance().getService(NodeService.class).getNodeIndex();
+			index.remove(dbNode);
+		}
 	}
 
 	public final void removeFromIndex(PropertyKey key) {
@@ -1513,6 +1519,18 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		index.remove(dbNode, key.dbName());
 	}
 
+	private boolean hasNgramIndexedProperties() {
+
+		for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(entityType, PropertyView.All)) {
+
+			if (key.isNgramIndexed()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	@Override
 	public final void indexPassiveProperties() {
 
@@ -22,6 +22,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -38,6 +39,7 @@ import org.structr.core.GraphObjectMap;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.ChangelogStore;
 import org.structr.core.property.EndNodeProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.StringProperty;
@@ -83,44 +85,38 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 			if (sources[0] instanceof GraphObject) {
 
-				final String changelog = ((GraphObject) sources[0]).getProperty(GraphObject.structrChangeLog);
+				final GraphObject obj                 = (GraphObject) sources[0];
+				final ChangelogFilter changelogFilter = new ChangelogFilter();
 
-				if (changelog != null && !("".equals(changelog))) {
+				if (sources.length >= 3 && sources[2] != null) {
 
-					final ChangelogFilter changelogFilter = new ChangelogFilter();
+					if (sources[2] instanceof NativeObject) {
 
-					if (sources.length >= 3 && sources[2] != null) {
+						changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
 
-						if (sources[2] instanceof NativeObject) {
+					} else {
 
-							changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
+						final int maxLength = sources.length;
 
-						} else {
-
-							final int maxLength = sources.length;
-
-							for (int i = 2; (i + 2) <= maxLength; i += 2) {
-
-								if (sources[i] != null && sources[i+1] != null) {
-									changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
-								}
+						for (int i = 2; (i + 2) <= maxLength; i += 2) {
 
+							if (sources[i] != null && sources[i+1] != null) {
+								changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
 							}
 
-							if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
-								logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
-							}
 						}
-					}
 
-					if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
-						changelogFilter.setResolveTargets(true);
+						if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
+							logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
+						}
 					}
+				}
 
-					return changelogFilter.getFilteredChangelog(changelog);
+				if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
+					changelogFilter.setResolveTargets(true);
 				}
 
-				return new ArrayList();
+				return changelogFilter.getFilteredChangelog(changelogFilter.getEntries(obj));
 
 			} else {
 
@@ -212,8 +208,8 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 			assignStringsIfPresent(javascriptConfigObject.get("verb"), _filterVerbs);
 
-			assignLongIfPresent(javascriptConfigObject.get("timeFrom"), _filterTimeFrom);
-			assignLongIfPresent(javascriptConfigObject.get("timeTo"), _filterTimeTo);
+			_filterTimeFrom = getLongIfPresent(javascriptConfigObject.get("timeFrom"));
+			_filterTimeTo   = getLongIfPresent(javascriptConfigObject.get("timeTo"));
 
 			assignStringsIfPresent(javascriptConfigObject.get("userId"), _filterUserId);
 			assignStringsIfPresent(javascriptConfigObject.get("userName"), _filterUserName);
@@ -228,11 +224,13 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 		}
 
-		private void assignLongIfPresent (final Object possibleLong, Long targetLongReference) {
+		private Long getLongIfPresent (final Object possibleLong) {
 
 			if (possibleLong != null) {
-				targetLongReference = new Double(ScriptRuntime.toNumber(possibleLong)).longValue();
+				return new Double(ScriptRuntime.toNumber(possibleLong)).longValue();
 			}
+
+			return null;
 		}
 
 		private void assignStringsIfPresent (final Object possibleListOrString, ArrayList<String> targetListReference) {
@@ -250,7 +248,40 @@ public class ChangelogFunction extends Function<Object, Object> {
 			_resolveTargets = resolve;
 		}
 
-		public List getFilteredChangelog (final String changelog) throws FrameworkException {
+		/**
+		 * Collects the changelog entries of the given entity, reading only
+		 * the entries within the requested time range from the changelog
+		 * store. Entries that were stored in the structrChangeLog property by
+		 * earlier versions are included as well.
+		 */
+		public List<String> getEntries(final GraphObject obj) throws FrameworkException {
+
+			final List<String> entries = new ArrayList<>();
+			final String legacyLog     = obj.getProperty(GraphObject.structrChangeLog);
+
+			if (legacyLog != null && !legacyLog.isEmpty()) {
+
+				for (final String entry : legacyLog.split("\n")) {
+
+					if (!entry.isEmpty()) {
+						entries.add(entry);
+					}
+				}
+			}
+
+			try {
+
+				entries.addAll(ChangelogStore.getInstance().read(obj.getUuid(), _filterTimeFrom, _filterTimeTo));
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read changelog of {}: {}", obj.getUuid(), ioex.getMessage());
+			}
+
+			return entries;
+		}
+
+		public List getFilteredChangelog (final List<String> entries) throws FrameworkException {
 
 			final List list = new ArrayList();
 
@@ -259,7 +290,7 @@ public class ChangelogFunction extends Function<Object, Object> {
 					_filterUserName.isEmpty() && _filterRelType.isEmpty() && _filterRelDir == null && _filterTarget.isEmpty() && _filterKey.isEmpty()
 			);
 
-			for (final String entry : changelog.split("\n")) {
+			for (final String entry : entries) {
 
 				final JsonObject jsonObj = _jsonParser.parse(entry).getAsJsonObject();
 				final String verb = jsonObj.get("verb").getAsString();
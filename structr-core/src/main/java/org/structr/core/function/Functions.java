@@ -88,6 +88,18 @@ public class Functions {
 	}
 
 	public static Object evaluate(final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException, UnlicensedException {
+		return parse(expression).evaluate(actionContext, entity);
+	}
+
+	/**
+	 * Parses the given StructrScript expression without evaluating it, so
+	 * that the resulting expression tree can be evaluated repeatedly.
+	 *
+	 * @param expression the expression, without the surrounding ${}
+	 * @return the root of the expression tree
+	 * @throws FrameworkException
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
 
 		final String expressionWithoutNewlines = expression.replace('\n', ' ').replace('\r', ' ');
 		final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
@@ -214,7 +226,7 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(actionContext, entity);
+		return root;
 	}
 
 	public static String cleanString(final Object input) {
@@ -54,6 +54,9 @@ public class BulkCreateLabelsCommand extends NodeServiceCommand implements Maint
 			info("Starting creation of labels for all nodes of type {}", entityType);
 		}
 
+		configureBulkOperation(attributes);
+		setExpectedCount(countNodesByType(entityType));
+
 		final long count = bulkGraphOperation(securityContext, nodeIterator, 10000, "CreateLabels", new BulkGraphOperation<AbstractNode>() {
 
 			@Override
@@ -71,6 +74,11 @@ public class BulkCreateLabelsCommand extends NodeServiceCommand implements Maint
 			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 				warn("Unable to create labels for node: {}", t.getMessage());
 			}
+
+			@Override
+			public boolean isParallelizable() {
+				return true;
+			}
 		});
 
 		info("Done with creating labels on {} nodes", count);
@@ -62,6 +62,9 @@ public class BulkFixNodePropertiesCommand extends NodeServiceCommand implements
 
 				logger.info("Trying to fix properties of all {} nodes", type.getSimpleName() );
 
+				configureBulkOperation(attributes);
+				setExpectedCount(countNodesByLabel(entityTypeName));
+
 				long nodeCount = bulkGraphOperation(securityContext, nodeIterator, 100, "FixNodeProperties", new BulkGraphOperation<AbstractNode>() {
 
 					private void fixProperty(AbstractNode node, Property propertyToFix) {
@@ -137,6 +140,11 @@ public class BulkFixNodePropertiesCommand extends NodeServiceCommand implements
 							}
 						}
 					}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 				});
 
 				logger.info("Fixed {} nodes", nodeCount);
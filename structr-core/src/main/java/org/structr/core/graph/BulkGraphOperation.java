@@ -58,4 +58,14 @@ public abstract class BulkGraphOperation<T> {
 	public boolean doNotifications() {
 		return false;
 	}
+
+	/**
+	 * Indicates whether the objects of this operation can be processed
+	 * concurrently in independent transactions.
+	 *
+	 * @return whether this operation can run in parallel
+	 */
+	public boolean isParallelizable() {
+		return false;
+	}
 }
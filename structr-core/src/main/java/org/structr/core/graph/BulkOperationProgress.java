@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a running bulk graph operation, used to report the number of
+ * processed objects, the throughput and the estimated time of completion.
+ */
+public class BulkOperationProgress {
+
+	private final AtomicLong processed = new AtomicLong(0L);
+	private final AtomicLong failed    = new AtomicLong(0L);
+	private String description         = null;
+	private long expectedCount         = -1L;
+	private long startTime             = 0L;
+	private int parallelism            = 1;
+
+	public BulkOperationProgress(final String description, final long expectedCount, final int parallelism) {
+
+		this.description   = description;
+		this.expectedCount = expectedCount;
+		this.parallelism   = parallelism;
+		this.startTime     = System.currentTimeMillis();
+	}
+
+	public long processed(final long count) {
+		return processed.addAndGet(count);
+	}
+
+	public void failed() {
+		failed.incrementAndGet();
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public long getProcessedCount() {
+		return processed.get();
+	}
+
+	public long getExpectedCount() {
+		return expectedCount;
+	}
+
+	/**
+	 * @return the number of processed objects per second
+	 */
+	public double getRate() {
+
+		final long duration = System.currentTimeMillis() - startTime;
+		if (duration > 0) {
+
+			return processed.get() * 1000.0 / duration;
+		}
+
+		return 0.0;
+	}
+
+	/**
+	 * @return the estimated number of milliseconds until completion, or -1 if unknown
+	 */
+	public long getEstimatedRemainingTime() {
+
+		final double rate = getRate();
+		if (expectedCount > 0 && rate > 0.0) {
+
+			return Math.max(0L, (long)((expectedCount - processed.get()) * 1000.0 / rate));
+		}
+
+		return -1L;
+	}
+
+	public Map<String, Object> toMap() {
+
+		final Map<String, Object> map = new LinkedHashMap<>();
+		final long remaining          = getEstimatedRemainingTime();
+
+		map.put("operation",     description);
+		map.put("parallelism",   parallelism);
+		map.put("startTime",     startTime);
+		map.put("elapsed",       System.currentTimeMillis() - startTime);
+		map.put("processed",     processed.get());
+		map.put("failed",        failed.get());
+		map.put("expected",      expectedCount >= 0 ? expectedCount : null);
+		map.put("rate",          Math.round(getRate()));
+		map.put("remainingTime", remaining >= 0 ? remaining : null);
+		map.put("eta",           remaining >= 0 ? System.currentTimeMillis() + remaining : null);
+
+		return map;
+	}
+}
@@ -52,6 +52,8 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 		final String entityType = (String) attributes.get("type");
 		final String relType    = (String) attributes.get("relType");
 
+		configureBulkOperation(attributes);
+
 		if (mode == null || "nodesOnly".equals(mode)) {
 			rebuildNodeIndex(entityType);
 		}
@@ -98,6 +100,8 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 			info("Starting (re-)indexing all nodes of type {}", entityType);
 		}
 
+		setExpectedCount(countNodesByType(entityType));
+
 		long count = bulkGraphOperation(securityContext, nodeIterator, 1000, "RebuildNodeIndex", new BulkGraphOperation<AbstractNode>() {
 
 			@Override
@@ -114,6 +118,11 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 				logger.warn("Unable to index node: {}", t.getMessage());
 			}
+
+			@Override
+			public boolean isParallelizable() {
+				return true;
+			}
 		});
 
 		info("Done with (re-)indexing {} nodes", count);
@@ -135,6 +144,8 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 		}
 
+		setExpectedCount(countRelationshipsByType(relType));
+
 		long count = bulkGraphOperation(securityContext, relIterator, 1000, "RebuildRelIndex", new BulkGraphOperation<AbstractRelationship>() {
 
 			@Override
@@ -151,6 +162,11 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 				logger.warn("Unable to index relationship: {}", t.getMessage());
 			}
+
+			@Override
+			public boolean isParallelizable() {
+				return true;
+			}
 		});
 
 		info("Done with (re-)indexing {} relationships", count);
@@ -59,6 +59,8 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
 		final RelationshipFactory relFactory   = new RelationshipFactory(superUserContext);
 
+		configureBulkOperation(attributes);
+
 		if (nodeType != null || Boolean.TRUE.equals(allNodes)) {
 
 			Iterator<AbstractNode> nodeIterator = null;
@@ -69,11 +71,15 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 
 				info("Start setting UUID on all nodes");
 
+				setExpectedCount(countNodesByType(null));
+
 			} else {
 
 				nodeIterator = Iterables.map(nodeFactory, graphDb.getNodesByTypeProperty(nodeType)).iterator();
 
 				info("Start setting UUID on nodes of type {}", new Object[] { nodeType });
+
+				setExpectedCount(countNodesByType(nodeType));
 			}
 
 			final long count = bulkGraphOperation(securityContext, nodeIterator, 1000, "SetNodeUuid", new BulkGraphOperation<AbstractNode>() {
@@ -112,6 +118,11 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 				public boolean doValidation() {
 					return false;
 				}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 			});
 
 			info("Done with setting UUID on {} nodes", count);
@@ -129,11 +140,15 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 
 				info("Start setting UUID on all rels", new Object[] { relType });
 
+				setExpectedCount(countRelationshipsByType(null));
+
 			} else {
 
 				relIterator = Iterables.map(relFactory, graphDb.getRelationshipsByType(relType)).iterator();
 
 				info("Start setting UUID on rels of type {}", new Object[] { relType });
+
+				setExpectedCount(countRelationshipsByType(relType));
 			}
 
 			final long count = bulkGraphOperation(securityContext, relIterator, 1000, "SetRelationshipUuid", new BulkGraphOperation<AbstractRelationship>() {
@@ -169,6 +184,11 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 				public boolean doValidation() {
 					return false;
 				}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 			});
 
 			info("Done with setting UUID on {} relationships", count);
@@ -0,0 +1,935 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Append-only, segmented storage for the entity changelog.
+ *
+ * Each record is stored as a single line of the form
+ * <code>uuid TAB time TAB json</code> in the currently active segment file.
+ * A record with an empty payload marks the entity as deleted. The store keeps
+ * an in-memory index of the offsets and timestamps of all records of an
+ * entity, so reading the changelog of a single entity (optionally restricted
+ * to a time range) only touches the records that are actually requested.
+ *
+ * When the active segment exceeds the configured size, a new segment is
+ * started and a compaction run is scheduled that rewrites sparse segments
+ * and drops the records of deleted entities as well as records older than
+ * the configured retention period.
+ */
+public class ChangelogStore implements Closeable {
+
+	private static final Logger logger         = LoggerFactory.getLogger(ChangelogStore.class.getName());
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String TMP_SUFFIX     = ".tmp";
+	private static final byte SEPARATOR        = '\t';
+	private static final byte NEWLINE          = '\n';
+
+	private static ChangelogStore instance = null;
+
+	private final ReentrantReadWriteLock lock     = new ReentrantReadWriteLock();
+	private final Map<String, Entries> index      = new HashMap<>();
+	private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+	private final AtomicBoolean compactionPending = new AtomicBoolean(false);
+	private final Object compactionLock           = new Object();
+	private ExecutorService compactor             = null;
+	private volatile boolean initialized          = false;
+	private Segment activeSegment                 = null;
+	private File directory                        = null;
+	private long maxSegmentSize                   = 0L;
+	private long retention                        = 0L;
+
+	public ChangelogStore(final File directory, final long maxSegmentSize, final long retention) {
+
+		this.directory      = directory;
+		this.maxSegmentSize = Math.max(1024L, maxSegmentSize);
+		this.retention      = retention;
+	}
+
+	public static synchronized ChangelogStore getInstance() {
+
+		if (instance == null) {
+
+			final File path           = new File(Settings.getFullSettingPath(Settings.ChangelogPath));
+			final long maxSegmentSize = Math.max(1, Settings.ChangelogSegmentSize.getValue()) * 1024L * 1024L;
+			final long retention      = TimeUnit.DAYS.toMillis(Math.max(0, Settings.ChangelogRetention.getValue()));
+
+			instance = new ChangelogStore(path, maxSegmentSize, retention);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Appends the given changelog entries (one JSON object per line) to the
+	 * changelog of the entity with the given UUID.
+	 *
+	 * @param uuid
+	 * @param changelog
+	 * @throws IOException
+	 */
+	public void append(final String uuid, final String changelog) throws IOException {
+
+		if (uuid == null || changelog == null || changelog.isEmpty()) {
+			return;
+		}
+
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream(changelog.length() + 64);
+		final List<long[]> positions       = new LinkedList<>();
+
+		for (final String line : changelog.split("\n")) {
+
+			if (!line.isEmpty()) {
+
+				final long time     = parseTime(line);
+				final byte[] prefix = prefix(uuid, time);
+				final byte[] data   = line.getBytes(StandardCharsets.UTF_8);
+				final long start    = buffer.size();
+
+				buffer.write(prefix, 0, prefix.length);
+				buffer.write(data, 0, data.length);
+				buffer.write(NEWLINE);
+
+				positions.add(new long[] { start + prefix.length, data.length, time });
+			}
+		}
+
+		if (positions.isEmpty()) {
+			return;
+		}
+
+		initialize();
+
+		lock.writeLock().lock();
+		try {
+
+			final Segment segment = activeSegment;
+			final long base       = segment.write(buffer.toByteArray());
+			final Entries entries = index.computeIfAbsent(uuid, k -> new Entries());
+
+			for (final long[] position : positions) {
+
+				final long time = position[2];
+				final int length = (int)position[1];
+
+				entries.add(segment.id, base + position[0], length, time);
+				segment.recordAdded(recordLength(uuid, time, length), time);
+			}
+
+			if (segment.size >= maxSegmentSize) {
+				rollSegment();
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the changelog of the entity with the given UUID. The space
+	 * used by its records is reclaimed by the next compaction run.
+	 *
+	 * @param uuid
+	 * @throws IOException
+	 */
+	public void remove(final String uuid) throws IOException {
+
+		if (uuid == null) {
+			return;
+		}
+
+		initialize();
+
+		lock.writeLock().lock();
+		try {
+
+			final Entries entries = index.remove(uuid);
+			if (entries != null) {
+
+				for (int i=0; i<entries.size; i++) {
+
+					final Segment segment = segments.get(entries.segment[i]);
+					if (segment != null) {
+
+						segment.live -= recordLength(uuid, entries.time[i], entries.length[i]);
+					}
+				}
+
+				// tombstone, needed to restore the index correctly after a restart
+				activeSegment.write(concat(prefix(uuid, System.currentTimeMillis()), new byte[0]));
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the changelog entries of the entity with the given UUID whose
+	 * timestamp lies within the given (inclusive) bounds. Only the matching
+	 * records are read from disk.
+	 *
+	 * @param uuid
+	 * @param timeFrom lower bound or null
+	 * @param timeTo upper bound or null
+	 * @return the JSON strings of the matching entries in chronological order
+	 * @throws IOException
+	 */
+	public List<String> read(final String uuid, final Long timeFrom, final Long timeTo) throws IOException {
+
+		final List<String> result = new ArrayList<>();
+
+		if (uuid == null) {
+			return result;
+		}
+
+		initialize();
+
+		lock.readLock().lock();
+		try {
+
+			final Entries entries = index.get(uuid);
+			if (entries != null) {
+
+				final Map<Integer, FileChannel> channels = new HashMap<>();
+
+				try {
+
+					for (int i=0; i<entries.size; i++) {
+
+						final long time = entries.time[i];
+
+						if ((timeFrom == null || time >= timeFrom) && (timeTo == null || time <= timeTo)) {
+
+							FileChannel channel = channels.get(entries.segment[i]);
+							if (channel == null) {
+
+								channel = FileChannel.open(segments.get(entries.segment[i]).file.toPath(), StandardOpenOption.READ);
+								channels.put(entries.segment[i], channel);
+							}
+
+							result.add(new String(readFully(channel, entries.offset[i], entries.length[i]), StandardCharsets.UTF_8));
+						}
+					}
+
+				} finally {
+
+					for (final FileChannel channel : channels.values()) {
+						channel.close();
+					}
+				}
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Rewrites all closed segments that are less than half full or contain
+	 * records older than the retention period. Each segment is rewritten
+	 * in place, so the order of records and tombstones is preserved. The
+	 * write lock is only held while the rewritten file replaces the old
+	 * one, so appends are not blocked by a compaction run.
+	 *
+	 * @throws IOException
+	 */
+	public void compact() throws IOException {
+
+		initialize();
+
+		synchronized (compactionLock) {
+
+			final long cutoff            = retention > 0 ? System.currentTimeMillis() - retention : Long.MIN_VALUE;
+			final List<Segment> selected = new ArrayList<>();
+
+			lock.readLock().lock();
+			try {
+
+				for (final Segment segment : segments.values()) {
+
+					if (segment != activeSegment && (segment.live * 2 < segment.size || segment.minTime < cutoff)) {
+
+						selected.add(segment);
+					}
+				}
+
+			} finally {
+
+				lock.readLock().unlock();
+			}
+
+			for (final Segment segment : selected) {
+
+				compactSegment(segment, cutoff);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		lock.writeLock().lock();
+		try {
+
+			if (compactor != null) {
+				compactor.shutdown();
+			}
+
+			for (final Segment segment : segments.values()) {
+				segment.close();
+			}
+
+			segments.clear();
+			index.clear();
+
+			activeSegment = null;
+			initialized   = false;
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	// ----- private methods -----
+	private void initialize() throws IOException {
+
+		if (!initialized) {
+
+			lock.writeLock().lock();
+			try {
+
+				if (!initialized) {
+
+					directory.mkdirs();
+
+					// left over from a compaction run that did not finish
+					final File[] tmpFiles = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX + TMP_SUFFIX));
+					if (tmpFiles != null) {
+
+						for (final File file : tmpFiles) {
+							file.delete();
+						}
+					}
+
+					final File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+					if (files != null) {
+
+						for (final File file : files) {
+
+							final String name = file.getName();
+
+							try {
+
+								final int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+								segments.put(id, new Segment(id, file));
+
+							} catch (NumberFormatException nex) {
+								logger.warn("Ignoring unknown file {} in changelog directory", file.getAbsolutePath());
+							}
+						}
+					}
+
+					final long t0 = System.currentTimeMillis();
+
+					for (final Segment segment : segments.values()) {
+						scanSegment(segment);
+					}
+
+					for (final Entries entries : index.values()) {
+						entries.sort();
+					}
+
+					if (!segments.isEmpty()) {
+						logger.info("Changelog index for {} entities restored from {} segments in {} ms", index.size(), segments.size(), System.currentTimeMillis() - t0);
+					}
+
+					// always start a new segment so a partially written record can never be continued
+					openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+
+					compactor = Executors.newSingleThreadExecutor(r -> {
+
+						final Thread thread = new Thread(r, "ChangelogCompactor");
+						thread.setDaemon(true);
+
+						return thread;
+					});
+
+					initialized = true;
+				}
+
+			} finally {
+
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	private void scanSegment(final Segment segment) throws IOException {
+
+		final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+		long lineStart                   = 0L;
+		long position                    = 0L;
+
+		try (final InputStream is = new BufferedInputStream(new FileInputStream(segment.file), 65536)) {
+
+			int b = 0;
+
+			while ((b = is.read()) != -1) {
+
+				position++;
+
+				if (b == NEWLINE) {
+
+					parseRecord(segment, line.toByteArray(), lineStart);
+
+					line.reset();
+					lineStart = position;
+
+				} else {
+
+					line.write(b);
+				}
+			}
+		}
+
+		// incomplete trailing record from an unclean shutdown is ignored
+		segment.size = position;
+	}
+
+	private void parseRecord(final Segment segment, final byte[] record, final long recordStart) {
+
+		final int first  = indexOf(record, SEPARATOR, 0);
+		final int second = first >= 0 ? indexOf(record, SEPARATOR, first + 1) : -1;
+
+		if (second < 0) {
+
+			logger.warn("Ignoring malformed record at offset {} in changelog segment {}", recordStart, segment.file.getName());
+			return;
+		}
+
+		final String uuid = new String(record, 0, first, StandardCharsets.UTF_8);
+		final long time   = Long.parseLong(new String(record, first + 1, second - first - 1, StandardCharsets.UTF_8));
+		final int length  = record.length - second - 1;
+
+		if (length == 0) {
+
+			// tombstone
+			final Entries entries = index.remove(uuid);
+			if (entries != null) {
+
+				for (int i=0; i<entries.size; i++) {
+
+					final Segment other = segments.get(entries.segment[i]);
+					if (other != null) {
+
+						other.live -= recordLength(uuid, entries.time[i], entries.length[i]);
+					}
+				}
+			}
+
+		} else {
+
+			index.computeIfAbsent(uuid, k -> new Entries()).add(segment.id, recordStart + second + 1, length, time);
+			segment.recordAdded(record.length + 1, time);
+		}
+	}
+
+	private void compactSegment(final Segment segment, final long cutoff) throws IOException {
+
+		final List<Record> records = new ArrayList<>();
+		final boolean hasOlder;
+
+		// collect the records of the segment, closed segments never change
+		lock.readLock().lock();
+		try {
+
+			if (segments.get(segment.id) != segment) {
+				return;
+			}
+
+			hasOlder = segments.lowerKey(segment.id) != null;
+
+			for (final Map.Entry<String, Entries> entry : index.entrySet()) {
+
+				final Entries entries = entry.getValue();
+
+				for (int i=0; i<entries.size; i++) {
+
+					if (entries.segment[i] == segment.id) {
+
+						records.add(new Record(entry.getKey(), entries.offset[i], entries.length[i], entries.time[i]));
+					}
+				}
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		records.sort((a, b) -> Long.compare(a.offset, b.offset));
+
+		// write the new segment without holding a lock
+		final File tmpFile = new File(segment.file.getAbsolutePath() + TMP_SUFFIX);
+		long size          = 0L;
+
+		try (final FileChannel in  = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ);
+		     final FileChannel out = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			// tombstones only need to survive as long as there are older segments
+			if (hasOlder) {
+
+				for (final String uuid : segment.readTombstones()) {
+
+					size += writeFully(out, concat(prefix(uuid, System.currentTimeMillis()), new byte[0]));
+				}
+			}
+
+			for (final Record record : records) {
+
+				if (record.time >= cutoff) {
+
+					final byte[] prefix = prefix(record.uuid, record.time);
+					final byte[] data   = readFully(in, record.offset, record.length);
+
+					record.newOffset = size + prefix.length;
+					size            += writeFully(out, concat(prefix, data));
+				}
+			}
+
+		} catch (IOException ioex) {
+
+			tmpFile.delete();
+			throw ioex;
+		}
+
+		// replace the segment and update the index
+		lock.writeLock().lock();
+		try {
+
+			if (segments.get(segment.id) != segment) {
+
+				// store was closed in the meantime
+				tmpFile.delete();
+				return;
+			}
+
+			final Map<String, Map<Long, Record>> moved = new HashMap<>();
+
+			for (final Record record : records) {
+				moved.computeIfAbsent(record.uuid, k -> new HashMap<>()).put(record.offset, record);
+			}
+
+			segment.live    = 0L;
+			segment.minTime = Long.MAX_VALUE;
+
+			for (final Map.Entry<String, Map<Long, Record>> entry : moved.entrySet()) {
+
+				final String uuid     = entry.getKey();
+				final Entries entries = index.get(uuid);
+
+				// entities removed in the meantime have a tombstone in a newer segment
+				if (entries != null) {
+
+					boolean expired = false;
+
+					for (int i=0; i<entries.size; i++) {
+
+						if (entries.segment[i] == segment.id) {
+
+							final Record record = entry.getValue().get(entries.offset[i]);
+							if (record != null && record.newOffset >= 0) {
+
+								entries.offset[i] = record.newOffset;
+								segment.recordAdded(recordLength(uuid, record.time, record.length), record.time);
+
+							} else {
+
+								entries.segment[i] = -1;
+								expired            = true;
+							}
+						}
+					}
+
+					if (expired) {
+
+						entries.removeSegment(-1);
+
+						if (entries.size == 0) {
+							index.remove(uuid);
+						}
+					}
+				}
+			}
+
+			if (size > 0) {
+
+				Files.move(tmpFile.toPath(), segment.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+				segment.size = size;
+
+			} else {
+
+				segments.remove(segment.id);
+				tmpFile.delete();
+
+				if (!segment.file.delete()) {
+					logger.warn("Unable to delete compacted changelog segment {}", segment.file.getAbsolutePath());
+				}
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void rollSegment() throws IOException {
+
+		activeSegment.close();
+
+		openSegment(activeSegment.id + 1);
+
+		if (compactor != null && compactionPending.compareAndSet(false, true)) {
+
+			compactor.submit(() -> {
+
+				compactionPending.set(false);
+
+				try {
+					compact();
+
+				} catch (IOException ioex) {
+					logger.warn("Unable to compact changelog: {}", ioex.getMessage());
+				}
+			});
+		}
+	}
+
+	private void openSegment(final int id) throws IOException {
+
+		final File file = new File(directory, String.format("%010d%s", id, SEGMENT_SUFFIX));
+
+		activeSegment = new Segment(id, file);
+		activeSegment.openForWriting();
+
+		segments.put(id, activeSegment);
+	}
+
+	private static long parseTime(final String line) {
+
+		// entries are written with "time" as the first key, see GraphObjectModificationState
+		final int start = line.indexOf("\"time\":");
+		if (start >= 0) {
+
+			int pos = start + 7;
+			long value = 0L;
+			boolean digits = false;
+
+			while (pos < line.length() && Character.isDigit(line.charAt(pos))) {
+
+				value = value * 10 + (line.charAt(pos++) - '0');
+				digits = true;
+			}
+
+			if (digits) {
+				return value;
+			}
+		}
+
+		return System.currentTimeMillis();
+	}
+
+	private static byte[] prefix(final String uuid, final long time) {
+		return (uuid + "\t" + time + "\t").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static long recordLength(final String uuid, final long time, final int length) {
+		return prefix(uuid, time).length + length + 1;
+	}
+
+	private static byte[] concat(final byte[] prefix, final byte[] data) {
+
+		final byte[] result = Arrays.copyOf(prefix, prefix.length + data.length + 1);
+
+		System.arraycopy(data, 0, result, prefix.length, data.length);
+		result[result.length - 1] = NEWLINE;
+
+		return result;
+	}
+
+	private static long writeFully(final FileChannel channel, final byte[] data) throws IOException {
+
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		return data.length;
+	}
+
+	private static byte[] readFully(final FileChannel channel, final long offset, final int length) throws IOException {
+
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		long position           = offset;
+
+		while (buffer.hasRemaining()) {
+
+			final int count = channel.read(buffer, position);
+			if (count < 0) {
+
+				throw new IOException("Unexpected end of changelog segment");
+			}
+
+			position += count;
+		}
+
+		return buffer.array();
+	}
+
+	private static int indexOf(final byte[] data, final byte value, final int start) {
+
+		for (int i=start; i<data.length; i++) {
+
+			if (data[i] == value) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	// ----- nested classes -----
+	private static class Segment {
+
+		private FileChannel channel = null;
+		private long minTime        = Long.MAX_VALUE;
+		private long size           = 0L;
+		private long live           = 0L;
+		private File file           = null;
+		private int id              = 0;
+
+		public Segment(final int id, final File file) {
+
+			this.id   = id;
+			this.file = file;
+		}
+
+		public void openForWriting() throws IOException {
+
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			size    = channel.size();
+		}
+
+		public long write(final byte[] data) throws IOException {
+
+			final long position = size;
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+
+			size += data.length;
+
+			return position;
+		}
+
+		public void recordAdded(final long length, final long time) {
+
+			live   += length;
+			minTime = Math.min(minTime, time);
+		}
+
+		public List<String> readTombstones() throws IOException {
+
+			final List<String> tombstones = new LinkedList<>();
+			final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+			try (final InputStream is = new BufferedInputStream(new FileInputStream(file), 65536)) {
+
+				int b = 0;
+
+				while ((b = is.read()) != -1) {
+
+					if (b == NEWLINE) {
+
+						final byte[] record = line.toByteArray();
+						final int first     = indexOf(record, SEPARATOR, 0);
+						final int second    = first >= 0 ? indexOf(record, SEPARATOR, first + 1) : -1;
+
+						if (second >= 0 && second == record.length - 1) {
+							tombstones.add(new String(record, 0, first, StandardCharsets.UTF_8));
+						}
+
+						line.reset();
+
+					} else {
+
+						line.write(b);
+					}
+				}
+			}
+
+			return tombstones;
+		}
+
+		public void close() throws IOException {
+
+			if (channel != null) {
+
+				channel.close();
+				channel = null;
+			}
+		}
+	}
+
+	private static class Record {
+
+		private long newOffset = -1L;
+		private String uuid    = null;
+		private long offset    = 0L;
+		private int length     = 0;
+		private long time      = 0L;
+
+		public Record(final String uuid, final long offset, final int length, final long time) {
+
+			this.uuid   = uuid;
+			this.offset = offset;
+			this.length = length;
+			this.time   = time;
+		}
+	}
+
+	private static class Entries {
+
+		private int[] segment = new int[4];
+		private long[] offset = new long[4];
+		private int[] length  = new int[4];
+		private long[] time   = new long[4];
+		private int size      = 0;
+
+		public void add(final int segmentId, final long position, final int len, final long timestamp) {
+
+			if (size == segment.length) {
+
+				final int capacity = size * 2;
+
+				segment = Arrays.copyOf(segment, capacity);
+				offset  = Arrays.copyOf(offset, capacity);
+				length  = Arrays.copyOf(length, capacity);
+				time    = Arrays.copyOf(time, capacity);
+			}
+
+			segment[size] = segmentId;
+			offset[size]  = position;
+			length[size]  = len;
+			time[size]    = timestamp;
+
+			size++;
+		}
+
+		public void removeSegment(final int segmentId) {
+
+			int target = 0;
+
+			for (int i=0; i<size; i++) {
+
+				if (segment[i] != segmentId) {
+
+					segment[target] = segment[i];
+					offset[target]  = offset[i];
+					length[target]  = length[i];
+					time[target]    = time[i];
+
+					target++;
+				}
+			}
+
+			size = target;
+		}
+
+		/**
+		 * Stable insertion sort by timestamp, entries are almost always in
+		 * order already.
+		 */
+		public void sort() {
+
+			for (int i=1; i<size; i++) {
+
+				final int s  = segment[i];
+				final long o = offset[i];
+				final int l  = length[i];
+				final long t = time[i];
+				int j        = i - 1;
+
+				while (j >= 0 && time[j] > t) {
+
+					segment[j+1] = segment[j];
+					offset[j+1]  = offset[j];
+					length[j+1]  = length[j];
+					time[j+1]    = time[j];
+					j--;
+				}
+
+				segment[j+1] = s;
+				offset[j+1]  = o;
+				length[j+1]  = l;
+				time[j+1]    = t;
+			}
+		}
+	}
+}
@@ -19,10 +19,12 @@
 package org.structr.core.graph;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -56,6 +58,7 @@ public class ModificationQueue {
 	private final Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
 	private final Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
 	private final Set<String> synchronizationKeys                                           = new TreeSet<>();
+	private final List<Runnable> afterCommitTasks                                           = new ArrayList<>();
 
 	/**
 	 * Returns a set containing the different entity types of
@@ -162,25 +165,23 @@ public class ModificationQueue {
 
 		if (Settings.ChangelogEnabled.getValue() && !modificationEvents.isEmpty()) {
 
+			final ChangelogStore store = ChangelogStore.getInstance();
+
 			for (final ModificationEvent ev: modificationEvents) {
 
-				if (!ev.isDeleted()) {
+				try {
 
-					try {
-						final GraphObject obj = ev.getGraphObject();
-						if (obj != null) {
+					if (ev.isDeleted()) {
 
-							final String existingLog = obj.getProperty(GraphObject.structrChangeLog);
-							final String newLog      = ev.getChangeLog();
-							final String newValue    = existingLog != null ? existingLog + newLog : newLog;
+						store.remove(ev.getUuid());
 
-							obj.unlockSystemPropertiesOnce();
-							obj.setProperty(GraphObject.structrChangeLog, newValue);
-						}
+					} else {
 
-					} catch (Throwable t) {
-						logger.warn("", t);
+						store.append(ev.getUuid(), ev.getChangeLog());
 					}
+
+				} catch (Throwable t) {
+					logger.warn("", t);
 				}
 			}
 		}
@@ -313,6 +314,31 @@ public class ModificationQueue {
 		}
 	}
 
+	public void afterCommit(final Runnable task) {
+		afterCommitTasks.add(task);
+	}
+
+	/**
+	 * Runs the tasks that were registered to run after a successful
+	 * commit. The transaction can not be rolled back at this point,
+	 * so errors are only logged.
+	 */
+	public void doAfterCommitTasks() {
+
+		for (final Runnable task : afterCommitTasks) {
+
+			try {
+
+				task.run();
+
+			} catch (Throwable t) {
+				logger.warn("Unable to run after-commit task: {}", t.getMessage());
+			}
+		}
+
+		afterCommitTasks.clear();
+	}
+
 	public boolean isDeleted(final Node node) {
 
 		final GraphObjectModificationState state = modifications.get("N" + node.getId());
@@ -19,7 +19,9 @@
 package org.structr.core.graph;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -164,6 +166,11 @@ public class NodeService implements SingletonService {
 		return true;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return Collections.emptySet();
+	}
+
 	public Index<Node> getNodeIndex() {
 		return nodeIndex;
 	}
@@ -19,14 +19,30 @@
 package org.structr.core.graph;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.NativeResult;
 import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
+import org.structr.api.index.Index;
 import org.structr.api.service.Command;
 import org.structr.common.Filter;
 import org.structr.common.SecurityContext;
@@ -42,11 +58,15 @@ import org.structr.util.Writable;
  */
 public abstract class NodeServiceCommand extends Command {
 
-	private static final Logger logger                        = LoggerFactory.getLogger(NodeServiceCommand.class.getName());
-	private static final ArrayBlockingQueue<String> uuidQueue = new ArrayBlockingQueue<>(100000);
+	private static final Logger logger                                 = LoggerFactory.getLogger(NodeServiceCommand.class.getName());
+	private static final ArrayBlockingQueue<String> uuidQueue          = new ArrayBlockingQueue<>(100000);
+	private static final List<BulkOperationProgress> runningOperations = new CopyOnWriteArrayList<>();
 
 	protected SecurityContext securityContext = null;
 	private Writable logWritable              = null;
+	private int parallelism                   = Settings.MaintenanceParallelism.getValue();
+	private int throttle                      = Settings.MaintenanceThrottle.getValue();
+	private long expectedCount                = -1L;
 
 	@Override
 	public Class getServiceClass()	{
@@ -86,54 +106,26 @@ public abstract class NodeServiceCommand extends Command {
 	 */
 	public <T> long bulkGraphOperation(final SecurityContext securityContext, final Iterator<T> iterator, final long commitCount, String description, final BulkGraphOperation<T> operation, boolean validation) {
 
-		final Predicate<Long> condition = operation.getCondition();
-		final App app                   = StructrApp.getInstance(securityContext);
-		final boolean doValidation      = operation.doValidation();
-		final boolean doCallbacks       = operation.doCallbacks();
-		final boolean doNotifications   = operation.doNotifications();
-		long objectCount                = 0L;
-		boolean active                  = true;
-
-		while (active) {
-
-			active = false;
+		final Predicate<Long> condition      = operation.getCondition();
+		final boolean parallel               = parallelism > 1 && condition == null && operation.isParallelizable();
+		final BulkOperationProgress progress = new BulkOperationProgress(description, expectedCount, parallel ? parallelism : 1);
 
-			try (final Tx tx = app.tx(doValidation, doCallbacks, doNotifications)) {
+		runningOperations.add(progress);
 
-				while (iterator.hasNext() && (condition == null || condition.accept(objectCount))) {
+		try {
 
-					T node = iterator.next();
-					active = true;
+			if (parallel) {
 
-					try {
-
-						operation.handleGraphObject(securityContext, node);
-
-					} catch (Throwable t) {
-
-						operation.handleThrowable(securityContext, t, node);
-					}
-
-					// commit transaction after commitCount
-					if ((++objectCount % commitCount) == 0) {
-						break;
-					}
-				}
-
-				tx.success();
+				return parallelBulkGraphOperation(securityContext, iterator, commitCount, description, operation, progress);
+			}
 
-			} catch (Throwable t) {
+			return sequentialBulkGraphOperation(securityContext, iterator, commitCount, description, operation, progress);
 
-				// bulk transaction failed, what to do?
-				operation.handleTransactionFailure(securityContext, t);
-			}
+		} finally {
 
-			if (description != null) {
-				info("{}: {} objects processed", description, objectCount);
-			}
+			runningOperations.remove(progress);
+			expectedCount = -1L;
 		}
-
-		return objectCount;
 	}
 
 	/**
@@ -190,7 +182,117 @@ public abstract class NodeServiceCommand extends Command {
 		this.logWritable = writable;
 	}
 
+	/**
+	 * @return the progress of all bulk graph operations that are currently running
+	 */
+	public static List<Map<String, Object>> getBulkOperationProgress() {
+
+		final List<Map<String, Object>> result = new LinkedList<>();
+
+		for (final BulkOperationProgress progress : runningOperations) {
+			result.add(progress.toMap());
+		}
+
+		return result;
+	}
+
 	// ----- protected methods -----
+	/**
+	 * Reads the optional "parallelism" and "throttle" parameters of a
+	 * maintenance command, overriding the configured defaults.
+	 *
+	 * @param attributes
+	 */
+	protected void configureBulkOperation(final Map<String, Object> attributes) {
+
+		final Integer parallelismValue = getIntegerAttribute(attributes, "parallelism");
+		if (parallelismValue != null) {
+
+			parallelism = Math.max(1, parallelismValue);
+		}
+
+		final Integer throttleValue = getIntegerAttribute(attributes, "throttle");
+		if (throttleValue != null) {
+
+			throttle = Math.max(0, throttleValue);
+		}
+	}
+
+	/**
+	 * Sets the number of objects the next bulk graph operation is expected
+	 * to process, used to estimate the time of completion.
+	 *
+	 * @param count
+	 */
+	protected void setExpectedCount(final long count) {
+		this.expectedCount = count;
+	}
+
+	protected long countNodesByType(final String type) {
+
+		if (type == null) {
+			return count("MATCH (n) WHERE NOT n:" + Index.NGRAM_LABEL + " RETURN count(n) AS count", Collections.EMPTY_MAP);
+		}
+
+		return count("MATCH (n) WHERE n.type = {type} RETURN count(n) AS count", Collections.singletonMap("type", type));
+	}
+
+	protected long countNodesByLabel(final String label) {
+
+		if (label == null) {
+			return count("MATCH (n) WHERE NOT n:" + Index.NGRAM_LABEL + " RETURN count(n) AS count", Collections.EMPTY_MAP);
+		}
+
+		return count("MATCH (n:" + label + ") RETURN count(n) AS count", Collections.EMPTY_MAP);
+	}
+
+	protected long countRelationshipsByType(final String relType) {
+
+		if (relType == null) {
+			return count("MATCH ()-[r]->() RETURN count(r) AS count", Collections.EMPTY_MAP);
+		}
+
+		return count("MATCH ()-[r:" + relType + "]->() RETURN count(r) AS count", Collections.EMPTY_MAP);
+	}
+
+	/**
+	 * Executes the given count query and returns the value of the "count"
+	 * column of the first row, or -1 if the query fails.
+	 *
+	 * @param query
+	 * @param parameters
+	 * @return the count or -1
+	 */
+	protected long count(final String query, final Map<String, Object> parameters) {
+
+		final DatabaseService graphDb = (DatabaseService) arguments.get("graphDb");
+		if (graphDb != null) {
+
+			try (final Tx tx = StructrApp.getInstance().tx(false, false, false)) {
+
+				try (final NativeResult result = graphDb.execute(query, parameters)) {
+
+					if (result.hasNext()) {
+
+						final Object value = result.next().get("count");
+						if (value instanceof Number) {
+
+							return ((Number)value).longValue();
+						}
+					}
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to determine number of objects for bulk operation: {}", t.getMessage());
+			}
+		}
+
+		return -1L;
+	}
+
 	protected void info(final String msg, final Object... data) {
 
 		logger.info(msg, data);
@@ -232,6 +334,234 @@ public abstract class NodeServiceCommand extends Command {
 		}
 	}
 
+	// ----- private methods -----
+	private <T> long sequentialBulkGraphOperation(final SecurityContext securityContext, final Iterator<T> iterator, final long commitCount, final String description, final BulkGraphOperation<T> operation, final BulkOperationProgress progress) {
+
+		final Predicate<Long> condition = operation.getCondition();
+		final App app                   = StructrApp.getInstance(securityContext);
+		final boolean doValidation      = operation.doValidation();
+		final boolean doCallbacks       = operation.doCallbacks();
+		final boolean doNotifications   = operation.doNotifications();
+		long objectCount                = 0L;
+		boolean active                  = true;
+
+		while (active) {
+
+			final long batchStart = objectCount;
+
+			active = false;
+
+			try (final Tx tx = app.tx(doValidation, doCallbacks, doNotifications)) {
+
+				while (iterator.hasNext() && (condition == null || condition.accept(objectCount))) {
+
+					T node = iterator.next();
+					active = true;
+
+					try {
+
+						operation.handleGraphObject(securityContext, node);
+
+					} catch (Throwable t) {
+
+						operation.handleThrowable(securityContext, t, node);
+						progress.failed();
+					}
+
+					// commit transaction after commitCount
+					if ((++objectCount % commitCount) == 0) {
+						break;
+					}
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+
+				// bulk transaction failed, what to do?
+				operation.handleTransactionFailure(securityContext, t);
+			}
+
+			progress.processed(objectCount - batchStart);
+
+			if (description != null) {
+				logProgress(progress);
+			}
+
+			throttle();
+		}
+
+		return objectCount;
+	}
+
+	private <T> long parallelBulkGraphOperation(final SecurityContext securityContext, final Iterator<T> iterator, final long commitCount, final String description, final BulkGraphOperation<T> operation, final BulkOperationProgress progress) {
+
+		final App app                  = StructrApp.getInstance(securityContext);
+		final Semaphore pending        = new Semaphore(parallelism * 2);
+		final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				return new Thread(r, (description != null ? description : "BulkGraphOperation") + "-" + count.incrementAndGet());
+			}
+		});
+
+		long objectCount = 0L;
+		boolean hasMore  = true;
+
+		info("{}: processing objects with {} worker threads", description, parallelism);
+
+		try {
+
+			while (hasMore) {
+
+				final List<T> batch = new ArrayList<>((int)Math.min(commitCount, 10000L));
+
+				// the source iterator fetches its data in the transaction of the current thread
+				try (final Tx tx = app.tx(false, false, false)) {
+
+					while (batch.size() < commitCount && iterator.hasNext()) {
+						batch.add(iterator.next());
+					}
+
+					tx.success();
+
+				} catch (Throwable t) {
+
+					operation.handleTransactionFailure(securityContext, t);
+					break;
+				}
+
+				hasMore = batch.size() == commitCount;
+
+				if (!batch.isEmpty()) {
+
+					objectCount += batch.size();
+
+					// limit the number of batches waiting for a worker
+					pending.acquire();
+
+					executor.submit(() -> {
+
+						try {
+
+							processBatch(securityContext, batch, description, operation, progress);
+
+						} finally {
+
+							pending.release();
+						}
+					});
+				}
+			}
+
+		} catch (InterruptedException iex) {
+
+			warn("{}: interrupted, waiting for running batches to finish", description);
+
+		} finally {
+
+			executor.shutdown();
+
+			try {
+
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+			} catch (InterruptedException iex) {
+
+				executor.shutdownNow();
+			}
+		}
+
+		return objectCount;
+	}
+
+	private <T> void processBatch(final SecurityContext securityContext, final List<T> batch, final String description, final BulkGraphOperation<T> operation, final BulkOperationProgress progress) {
+
+		final App app = StructrApp.getInstance(securityContext);
+
+		try (final Tx tx = app.tx(operation.doValidation(), operation.doCallbacks(), operation.doNotifications())) {
+
+			for (final T obj : batch) {
+
+				try {
+
+					operation.handleGraphObject(securityContext, obj);
+
+				} catch (Throwable t) {
+
+					operation.handleThrowable(securityContext, t, obj);
+					progress.failed();
+				}
+			}
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			operation.handleTransactionFailure(securityContext, t);
+		}
+
+		progress.processed(batch.size());
+
+		if (description != null) {
+			logProgress(progress);
+		}
+
+		throttle();
+	}
+
+	private void logProgress(final BulkOperationProgress progress) {
+
+		final long remaining = progress.getEstimatedRemainingTime();
+
+		if (remaining >= 0) {
+
+			info("{}: {} of {} objects processed, {} objects/s, {} s remaining", progress.getDescription(), progress.getProcessedCount(), progress.getExpectedCount(), Math.round(progress.getRate()), remaining / 1000L);
+
+		} else {
+
+			info("{}: {} objects processed", progress.getDescription(), progress.getProcessedCount());
+		}
+	}
+
+	private void throttle() {
+
+		if (throttle > 0) {
+
+			try {
+
+				Thread.sleep(throttle);
+
+			} catch (InterruptedException ignore) {}
+		}
+	}
+
+	private Integer getIntegerAttribute(final Map<String, Object> attributes, final String key) {
+
+		final Object value = attributes != null ? attributes.get(key) : null;
+
+		if (value instanceof Number) {
+
+			return ((Number)value).intValue();
+
+		} else if (value != null) {
+
+			try {
+
+				return Integer.valueOf(value.toString());
+
+			} catch (NumberFormatException nfex) {
+
+				logger.warn("Invalid value for parameter {}: {}", key, value);
+			}
+		}
+
+		return null;
+	}
+
 	// create uuid producer that fills the queue
 	static {
 
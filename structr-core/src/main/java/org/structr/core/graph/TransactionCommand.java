@@ -236,6 +236,29 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 
 	}
 
+	/**
+	 * Registers a task that runs after the current transaction has been
+	 * committed successfully. The task is discarded if the transaction is
+	 * rolled back, and it runs immediately if there is no transaction.
+	 *
+	 * @param task the task
+	 */
+	public static void afterCommit(final Runnable task) {
+
+		final TransactionCommand command = currentCommand.get();
+		if (command != null) {
+
+			final ModificationQueue modificationQueue = command.getModificationQueue();
+			if (modificationQueue != null) {
+
+				modificationQueue.afterCommit(task);
+				return;
+			}
+		}
+
+		task.run();
+	}
+
 	public static void nodeCreated(final Principal user, final NodeInterface node) {
 
 		TransactionCommand command = currentCommand.get();
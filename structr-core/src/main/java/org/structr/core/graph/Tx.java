@@ -76,6 +76,10 @@ public class Tx implements AutoCloseable {
 
 		final ModificationQueue modificationQueue = cmd.finishTx();
 
+		if (success && modificationQueue != null) {
+			modificationQueue.doAfterCommitTasks();
+		}
+
 		if (success && guard.compareAndSet(false, true)) {
 
 			boolean retry  = true;
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.search;
+
+import org.structr.api.search.Occurrence;
+import org.structr.api.search.SpatialQuery;
+import org.structr.core.GraphObject;
+
+/**
+ * Represents a bounding box search on the latitude and longitude properties.
+ *
+ * A bounding box whose west boundary is greater than its east boundary
+ * crosses the 180th meridian.
+ */
+public class BoundingBoxSearchAttribute extends SearchAttribute implements SpatialQuery {
+
+	private Double[] boundingBox = null;
+
+	public BoundingBoxSearchAttribute(final Double south, final Double west, final Double north, final Double east, final Occurrence occur) {
+
+		super(occur);
+
+		this.boundingBox = new Double[] { south, west, north, east };
+	}
+
+	@Override
+	public String toString() {
+		return "BoundingBoxSearchAttribute(" + boundingBox[0] + ", " + boundingBox[1] + ", " + boundingBox[2] + ", " + boundingBox[3] + ")";
+	}
+
+	@Override
+	public boolean isExactMatch() {
+		return true;	// ignored
+	}
+
+	@Override
+	public boolean includeInResult(GraphObject entity) {
+		return true;
+	}
+
+	@Override
+	public Class getQueryType() {
+		return SpatialQuery.class;
+	}
+
+	@Override
+	public Double[] getCoords() {
+		return null;
+	}
+
+	@Override
+	public Double getDistance() {
+		return null;
+	}
+
+	@Override
+	public Double[] getBoundingBox() {
+		return boundingBox;
+	}
+}
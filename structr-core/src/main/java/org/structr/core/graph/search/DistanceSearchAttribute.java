@@ -158,4 +158,9 @@ public class DistanceSearchAttribute extends SearchAttribute implements SpatialQ
 	public Double getDistance() {
 		return distance;
 	}
+
+	@Override
+	public Double[] getBoundingBox() {
+		return null;
+	}
 }
@@ -118,6 +118,18 @@ public abstract class SearchAttribute<T> extends NodeAttribute<T> implements Pre
 		return null;
 	}
 
+	@Override
+	public boolean isNgramIndexed() {
+
+		final PropertyKey key = getKey();
+		if (key != null) {
+
+			return key.isNgramIndexed();
+		}
+
+		return false;
+	}
+
 	@Override
 	public String getSortKey() {
 
@@ -33,6 +33,7 @@ import org.structr.api.QueryResult;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.Index;
 import org.structr.api.search.Occurrence;
+import org.structr.api.util.Iterables;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
@@ -67,15 +68,16 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	private static final Map<String, Set<String>> subtypeMapForType = new LinkedHashMap<>();
 	private static final Set<String> baseTypes                      = new LinkedHashSet<>();
 
-	public static final String LAT_LON_SEARCH_KEYWORD     = "latlon";
-	public static final String LOCATION_SEARCH_KEYWORD    = "location";
-	public static final String STATE_SEARCH_KEYWORD       = "state";
-	public static final String HOUSE_SEARCH_KEYWORD       = "house";
-	public static final String COUNTRY_SEARCH_KEYWORD     = "country";
-	public static final String POSTAL_CODE_SEARCH_KEYWORD = "postalCode";
-	public static final String DISTANCE_SEARCH_KEYWORD    = "distance";
-	public static final String CITY_SEARCH_KEYWORD        = "city";
-	public static final String STREET_SEARCH_KEYWORD      = "street";
+	public static final String LAT_LON_SEARCH_KEYWORD      = "latlon";
+	public static final String BOUNDING_BOX_SEARCH_KEYWORD = "bbox";
+	public static final String LOCATION_SEARCH_KEYWORD     = "location";
+	public static final String STATE_SEARCH_KEYWORD        = "state";
+	public static final String HOUSE_SEARCH_KEYWORD        = "house";
+	public static final String COUNTRY_SEARCH_KEYWORD      = "country";
+	public static final String POSTAL_CODE_SEARCH_KEYWORD  = "postalCode";
+	public static final String DISTANCE_SEARCH_KEYWORD     = "distance";
+	public static final String CITY_SEARCH_KEYWORD         = "city";
+	public static final String STREET_SEARCH_KEYWORD       = "street";
 
 	static {
 
@@ -111,22 +113,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		boolean hasGraphSources      = false;
 		boolean hasSpatialSource     = false;
 
-		if (securityContext.getUser(false) == null && !isRelationshipSearch()) {
-
-			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
-
-		} else if (securityContext.getUser(false) == null && isRelationshipSearch()) {
-
-			rootGroup.add(new RelationshipVisibilitySearchAttribute());
-
-		}
-
-		// special handling of deleted and hidden flags
-		if (!includeDeletedAndHidden && !isRelationshipSearch()) {
-
-			rootGroup.add(new PropertySearchAttribute(NodeInterface.hidden,  true, Occurrence.FORBIDDEN, true));
-			rootGroup.add(new PropertySearchAttribute(NodeInterface.deleted, true, Occurrence.FORBIDDEN, true));
-		}
+		addVisibilityAttributes();
 
 		// At this point, all search attributes are ready
 		final List<SourceSearchAttribute> sources    = new ArrayList<>();
@@ -284,6 +271,58 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 	}
 
+	private void addVisibilityAttributes() {
+
+		if (securityContext.getUser(false) == null && !isRelationshipSearch()) {
+
+			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
+
+		} else if (securityContext.getUser(false) == null && isRelationshipSearch()) {
+
+			rootGroup.add(new RelationshipVisibilitySearchAttribute());
+
+		}
+
+		// special handling of deleted and hidden flags
+		if (!includeDeletedAndHidden && !isRelationshipSearch()) {
+
+			rootGroup.add(new PropertySearchAttribute(NodeInterface.hidden,  true, Occurrence.FORBIDDEN, true));
+			rootGroup.add(new PropertySearchAttribute(NodeInterface.deleted, true, Occurrence.FORBIDDEN, true));
+		}
+	}
+
+	/**
+	 * Indicates whether the result of this search is the result of the
+	 * index query alone, without graph or spatial sources and without
+	 * filters that are applied after instantiation.
+	 */
+	private boolean isIndexOnlySearch() {
+
+		// relationship visibility is checked after instantiation
+		if (securityContext.getUser(false) == null && isRelationshipSearch()) {
+			return false;
+		}
+
+		for (final SearchAttribute attr : rootGroup.getSearchAttributes()) {
+
+			if (attr instanceof SearchAttributeGroup) {
+
+				for (final SearchAttribute item : ((SearchAttributeGroup)attr).getSearchAttributes()) {
+
+					if (item instanceof SourceSearchAttribute || item instanceof EmptySearchAttribute) {
+						return false;
+					}
+				}
+			}
+
+			if (attr instanceof SourceSearchAttribute || attr instanceof EmptySearchAttribute || attr instanceof DistanceSearchAttribute || attr instanceof RelationshipVisibilitySearchAttribute) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	private Set<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 
 		final Set<GraphObject> mergedResult = new LinkedHashSet<>();
@@ -353,6 +392,35 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return result.get(0);
 	}
 
+	@Override
+	public Iterable<T> getResultStream() throws FrameworkException {
+
+		// results that are paged, merged or filtered after the index query are materialized
+		if (page != 1 || pageSize != Integer.MAX_VALUE || !isIndexOnlySearch()) {
+			return getAsList();
+		}
+
+		final Factory<S, T> factory = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page);
+		final Index<S> index        = getIndex();
+
+		if (index == null) {
+			return Collections.emptyList();
+		}
+
+		addVisibilityAttributes();
+
+		// apply sorting
+		if (sortKey != null && !doNotSort) {
+
+			rootGroup.setSortKey(sortKey);
+			rootGroup.sortDescending(sortDescending);
+		}
+
+		// objects are instantiated while the results are read, the factory
+		// returns null for objects that are not visible in this context
+		return Iterables.filter(obj -> true, Iterables.map(factory, index.query(rootGroup)));
+	}
+
 	// ----- builder methods -----
 	@Override
 	public org.structr.core.app.Query<T> disableSorting() {
@@ -517,6 +585,12 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return this;
 	}
 
+	@Override
+	public org.structr.core.app.Query<T> boundingBox(final double south, final double west, final double north, final double east) {
+		currentGroup.getSearchAttributes().add(new BoundingBoxSearchAttribute(south, west, north, east, Occurrence.REQUIRED));
+		return this;
+	}
+
 	@Override
 	public <P> org.structr.core.app.Query<T> and(final PropertyKey<P> key, final P value) {
 
@@ -68,6 +68,7 @@ public abstract class Property<T> implements PropertyKey<T> {
 	protected boolean indexed                              = false;
 	protected boolean indexedPassively                     = false;
 	protected boolean indexedWhenEmpty                     = false;
+	protected boolean ngramIndexed                         = false;
 	protected boolean compound                             = false;
 	protected boolean unique                               = false;
 	protected boolean notNull                              = false;
@@ -209,6 +210,15 @@ public abstract class Property<T> implements PropertyKey<T> {
 		return this;
 	}
 
+	@Override
+	public Property<T> ngramIndexed() {
+
+		this.ngramIndexed = true;
+		this.indexed      = true;
+
+		return this;
+	}
+
 	@Override
 	public Property<T> cmis() {
 
@@ -437,6 +447,11 @@ public abstract class Property<T> implements PropertyKey<T> {
 		return indexedWhenEmpty;
 	}
 
+	@Override
+	public boolean isNgramIndexed() {
+		return ngramIndexed;
+	}
+
 	@Override
 	public boolean isCompound() {
 		return compound;
@@ -492,6 +507,10 @@ public abstract class Property<T> implements PropertyKey<T> {
 						index.add(dbNode, dbName, value, valueType());
 					}
 
+					if (isNgramIndexed()) {
+						index.addNgrams(dbNode, dbName, value);
+					}
+
 				} catch (Throwable t) {
 
 					logger.info("Unable to index property with dbName {} and value {} of type {} on {}: {}", new Object[] { dbName, value, this.getClass().getSimpleName(), entity, t } );
@@ -94,6 +94,16 @@ public interface PropertyKey<T> extends Comparable<PropertyKey> {
 
 	public Property<T> indexedWhenEmpty();
 
+	/**
+	 * Use this method to store the trigrams of a string or string array
+	 * property in the n-gram index, so that inexact searches do not have
+	 * to scan all nodes of a type. This method also marks the property
+	 * as indexed.
+	 *
+	 * @return the Property to satisfy the builder pattern
+	 */
+	public Property<T> ngramIndexed();
+
 	/**
 	 * Use this method to indicate that a property key is accessible via
 	 * CMIS.
@@ -237,6 +247,14 @@ public interface PropertyKey<T> extends Comparable<PropertyKey> {
 	 */
 	public boolean isIndexedWhenEmpty();
 
+	/**
+	 * Indicates whether the trigrams of this property are stored in the
+	 * n-gram index.
+	 *
+	 * @return isNgramIndexed
+	 */
+	public boolean isNgramIndexed();
+
 	/**
 	 * Indicates whether this property represents a collection or a single
 	 * value in the JSON output.
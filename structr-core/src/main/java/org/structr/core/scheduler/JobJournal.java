@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.scheduler;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal for the job queue. Every queued job, every
+ * checkpoint and every finished job is written as one JSON line, so
+ * the set of unfinished jobs and their last checkpoint can be
+ * reconstructed after a restart.
+ */
+public class JobJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(JobJournal.class.getName());
+
+	private static final String OP_QUEUED     = "queued";
+	private static final String OP_CHECKPOINT = "checkpoint";
+	private static final String OP_DONE       = "done";
+
+	private final Gson gson           = new GsonBuilder().disableHtmlEscaping().create();
+	private FileOutputStream stream   = null;
+	private Writer writer             = null;
+	private File file                 = null;
+	private long lastJobId            = 0L;
+
+	public JobJournal(final File file) {
+		this.file = file;
+	}
+
+	public synchronized void jobQueued(final ScheduledJob job) {
+		jobQueued(job, null);
+	}
+
+	/**
+	 * Journals a queued job. If the job was restored from an unfinished
+	 * journal entry, the id of that entry is recorded as well, so the old
+	 * entry is closed by the same line that opens the new one.
+	 *
+	 * @param job the queued job
+	 * @param restoredFrom the id of the restored entry, or null
+	 */
+	public synchronized void jobQueued(final ScheduledJob job, final Long restoredFrom) {
+
+		final Map<String, Object> entry = new LinkedHashMap<>();
+
+		entry.put("op",            OP_QUEUED);
+		entry.put("jobId",         job.jobId());
+		entry.put("jobType",       job.getJobType());
+		entry.put("jobName",       job.jobName);
+		entry.put("userId",        job.user.getUuid());
+		entry.put("configuration", job.getConfiguration());
+		entry.put("state",         job.getJournalState());
+
+		if (restoredFrom != null) {
+			entry.put("restoredFrom", restoredFrom);
+		}
+
+		append(entry);
+	}
+
+	public synchronized void checkpoint(final ScheduledJob job, final Map<String, Object> state) {
+
+		final Map<String, Object> entry = new LinkedHashMap<>();
+
+		entry.put("op",    OP_CHECKPOINT);
+		entry.put("jobId", job.jobId());
+		entry.put("state", state);
+
+		append(entry);
+	}
+
+	public synchronized void jobDone(final ScheduledJob job) {
+
+		final Map<String, Object> entry = new LinkedHashMap<>();
+
+		entry.put("op",    OP_DONE);
+		entry.put("jobId", job.jobId());
+
+		append(entry);
+	}
+
+	/**
+	 * Reads the journal and returns the entries of all jobs that were
+	 * queued but not finished, in queue order. The state of each entry
+	 * contains the merged checkpoint data of the job.
+	 *
+	 * @return the unfinished jobs
+	 */
+	public synchronized List<Map<String, Object>> replay() {
+
+		final Map<Long, Map<String, Object>> openJobs = new TreeMap<>();
+
+		if (file.exists()) {
+
+			try (final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+
+				String line = null;
+
+				while ((line = reader.readLine()) != null) {
+
+					final Map<String, Object> entry = parse(line);
+					if (entry != null) {
+
+						final Long jobId = ((Number)entry.get("jobId")).longValue();
+
+						lastJobId = Math.max(lastJobId, jobId);
+
+						switch (entry.get("op").toString()) {
+
+							case OP_QUEUED:
+								final Object restoredFrom = entry.remove("restoredFrom");
+								if (restoredFrom instanceof Number) {
+
+									openJobs.remove(((Number)restoredFrom).longValue());
+								}
+
+								openJobs.put(jobId, entry);
+								break;
+
+							case OP_CHECKPOINT:
+								final Map<String, Object> job = openJobs.get(jobId);
+								if (job != null) {
+
+									Map<String, Object> state = (Map<String, Object>)job.get("state");
+									if (state == null) {
+
+										state = new LinkedHashMap<>();
+										job.put("state", state);
+									}
+
+									state.putAll((Map<String, Object>)entry.get("state"));
+								}
+								break;
+
+							case OP_DONE:
+								openJobs.remove(jobId);
+								break;
+						}
+					}
+				}
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to read job journal {}: {}", file.getAbsolutePath(), ioex.getMessage());
+			}
+		}
+
+		return new ArrayList<>(openJobs.values());
+	}
+
+	/**
+	 * Returns the highest job id seen by the last call to {@link #replay()}.
+	 * Jobs queued after a restart must use higher ids, so they can not be
+	 * mistaken for entries that are still in the journal.
+	 *
+	 * @return the highest job id in the journal
+	 */
+	public synchronized long getLastJobId() {
+		return lastJobId;
+	}
+
+	/**
+	 * Rewrites the journal so that it only contains the unfinished jobs,
+	 * each as a single entry with its merged checkpoint state. The new
+	 * contents are written to a temporary file first and then moved over
+	 * the journal, so a crash leaves either the old or the new journal.
+	 */
+	public synchronized void compact() {
+
+		final List<Map<String, Object>> unfinished = replay();
+		final File tmpFile                         = new File(file.getAbsolutePath() + ".tmp");
+
+		close();
+
+		try (final Writer tmpWriter = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+
+			for (final Map<String, Object> entry : unfinished) {
+
+				tmpWriter.write(gson.toJson(entry));
+				tmpWriter.write("\n");
+			}
+
+			tmpWriter.flush();
+
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to compact job journal {}: {}", file.getAbsolutePath(), ioex.getMessage());
+		}
+	}
+
+	public synchronized void close() {
+
+		if (writer != null) {
+
+			try { writer.close(); } catch (IOException ignore) {}
+
+			writer = null;
+			stream = null;
+		}
+	}
+
+	// ----- private methods -----
+	private void append(final Map<String, Object> entry) {
+
+		try {
+
+			if (writer == null) {
+
+				stream = new FileOutputStream(file, true);
+				writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+			}
+
+			writer.write(gson.toJson(entry));
+			writer.write("\n");
+			writer.flush();
+
+			// make sure the entry survives a crash
+			stream.getFD().sync();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to write to job journal {}: {}", file.getAbsolutePath(), ioex.getMessage());
+		}
+	}
+
+	private Map<String, Object> parse(final String line) {
+
+		try {
+
+			final Map<String, Object> entry = gson.fromJson(line, Map.class);
+			if (entry != null && entry.get("op") != null && entry.get("jobId") instanceof Number) {
+
+				return entry;
+			}
+
+		} catch (JsonSyntaxException ex) {
+
+			// a crash can leave an incomplete last line
+			logger.warn("Ignoring invalid job journal entry {}", line);
+		}
+
+		return null;
+	}
+}
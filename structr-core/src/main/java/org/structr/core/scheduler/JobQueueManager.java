@@ -18,30 +18,61 @@
  */
 package org.structr.core.scheduler;
 
+import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
 
 public class JobQueueManager {
 
+	private static final Logger logger               = LoggerFactory.getLogger(JobQueueManager.class.getName());
 	private static JobQueueManager singletonInstance = null;
 
-	private final Map<Long, ScheduledJob> queuedJobs  = new ConcurrentHashMap<>();
-	private final Map<Long, ScheduledJob> activeJobs  = new ConcurrentHashMap<>();
-	private final Queue<Long> jobIdQueue              = new ConcurrentLinkedDeque<>();
-	private final AtomicLong importJobIdCount         = new AtomicLong(0);
+	private final Map<String, ScheduledJobFactory> factories = new ConcurrentHashMap<>();
+	private final Map<Long, ScheduledJob> queuedJobs         = new ConcurrentHashMap<>();
+	private final Map<Long, ScheduledJob> activeJobs         = new ConcurrentHashMap<>();
+	private final Queue<Long> jobIdQueue                     = new ConcurrentLinkedDeque<>();
+	private final AtomicLong importJobIdCount                = new AtomicLong(0);
+	private final ScheduledExecutorService retryExecutor     = Executors.newSingleThreadScheduledExecutor(r -> {
 
-	private JobQueueManager() { }
+		final Thread thread = new Thread(r, "JobQueueRetry");
+		thread.setDaemon(true);
+
+		return thread;
+	});
+	private JobJournal journal                               = null;
+
+	private JobQueueManager() {
+
+		if (Settings.JobJournalEnabled.getValue() && !Services.isTesting()) {
+
+			journal = new JobJournal(new File(Settings.getBasePath() + "jobs.journal"));
+
+			// unfinished jobs can only be restored when the database is available
+			Services.getInstance().registerInitializationCallback(() -> recoverJobs());
+		}
+	}
 
 	/*
 	 * Public API
 	 */
-	public static JobQueueManager getInstance() {
+	public static synchronized JobQueueManager getInstance() {
 
 		if (singletonInstance == null) {
 			singletonInstance = new JobQueueManager();
@@ -51,19 +82,29 @@ public class JobQueueManager {
 	}
 
 	public void addJob(final ScheduledJob job) throws FrameworkException {
+		addJob(job, null);
+	}
+
+	/**
+	 * Queues the given job. If the job replaces an unfinished entry of the
+	 * job journal, restoredFrom is the id of that entry.
+	 */
+	private void addJob(final ScheduledJob job, final Long restoredFrom) throws FrameworkException {
 
 		if (job.runInitialChecks()) {
 
 			final Long jobId = importJobIdCount.incrementAndGet();
 			job.setJobId(jobId);
 
+			if (journal != null && job.getJournalState() != null) {
+				journal.jobQueued(job, restoredFrom);
+			}
+
 			appendToQueueInternal(job);
 
-			if (!hasRunningJobs()) {
+			startQueuedJobs();
 
-				startNextJobInQueue();
-
-			} else {
+			if (queuedJobs.containsKey(jobId)) {
 
 				job.reportQueued();
 
@@ -103,7 +144,86 @@ public class JobQueueManager {
 	}
 
 	public void cancelQueuedJob(final Long jobId) {
-		removeFromQueueInternal(jobId);
+
+		final ScheduledJob job = removeFromQueueInternal(jobId);
+		if (job != null) {
+
+			journalJobDone(job);
+		}
+	}
+
+	/**
+	 * Registers a factory that re-creates jobs of the given type from the
+	 * job journal after a restart.
+	 *
+	 * @param jobType the job type, see {@link ScheduledJob#getJobType()}
+	 * @param factory the factory
+	 */
+	public void registerJobFactory(final String jobType, final ScheduledJobFactory factory) {
+		factories.put(jobType, factory);
+	}
+
+	/**
+	 * Queues all jobs that were unfinished when the instance was stopped,
+	 * starting each from its last checkpoint. Restored jobs are journaled
+	 * again with new ids, and each new entry closes the old one. Entries
+	 * that can not be restored stay in the journal. The journal is only
+	 * compacted after all jobs have been queued again.
+	 */
+	public void recoverJobs() {
+
+		if (journal == null) {
+			return;
+		}
+
+		final List<Map<String, Object>> unfinished = journal.replay();
+
+		// new job ids must not collide with the ids still in the journal
+		importJobIdCount.accumulateAndGet(journal.getLastJobId(), Math::max);
+
+		if (unfinished.isEmpty()) {
+
+			journal.compact();
+			return;
+		}
+
+		logger.info("Restoring {} unfinished job(s) from job journal", unfinished.size());
+
+		final App app = StructrApp.getInstance();
+
+		for (final Map<String, Object> entry : unfinished) {
+
+			final String jobType              = (String)entry.get("jobType");
+			final ScheduledJobFactory factory = factories.get(jobType);
+
+			if (factory == null) {
+
+				logger.warn("No factory registered for job type {}, unable to restore job {}", jobType, entry.get("jobName"));
+				continue;
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final Principal user   = app.get(Principal.class, (String)entry.get("userId"));
+				final ScheduledJob job = user != null ? factory.restore(user, (Map<String, Object>)entry.get("configuration"), (Map<String, Object>)entry.get("state")) : null;
+
+				if (job != null) {
+
+					addJob(job, ((Number)entry.get("jobId")).longValue());
+
+				} else {
+
+					logger.warn("Unable to restore {} job {}", jobType, entry.get("jobName"));
+				}
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				logger.warn("Unable to restore {} job {}: {}", jobType, entry.get("jobName"), fex.getMessage());
+			}
+		}
+
+		journal.compact();
 	}
 
 	public List<Map<String, Object>> listJobs () {
@@ -125,23 +245,51 @@ public class JobQueueManager {
 		list.add(job.getJobInfo());
 	}
 
+	protected void checkpoint(final ScheduledJob job, final Map<String, Object> state) {
+
+		if (journal != null && job.getJournalState() != null) {
+			journal.checkpoint(job, state);
+		}
+	}
+
 	protected void jobFinished (final ScheduledJob job) {
 
 		activeJobs.remove(job.jobId());
+		journalJobDone(job);
 
-		if (!hasRunningJobs()) {
-			startNextJobInQueue();
-		}
+		startQueuedJobs();
 
 	}
 
+	/**
+	 * Releases the slot of the given running job and queues it again
+	 * after the given delay. The job keeps its id and journal entry.
+	 *
+	 * @param job the job
+	 * @param delayMillis the delay in milliseconds
+	 */
+	protected void retryJob (final ScheduledJob job, final long delayMillis) {
+
+		activeJobs.remove(job.jobId());
+
+		job.currentStatus = ScheduledJob.JobStatus.QUEUED;
+
+		retryExecutor.schedule(() -> {
+
+			appendToQueueInternal(job);
+			startQueuedJobs();
+
+		}, delayMillis, TimeUnit.MILLISECONDS);
+
+		startQueuedJobs();
+	}
+
 	protected void jobAborted (final ScheduledJob job) {
 
 		activeJobs.remove(job.jobId());
+		journalJobDone(job);
 
-		if (!hasRunningJobs()) {
-			startNextJobInQueue();
-		}
+		startQueuedJobs();
 
 	}
 
@@ -158,24 +306,25 @@ public class JobQueueManager {
 		return queuedJobs.remove(jobId);
 	}
 
-	private boolean hasRunningJobs() {
+	private void journalJobDone(final ScheduledJob job) {
+
+		if (journal != null && job.getJournalState() != null) {
+			journal.jobDone(job);
+		}
+	}
+
+	private boolean hasFreeSlots() {
 
-		// if any job is RUNNING or PAUSED, dont auto-start new tasks
-		return (!activeJobs.isEmpty());
+		// RUNNING and PAUSED jobs both occupy a slot, so a paused job
+		// still counts against the configured concurrency limit
+		return activeJobs.size() < Math.max(1, Settings.MaxConcurrentJobs.getValue());
+	}
 
-//		// if any job is RUNNING, dont auto-start new tasks
-//		// this effectively means that if a user PAUSES a job, the queue is stopped BUT
-//		// if another job is queued or the last running job finishes, then the next queued job is started
-//		boolean hasRunningJob = false;
-//
-//		for (ImportJob job : activeJobs.values()) {
-//			if (job.getCurrentStatus().equals(ImportJob.JobStatus.RUNNING)) {
-//				hasRunningJob = true;
-//			}
-//		}
-//
-//		return hasRunningJob;
+	private synchronized void startQueuedJobs() {
 
+		while (hasFreeSlots() && !jobIdQueue.isEmpty()) {
+			startNextJobInQueue();
+		}
 	}
 
 	private void startNextJobInQueue() {
@@ -53,7 +53,7 @@ public abstract class ScheduledJob {
 	protected Principal user;
 	protected String username;
 	protected String jobName;
-	protected JobStatus currentStatus;
+	protected volatile JobStatus currentStatus;
 
 	public ScheduledJob (final String jobName, final Principal user, final Map<String, Object> configuration) {
 
@@ -103,7 +103,7 @@ public abstract class ScheduledJob {
 	public void trySignal() {
 		lock.lock();
 		try {
-			paused.signal();
+			paused.signalAll();
 		} finally {
 			lock.unlock();
 		}
@@ -137,6 +137,16 @@ public abstract class ScheduledJob {
 		return configuration;
 	}
 
+	/**
+	 * Returns the data needed to re-create this job after a restart, or
+	 * null if the job cannot be restored and should not be journaled.
+	 *
+	 * @return the journal state or null
+	 */
+	public Map<String, Object> getJournalState() {
+		return null;
+	}
+
 	public void waitForExit() throws InterruptedException {
 		jobThread.join();
 	}
@@ -149,6 +159,27 @@ public abstract class ScheduledJob {
 		JobQueueManager.getInstance().jobAborted(this);
 	}
 
+	/**
+	 * Queues this job again after the given delay, the job must return
+	 * from its runnable without finishing. Other jobs can use the slot of
+	 * this job in the meantime.
+	 *
+	 * @param delayMillis the delay in milliseconds
+	 */
+	protected void retryJob(final long delayMillis) {
+		JobQueueManager.getInstance().retryJob(this, delayMillis);
+	}
+
+	/**
+	 * Records the progress of this job in the job journal. The given
+	 * state is merged into the journal state on recovery.
+	 *
+	 * @param state the progress state
+	 */
+	protected void checkpoint(final Map<String, Object> state) {
+		JobQueueManager.getInstance().checkpoint(this, state);
+	}
+
 	protected void startNewThread(final Runnable runnable, final boolean wait) {
 
 		jobThread = new Thread(runnable);
@@ -161,29 +192,55 @@ public abstract class ScheduledJob {
 
 	}
 
+	/**
+	 * Blocks the calling thread while the job is paused. Can be called
+	 * from several worker threads of the same job: the first thread to
+	 * see the pause request switches the job to PAUSED and reports it,
+	 * all threads wait until the job is resumed or aborted.
+	 */
 	protected void shouldPause() {
 
-		if (currentStatus.equals(JobStatus.WAIT_PAUSE)) {
-			logger.info("Pausing job {} ({})", jobId, jobName);
-
-			currentStatus = JobStatus.PAUSED;
-			reportPaused();
-
-			lock.lock();
-			try {
-				while (currentStatus.equals(JobStatus.PAUSED)) {
-					paused.await();
-				}
-			} catch (InterruptedException ex) {
-				logger.error("", ex);
-			} finally {
-				lock.unlock();
+		boolean pausedByThisThread = false;
+
+		lock.lock();
+		try {
+
+			if (currentStatus.equals(JobStatus.WAIT_PAUSE)) {
+				logger.info("Pausing job {} ({})", jobId, jobName);
+
+				currentStatus      = JobStatus.PAUSED;
+				pausedByThisThread = true;
+
+				reportPaused();
+			}
+
+			while (currentStatus.equals(JobStatus.PAUSED)) {
+				paused.await();
+			}
+
+		} catch (InterruptedException ex) {
+			logger.error("", ex);
+		} finally {
+			lock.unlock();
+
+			if (pausedByThisThread) {
 				logger.info("Resuming job {} ({})", jobId, jobName);
 				reportResumed();
 			}
 		}
 	}
 
+	/**
+	 * Indicates whether an abort was requested, without reporting or
+	 * finishing the job. Worker threads use this to stop early and
+	 * leave the final {@link #shouldAbort()} call to the job thread.
+	 *
+	 * @return whether the job is waiting to abort
+	 */
+	protected boolean isAbortRequested() {
+		return currentStatus.equals(JobStatus.WAIT_ABORT);
+	}
+
 	protected boolean shouldAbort() {
 
 		if (currentStatus.equals(JobStatus.WAIT_ABORT)) {
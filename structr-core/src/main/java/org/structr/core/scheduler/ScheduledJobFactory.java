@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.scheduler;
+
+import java.util.Map;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Principal;
+
+/**
+ * Re-creates a scheduled job from its journal entry after a restart.
+ */
+public interface ScheduledJobFactory {
+
+	/**
+	 * Creates a job from the given configuration and journal state,
+	 * or returns null if the job cannot be restored.
+	 *
+	 * @param user the user that scheduled the job
+	 * @param configuration the original job configuration
+	 * @param state the journal state, including the last checkpoint
+	 *
+	 * @return the restored job or null
+	 * @throws FrameworkException
+	 */
+	ScheduledJob restore(final Principal user, final Map<String, Object> configuration, final Map<String, Object> state) throws FrameworkException;
+}
@@ -46,6 +46,7 @@ import org.structr.common.error.UnlicensedException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.function.Functions;
+import org.structr.core.parser.Expression;
 import org.structr.core.property.DateProperty;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.parser.DatePropertyParser;
@@ -186,16 +187,54 @@ public class Scripting {
 
 		} else {
 
-			Object extractedValue = Functions.evaluate(actionContext, entity, source);
-			final String value    = extractedValue != null ? extractedValue.toString() : "";
-			final String output   = actionContext.getOutput();
+			return evaluateStructrScript(actionContext, entity, Functions.parse(source));
+		}
+	}
 
-			if (StringUtils.isEmpty(value) && output != null && !output.isEmpty()) {
-				extractedValue = output;
-			}
+	/**
+	 * Returns true if the given script is a StructrScript expression, i.e.
+	 * neither Javascript nor a script for another engine, so that it can be
+	 * parsed once with {@link Functions#parse} and evaluated repeatedly with
+	 * {@link #evaluateStructrScript}.
+	 *
+	 * @param input the scripting input
+	 * @return whether the input is StructrScript
+	 */
+	public static boolean isStructrScript(final String input) {
 
-			return extractedValue;
+		final String expression = input.trim();
+
+		if (expression.startsWith("${{") && expression.endsWith("}}")) {
+			return false;
+		}
+
+		return !ScriptEngineExpression.matcher(expression).matches();
+	}
+
+	/**
+	 * Evaluates a parsed StructrScript expression.
+	 *
+	 * @param actionContext the action context
+	 * @param entity the entity
+	 * @param root the root of the parsed expression
+	 *
+	 * @return the result of the evaluation
+	 * @throws FrameworkException
+	 * @throws UnlicensedException
+	 */
+	public static Object evaluateStructrScript(final ActionContext actionContext, final GraphObject entity, final Expression root) throws FrameworkException, UnlicensedException {
+
+		actionContext.setJavaScriptContext(false);
+
+		Object extractedValue = root.evaluate(actionContext, entity);
+		final String value    = extractedValue != null ? extractedValue.toString() : "";
+		final String output   = actionContext.getOutput();
+
+		if (StringUtils.isEmpty(value) && output != null && !output.isEmpty()) {
+			extractedValue = output;
 		}
+
+		return extractedValue;
 	}
 
 	public static Object evaluateJavascript(final ActionContext actionContext, final GraphObject entity, final Snippet snippet) throws FrameworkException {
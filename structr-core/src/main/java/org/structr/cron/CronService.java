@@ -18,8 +18,11 @@
  */
 package org.structr.cron;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -31,7 +34,9 @@ import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
 import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeService;
 import org.structr.core.graph.Tx;
+import org.structr.schema.SchemaService;
 import org.structr.schema.action.Actions;
 
 /**
@@ -185,6 +190,11 @@ public class CronService extends Thread implements RunnableService {
 		return false;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return new LinkedHashSet<>(Arrays.asList(NodeService.class, SchemaService.class));
+	}
+
 	// ----- private methods -----
 	private Class instantiate(final String taskClass) {
 
@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of the classes contained in the Structr module JARs on
+ * the class path.
+ *
+ * Scanning a module JAR requires reading and verifying every class entry,
+ * the index stores the result of the scan together with the size, the
+ * modification time and a digest of the JAR, so that unchanged JARs do not
+ * need to be scanned again on the next start. The stamp identifies the
+ * license the entries were verified with, entries are discarded if it
+ * changes. The code signers of the indexed classes are stored as well and
+ * must pass the signer check again before an entry is used.
+ */
+public class ClasspathIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(ClasspathIndex.class.getName());
+	private static final int VERSION   = 2;
+
+	private final Map<String, IndexEntry> entries = new ConcurrentHashMap<>();
+	private boolean modified                      = false;
+	private String stamp                          = null;
+	private File file                             = null;
+
+	public ClasspathIndex(final File file, final String stamp) {
+
+		this.file  = file;
+		this.stamp = stamp;
+	}
+
+	public void load() {
+
+		if (file.exists()) {
+
+			try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+				if (dis.readInt() != VERSION || !stamp.equals(dis.readUTF())) {
+
+					modified = true;
+					return;
+				}
+
+				final int count = dis.readInt();
+
+				for (int i=0; i<count; i++) {
+
+					final String path                   = dis.readUTF();
+					final long length                   = dis.readLong();
+					final long lastModified             = dis.readLong();
+					final byte[] digest                 = new byte[dis.readInt()];
+					final Set<String> names             = new LinkedHashSet<>();
+					final Set<List<CodeSigner>> signers = new LinkedHashSet<>();
+
+					dis.readFully(digest);
+
+					final int classCount = dis.readInt();
+					for (int j=0; j<classCount; j++) {
+						names.add(dis.readUTF());
+					}
+
+					final int signerCount = dis.readInt();
+					for (int j=0; j<signerCount; j++) {
+
+						final List<CodeSigner> codeSigners = new ArrayList<>();
+						final int codeSignerCount          = dis.readInt();
+
+						for (int k=0; k<codeSignerCount; k++) {
+
+							final byte[] encoded = new byte[dis.readInt()];
+
+							dis.readFully(encoded);
+
+							codeSigners.add(new CodeSigner(CertificateFactory.getInstance("X.509").generateCertPath(new ByteArrayInputStream(encoded), "PkiPath"), null));
+						}
+
+						signers.add(codeSigners);
+					}
+
+					entries.put(path, new IndexEntry(length, lastModified, digest, names, signers));
+				}
+
+			} catch (IOException | GeneralSecurityException ex) {
+
+				logger.warn("Unable to read class path index {}: {}", file.getAbsolutePath(), ex.getMessage());
+
+				entries.clear();
+				modified = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the indexed classes of the given resource, or null if the
+	 * resource is not indexed, has changed since it was indexed, or if
+	 * the stored code signers of its classes do not pass the given check.
+	 *
+	 * @param resource
+	 * @param signerCheck the check for the code signers of a class, e.g. the license manager
+	 * @return the class names or null
+	 */
+	public Set<String> get(final String resource, final Predicate<CodeSigner[]> signerCheck) {
+
+		final IndexEntry entry = entries.get(resource);
+		if (entry != null) {
+
+			final File jar = new File(resource);
+			if (jar.length() == entry.length && jar.lastModified() == entry.lastModified && Arrays.equals(entry.digest, getDigest(jar))) {
+
+				for (final List<CodeSigner> signers : entry.signers) {
+
+					if (!signerCheck.test(signers.isEmpty() ? null : signers.toArray(new CodeSigner[0]))) {
+						return null;
+					}
+				}
+
+				return entry.classes;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores the classes of the given resource and the code signers they
+	 * were verified with.
+	 *
+	 * @param resource
+	 * @param classes
+	 * @param signers the distinct code signers of the classes, an empty list for unsigned classes
+	 */
+	public void put(final String resource, final Set<String> classes, final Set<List<CodeSigner>> signers) {
+
+		final File jar      = new File(resource);
+		final byte[] digest = getDigest(jar);
+
+		if (digest != null) {
+
+			entries.put(resource, new IndexEntry(jar.length(), jar.lastModified(), digest, new LinkedHashSet<>(classes), new LinkedHashSet<>(signers)));
+			modified = true;
+		}
+	}
+
+	/**
+	 * Removes all resources that are not in the given set, i.e. that are
+	 * no longer on the class path.
+	 *
+	 * @param resources
+	 */
+	public void retain(final Set<String> resources) {
+
+		if (entries.keySet().retainAll(resources)) {
+			modified = true;
+		}
+	}
+
+	public void store() {
+
+		if (!modified) {
+			return;
+		}
+
+		final File tmp = new File(file.getAbsolutePath() + ".tmp");
+
+		try {
+
+			final File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+
+				parent.mkdirs();
+			}
+
+			try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+				dos.writeInt(VERSION);
+				dos.writeUTF(stamp);
+				dos.writeInt(entries.size());
+
+				for (final Map.Entry<String, IndexEntry> entry : entries.entrySet()) {
+
+					final IndexEntry value = entry.getValue();
+
+					dos.writeUTF(entry.getKey());
+					dos.writeLong(value.length);
+					dos.writeLong(value.lastModified);
+					dos.writeInt(value.digest.length);
+					dos.write(value.digest);
+					dos.writeInt(value.classes.size());
+
+					for (final String name : value.classes) {
+						dos.writeUTF(name);
+					}
+
+					dos.writeInt(value.signers.size());
+
+					for (final List<CodeSigner> codeSigners : value.signers) {
+
+						dos.writeInt(codeSigners.size());
+
+						for (final CodeSigner codeSigner : codeSigners) {
+
+							final byte[] encoded = codeSigner.getSignerCertPath().getEncoded("PkiPath");
+
+							dos.writeInt(encoded.length);
+							dos.write(encoded);
+						}
+					}
+				}
+			}
+
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			modified = false;
+
+		} catch (IOException | GeneralSecurityException ex) {
+
+			logger.warn("Unable to write class path index {}: {}", file.getAbsolutePath(), ex.getMessage());
+			tmp.delete();
+		}
+	}
+
+	// ----- private methods -----
+	private byte[] getDigest(final File jar) {
+
+		try (final InputStream is = new FileInputStream(jar)) {
+
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			final byte[] buffer        = new byte[65536];
+			int count                  = 0;
+
+			while ((count = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, count);
+			}
+
+			return digest.digest();
+
+		} catch (IOException | NoSuchAlgorithmException ex) {
+
+			logger.warn("Unable to compute digest of {}: {}", jar.getAbsolutePath(), ex.getMessage());
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	private static class IndexEntry {
+
+		private Set<List<CodeSigner>> signers = null;
+		private Set<String> classes           = null;
+		private byte[] digest                 = null;
+		private long lastModified             = 0L;
+		private long length                   = 0L;
+
+		public IndexEntry(final long length, final long lastModified, final byte[] digest, final Set<String> classes, final Set<List<CodeSigner>> signers) {
+
+			this.length       = length;
+			this.lastModified = lastModified;
+			this.digest       = digest;
+			this.classes      = classes;
+			this.signers      = signers;
+		}
+	}
+}
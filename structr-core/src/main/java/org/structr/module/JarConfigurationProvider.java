@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.security.CodeSigner;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -41,6 +42,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -52,6 +54,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.agent.Agent;
+import org.structr.api.config.Settings;
 import org.structr.api.service.LicenseManager;
 import org.structr.api.service.Service;
 import org.structr.common.DefaultFactoryDefinition;
@@ -1008,32 +1011,88 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	// ----- private methods -----
 	private void scanResources() {
 
-		Set<String> resourcePaths = getResourcesToScan();
-		for (String resourcePath : resourcePaths) {
+		final Set<String> resourcePaths            = getResourcesToScan();
+		final Map<String, StructrModuleInfo> infos = new ConcurrentHashMap<>();
+		final ClasspathIndex index                 = getClasspathIndex();
+		final AtomicInteger indexed                = new AtomicInteger(0);
 
-			scanResource(resourcePath);
-		}
+		// reading and verifying the JARs is independent of each other
+		resourcePaths.parallelStream().forEach(resourcePath -> {
 
-		logger.info("{} JARs scanned", resourcePaths.size());
+			try {
 
-	}
+				// the code signers of indexed classes are checked again, the JAR is not
+				final Set<String> classes = index != null ? index.get(resourcePath, signers -> licenseManager == null || licenseManager.isValid(signers)) : null;
+				if (classes != null) {
 
-	private void scanResource(final String resourceName) {
+					final StructrModuleInfo module = new StructrModuleInfo(resourcePath);
 
-		try {
+					module.getClasses().addAll(classes);
+					infos.put(resourcePath, module);
+					indexed.incrementAndGet();
+
+				} else {
+
+					final StructrModuleInfo module = loadResource(resourcePath);
+					if (module != null) {
+
+						infos.put(resourcePath, module);
+
+						if (index != null && isIndexable(resourcePath)) {
+							index.put(resourcePath, module.getClasses(), module.getCodeSigners());
+						}
+					}
+				}
+
+			} catch (IOException ignore) {}
+		});
 
-			final StructrModuleInfo module = loadResource(resourceName);
+		// classes must be loaded and registered in a stable order
+		for (final String resourcePath : resourcePaths) {
+
+			final StructrModuleInfo module = infos.get(resourcePath);
 			if (module != null) {
 
-				importResource(module);
+				try {
+
+					importResource(module);
+
+				} catch (IOException ignore) {}
 
 			} else {
 
 				logger.warn("Module was null!");
 			}
+		}
+
+		if (index != null) {
+
+			index.retain(resourcePaths);
+			index.store();
+		}
+
+		logger.info("{} JARs scanned, {} from class path index", resourcePaths.size(), indexed.get());
+	}
+
+	private ClasspathIndex getClasspathIndex() {
+
+		if (Settings.ClasspathIndexEnabled.getValue()) {
 
-		} catch (IOException ignore) {}
+			final String stamp         = licenseManager != null ? licenseManager.getEdition() + "|" + licenseManager.getLicensee() + "|" + licenseManager.getEndDate() : "none";
+			final ClasspathIndex index = new ClasspathIndex(new File(Settings.getBasePath() + Settings.ClasspathIndexPath.getValue()), stamp);
 
+			index.load();
+
+			return index;
+		}
+
+		return null;
+	}
+
+	private boolean isIndexable(final String resource) {
+
+		// class directories are only used for testing and are not indexed
+		return resource.endsWith(".jar") || resource.endsWith(".war");
 	}
 
 	private void importResource(final StructrModuleInfo module) throws IOException {
@@ -1143,7 +1202,10 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 									// verify module
 									if (licenseManager == null || licenseManager.isValid(entry.getCodeSigners())) {
 
-										final String fileEntry = entry.getName().replaceAll("[/]+", ".");
+										final CodeSigner[] signers = entry.getCodeSigners();
+										final String fileEntry     = entry.getName().replaceAll("[/]+", ".");
+
+										ret.getCodeSigners().add(signers != null ? Arrays.asList(signers) : Collections.emptyList());
 
 										// add class entry to Module
 										classes.add(fileEntry.substring(0, fileEntry.length() - 6));
@@ -18,7 +18,9 @@
  */
 package org.structr.module;
 
+import java.security.CodeSigner;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -27,11 +29,12 @@ import java.util.Set;
  */
 public class StructrModuleInfo {
 
-	private final Set<String> rawClasses = new LinkedHashSet<>();
-	private final Set<String> properties = new LinkedHashSet<>();
-	private final Set<String> resources  = new LinkedHashSet<>();
-	private final Set<String> libraries  = new LinkedHashSet<>();
-	private String modulePath            = null;
+	private final Set<List<CodeSigner>> codeSigners = new LinkedHashSet<>();
+	private final Set<String> rawClasses            = new LinkedHashSet<>();
+	private final Set<String> properties            = new LinkedHashSet<>();
+	private final Set<String> resources             = new LinkedHashSet<>();
+	private final Set<String> libraries             = new LinkedHashSet<>();
+	private String modulePath                       = null;
 
 	public StructrModuleInfo(String modulePath) {
 		this.modulePath = modulePath;
@@ -56,4 +59,14 @@ public class StructrModuleInfo {
 	public Set<String> getLibraries() {
 		return libraries;
 	}
+
+	/**
+	 * Returns the distinct code signers of the verified classes of this
+	 * module, an empty list stands for unsigned classes.
+	 *
+	 * @return the code signers
+	 */
+	public Set<List<CodeSigner>> getCodeSigners() {
+		return codeSigners;
+	}
 }
@@ -1476,6 +1476,7 @@ public class SchemaHelper {
 		map.put("system", property.isSystemInternal());
 		map.put("indexed", property.isIndexed());
 		map.put("indexedWhenEmpty", property.isIndexedWhenEmpty());
+		map.put("ngramIndexed", property.isNgramIndexed());
 		map.put("compound", property.isCompound());
 		map.put("unique", property.isUnique());
 		map.put("notNull", property.isNotNull());
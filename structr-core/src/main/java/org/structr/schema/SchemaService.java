@@ -25,6 +25,7 @@ package org.structr.schema;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -50,7 +51,9 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.SchemaNode;
 import org.structr.core.entity.SchemaRelationshipNode;
+import org.structr.core.graph.BulkRebuildIndexCommand;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeService;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchCommand;
 import org.structr.core.property.PropertyKey;
@@ -241,6 +244,11 @@ public class SchemaService implements Service {
 		return true;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return Collections.singleton(NodeService.class);
+	}
+
 	// ----- interface Feature -----
 	@Override
 	public String getModuleName() {
@@ -320,6 +328,7 @@ public class SchemaService implements Service {
 
 						final Map<String, Object> params = new HashMap<>();
 						final App app                    = StructrApp.getInstance();
+						final Set<String> ngramTypes     = new LinkedHashSet<>();
 
 						// create indices for properties of existing classes
 						for (final Entry<String, Map<String, PropertyKey>> entry : StructrApp.getConfiguration().getTypeAndPropertyMapping().entrySet()) {
@@ -373,6 +382,20 @@ public class SchemaService implements Service {
 											app.setGlobalSetting(indexKey, null);
 										}
 
+										final String ngramKey      = "ngram." + typeName + "." + key.dbName();
+										final boolean ngramIndexed = "true".equals(app.getGlobalSetting(ngramKey, null));
+										final boolean createNgrams = key.isNgramIndexed() && NodeInterface.class.isAssignableFrom(type);
+
+										if (createNgrams && !ngramIndexed) {
+
+											// existing nodes need to be added to the n-gram index
+											ngramTypes.add(typeName);
+											app.setGlobalSetting(ngramKey, "true");
+
+										} else if (!createNgrams && ngramIndexed) {
+
+											app.setGlobalSetting(ngramKey, null);
+										}
 									}
 
 									tx.success();
@@ -383,6 +406,25 @@ public class SchemaService implements Service {
 							}
 						}
 
+						// fill the n-gram index for properties that were not n-gram indexed before
+						for (final String typeName : ngramTypes) {
+
+							logger.info("Adding existing nodes of type {} to n-gram index", typeName);
+
+							final Map<String, Object> attributes = new HashMap<>();
+
+							attributes.put("type", typeName);
+							attributes.put("mode", "nodesOnly");
+
+							try {
+
+								app.command(BulkRebuildIndexCommand.class).execute(attributes);
+
+							} catch (Throwable t) {
+								logger.warn("Unable to fill n-gram index for type {}: {}", typeName, t.getMessage());
+							}
+						}
+
 						// drop indices for all indexed properties of removed classes
 						for (final Entry<String, Map<String, PropertyKey>> entry : removedClasses.entrySet()) {
 
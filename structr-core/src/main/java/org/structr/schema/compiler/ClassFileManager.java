@@ -20,19 +20,25 @@ package org.structr.schema.compiler;
 
 import java.io.IOException;
 import java.security.SecureClassLoader;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 
 /**
  *
  *
  */
-public class ClassFileManager extends ForwardingJavaFileManager {
+public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 
 	/**
 	 * Instance of JavaClassObject that will store the compiled byte code of
@@ -60,19 +66,23 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 	 */
 	@Override
 	public ClassLoader getClassLoader(final Location location) {
-		
+
+		// classes are loaded lazily, so the loader needs its own copy of
+		// the byte code that belongs to this compilation
+		final Map<String, JavaClassObject> snapshot = new HashMap<>(objects);
+
 		return new SecureClassLoader() {
-			
+
 			@Override
 			protected Class<?> findClass(String name) throws ClassNotFoundException {
-				
-				final JavaClassObject obj = objects.get(name);
+
+				final JavaClassObject obj = snapshot.get(name);
 				if (obj != null) {
-					
+
 					byte[] b = obj.getBytes();
 					return super.defineClass(name, obj.getBytes(), 0, b.length);
 				}
-				
+
 				throw new ClassNotFoundException(name);
 			}
 		};
@@ -90,11 +100,119 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 	 */
 	@Override
 	public JavaFileObject getJavaFileForOutput(final Location location, final String className, final Kind kind, final FileObject sibling) throws IOException {
-		
+
 		JavaClassObject obj = new JavaClassObject(className, kind);
-		
+
 		objects.put(className, obj);
-		
+
 		return obj;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Adds the byte code of the classes in the given package that were
+	 * not compiled in this compilation to the class path, so that the
+	 * compiler can resolve references to them.
+	 *
+	 * @param location
+	 * @param packageName
+	 * @param kinds
+	 * @param recurse
+	 * @return the file objects
+	 * @throws IOException
+	 */
+	@Override
+	public Iterable<JavaFileObject> list(final Location location, final String packageName, final Set<Kind> kinds, final boolean recurse) throws IOException {
+
+		final Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+
+		if (StandardLocation.CLASS_PATH.equals(location) && kinds.contains(Kind.CLASS) && !objects.isEmpty()) {
+
+			final List<JavaFileObject> result = new LinkedList<>();
+
+			for (final JavaFileObject file : files) {
+				result.add(file);
+			}
+
+			for (final JavaClassObject obj : objects.values()) {
+
+				final String name = obj.getBinaryName();
+				final int pos     = name.lastIndexOf(".");
+
+				if (pos > 0 && packageName.equals(name.substring(0, pos))) {
+					result.add(obj);
+				}
+			}
+
+			return result;
+		}
+
+		return files;
+	}
+
+	@Override
+	public String inferBinaryName(final Location location, final JavaFileObject file) {
+
+		if (file instanceof JavaClassObject) {
+			return ((JavaClassObject)file).getBinaryName();
+		}
+
+		return super.inferBinaryName(location, file);
+	}
+
+	/**
+	 * Adds the given byte code, e.g. from the schema cache.
+	 *
+	 * @param name the binary name of the class
+	 * @param bytes the byte code
+	 */
+	public void addClass(final String name, final byte[] bytes) {
+		objects.put(name, new JavaClassObject(name, bytes));
+	}
+
+	/**
+	 * Returns the byte code of the given class and its nested classes.
+	 *
+	 * @param className the binary name of the top-level class
+	 * @return a map of binary names and byte code
+	 */
+	public Map<String, byte[]> getClasses(final String className) {
+
+		final Map<String, byte[]> result = new LinkedHashMap<>();
+
+		for (final Entry<String, JavaClassObject> entry : objects.entrySet()) {
+
+			final String name = entry.getKey();
+
+			if (name.equals(className) || name.startsWith(className + "$")) {
+				result.put(name, entry.getValue().getBytes());
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Removes the byte code of the given class and its nested classes.
+	 *
+	 * @param className the binary name of the top-level class
+	 */
+	public void removeClasses(final String className) {
+		objects.keySet().removeIf(name -> name.equals(className) || name.startsWith(className + "$"));
+	}
+
+	/**
+	 * Removes the byte code of all classes that do not belong to one of
+	 * the given top-level classes.
+	 *
+	 * @param classNames the binary names of the top-level classes
+	 */
+	public void retainClasses(final Set<String> classNames) {
+
+		objects.keySet().removeIf(name -> {
+
+			final int pos = name.indexOf("$");
+
+			return !classNames.contains(pos > 0 ? name.substring(0, pos) : name);
+		});
+	}
+}
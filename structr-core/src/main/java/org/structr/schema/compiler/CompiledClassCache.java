@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * On-disk cache for the byte code of dynamic types.
+ *
+ * Entries are keyed by a hash of the source code of a type and the source
+ * code of all types it depends on, so an entry can be used without further
+ * checks. The key also contains the Java version and the class path, so
+ * the cache is invalidated when Structr or one of its modules is updated.
+ */
+public class CompiledClassCache {
+
+	private static final Logger logger    = LoggerFactory.getLogger(CompiledClassCache.class.getName());
+	private static final String EXTENSION = ".classes";
+	private static final int VERSION      = 1;
+
+	private static String salt = null;
+	private File directory     = null;
+
+	public CompiledClassCache(final File directory) {
+		this.directory = directory;
+	}
+
+	public static CompiledClassCache getInstance() {
+
+		if (Settings.SchemaCacheEnabled.getValue()) {
+
+			return new CompiledClassCache(new File(Settings.getFullSettingPath(Settings.SchemaCachePath)));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the cache key for the given source code hashes.
+	 *
+	 * @param className the name of the type
+	 * @param hashes the hashes of the source code of the type and its dependencies, in a stable order
+	 * @return the key
+	 */
+	public static String getKey(final String className, final Iterable<String> hashes) {
+
+		final StringBuilder buf = new StringBuilder(getSalt());
+
+		buf.append(className);
+
+		for (final String hash : hashes) {
+			buf.append(":").append(hash);
+		}
+
+		return DigestUtils.sha256Hex(buf.toString());
+	}
+
+	/**
+	 * Returns the byte code of a type and its nested classes, or null if
+	 * the cache has no entry for the given key.
+	 *
+	 * @param key
+	 * @return a map of binary names and byte code, or null
+	 */
+	public Map<String, byte[]> get(final String key) {
+
+		final File file = new File(directory, key + EXTENSION);
+		if (file.exists()) {
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+				if (in.readInt() == VERSION) {
+
+					final Map<String, byte[]> classes = new LinkedHashMap<>();
+					final int count                   = in.readInt();
+
+					for (int i=0; i<count; i++) {
+
+						final String name  = in.readUTF();
+						final byte[] bytes = new byte[in.readInt()];
+
+						in.readFully(bytes);
+
+						classes.put(name, bytes);
+					}
+
+					return classes;
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read schema cache entry {}: {}", file.getName(), ioex.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	public void put(final String key, final Map<String, byte[]> classes) {
+
+		final File file = new File(directory, key + EXTENSION);
+		final File tmp  = new File(directory, key + ".tmp");
+
+		directory.mkdirs();
+
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+			out.writeInt(VERSION);
+			out.writeInt(classes.size());
+
+			for (final Entry<String, byte[]> entry : classes.entrySet()) {
+
+				final byte[] bytes = entry.getValue();
+
+				out.writeUTF(entry.getKey());
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to write schema cache entry {}: {}", file.getName(), ioex.getMessage());
+			tmp.delete();
+
+			return;
+		}
+
+		try {
+
+			// readers must never see a partially written entry
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to write schema cache entry {}: {}", file.getName(), ioex.getMessage());
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Removes all entries except the ones with the given keys.
+	 *
+	 * @param keys
+	 */
+	public void retain(final Set<String> keys) {
+
+		final File[] files = directory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				final String name = file.getName();
+
+				if (name.endsWith(EXTENSION) && !keys.contains(name.substring(0, name.length() - EXTENSION.length()))) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private static synchronized String getSalt() {
+
+		if (salt == null) {
+
+			final StringBuilder buf = new StringBuilder();
+
+			buf.append(System.getProperty("java.version"));
+			buf.append(System.getProperty("java.vendor"));
+
+			// jar files are identified by name, size and modification time
+			for (final String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+
+				final File file = new File(entry);
+
+				buf.append(entry);
+
+				if (file.isFile()) {
+					buf.append(file.length()).append(file.lastModified());
+				}
+			}
+
+			salt = DigestUtils.sha256Hex(buf.toString());
+		}
+
+		return salt;
+	}
+}
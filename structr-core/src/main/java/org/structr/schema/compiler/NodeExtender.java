@@ -21,22 +21,27 @@ package org.structr.schema.compiler;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
-import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,26 +54,33 @@ import org.structr.core.graph.TransactionCommand;
 import org.structr.module.JarConfigurationProvider;
 
 /**
+ * Compiles the source code of the dynamic types.
  *
- *
+ * Only types whose source code or whose dependencies have changed since the
+ * last compilation are compiled again, the byte code of all other types is
+ * reused from memory or from the on-disk {@link CompiledClassCache}, and is
+ * made available to the compiler to resolve references.
  */
 public class NodeExtender {
 
-	private static final Logger logger   = LoggerFactory.getLogger(NodeExtender.class.getName());
+	private static final Logger logger      = LoggerFactory.getLogger(NodeExtender.class.getName());
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
 
-	private static final JavaCompiler compiler       = ToolProvider.getSystemJavaCompiler();
-	private static final JavaFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
-	private static final ClassLoader classLoader     = fileManager.getClassLoader(null);
-	private static final Map<String, Class> classes  = new TreeMap<>();
+	private static final JavaCompiler compiler            = ToolProvider.getSystemJavaCompiler();
+	private static final ClassFileManager fileManager     = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
+	private static final Map<String, String> compiledKeys = new HashMap<>();
+	private static final Map<String, Class> classes       = new TreeMap<>();
+	private static volatile ClassLoader classLoader       = fileManager.getClassLoader(null);
+	private static Set<String> updatedTypes               = new LinkedHashSet<>();
 
-	private List<JavaFileObject> jfiles  = null;
+	private Map<String, String> sources  = null;
 	private Set<String> fqcns            = null;
 	private String initiatedBySessionId  = null;
 
 	public NodeExtender(final String initiatedBySessionId) {
 
 		this.initiatedBySessionId = initiatedBySessionId;
-		this.jfiles               = new ArrayList<>();
+		this.sources              = new LinkedHashMap<>();
 		this.fqcns                = new LinkedHashSet<>();
 	}
 
@@ -84,13 +96,23 @@ public class NodeExtender {
 		return classes;
 	}
 
+	/**
+	 * Returns the names of the types whose byte code was replaced by the
+	 * last successful compilation, either compiled or read from the cache.
+	 *
+	 * @return the type names
+	 */
+	static synchronized Set<String> getUpdatedTypes() {
+		return updatedTypes;
+	}
+
 	public void addClass(final String className, final String content) throws ClassNotFoundException {
 
 		if (className != null && content != null) {
 
 			final String packageName = JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE;
 
-			jfiles.add(new CharSequenceJavaFileObject(className, content));
+			sources.put(className, content);
 			fqcns.add(packageName.concat(".".concat(className)));
 
 			if (Settings.LogSchemaOutput.getValue()) {
@@ -106,62 +128,164 @@ public class NodeExtender {
 		}
 	}
 
-	public synchronized Map<String, Class> compile(final ErrorBuffer errorBuffer) throws ClassNotFoundException {
+	public Map<String, Class> compile(final ErrorBuffer errorBuffer) throws ClassNotFoundException {
 
-		final Writer errorWriter     = new StringWriter();
 		final List<Class> newClasses = new LinkedList<>();
 
-		if (!jfiles.isEmpty()) {
+		synchronized (NodeExtender.class) {
+
+			if (!sources.isEmpty()) {
+
+				final CompiledClassCache cache = CompiledClassCache.getInstance();
+				final Map<String, String> keys = getCacheKeys();
+				final Set<String> changed      = new LinkedHashSet<>();
+				final Set<String> updated      = new LinkedHashSet<>();
+				int cached                     = 0;
 
-			logger.debug("Compiling {} dynamic entities...", jfiles.size());
+				// byte code of types that no longer exist must not be used to resolve references
+				fileManager.retainClasses(fqcns);
+				compiledKeys.keySet().retainAll(sources.keySet());
 
-			Boolean success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), null, null, jfiles).call();
+				for (final String className : sources.keySet()) {
 
-			if (success) {
+					final String key = keys.get(className);
 
-				final ClassLoader loader = fileManager.getClassLoader(null);
+					if (key.equals(compiledKeys.get(className))) {
 
-				for (final String fqcn : fqcns) {
+						// byte code of the last compilation is still valid
+						continue;
+					}
+
+					final String fqcn = getFqcn(className);
+
+					fileManager.removeClasses(fqcn);
+					compiledKeys.remove(className);
 
-					try {
+					final Map<String, byte[]> byteCode = cache != null ? cache.get(key) : null;
+					if (byteCode != null && byteCode.containsKey(fqcn)) {
 
-						newClasses.add(loader.loadClass(fqcn));
+						for (final Entry<String, byte[]> entry : byteCode.entrySet()) {
+							fileManager.addClass(entry.getKey(), entry.getValue());
+						}
 
-					} catch (Throwable t) {
+						compiledKeys.put(className, key);
+						updated.add(className);
+						cached++;
 
-						logger.warn("Unable to load dynamic entity {}: {}", new Object[] { fqcn, t.toString() });
-						logger.warn("", t);
+					} else {
 
-						success = false;
+						changed.add(className);
 					}
 				}
 
-				if (success) {
+				boolean success = true;
+
+				if (!changed.isEmpty()) {
 
-					for (final Class oldType : classes.values()) {
-						StructrApp.getConfiguration().unregisterEntityType(oldType);
+					logger.debug("Compiling {} of {} dynamic entities...", changed.size(), sources.size());
+
+					if (changed.size() < sources.size()) {
+
+						// compile changed types only, errors are reported by the full compilation below
+						success = compile(changed, new ErrorBuffer());
+
+						if (!success) {
+
+							logger.info("Incremental compilation of {} dynamic entities failed, compiling all {} dynamic entities.", changed.size(), sources.size());
+
+							changed.addAll(sources.keySet());
+						}
 					}
 
-					// clear classes map
-					classes.clear();
+					if (changed.size() == sources.size()) {
 
-					// add new classes to map
-					for (final Class newType : newClasses) {
-						classes.put(newType.getName(), newType);
+						for (final String className : sources.keySet()) {
+
+							fileManager.removeClasses(getFqcn(className));
+						}
+
+						compiledKeys.clear();
+						updated.clear();
+						cached = 0;
+
+						success = compile(changed, errorBuffer);
 					}
 
-					logger.info("Successfully compiled {} dynamic entities: {}", new Object[] { jfiles.size(), jfiles.stream().map(f -> f.getName().replaceFirst("/", "")).collect(Collectors.joining(", ")) });
+					if (success) {
+
+						for (final String className : changed) {
+
+							final String key = keys.get(className);
 
-					final Map<String, Object> data = new LinkedHashMap();
-					data.put("success", true);
-					TransactionCommand.simpleBroadcast("SCHEMA_COMPILED", data, getInitiatedBySessionId());
+							compiledKeys.put(className, key);
 
-					Services.getInstance().setOverridingSchemaTypesAllowed(false);
+							if (cache != null) {
+								cache.put(key, fileManager.getClasses(getFqcn(className)));
+							}
+						}
 
+						if (cache != null) {
+							cache.retain(new LinkedHashSet<>(keys.values()));
+						}
+					}
 				}
 
-			}
+				if (success) {
+
+					final ClassLoader loader = fileManager.getClassLoader(null);
+
+					for (final String fqcn : fqcns) {
+
+						try {
+
+							newClasses.add(loader.loadClass(fqcn));
+
+						} catch (Throwable t) {
+
+							logger.warn("Unable to load dynamic entity {}: {}", new Object[] { fqcn, t.toString() });
+							logger.warn("", t);
+
+							// do not use the byte code of this type again
+							compiledKeys.clear();
+
+							success = false;
+						}
+					}
+
+					if (success) {
+
+						for (final Class oldType : classes.values()) {
+							StructrApp.getConfiguration().unregisterEntityType(oldType);
+						}
+
+						// clear classes map
+						classes.clear();
+
+						// add new classes to map
+						for (final Class newType : newClasses) {
+							classes.put(newType.getName(), newType);
+						}
+
+						updated.addAll(changed);
+
+						classLoader  = loader;
+						updatedTypes = updated;
+
+						logger.info("Successfully compiled {} dynamic entities ({} from cache, {} unchanged): {}", new Object[] {
+							changed.size(),
+							cached,
+							sources.size() - changed.size() - cached,
+							changed.stream().collect(Collectors.joining(", "))
+						});
+
+						final Map<String, Object> data = new LinkedHashMap();
+						data.put("success", true);
+						TransactionCommand.simpleBroadcast("SCHEMA_COMPILED", data, getInitiatedBySessionId());
 
+						Services.getInstance().setOverridingSchemaTypesAllowed(false);
+					}
+				}
+			}
 		}
 
 		return classes;
@@ -175,6 +299,90 @@ public class NodeExtender {
 		this.initiatedBySessionId = initiatedBySessionId;
 	}
 
+	// ----- private methods -----
+	private boolean compile(final Set<String> classNames, final ErrorBuffer errorBuffer) {
+
+		final List<JavaFileObject> jfiles = new ArrayList<>();
+		final Writer errorWriter          = new StringWriter();
+
+		for (final String className : classNames) {
+			jfiles.add(new CharSequenceJavaFileObject(className, sources.get(className)));
+		}
+
+		final boolean success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), null, null, jfiles).call();
+		if (!success) {
+
+			// remove byte code of a partially successful compilation
+			for (final String className : classNames) {
+				fileManager.removeClasses(getFqcn(className));
+			}
+		}
+
+		return success;
+	}
+
+	/**
+	 * Calculates the cache key of each type from its source code and the
+	 * source code of all types it references directly or indirectly, so
+	 * that a change in one type changes the keys of all its dependents.
+	 */
+	private Map<String, String> getCacheKeys() {
+
+		final Map<String, Set<String>> dependencies = new HashMap<>();
+		final Map<String, String> hashes            = new HashMap<>();
+		final Map<String, String> keys              = new LinkedHashMap<>();
+
+		for (final Entry<String, String> entry : sources.entrySet()) {
+
+			final String className = entry.getKey();
+			final String source    = entry.getValue();
+			final Set<String> deps = new TreeSet<>();
+			final Matcher matcher  = IDENTIFIER.matcher(source);
+
+			while (matcher.find()) {
+
+				final String identifier = matcher.group();
+
+				if (!identifier.equals(className) && sources.containsKey(identifier)) {
+					deps.add(identifier);
+				}
+			}
+
+			dependencies.put(className, deps);
+			hashes.put(className, DigestUtils.sha256Hex(source));
+		}
+
+		for (final String className : sources.keySet()) {
+
+			final LinkedList<String> queue = new LinkedList<>(dependencies.get(className));
+			final List<String> parts       = new ArrayList<>();
+			final Set<String> closure      = new TreeSet<>();
+
+			while (!queue.isEmpty()) {
+
+				final String dep = queue.removeFirst();
+
+				if (closure.add(dep)) {
+					queue.addAll(dependencies.get(dep));
+				}
+			}
+
+			parts.add(hashes.get(className));
+
+			for (final String dep : closure) {
+				parts.add(dep + "=" + hashes.get(dep));
+			}
+
+			keys.put(className, CompiledClassCache.getKey(className, parts));
+		}
+
+		return keys;
+	}
+
+	private String getFqcn(final String className) {
+		return JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE.concat(".".concat(className));
+	}
+
 	private static class Listener implements DiagnosticListener<JavaFileObject> {
 
 		private ErrorBuffer errorBuffer = null;
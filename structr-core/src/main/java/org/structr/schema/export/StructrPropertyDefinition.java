@@ -60,6 +60,7 @@ public abstract class StructrPropertyDefinition implements JsonProperty, Structr
 	protected boolean compound         = false;
 	protected boolean unique           = false;
 	protected boolean indexed          = false;
+	protected boolean ngramIndexed     = false;
 	protected boolean readOnly         = false;
 
 	StructrPropertyDefinition(final JsonType parent, final String name) {
@@ -146,6 +147,11 @@ public abstract class StructrPropertyDefinition implements JsonProperty, Structr
 		return indexed;
 	}
 
+	@Override
+	public boolean isNgramIndexed() {
+		return ngramIndexed;
+	}
+
 	@Override
 	public boolean isReadOnly() {
 		return readOnly;
@@ -203,6 +209,13 @@ public abstract class StructrPropertyDefinition implements JsonProperty, Structr
 		return this;
 	}
 
+	@Override
+	public JsonProperty setNgramIndexed(boolean ngramIndexed) {
+
+		this.ngramIndexed = ngramIndexed;
+		return this;
+	}
+
 	@Override
 	public JsonProperty setReadOnly(boolean readOnly) {
 
@@ -256,6 +269,7 @@ public abstract class StructrPropertyDefinition implements JsonProperty, Structr
 			getOrCreateProperties.put(SchemaProperty.compound, isCompoundUnique());
 			getOrCreateProperties.put(SchemaProperty.unique, isUnique());
 			getOrCreateProperties.put(SchemaProperty.indexed, isIndexed());
+			getOrCreateProperties.put(SchemaProperty.ngramIndexed, isNgramIndexed());
 			getOrCreateProperties.put(SchemaProperty.notNull, isRequired());
 			getOrCreateProperties.put(SchemaProperty.readOnly, isReadOnly());
 			getOrCreateProperties.put(SchemaProperty.format, getFormat());
@@ -300,6 +314,10 @@ public abstract class StructrPropertyDefinition implements JsonProperty, Structr
 			this.indexed = (Boolean)source.get(JsonSchema.KEY_INDEXED);
 		}
 
+		if (source.containsKey(JsonSchema.KEY_NGRAM_INDEXED)) {
+			this.ngramIndexed = (Boolean)source.get(JsonSchema.KEY_NGRAM_INDEXED);
+		}
+
 		if (source.containsKey(JsonSchema.KEY_READ_ONLY)) {
 			this.readOnly = (Boolean)source.get(JsonSchema.KEY_READ_ONLY);
 		}
@@ -336,6 +354,7 @@ public abstract class StructrPropertyDefinition implements JsonProperty, Structr
 		setRequired(property.isRequired());
 		setUnique(property.isUnique());
 		setIndexed(property.isIndexed());
+		setNgramIndexed(property.isNgramIndexed());
 		setReadOnly(property.isReadOnly());
 
 		final String[] _validators = property.getProperty(SchemaProperty.validators);
@@ -373,6 +392,10 @@ public abstract class StructrPropertyDefinition implements JsonProperty, Structr
 			map.put(JsonSchema.KEY_INDEXED, true);
 		}
 
+		if (ngramIndexed) {
+			map.put(JsonSchema.KEY_NGRAM_INDEXED, true);
+		}
+
 		if (readOnly) {
 			map.put(JsonSchema.KEY_READ_ONLY, true);
 		}
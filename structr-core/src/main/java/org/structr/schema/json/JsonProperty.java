@@ -41,6 +41,7 @@ public interface JsonProperty extends Comparable<JsonProperty> {
 	public boolean isRequired();
 	public boolean isUnique();
 	public boolean isIndexed();
+	public boolean isNgramIndexed();
 	public boolean isReadOnly();
 	public Set<String> getTransformators();
 	public Set<String> getValidators();
@@ -51,6 +52,7 @@ public interface JsonProperty extends Comparable<JsonProperty> {
 	public JsonProperty setCompound(final boolean isCompoundUnique);
 	public JsonProperty setUnique(final boolean isUnique);
 	public JsonProperty setIndexed(final boolean isIndexed);
+	public JsonProperty setNgramIndexed(final boolean isNgramIndexed);
 	public JsonProperty setReadOnly(final boolean isReadOnly);
 	public JsonProperty setDefaultValue(final String defaultValue);
 
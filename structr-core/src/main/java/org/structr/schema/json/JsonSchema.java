@@ -87,6 +87,7 @@ public interface JsonSchema {
 	public static final String KEY_COMPOUND                = "compound";
 	public static final String KEY_UNIQUE                  = "unique";
 	public static final String KEY_INDEXED                 = "indexed";
+	public static final String KEY_NGRAM_INDEXED           = "ngramIndexed";
 	public static final String KEY_DEFAULT                 = "default";
 	public static final String KEY_CASCADE                 = "cascade";
 	public static final String KEY_CREATE                  = "create";
@@ -37,6 +37,7 @@ public interface PropertyDefinition {
 	boolean isCompound();
 	boolean isUnique();
 	boolean isIndexed();
+	boolean isNgramIndexed();
 	boolean isReadOnly();
 	boolean isPartOfBuiltInSchema();
 	String getDefaultValue();
@@ -148,6 +148,7 @@ public abstract class PropertySourceGenerator {
 				new NodeAttribute<>(SchemaProperty.compound,              source.isCompound()),
 				new NodeAttribute<>(SchemaProperty.unique,                source.isUnique()),
 				new NodeAttribute<>(SchemaProperty.indexed,               source.isIndexed()),
+				new NodeAttribute<>(SchemaProperty.ngramIndexed,          source.isNgramIndexed()),
 				new NodeAttribute<>(SchemaProperty.notNull,               source.isNotNull()),
 				new NodeAttribute<>(SchemaProperty.isPartOfBuiltInSchema, source.isPartOfBuiltInSchema()),
 				new NodeAttribute<>(SchemaProperty.readFunction,          source.getReadFunction()),
@@ -220,6 +221,10 @@ public abstract class PropertySourceGenerator {
 			}
 		}
 
+		if (source.isNgramIndexed()) {
+			buf.append(".ngramIndexed()");
+		}
+
 		if (source.isReadOnly()) {
 
 			buf.append(".readOnly()");
@@ -162,6 +162,11 @@ public class StringBasedPropertyDefinition implements PropertyDefinition {
 		return indexed;
 	}
 
+	@Override
+	public boolean isNgramIndexed() {
+		return false;
+	}
+
 	@Override
 	public boolean isReadOnly() {
 		return readOnly;
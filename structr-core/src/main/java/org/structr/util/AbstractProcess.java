@@ -51,6 +51,8 @@ public abstract class AbstractProcess<T> implements Callable<T> {
 	@Override
 	public T call() {
 
+		Process proc = null;
+
 		try {
 			// allow preprocessing
 			preprocess();
@@ -64,7 +66,7 @@ public abstract class AbstractProcess<T> implements Callable<T> {
 
 				logger.info("Executing {}", cmd);
 
-				Process proc = Runtime.getRuntime().exec(args);
+				proc = Runtime.getRuntime().exec(args);
 
 				// consume streams
 				stdOut = new StreamReader(proc.getInputStream(), running);
@@ -76,7 +78,16 @@ public abstract class AbstractProcess<T> implements Callable<T> {
 				exitCode = proc.waitFor();
 			}
 
-		} catch (IOException | InterruptedException ex) {
+		} catch (InterruptedException iex) {
+
+			// cancelled, do not leave the process running
+			if (proc != null) {
+				proc.destroy();
+			}
+
+			Thread.currentThread().interrupt();
+
+		} catch (IOException ex) {
 
 			logger.warn("", ex);
 		}
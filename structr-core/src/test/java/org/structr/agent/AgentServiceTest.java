@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.common.StructrTest;
+
+/**
+ * Test deferral, rejection and statistics of the agent service.
+ */
+public class AgentServiceTest extends StructrTest {
+
+	private static CountDownLatch gate = null;
+
+	private AgentService agentService  = null;
+	private int maxAgents              = 0;
+	private String rejectionPolicy     = null;
+
+	@Before
+	public void startAgentService() throws Exception {
+
+		maxAgents       = Settings.MaxAgents.getValue();
+		rejectionPolicy = Settings.AgentRejectionPolicy.getValue();
+		gate            = new CountDownLatch(1);
+
+		Settings.MaxAgents.setValue(1);
+
+		agentService = new AgentService() {
+
+			@Override
+			public Map<String, Class<? extends Agent>> getAgents() {
+				return Collections.singletonMap(TestAgent.class.getSimpleName(), TestAgent.class);
+			}
+		};
+
+		agentService.startService();
+	}
+
+	@After
+	public void stopAgentService() {
+
+		gate.countDown();
+		agentService.stopService();
+
+		Settings.MaxAgents.setValue(maxAgents);
+		Settings.AgentRejectionPolicy.setValue(rejectionPolicy);
+	}
+
+	@Test
+	public void testDeferredTasks() throws InterruptedException {
+
+		Settings.AgentRejectionPolicy.setValue("wait");
+
+		// one agent holds at most 200 tasks, the others must be held back
+		for (int i=0; i<300; i++) {
+			agentService.processTask(new TestTask());
+		}
+
+		waitFor(stats -> (Integer)stats.get("deferredTasks") > 0);
+
+		assertEquals("Invalid number of pending tasks", 300, agentService.getStatistics().get("pendingTasks"));
+
+		gate.countDown();
+
+		waitFor(stats -> Integer.valueOf(300).equals(getTypeStatistics(stats).get("completed")));
+
+		final Map<String, Object> stats = agentService.getStatistics();
+		final Map<String, Object> type  = getTypeStatistics(stats);
+
+		assertEquals("Invalid queue depth",              0,   stats.get("queueDepth"));
+		assertEquals("Deferred tasks must be processed", 0,   stats.get("deferredTasks"));
+		assertEquals("Finished tasks must not be pending", 0, stats.get("pendingTasks"));
+		assertEquals("Invalid number of submitted tasks", 300, type.get("submitted"));
+		assertEquals("No task must be rejected",          0,   type.get("rejected"));
+		assertTrue("Invalid maximum latency", (Double)type.get("maxLatency") > 0.0);
+	}
+
+	@Test
+	public void testDiscardedTasks() throws InterruptedException {
+
+		Settings.AgentRejectionPolicy.setValue("discard");
+
+		for (int i=0; i<300; i++) {
+			agentService.processTask(new TestTask());
+		}
+
+		waitFor(stats -> (Integer)stats.get("queueDepth") == 0 && (Integer)getTypeStatistics(stats).get("rejected") > 0);
+
+		gate.countDown();
+
+		waitFor(stats -> (Integer)stats.get("pendingTasks") == 0);
+
+		final Map<String, Object> stats = agentService.getStatistics();
+		final Map<String, Object> type  = getTypeStatistics(stats);
+		final int completed             = (Integer)type.get("completed");
+		final int rejected              = (Integer)type.get("rejected");
+
+		assertEquals("Discarded tasks must not be deferred", 0, stats.get("deferredTasks"));
+		assertEquals("Every task must be completed or rejected", 300, completed + rejected);
+	}
+
+	// ----- private methods -----
+	private Map<String, Object> getTypeStatistics(final Map<String, Object> stats) {
+
+		final Map<String, Object> type = (Map<String, Object>)((Map<String, Object>)stats.get("taskTypes")).get(TestTask.class.getName());
+		if (type != null) {
+
+			return type;
+		}
+
+		return Collections.emptyMap();
+	}
+
+	private void waitFor(final Predicate<Map<String, Object>> condition) throws InterruptedException {
+
+		final long timeout = System.currentTimeMillis() + 10000;
+
+		while (!condition.test(agentService.getStatistics())) {
+
+			assertTrue("Timeout waiting for agent service", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+	}
+
+	// ----- nested classes -----
+	public static class TestTask extends AbstractTask<Object> {
+
+		public TestTask() {
+			super("Test", null);
+		}
+	}
+
+	public static class TestAgent extends Agent<Object> {
+
+		@Override
+		public ReturnValue processTask(final Task<Object> task) throws Throwable {
+
+			gate.await();
+
+			return ReturnValue.Success;
+		}
+
+		@Override
+		public Class getSupportedTaskType() {
+			return TestTask.class;
+		}
+
+		@Override
+		public boolean createEnclosingTransaction() {
+			return false;
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.structr.common;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
@@ -33,6 +34,8 @@ import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.NativeResult;
+import org.structr.api.index.Index;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
@@ -45,6 +48,8 @@ import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestSeven;
 import org.structr.core.entity.TestSix;
 import org.structr.core.entity.Principal;
+import org.structr.core.entity.SchemaNode;
+import org.structr.core.entity.SchemaProperty;
 import org.structr.core.entity.relationship.NodeHasLocation;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
@@ -1188,6 +1193,38 @@ public class SearchAndSortingTest extends StructrTest {
 
 	}
 
+	@Test
+	public void test04SearchByBoundingBox() {
+
+		try {
+
+			final Class type = TestSeven.class;
+
+			// Frankfurt, Berlin, and two nodes on either side of the 180th meridian
+			createLocationNode(50.12284d, 8.73923d);
+			createLocationNode(52.52000d, 13.40500d);
+			createLocationNode(-16.50000d, 179.90000d);
+			createLocationNode(-16.50000d, -179.90000d);
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(1, app.nodeQuery(type).location(50.11, 8.68, 10.0).getResult().size());
+				assertEquals(2, app.nodeQuery(type).location(50.11, 8.68, 500.0).getResult().size());
+				assertEquals(2, app.nodeQuery(type).location(-16.5, 180.0, 50.0).getResult().size());
+
+				assertEquals(2, app.nodeQuery(type).boundingBox(47.0, 5.0, 55.0, 15.0).getResult().size());
+				assertEquals(1, app.nodeQuery(type).boundingBox(49.0, 7.0, 51.0, 9.0).getResult().size());
+				assertEquals(2, app.nodeQuery(type).boundingBox(-17.0, 179.0, -16.0, -179.0).getResult().size());
+				assertEquals(0, app.nodeQuery(type).boundingBox(0.0, 0.0, 1.0, 1.0).getResult().size());
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void test05SpatialRollback() {
 
@@ -1480,6 +1517,137 @@ public class SearchAndSortingTest extends StructrTest {
 
 	}
 
+	@Test
+	public void test14SearchNgramIndexed() {
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(SchemaNode.class,
+				new NodeAttribute(SchemaNode.name, "Article"),
+				new NodeAttribute(SchemaNode.schemaProperties,
+					Arrays.asList(
+						app.create(
+							SchemaProperty.class,
+							new NodeAttribute(SchemaProperty.name, "title"),
+							new NodeAttribute(SchemaProperty.propertyType, "String"),
+							new NodeAttribute(SchemaProperty.ngramIndexed, true)
+						),
+						app.create(
+							SchemaProperty.class,
+							new NodeAttribute(SchemaProperty.name, "tags"),
+							new NodeAttribute(SchemaProperty.propertyType, "StringArray"),
+							new NodeAttribute(SchemaProperty.ngramIndexed, true)
+						)
+					)
+				)
+			);
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		final Class type        = StructrApp.getConfiguration().getNodeEntityClass("Article");
+		final PropertyKey title = StructrApp.getConfiguration().getPropertyKeyForJSONName(type, "title");
+		final PropertyKey tags  = StructrApp.getConfiguration().getPropertyKeyForJSONName(type, "tags");
+
+		assertTrue(title.isNgramIndexed());
+		assertTrue(tags.isNgramIndexed());
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(type, new NodeAttribute(title, "Inverted Fulltext Index"), new NodeAttribute(tags, new String[] { "search", "index" }));
+			app.create(type, new NodeAttribute(title, "Trigram Search"),          new NodeAttribute(tags, new String[] { "search" }));
+			app.create(type, new NodeAttribute(title, "Graph Databases"),         new NodeAttribute(tags, new String[] { "graph" }));
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(1, app.nodeQuery(type).and(title, "fulltext", false).getResult().size());
+			assertEquals(1, app.nodeQuery(type).and(title, "SEARCH", false).getResult().size());
+			assertEquals(2, app.nodeQuery(type).and(title, "a", false).getResult().size());
+			assertEquals(0, app.nodeQuery(type).and(title, "trigraph", false).getResult().size());
+
+			assertEquals(2, app.nodeQuery(type).and(tags, "earc", false).getResult().size());
+			assertEquals(1, app.nodeQuery(type).and(tags, "gr*h", false).getResult().size());
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		// changed values must be found with the new value only
+		try (final Tx tx = app.tx()) {
+
+			final GraphObject article = app.nodeQuery(type).and(title, "Graph Databases").getFirst();
+
+			article.setProperty(title, "Property Graphs");
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(0, app.nodeQuery(type).and(title, "databases", false).getResult().size());
+			assertEquals(1, app.nodeQuery(type).and(title, "property", false).getResult().size());
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		// remove the n-gram entries, a search that falls back to scanning
+		// all nodes would still find the article
+		try (final Tx tx = app.tx()) {
+
+			try (final NativeResult result = app.getDatabaseService().execute("MATCH (e:" + Index.NGRAM_LABEL + ") DELETE e RETURN count(e) AS count", Collections.EMPTY_MAP)) {
+
+				assertTrue("N-gram entries should exist", ((Number)result.next().get("count")).longValue() > 0);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Inexact search should only return candidates from the n-gram index", 0, app.nodeQuery(type).and(title, "property", false).getResult().size());
+			assertEquals("Exact search should not use the n-gram index",                          1, app.nodeQuery(type).and(title, "Property Graphs").getResult().size());
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void test01FirstPage() {
 
@@ -1979,4 +2147,15 @@ public class SearchAndSortingTest extends StructrTest {
 
 		}
 	}
+
+	// ----- private methods -----
+	private TestSeven createLocationNode(final double latitude, final double longitude) throws FrameworkException {
+
+		final PropertyMap props = new PropertyMap();
+
+		props.put(TestSeven.latitude, latitude);
+		props.put(TestSeven.longitude, longitude);
+
+		return createTestNode(TestSeven.class, props);
+	}
 }
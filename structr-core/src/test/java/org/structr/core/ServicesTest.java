@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.api.service.Command;
+import org.structr.api.service.Service;
+import org.structr.api.service.StructrServices;
+import org.structr.common.StructrTest;
+
+/**
+ * Tests for the concurrent startup of services.
+ */
+public class ServicesTest extends StructrTest {
+
+	private static final List<String> events        = Collections.synchronizedList(new ArrayList<>());
+	private static final Map<String, String> threads = new ConcurrentHashMap<>();
+	private static CountDownLatch blockingStarted    = null;
+	private static CountDownLatch releaseBlocking    = null;
+
+	@Test
+	public void testStartupOrder() {
+
+		final List<Class> serviceClasses = Arrays.asList(SlowService.class, DependentService.class, IndependentService.class, LastService.class);
+		final int threadCount            = Settings.ServicesStartupThreads.getValue();
+
+		events.clear();
+		threads.clear();
+
+		try {
+
+			Settings.ServicesStartupThreads.setValue(4);
+
+			Services.getInstance().startServices(serviceClasses);
+
+			assertEquals("All services should be started", 8, events.size());
+
+			assertTrue("Dependent service must start after its dependency", events.indexOf("SlowService-") < events.indexOf("DependentService+"));
+			assertTrue("Independent service must not wait for other services", events.indexOf("IndependentService+") < events.indexOf("SlowService-"));
+
+			assertTrue("Service without declared dependencies must start after all preceding services", events.indexOf("LastService+") > events.indexOf("SlowService-"));
+			assertTrue("Service without declared dependencies must start after all preceding services", events.indexOf("LastService+") > events.indexOf("DependentService-"));
+			assertTrue("Service without declared dependencies must start after all preceding services", events.indexOf("LastService+") > events.indexOf("IndependentService-"));
+
+		} finally {
+
+			Settings.ServicesStartupThreads.setValue(threadCount);
+			shutdown(serviceClasses);
+		}
+	}
+
+	@Test
+	public void testAwaitStartupStartsDependencies() throws InterruptedException {
+
+		final List<Class> serviceClasses = Arrays.asList(BlockingService.class, SlowService.class, DependentService.class);
+		final int threadCount            = Settings.ServicesStartupThreads.getValue();
+
+		events.clear();
+		threads.clear();
+
+		blockingStarted = new CountDownLatch(1);
+		releaseBlocking = new CountDownLatch(1);
+
+		try {
+
+			// the only startup thread is blocked, all other services are queued behind it
+			Settings.ServicesStartupThreads.setValue(1);
+
+			final Thread starter = new Thread(() -> Services.getInstance().startServices(serviceClasses));
+			starter.start();
+
+			assertTrue("Blocking service did not start", blockingStarted.await(10, TimeUnit.SECONDS));
+
+			// wait until all services are scheduled
+			while (starter.getState() != Thread.State.WAITING) {
+				Thread.sleep(10L);
+			}
+
+			Services.getInstance().awaitStartup(DependentService.class);
+
+			assertEquals("Dependency must be started before the requested service", Arrays.asList("BlockingService+", "SlowService+", "SlowService-", "DependentService+", "DependentService-"), new ArrayList<>(events));
+			assertEquals("Dependency must be started in the requesting thread", Thread.currentThread().getName(), threads.get("SlowService"));
+			assertEquals("Service must be started in the requesting thread",    Thread.currentThread().getName(), threads.get("DependentService"));
+
+			releaseBlocking.countDown();
+			starter.join(10000L);
+
+			assertFalse("Startup did not finish", starter.isAlive());
+			assertEquals("Services must be started once", 6, events.size());
+
+		} finally {
+
+			releaseBlocking.countDown();
+			Settings.ServicesStartupThreads.setValue(threadCount);
+			shutdown(serviceClasses);
+		}
+	}
+
+	// ----- private methods -----
+	private void shutdown(final List<Class> serviceClasses) {
+
+		for (final Class serviceClass : serviceClasses) {
+			Services.getInstance().shutdownService(serviceClass);
+		}
+	}
+
+	// ----- nested classes -----
+	public static abstract class TestService implements Service {
+
+		private boolean running = false;
+
+		@Override
+		public void injectArguments(final Command command) {
+		}
+
+		@Override
+		public boolean initialize(final StructrServices services) {
+
+			final String name = getName();
+
+			threads.put(name, Thread.currentThread().getName());
+			events.add(name + "+");
+
+			try {
+
+				startup();
+
+			} catch (InterruptedException iex) {
+
+				fail("Unexpected exception.");
+			}
+
+			events.add(name + "-");
+
+			running = true;
+
+			return true;
+		}
+
+		@Override
+		public void shutdown() {
+			running = false;
+		}
+
+		@Override
+		public void initialized() {
+		}
+
+		@Override
+		public String getName() {
+			return getClass().getSimpleName();
+		}
+
+		@Override
+		public boolean isRunning() {
+			return running;
+		}
+
+		@Override
+		public boolean isVital() {
+			return false;
+		}
+
+		@Override
+		public String getModuleName() {
+			return "core";
+		}
+
+		@Override
+		public Set<Class> getDependencies() {
+			return Collections.emptySet();
+		}
+
+		protected void startup() throws InterruptedException {
+		}
+	}
+
+	public static class SlowService extends TestService {
+
+		@Override
+		protected void startup() throws InterruptedException {
+			Thread.sleep(300L);
+		}
+	}
+
+	public static class DependentService extends TestService {
+
+		@Override
+		public Set<Class> getDependencies() {
+			return new HashSet<>(Arrays.asList(SlowService.class));
+		}
+	}
+
+	public static class IndependentService extends TestService {
+	}
+
+	public static class LastService extends TestService {
+
+		@Override
+		public Set<Class> getDependencies() {
+			return null;
+		}
+	}
+
+	public static class BlockingService extends TestService {
+
+		@Override
+		protected void startup() throws InterruptedException {
+
+			blockingStarted.countDown();
+			releaseBlocking.await(10, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ *
+ */
+public class ChangelogStoreTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChangelogStoreTest.class);
+
+	@Test
+	public void testAppendAndRead() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".changelog");
+
+		try (final ChangelogStore store = new ChangelogStore(directory, 1024L * 1024L, 0L)) {
+
+			store.append("a", entry(100, "create") + entry(200, "change"));
+			store.append("b", entry(150, "create"));
+			store.append("a", entry(300, "link"));
+
+			assertEquals("Invalid number of changelog entries", 3, store.read("a", null, null).size());
+			assertEquals("Invalid number of changelog entries", 1, store.read("b", null, null).size());
+			assertEquals("Invalid number of changelog entries", 0, store.read("c", null, null).size());
+
+			final List<String> range = store.read("a", 150L, 250L);
+
+			assertEquals("Invalid number of changelog entries in time range", 1, range.size());
+			assertEquals("Invalid changelog entry", entry(200, "change").trim(), range.get(0));
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+
+		// reopen and verify that the index is restored
+		try (final ChangelogStore store = new ChangelogStore(directory, 1024L * 1024L, 0L)) {
+
+			final List<String> entries = store.read("a", null, null);
+
+			assertEquals("Invalid number of changelog entries after restart", 3, entries.size());
+			assertEquals("Invalid changelog entry after restart", entry(300, "link").trim(), entries.get(2));
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testRemoveAndCompact() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".changelog");
+
+		try (final ChangelogStore store = new ChangelogStore(directory, 1024L, 0L)) {
+
+			for (int i=0; i<100; i++) {
+
+				store.append("keep", entry(i, "change"));
+				store.append("drop", entry(i, "change"));
+			}
+
+			store.remove("drop");
+			store.compact();
+
+			assertEquals("Invalid number of changelog entries after compaction", 100, store.read("keep", null, null).size());
+			assertEquals("Removed changelog still present after compaction", 0, store.read("drop", null, null).size());
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+
+		try (final ChangelogStore store = new ChangelogStore(directory, 1024L, 0L)) {
+
+			final List<String> entries = store.read("keep", null, null);
+
+			assertEquals("Invalid number of changelog entries after restart", 100, entries.size());
+			assertEquals("Invalid order of changelog entries after restart", entry(99, "change").trim(), entries.get(99));
+			assertEquals("Removed changelog present after restart", 0, store.read("drop", null, null).size());
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testRetention() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".changelog");
+		final long now       = System.currentTimeMillis();
+
+		try (final ChangelogStore store = new ChangelogStore(directory, 1024L, 1000L)) {
+
+			for (int i=0; i<50; i++) {
+				store.append("a", entry(now - 100000L, "change"));
+			}
+
+			for (int i=0; i<50; i++) {
+				store.append("a", entry(now, "change"));
+			}
+
+			store.compact();
+
+			assertEquals("Expired changelog entries not removed", 50, store.read("a", null, null).size());
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testConcurrentCompaction() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".changelog");
+
+		try (final ChangelogStore store = new ChangelogStore(directory, 1024L, 0L)) {
+
+			for (int i=0; i<200; i++) {
+
+				store.append("keep", entry(i, "change"));
+				store.append("drop" + (i % 10), entry(i, "change"));
+			}
+
+			final Thread writer = new Thread(() -> {
+
+				try {
+
+					for (int i=200; i<400; i++) {
+
+						store.append("keep", entry(i, "change"));
+
+						if (i % 20 == 0) {
+							store.remove("drop" + ((i / 20) % 10));
+						}
+					}
+
+				} catch (IOException ioex) {
+					logger.warn("", ioex);
+				}
+			});
+
+			writer.start();
+
+			while (writer.isAlive()) {
+				store.compact();
+			}
+
+			store.compact();
+
+			assertEquals("Invalid number of changelog entries after compaction", 400, store.read("keep", null, null).size());
+
+			for (int i=0; i<10; i++) {
+				assertEquals("Removed changelog still present after compaction", 0, store.read("drop" + i, null, null).size());
+			}
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+
+		try (final ChangelogStore store = new ChangelogStore(directory, 1024L, 0L)) {
+
+			final List<String> entries = store.read("keep", null, null);
+
+			assertEquals("Invalid number of changelog entries after restart", 400, entries.size());
+			assertEquals("Invalid order of changelog entries after restart", entry(399, "change").trim(), entries.get(399));
+
+			for (int i=0; i<10; i++) {
+				assertEquals("Removed changelog present after restart", 0, store.read("drop" + i, null, null).size());
+			}
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private String entry(final long time, final String verb) {
+		return "{\"time\":" + time + ",\"userId\":\"u\",\"userName\":\"admin\",\"verb\":\"" + verb + "\"}\n";
+	}
+}
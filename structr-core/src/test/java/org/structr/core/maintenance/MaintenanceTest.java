@@ -21,11 +21,13 @@ package org.structr.core.maintenance;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -36,22 +38,30 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.DatabaseService;
+import org.structr.api.NativeResult;
 import org.structr.api.Transaction;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
+import org.structr.api.index.Index;
 import org.structr.api.util.Iterables;
 import org.structr.common.StructrTest;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Group;
+import org.structr.core.entity.SchemaNode;
+import org.structr.core.entity.SchemaProperty;
 import org.structr.core.entity.TestEleven;
 import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestTwo;
 import org.structr.core.graph.BulkCreateLabelsCommand;
 import org.structr.core.graph.BulkRebuildIndexCommand;
 import org.structr.core.graph.BulkSetNodePropertiesCommand;
+import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.SyncCommand;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
 
 /**
  *
@@ -362,6 +372,92 @@ public class MaintenanceTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testParallelBulkRebuildIndexCommand() {
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				app.create(SchemaNode.class,
+					new NodeAttribute(SchemaNode.name, "Document"),
+					new NodeAttribute(SchemaNode.schemaProperties,
+						Arrays.asList(
+							app.create(
+								SchemaProperty.class,
+								new NodeAttribute(SchemaProperty.name, "title"),
+								new NodeAttribute(SchemaProperty.propertyType, "String"),
+								new NodeAttribute(SchemaProperty.ngramIndexed, true)
+							)
+						)
+					)
+				);
+
+				tx.success();
+			}
+
+			final Class type        = StructrApp.getConfiguration().getNodeEntityClass("Document");
+			final PropertyKey title = StructrApp.key(type, "title");
+
+			try (final Tx tx = app.tx()) {
+
+				for (int i=0; i<2500; i++) {
+					app.create(type, new NodeAttribute(title, String.format("Document %04d", i)));
+				}
+
+				tx.success();
+			}
+
+			final long entries = countNgramEntries();
+
+			assertTrue("N-gram index entries must be created", entries > 0);
+
+			// remove the index entries, the nodes can not be found anymore
+			try (final Tx tx = app.tx()) {
+
+				app.getDatabaseService().execute("MATCH (e:" + Index.NGRAM_LABEL + ") DELETE e", Collections.EMPTY_MAP).close();
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Node must not be found without index entries", 0, app.nodeQuery(type).and(title, "1234", false).getResult().size());
+				tx.success();
+			}
+
+			final Map<String, Object> params = new LinkedHashMap<>();
+
+			params.put("type",        "Document");
+			params.put("mode",        "nodesOnly");
+			params.put("parallelism", 4);
+
+			// test rebuild index with multiple worker threads
+			app.command(BulkRebuildIndexCommand.class).execute(params);
+
+			assertEquals("Rebuild must restore all index entries", entries, countNgramEntries());
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(2500, app.nodeQuery(type).and(title, "document", false).getResult().size());
+
+				for (int i=0; i<2500; i+=97) {
+
+					final Result result = app.nodeQuery(type).and(title, String.format("%04d", i), false).getResult();
+
+					assertEquals("Indexed lookup must find the node", 1, result.size());
+					assertEquals("Indexed lookup must find the node", String.format("Document %04d", i), ((GraphObject)result.get(0)).getProperty(title));
+				}
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testBulkSetNodePropertiesCommand() {
 
@@ -431,4 +527,20 @@ public class MaintenanceTest extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	// ----- private methods -----
+	private long countNgramEntries() throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			try (final NativeResult result = app.getDatabaseService().execute("MATCH (e:" + Index.NGRAM_LABEL + ") RETURN count(e) AS count", Collections.EMPTY_MAP)) {
+
+				final long count = ((Number)result.next().get("count")).longValue();
+
+				tx.success();
+
+				return count;
+			}
+		}
+	}
 }
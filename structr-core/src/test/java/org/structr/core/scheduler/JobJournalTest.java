@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.scheduler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+
+/**
+ * Test replay and compaction of the job journal.
+ */
+public class JobJournalTest extends StructrTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(JobJournalTest.class.getName());
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReplay() {
+
+		final File file            = new File(folder.getRoot(), "jobs.journal");
+		final JobJournal journal   = new JobJournal(file);
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal user = app.create(Principal.class, "tester");
+			final TestJob job1   = new TestJob(user, 1L, "one");
+			final TestJob job2   = new TestJob(user, 2L, "two");
+			final TestJob job3   = new TestJob(user, 3L, "three");
+
+			journal.jobQueued(job1);
+			journal.jobQueued(job2);
+			journal.jobQueued(job3);
+			journal.checkpoint(job1, Collections.singletonMap("offset", 10));
+			journal.checkpoint(job1, Collections.singletonMap("offset", 20));
+			journal.checkpoint(job2, Collections.singletonMap("offset", 5));
+			journal.jobDone(job2);
+			journal.close();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final List<Map<String, Object>> unfinished = journal.replay();
+
+		assertEquals("Invalid number of unfinished jobs", 2, unfinished.size());
+		assertEquals("Invalid replay order", 1.0, unfinished.get(0).get("jobId"));
+		assertEquals("Invalid replay order", 3.0, unfinished.get(1).get("jobId"));
+		assertEquals("Invalid job name", "one", unfinished.get(0).get("jobName"));
+
+		final Map<String, Object> state = (Map<String, Object>)unfinished.get(0).get("state");
+
+		assertEquals("Checkpoints must be merged into the state", 20.0, state.get("offset"));
+		assertEquals("Checkpoints must be merged into the state", "one", state.get("name"));
+		assertEquals("Invalid last job id", 3L, journal.getLastJobId());
+	}
+
+	@Test
+	public void testIncompleteLastLine() throws IOException {
+
+		final File file          = new File(folder.getRoot(), "jobs.journal");
+		final JobJournal journal = new JobJournal(file);
+
+		try (final Tx tx = app.tx()) {
+
+			journal.jobQueued(new TestJob(app.create(Principal.class, "tester"), 1L, "one"));
+			journal.close();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// simulate a crash while writing the next entry
+		try (final FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write("{\"op\":\"done\",\"jo".getBytes(StandardCharsets.UTF_8));
+		}
+
+		assertEquals("Incomplete entry must be ignored", 1, journal.replay().size());
+	}
+
+	@Test
+	public void testRestoredFrom() {
+
+		final File file          = new File(folder.getRoot(), "jobs.journal");
+		final JobJournal journal = new JobJournal(file);
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal user = app.create(Principal.class, "tester");
+
+			journal.jobQueued(new TestJob(user, 1L, "one"));
+			journal.jobQueued(new TestJob(user, 2L, "two"));
+
+			// restart: job 1 is restored as job 3
+			journal.jobQueued(new TestJob(user, 3L, "one"), 1L);
+			journal.close();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final List<Map<String, Object>> unfinished = journal.replay();
+
+		assertEquals("Restored entry must replace the old one", 2, unfinished.size());
+		assertEquals("Invalid replay order", 2.0, unfinished.get(0).get("jobId"));
+		assertEquals("Invalid replay order", 3.0, unfinished.get(1).get("jobId"));
+		assertTrue("restoredFrom must not be returned", !unfinished.get(1).containsKey("restoredFrom"));
+	}
+
+	@Test
+	public void testCompact() throws IOException {
+
+		final File file          = new File(folder.getRoot(), "jobs.journal");
+		final JobJournal journal = new JobJournal(file);
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal user = app.create(Principal.class, "tester");
+			final TestJob job1   = new TestJob(user, 1L, "one");
+			final TestJob job2   = new TestJob(user, 2L, "two");
+
+			journal.jobQueued(job1);
+			journal.jobQueued(job2);
+
+			for (int i=0; i<100; i++) {
+				journal.checkpoint(job1, Collections.singletonMap("offset", i));
+			}
+
+			journal.jobDone(job2);
+			journal.compact();
+
+			assertEquals("Compacted journal must contain one line per unfinished job", 1, Files.readAllLines(file.toPath()).size());
+
+			final List<Map<String, Object>> unfinished = journal.replay();
+
+			assertEquals("Invalid number of unfinished jobs", 1, unfinished.size());
+			assertEquals("Compaction must keep the merged state", 99.0, ((Map<String, Object>)unfinished.get(0).get("state")).get("offset"));
+
+			// the journal can be written after compaction
+			journal.jobDone(job1);
+			journal.close();
+
+			assertTrue("Journal must be empty", journal.replay().isEmpty());
+			assertTrue("Temporary file must be removed", !new File(file.getAbsolutePath() + ".tmp").exists());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- nested classes -----
+	static class TestJob extends ScheduledJob {
+
+		private final Runnable runnable;
+
+		TestJob(final Principal user, final Long jobId, final String name) {
+
+			this(user, name, null);
+
+			setJobId(jobId);
+		}
+
+		TestJob(final Principal user, final String name, final Runnable runnable) {
+
+			super(name, user, new LinkedHashMap<>());
+
+			this.runnable = runnable;
+		}
+
+		@Override
+		public boolean runInitialChecks() throws FrameworkException {
+			return true;
+		}
+
+		@Override
+		public Map<String, Object> getJournalState() {
+			return Collections.singletonMap("name", jobName);
+		}
+
+		@Override
+		public Runnable getRunnable() {
+			return runnable;
+		}
+
+		@Override
+		public String getJobType() {
+			return "TEST";
+		}
+
+		@Override
+		public String getJobStatusType() {
+			return "TEST_JOB_STATUS";
+		}
+
+		@Override
+		public String getJobExceptionMessageType() {
+			return "TEST_JOB_EXCEPTION";
+		}
+
+		@Override
+		public Map<String, Object> getStatusData(final JobStatusMessageSubtype subtype) {
+
+			final Map<String, Object> data = new LinkedHashMap<>();
+
+			data.put("jobId",   jobId());
+			data.put("type",    getJobStatusType());
+			data.put("subtype", subtype);
+
+			return data;
+		}
+
+		@Override
+		public Map<String, Object> getJobInfo() {
+			return getStatusData(null);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+
+/**
+ * Test that a job waiting for a retry does not block the job queue.
+ */
+public class JobQueueManagerTest extends StructrTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(JobQueueManagerTest.class.getName());
+
+	@Test
+	public void testRetryReleasesSlot() throws InterruptedException {
+
+		final List<String> events  = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch latch = new CountDownLatch(2);
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal user = app.create(Principal.class, "tester");
+
+			// only one job can run at a time by default
+			JobQueueManager.getInstance().addJob(new RetryJob(user, "a", 1, events, latch));
+			JobQueueManager.getInstance().addJob(new RetryJob(user, "b", 0, events, latch));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertTrue("Jobs did not finish", latch.await(10, TimeUnit.SECONDS));
+		assertEquals("Job b must run while job a waits for its retry", Arrays.asList("a failed", "b", "a"), events);
+		assertTrue("No job must be left in the queue", JobQueueManager.getInstance().listJobs().isEmpty());
+	}
+
+	// ----- nested classes -----
+	private static class RetryJob extends JobJournalTest.TestJob {
+
+		private final CountDownLatch latch;
+		private final List<String> events;
+		private int failures = 0;
+
+		RetryJob(final Principal user, final String name, final int failures, final List<String> events, final CountDownLatch latch) {
+
+			super(user, name, null);
+
+			this.failures = failures;
+			this.events   = events;
+			this.latch    = latch;
+		}
+
+		@Override
+		public Runnable getRunnable() {
+
+			return () -> {
+
+				if (failures-- > 0) {
+
+					events.add(jobName + " failed");
+					retryJob(500);
+
+					return;
+				}
+
+				events.add(jobName);
+				jobFinished();
+				latch.countDown();
+			};
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSigner;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the persistent class path index.
+ */
+public class ClasspathIndexTest {
+
+	private static final Set<String> classes = new LinkedHashSet<>(Arrays.asList("org.structr.test.One", "org.structr.test.Two"));
+
+	private File directory = null;
+	private File indexFile = null;
+	private File jar       = null;
+
+	@Before
+	public void setup() throws IOException {
+
+		directory = Files.createTempDirectory("classpath-index").toFile();
+		indexFile = new File(directory, "classpath.idx");
+		jar       = new File(directory, "module.jar");
+
+		Files.write(jar.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@After
+	public void cleanup() {
+
+		for (final File file : directory.listFiles()) {
+			file.delete();
+		}
+
+		directory.delete();
+	}
+
+	@Test
+	public void testUnsignedEntry() {
+
+		final ClasspathIndex index = new ClasspathIndex(indexFile, "stamp");
+
+		index.put(jar.getAbsolutePath(), classes, Collections.singleton(Collections.emptyList()));
+		index.store();
+
+		final ClasspathIndex loaded = new ClasspathIndex(indexFile, "stamp");
+		loaded.load();
+
+		assertEquals("Unsigned classes should be passed to the signer check as null", classes, loaded.get(jar.getAbsolutePath(), signers -> signers == null));
+		assertNull("Entry must not be used if the signer check fails", loaded.get(jar.getAbsolutePath(), signers -> false));
+	}
+
+	@Test
+	public void testSignerRecheck() throws IOException, GeneralSecurityException {
+
+		final List<Certificate> certificates = getCertificates(2);
+		final Certificate trusted            = certificates.get(0);
+		final Certificate untrusted          = certificates.get(1);
+		final CertificateFactory factory     = CertificateFactory.getInstance("X.509");
+		final CodeSigner signer              = new CodeSigner(factory.generateCertPath(Arrays.asList(trusted)), null);
+		final ClasspathIndex index           = new ClasspathIndex(indexFile, "stamp");
+
+		index.put(jar.getAbsolutePath(), classes, Collections.singleton(Arrays.asList(signer)));
+		index.store();
+
+		final ClasspathIndex loaded = new ClasspathIndex(indexFile, "stamp");
+		loaded.load();
+
+		// the stored signers must be checked again on every start
+		assertEquals("Entry should be used if the stored signer passes the check", classes, loaded.get(jar.getAbsolutePath(), signedBy(trusted)));
+		assertNull("Entry must not be used if the stored signer no longer passes the check", loaded.get(jar.getAbsolutePath(), signedBy(untrusted)));
+		assertNull("Signed entry must not be used for unsigned classes", loaded.get(jar.getAbsolutePath(), signers -> signers == null));
+	}
+
+	@Test
+	public void testChangedJar() throws IOException {
+
+		final ClasspathIndex index = new ClasspathIndex(indexFile, "stamp");
+
+		index.put(jar.getAbsolutePath(), classes, Collections.singleton(Collections.emptyList()));
+		index.store();
+
+		// same length, different content
+		Files.write(jar.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+
+		final ClasspathIndex loaded = new ClasspathIndex(indexFile, "stamp");
+		loaded.load();
+
+		assertNull("Entry of a changed JAR must not be used", loaded.get(jar.getAbsolutePath(), signers -> true));
+	}
+
+	@Test
+	public void testChangedStamp() {
+
+		final ClasspathIndex index = new ClasspathIndex(indexFile, "stamp");
+
+		index.put(jar.getAbsolutePath(), classes, Collections.singleton(Collections.emptyList()));
+		index.store();
+
+		final ClasspathIndex loaded = new ClasspathIndex(indexFile, "other");
+		loaded.load();
+
+		assertNull("Entries must be discarded if the stamp changes", loaded.get(jar.getAbsolutePath(), signers -> true));
+	}
+
+	// ----- private methods -----
+	private Predicate<CodeSigner[]> signedBy(final Certificate certificate) {
+
+		return signers -> {
+
+			if (signers != null) {
+
+				for (final CodeSigner signer : signers) {
+
+					if (signer.getSignerCertPath().getCertificates().contains(certificate)) {
+						return true;
+					}
+				}
+			}
+
+			return false;
+		};
+	}
+
+	private List<Certificate> getCertificates(final int count) throws IOException, GeneralSecurityException {
+
+		// use the trusted certificates of the JRE instead of generating certificates
+		final List<Certificate> certificates = new ArrayList<>();
+		final KeyStore keyStore              = KeyStore.getInstance(KeyStore.getDefaultType());
+
+		try (final InputStream is = new FileInputStream(new File(System.getProperty("java.home"), "lib" + File.separator + "security" + File.separator + "cacerts"))) {
+			keyStore.load(is, null);
+		}
+
+		final Enumeration<String> aliases = keyStore.aliases();
+		while (aliases.hasMoreElements() && certificates.size() < count) {
+
+			final Certificate certificate = keyStore.getCertificate(aliases.nextElement());
+			if (certificate != null) {
+
+				certificates.add(certificate);
+			}
+		}
+
+		assertTrue("Not enough certificates found", certificates.size() == count);
+
+		return certificates;
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the on-disk byte code cache for dynamic types.
+ */
+public class CompiledClassCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testKeys() {
+
+		final String key = CompiledClassCache.getKey("Test", Arrays.asList("a", "b"));
+
+		assertEquals(key, CompiledClassCache.getKey("Test", Arrays.asList("a", "b")));
+		assertNotEquals(key, CompiledClassCache.getKey("Other", Arrays.asList("a", "b")));
+		assertNotEquals(key, CompiledClassCache.getKey("Test", Arrays.asList("a", "c")));
+		assertNotEquals(key, CompiledClassCache.getKey("Test", Arrays.asList("a")));
+	}
+
+	@Test
+	public void testPutAndGet() throws IOException {
+
+		final CompiledClassCache cache    = new CompiledClassCache(new File(folder.getRoot(), "cache"));
+		final Map<String, byte[]> classes = new LinkedHashMap<>();
+
+		classes.put("org.structr.dynamic.Test",   new byte[] { 1, 2, 3 });
+		classes.put("org.structr.dynamic.Test$1", new byte[] { 4, 5 });
+
+		assertNull(cache.get("key"));
+
+		cache.put("key", classes);
+
+		final Map<String, byte[]> result = cache.get("key");
+
+		assertNotNull(result);
+		assertEquals(classes.keySet(), result.keySet());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, result.get("org.structr.dynamic.Test"));
+		assertArrayEquals(new byte[] { 4, 5 },    result.get("org.structr.dynamic.Test$1"));
+
+		// a second instance on the same directory sees the entry
+		assertNotNull(new CompiledClassCache(new File(folder.getRoot(), "cache")).get("key"));
+	}
+
+	@Test
+	public void testRetain() {
+
+		final CompiledClassCache cache = new CompiledClassCache(folder.getRoot());
+		final Map<String, byte[]> data = new LinkedHashMap<>();
+
+		data.put("org.structr.dynamic.Test", new byte[] { 1 });
+
+		cache.put("one", data);
+		cache.put("two", data);
+		cache.put("three", data);
+
+		cache.retain(new LinkedHashSet<>(Arrays.asList("one", "three")));
+
+		assertNotNull(cache.get("one"));
+		assertNull(cache.get("two"));
+		assertNotNull(cache.get("three"));
+	}
+}
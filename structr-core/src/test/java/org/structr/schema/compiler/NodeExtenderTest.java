@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.SchemaNode;
+import org.structr.core.entity.SchemaRelationshipNode;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.StringProperty;
+
+/**
+ * Test incremental compilation of dynamic types.
+ */
+public class NodeExtenderTest extends StructrTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(NodeExtenderTest.class.getName());
+
+	@Test
+	public void testIncrementalCompilation() {
+
+		SchemaNode a = null;
+		SchemaNode c = null;
+
+		try (final Tx tx = app.tx()) {
+
+			a                  = app.create(SchemaNode.class, "CacheTestA");
+			final SchemaNode b = app.create(SchemaNode.class, "CacheTestB");
+			c                  = app.create(SchemaNode.class, "CacheTestC");
+
+			app.create(SchemaRelationshipNode.class,
+				new NodeAttribute<>(SchemaRelationshipNode.sourceNode, a),
+				new NodeAttribute<>(SchemaRelationshipNode.targetNode, b),
+				new NodeAttribute<>(SchemaRelationshipNode.relationshipType, "uses")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final Class typeA = StructrApp.getConfiguration().getNodeEntityClass("CacheTestA");
+		final Class typeB = StructrApp.getConfiguration().getNodeEntityClass("CacheTestB");
+
+		assertNotNull(typeA);
+		assertNotNull(typeB);
+
+		// an unrelated change must not touch A or B
+		try (final Tx tx = app.tx()) {
+
+			c.setProperty(new StringProperty("_note"), "String");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		Set<String> updated = NodeExtender.getUpdatedTypes();
+
+		assertTrue("Changed type was not compiled", updated.contains("CacheTestC"));
+		assertFalse("Unchanged type was compiled", updated.contains("CacheTestA"));
+		assertFalse("Unchanged type was compiled", updated.contains("CacheTestB"));
+
+		// unchanged byte code is loaded again by the new class loader
+		assertNotSame(typeA, StructrApp.getConfiguration().getNodeEntityClass("CacheTestA"));
+		assertEquals(NodeExtender.getClassLoader(), StructrApp.getConfiguration().getNodeEntityClass("CacheTestA").getClassLoader());
+
+		// a change in A must update B, which refers to A through the relationship
+		try (final Tx tx = app.tx()) {
+
+			a.setProperty(new StringProperty("_extra"), "String");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		updated = NodeExtender.getUpdatedTypes();
+
+		assertTrue("Changed type was not compiled", updated.contains("CacheTestA"));
+		assertTrue("Dependent type was not compiled", updated.contains("CacheTestB"));
+		assertFalse("Unchanged type was compiled", updated.contains("CacheTestC"));
+
+		final Class newTypeA = StructrApp.getConfiguration().getNodeEntityClass("CacheTestA");
+
+		assertSame(NodeExtender.getClassLoader(), newTypeA.getClassLoader());
+		assertNotNull(StructrApp.key(newTypeA, "extra"));
+	}
+}
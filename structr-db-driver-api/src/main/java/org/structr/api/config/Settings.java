@@ -64,12 +64,15 @@ public class Settings {
 	public static final Setting<String> SnapshotsPath         = new StringSetting(generalGroup,   "Paths",       "snapshot.path",              "snapshots" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> LayoutsPath           = new StringSetting(generalGroup,   "Paths",       "layouts.path",               "layouts" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> WebDataPath           = new StringSetting(generalGroup,   "Paths",       "data.webapp.path",           "webapp-data" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> ClasspathIndexPath    = new StringSetting(generalGroup,   "Paths",       "classpath.index.path",       "classpath.index", "IMPORTANT: Path is relative to base.path");
 	public static final Setting<Boolean> LogSchemaOutput      = new BooleanSetting(generalGroup,  "Logging",     "NodeExtender.log",           false);
 	public static final Setting<Boolean> RequestLogging       = new BooleanSetting(generalGroup,  "Logging",     "log.requests",               false);
 	public static final Setting<String> LogPrefix             = new StringSetting(generalGroup,   "Logging",     "log.prefix",                 "structr");
 	public static final Setting<String> LogName               = new StringSetting(generalGroup,   "Logging",     "log.name",                   "structr-yyyy_mm_dd.request.log");
 	public static final Setting<String> Configuration         = new StringSetting(generalGroup,   "hidden",      "configuration.provider",     "org.structr.module.JarConfigurationProvider");
 	public static final StringSetting Services                = new StringSetting(generalGroup,   "Services",    "configured.services",        "NodeService AgentService CronService SchemaService LogService HttpService");
+	public static final Setting<Integer> ServicesStartupThreads = new IntegerSetting(generalGroup, "Services",  "configured.services.startup.threads", 4);
+	public static final Setting<Boolean> ClasspathIndexEnabled  = new BooleanSetting(generalGroup, "Services",  "configured.services.classpath.index", true);
 
 	// server settings
 	public static final Setting<String> ApplicationHost       = new StringSetting(serverGroup,  "Interfaces", "application.host",              "0.0.0.0");
@@ -92,6 +95,8 @@ public class Settings {
 	public static final Setting<Boolean> HtmlIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "html.indentation",                true);
 	public static final Setting<Boolean> WsIndentation        = new BooleanSetting(serverGroup, "HTTP Settings", "ws.indentation",                  true);
 	public static final Setting<Integer> SessionTimeout       = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.timeout",     1800);
+	public static final Setting<String> SessionStore          = new ChoiceSetting(serverGroup,  "HTTP Settings", "application.session.store",       "local", "local", "graph");
+	public static final Setting<Integer> SessionSyncInterval  = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.sync",        60);
 
 	public static final Setting<String> AccessControlMaxAge           = new StringSetting(serverGroup, "CORS Settings", "access.control.max.age",           "3600");
 	public static final Setting<String> AccessControlAllowMethods     = new StringSetting(serverGroup, "CORS Settings", "access.control.allow.methods",     "");
@@ -116,12 +121,25 @@ public class Settings {
 	public static final Setting<Integer> UuidCacheSize         = new IntegerSetting(databaseGroup, "Caching",             "database.cache.uuid.size",         100000);
 	public static final Setting<Integer> QueryCacheSize        = new IntegerSetting(databaseGroup, "Caching",             "database.cache.query.size",        1000);
 	public static final Setting<Boolean> CypherDebugLogging    = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug",                 false);
+	public static final Setting<Boolean> QueryMetricsEnabled   = new BooleanSetting(databaseGroup, "Query Metrics",       "database.metrics.enabled",         true);
+	public static final Setting<Integer> QueryMetricsSize      = new IntegerSetting(databaseGroup, "Query Metrics",       "database.metrics.size",            1000);
+	public static final Setting<Integer> QueryProfileThreshold = new IntegerSetting(databaseGroup, "Query Metrics",       "database.metrics.profile.threshold", 0);
 	public static final Setting<Boolean> SyncDebugging         = new BooleanSetting(databaseGroup, "Sync debugging",      "sync.debug",                       false);
+	public static final Setting<Integer> MaintenanceParallelism = new IntegerSetting(databaseGroup, "Maintenance",    "database.maintenance.parallelism", 1);
+	public static final Setting<Integer> MaintenanceThrottle   = new IntegerSetting(databaseGroup, "Maintenance",         "database.maintenance.throttle",    0);
+	public static final Setting<Integer> NgramMaxCandidates    = new IntegerSetting(databaseGroup, "N-gram Index",        "database.ngram.maxcandidates",     10000);
 
 	// application settings
 	public static final Setting<Integer> ResolutionDepth      = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.depth",       5);
 	public static final Setting<String> OwnerlessNodes        = new StringSetting(applicationGroup,  "Security",   "application.security.ownerless.nodes",        "read");
+	public static final Setting<Boolean> SchemaCacheEnabled   = new BooleanSetting(applicationGroup, "Schema",     "application.schema.cache.enabled",            true);
+	public static final Setting<String> SchemaCachePath       = new StringSetting(applicationGroup,  "Schema",     "application.schema.cache.path",               "schema-cache" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<Boolean> ChangelogEnabled     = new BooleanSetting(applicationGroup, "Changelog",  "application.changelog.enabled",               false);
+	public static final Setting<String> ChangelogPath         = new StringSetting(applicationGroup,  "Changelog",  "application.changelog.path",                  "changelog" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<Integer> ChangelogSegmentSize = new IntegerSetting(applicationGroup, "Changelog",  "application.changelog.segment.size",          64);
+	public static final Setting<Integer> ChangelogRetention   = new IntegerSetting(applicationGroup, "Changelog",  "application.changelog.retention",             0);
+	public static final Setting<String> LogEventsPath         = new StringSetting(applicationGroup,  "Log Events", "application.logevents.path",                  "log-events" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<Integer> LogEventsRetention   = new IntegerSetting(applicationGroup, "Log Events", "application.logevents.retention",             0);
 	public static final Setting<Boolean> FilesystemEnabled    = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.enabled",              false);
 	public static final Setting<Boolean> UniquePaths          = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.unique.paths",         true);
 	public static final Setting<String> DefaultChecksums      = new StringSetting(applicationGroup,  "Filesystem", "application.filesystem.checksums.default",    "", "List of checksums to be calculated on file creation by default.");
@@ -129,11 +147,40 @@ public class Settings {
 	public static final Setting<Integer> IndexingLimit        = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.limit",       50000);
 	public static final Setting<Integer> IndexingMinLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.minlength",   3);
 	public static final Setting<Integer> IndexingMaxLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.maxlength",   30);
+	public static final Setting<String> IndexingPath          = new StringSetting(applicationGroup,  "Filesystem", "application.filesystem.indexing.path",        "fulltext" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<Integer> IndexingMaxSegments  = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.segments",    10);
+	public static final Setting<Integer> IndexingThreads      = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.threads",     4);
+	public static final Setting<Integer> IndexingQueueSize    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.queuesize",   200);
+	public static final Setting<Integer> IndexingTimeout      = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.timeout",     60);
+	public static final Setting<Integer> IndexingBacklogSize  = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.backlogsize", 10000);
+	public static final Setting<Integer> IndexingBatchSize    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.batchsize",   50);
 	public static final Setting<Boolean> FollowSymlinks       = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.mount.followSymlinks", true);
 	public static final Setting<String> DefaultUploadFolder   = new StringSetting(applicationGroup,  "Filesystem", "application.uploads.folder",                  "");
+	public static final Setting<Integer> MaxConcurrentJobs    = new IntegerSetting(applicationGroup, "Job Queue",  "application.jobqueue.maxconcurrentjobs",      1);
+	public static final Setting<Integer> ImportWorkerThreads  = new IntegerSetting(applicationGroup, "Job Queue",  "application.import.workers",                  1);
+	public static final Setting<Boolean> JobJournalEnabled    = new BooleanSetting(applicationGroup, "Job Queue",  "application.jobqueue.journal.enabled",        true);
+	public static final Setting<Integer> ScriptJobRetries     = new IntegerSetting(applicationGroup, "Job Queue",  "application.jobqueue.script.retries",         0);
+	public static final Setting<Integer> ScriptJobBackoff     = new IntegerSetting(applicationGroup, "Job Queue",  "application.jobqueue.script.backoff",         1000);
+	public static final Setting<Integer> MaxAgents            = new IntegerSetting(applicationGroup, "Agents",     "application.agents.maxagents",                10);
+	public static final Setting<String> AgentRejectionPolicy  = new ChoiceSetting(applicationGroup,  "Agents",     "application.agents.rejection",                "wait", "wait", "discard");
 	public static final Setting<String> HttpProxyUrl          = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.url",                  "");
 	public static final Setting<String> HttpProxyUser         = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.username",             "");
 	public static final Setting<String> HttpProxyPassword     = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.password",             "");
+	public static final Setting<Integer> HttpThreads          = new IntegerSetting(applicationGroup, "HTTP",       "application.http.threads",                    8);
+	public static final Setting<Integer> HttpHostConnections  = new IntegerSetting(applicationGroup, "HTTP",       "application.http.host.connections",           4);
+	public static final Setting<Integer> HttpTimeout          = new IntegerSetting(applicationGroup, "HTTP",       "application.http.timeout",                    30);
+	public static final Setting<Integer> MqttThreads          = new IntegerSetting(applicationGroup, "MQTT",       "application.mqtt.threads",                    4);
+	public static final Setting<Integer> MqttQueueSize        = new IntegerSetting(applicationGroup, "MQTT",       "application.mqtt.queuesize",                  1000);
+	public static final Setting<Integer> MqttBatchSize        = new IntegerSetting(applicationGroup, "MQTT",       "application.mqtt.batchsize",                  50);
+	public static final Setting<Integer> MediaConversionThreads = new IntegerSetting(applicationGroup, "Media",    "application.media.conversion.threads",        2);
+	public static final Setting<Integer> MediaFrameGrabThreads  = new IntegerSetting(applicationGroup, "Media",    "application.media.framegrab.threads",         2);
+	public static final Setting<Integer> MediaProbeThreads      = new IntegerSetting(applicationGroup, "Media",    "application.media.probe.threads",             4);
+	public static final Setting<Integer> MediaMetadataThreads   = new IntegerSetting(applicationGroup, "Media",    "application.media.metadata.threads",          1);
+	public static final Setting<Integer> MediaQueueSize         = new IntegerSetting(applicationGroup, "Media",    "application.media.queuesize",                 100);
+	public static final Setting<Integer> MediaProbeTimeout      = new IntegerSetting(applicationGroup, "Media",    "application.media.probe.timeout",             30);
+	public static final Setting<Integer> MediaProbeCacheSize    = new IntegerSetting(applicationGroup, "Media",    "application.media.probe.cachesize",           1000);
+	public static final Setting<Integer> CrawlerHostDelay       = new IntegerSetting(applicationGroup, "Crawler",  "application.crawler.host.delay",              500);
+	public static final Setting<Integer> CrawlerBatchSize       = new IntegerSetting(applicationGroup, "Crawler",  "application.crawler.batchsize",               100);
 
 	// mail settings
 	public static final Setting<String> SmtpHost              = new StringSetting(smtpGroup,  "SMTP Settings", "smtp.host",         "localhost");
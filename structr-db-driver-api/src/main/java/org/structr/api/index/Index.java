@@ -26,8 +26,25 @@ import org.structr.api.search.QueryPredicate;
  */
 public interface Index<T> {
 
+	/**
+	 * The label of the nodes that store the n-grams of indexed properties.
+	 * These nodes are internal to the index and are not Structr entities.
+	 */
+	public static final String NGRAM_LABEL = "NGramEntry";
+
 	void add(final T t, final String key, final Object value, final Class typeHint);
 
+	/**
+	 * Replaces the n-grams stored for the given key of the given entity
+	 * with the n-grams of the given value, which can be a string or an
+	 * array of strings. A null value removes the n-grams.
+	 *
+	 * @param t the entity
+	 * @param key the property key
+	 * @param value the new value
+	 */
+	void addNgrams(final T t, final String key, final Object value);
+
 	void remove(final T t);
 	void remove(final T t, final String key);
 
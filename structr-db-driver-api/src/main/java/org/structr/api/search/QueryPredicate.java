@@ -36,6 +36,15 @@ public interface QueryPredicate {
 	Occurrence getOccurrence();
 	boolean isExactMatch();
 
+	/**
+	 * Indicates whether the property of this predicate is stored in the
+	 * n-gram index, so that inexact searches can be narrowed down to
+	 * the candidates from the index.
+	 *
+	 * @return whether the property is n-gram indexed
+	 */
+	boolean isNgramIndexed();
+
 	String getSortKey();
 	SortType getSortType();
 	boolean sortDescending();
@@ -23,4 +23,9 @@ public interface SpatialQuery extends QueryPredicate {
 
 	Double[] getCoords();
 	Double getDistance();
+
+	/**
+	 * @return the south, west, north and east boundaries of a bounding box query, or null for distance queries
+	 */
+	Double[] getBoundingBox();
 }
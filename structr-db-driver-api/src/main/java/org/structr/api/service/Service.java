@@ -18,6 +18,8 @@
  */
 package org.structr.api.service;
 
+import java.util.Set;
+
 /**
  * The base class for services in structr.
  *
@@ -78,4 +80,16 @@ public interface Service extends Feature {
 	 * @return a boolean
 	 */
 	boolean isVital();
+
+	/**
+	 * Returns the services that must be started before this service. The
+	 * service layer starts services concurrently as soon as all their
+	 * dependencies are started. Services that return null are started
+	 * after all services that precede them in the configuration.
+	 *
+	 * @return the service classes this service depends on, or null
+	 */
+	default Set<Class> getDependencies() {
+		return null;
+	}
 }
@@ -0,0 +1,361 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.structr.api.config.Settings;
+
+/**
+ * Aggregated execution statistics of database statements.
+ *
+ * Statements are grouped by their fingerprint, i.e. the statement with
+ * all literals replaced by a placeholder, so that statements that only
+ * differ in their values are counted together. For each fingerprint, the
+ * number of executions, the returned rows and a latency histogram with
+ * power-of-two buckets are recorded. The number of fingerprints is
+ * limited, statements beyond the limit are counted as {@link #OTHER}.
+ *
+ * Statements that exceed the profiling threshold can be profiled once by
+ * the database driver, the resulting plan and the number of database hits
+ * are stored with the fingerprint.
+ */
+public class QueryMetrics {
+
+	public static final String OTHER = "(other)";
+
+	private static final Pattern STRING_LITERAL   = Pattern.compile("'(?:[^'\\\\]|\\\\.)*'|\"(?:[^\"\\\\]|\\\\.)*\"");
+	private static final Pattern NUMBER_LITERAL   = Pattern.compile("(?<![\\w$.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+	private static final Pattern LIST_LITERAL     = Pattern.compile("\\[\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\]");
+	private static final Pattern WHITESPACE       = Pattern.compile("\\s+");
+	private static final Pattern WRITE_CLAUSE     = Pattern.compile("\\b(CREATE|MERGE|SET|DELETE|REMOVE|FOREACH|LOAD|CALL)\\b", Pattern.CASE_INSENSITIVE);
+	private static final int BUCKETS              = 40;
+	private static final int FINGERPRINTS         = 1000;
+	private static volatile QueryMetrics instance = null;
+
+	private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+	private final Map<String, Metric> metrics      = new ConcurrentHashMap<>();
+	private final AtomicLong startTime             = new AtomicLong(System.currentTimeMillis());
+	private long profileThreshold                  = 0L;
+	private boolean enabled                        = false;
+	private int maxSize                            = 0;
+
+	public QueryMetrics(final boolean enabled, final int maxSize, final int profileThresholdMillis) {
+
+		this.enabled          = enabled;
+		this.maxSize          = Math.max(1, maxSize);
+		this.profileThreshold = TimeUnit.MILLISECONDS.toNanos(Math.max(0, profileThresholdMillis));
+	}
+
+	public static QueryMetrics getInstance() {
+
+		// called for every statement, so only lock on initialization
+		if (instance == null) {
+
+			synchronized (QueryMetrics.class) {
+
+				if (instance == null) {
+
+					instance = new QueryMetrics(
+						Settings.QueryMetricsEnabled.getValue(),
+						Settings.QueryMetricsSize.getValue(),
+						Settings.QueryProfileThreshold.getValue()
+					);
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Records a single execution of the given statement.
+	 *
+	 * @param statement the statement
+	 * @param nanos the execution time in nanoseconds
+	 * @param rows the number of rows, or -1 if the rows are counted later
+	 *
+	 * @return the metric the execution was recorded in, or null if the
+	 * metrics are disabled
+	 */
+	public Metric record(final String statement, final long nanos, final long rows) {
+
+		if (!enabled) {
+			return null;
+		}
+
+		final Metric metric = getMetric(fingerprint(statement));
+
+		metric.record(nanos);
+
+		if (rows > 0) {
+			metric.addRows(rows);
+		}
+
+		return metric;
+	}
+
+	/**
+	 * Adds the number of rows a streamed result of the given statement
+	 * returned.
+	 *
+	 * @param statement
+	 * @param rows
+	 */
+	public void addRows(final String statement, final long rows) {
+
+		if (enabled && rows > 0) {
+
+			getMetric(fingerprint(statement)).addRows(rows);
+		}
+	}
+
+	/**
+	 * Returns true if the given execution should be profiled, i.e. if it
+	 * is slower than the profiling threshold, the statement does not write
+	 * and its fingerprint has not been profiled yet.
+	 *
+	 * @param metric
+	 * @param statement
+	 * @param nanos
+	 * @return whether to profile the statement
+	 */
+	public boolean shouldProfile(final Metric metric, final String statement, final long nanos) {
+
+		if (metric == null || profileThreshold == 0L || nanos < profileThreshold || OTHER.equals(metric.fingerprint)) {
+			return false;
+		}
+
+		return isReadOnly(statement) && metric.profiling.compareAndSet(false, true);
+	}
+
+	/**
+	 * Returns the statistics of all fingerprints, ordered by total
+	 * execution time.
+	 *
+	 * @return the statistics
+	 */
+	public List<Map<String, Object>> getStatistics() {
+
+		final List<Metric> list                = new ArrayList<>(metrics.values());
+		final List<Map<String, Object>> result = new ArrayList<>(list.size());
+
+		list.sort((a, b) -> Long.compare(b.totalTime.sum(), a.totalTime.sum()));
+
+		for (final Metric metric : list) {
+			result.add(metric.toMap());
+		}
+
+		return result;
+	}
+
+	public long getStartTime() {
+		return startTime.get();
+	}
+
+	public void reset() {
+
+		metrics.clear();
+		startTime.set(System.currentTimeMillis());
+	}
+
+	/**
+	 * Replaces all literals in the given statement with a placeholder and
+	 * collapses lists of literals and whitespace.
+	 *
+	 * @param statement
+	 * @return the fingerprint
+	 */
+	public static String normalize(final String statement) {
+
+		String result = statement;
+
+		result = STRING_LITERAL.matcher(result).replaceAll("?");
+		result = NUMBER_LITERAL.matcher(result).replaceAll("?");
+		result = LIST_LITERAL.matcher(result).replaceAll("[?]");
+		result = WHITESPACE.matcher(result).replaceAll(" ");
+
+		return result.trim();
+	}
+
+	public static boolean isReadOnly(final String statement) {
+		return !WRITE_CLAUSE.matcher(STRING_LITERAL.matcher(statement).replaceAll("?")).find();
+	}
+
+	// ----- private methods -----
+	private String fingerprint(final String statement) {
+
+		String fingerprint = fingerprints.get(statement);
+		if (fingerprint == null) {
+
+			fingerprint = normalize(statement);
+
+			// statements with inline literals are rarely repeated, start
+			// over instead of evicting entries when the cache is full
+			if (fingerprints.size() >= FINGERPRINTS) {
+				fingerprints.clear();
+			}
+
+			fingerprints.put(statement, fingerprint);
+		}
+
+		return fingerprint;
+	}
+
+	private Metric getMetric(final String fingerprint) {
+
+		Metric metric = metrics.get(fingerprint);
+		if (metric == null) {
+
+			final String key = metrics.size() < maxSize ? fingerprint : OTHER;
+
+			metric = metrics.computeIfAbsent(key, Metric::new);
+		}
+
+		return metric;
+	}
+
+	// ----- nested classes -----
+	public static class Metric {
+
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+		private final AtomicBoolean profiling   = new AtomicBoolean(false);
+		private final LongAdder totalTime       = new LongAdder();
+		private final LongAdder count           = new LongAdder();
+		private final LongAdder rows            = new LongAdder();
+		private final AtomicLong maxTime        = new AtomicLong();
+		private volatile String plan            = null;
+		private volatile long dbHits            = -1L;
+		private String fingerprint              = null;
+
+		public Metric(final String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		public void addRows(final long count) {
+			rows.add(count);
+		}
+
+		public void setProfile(final String plan, final long dbHits) {
+
+			this.plan   = plan;
+			this.dbHits = dbHits;
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getRows() {
+			return rows.sum();
+		}
+
+		/**
+		 * Returns the given percentile of the execution time in
+		 * nanoseconds. The value is the upper bound of the histogram
+		 * bucket that contains the percentile, i.e. it is at most
+		 * twice the exact value.
+		 *
+		 * @param percentile the percentile between 0 and 100
+		 * @return the percentile in nanoseconds
+		 */
+		public long getPercentile(final double percentile) {
+
+			final long total = count.sum();
+			if (total == 0) {
+				return 0L;
+			}
+
+			final long threshold = (long)Math.ceil(total * percentile / 100.0);
+			long sum             = 0L;
+
+			for (int i=0; i<BUCKETS; i++) {
+
+				sum += histogram.get(i);
+
+				if (sum >= threshold) {
+					return Math.min(1L << (i + 1), maxTime.get());
+				}
+			}
+
+			return maxTime.get();
+		}
+
+		// ----- private methods -----
+		private void record(final long nanos) {
+
+			final long value = Math.max(1L, nanos);
+
+			histogram.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(value)));
+			totalTime.add(value);
+			count.increment();
+
+			long max = maxTime.get();
+			while (value > max && !maxTime.compareAndSet(max, value)) {
+				max = maxTime.get();
+			}
+		}
+
+		private Map<String, Object> toMap() {
+
+			final Map<String, Object> map = new LinkedHashMap<>();
+			final long total              = count.sum();
+			final long time               = totalTime.sum();
+
+			map.put("fingerprint", fingerprint);
+			map.put("count",       total);
+			map.put("rows",        rows.sum());
+			map.put("totalTime",   toMillis(time));
+			map.put("meanTime",    total > 0 ? toMillis(time / total) : 0.0);
+			map.put("maxTime",     toMillis(maxTime.get()));
+			map.put("p50",         toMillis(getPercentile(50)));
+			map.put("p95",         toMillis(getPercentile(95)));
+			map.put("p99",         toMillis(getPercentile(99)));
+
+			if (plan != null) {
+
+				map.put("dbHits", dbHits);
+				map.put("plan",   plan);
+			}
+
+			return map;
+		}
+
+		private double toMillis(final long nanos) {
+			return Math.round(nanos / 1000.0) / 1000.0;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.structr.api.util.QueryMetrics.Metric;
+
+/**
+ *
+ */
+public class QueryMetricsTest {
+
+	@org.junit.Test
+	public void testNormalize() {
+
+		Assert.assertEquals("Invalid fingerprint", "MATCH (n:Person) WHERE n.name = ? AND n.age > ? RETURN n", QueryMetrics.normalize("MATCH (n:Person)\n\tWHERE n.name = 'Tester' AND n.age > 42 RETURN n"));
+		Assert.assertEquals("Invalid fingerprint", "MATCH (n) WHERE n.id IN [?] RETURN n",                    QueryMetrics.normalize("MATCH (n) WHERE n.id IN ['a', \"b\", 'c\\'d'] RETURN n"));
+		Assert.assertEquals("Invalid fingerprint", "MATCH (n:Node0)-[*1..3]->(m) WHERE ID(n) = {id0} RETURN m", QueryMetrics.normalize("MATCH (n:Node0)-[*1..3]->(m) WHERE ID(n) = {id0} RETURN m"));
+		Assert.assertEquals("Invalid fingerprint", "MATCH (n) WHERE ID(n) = ? RETURN n",                     QueryMetrics.normalize("MATCH (n) WHERE ID(n) = 123 RETURN n"));
+	}
+
+	@org.junit.Test
+	public void testReadOnly() {
+
+		Assert.assertTrue("Statement should be read-only",  QueryMetrics.isReadOnly("MATCH (n) WHERE n.name = 'CREATE' RETURN n"));
+		Assert.assertFalse("Statement should not be read-only", QueryMetrics.isReadOnly("MATCH (n) SET n.name = {name}"));
+		Assert.assertFalse("Statement should not be read-only", QueryMetrics.isReadOnly("MATCH (n) DETACH DELETE n"));
+	}
+
+	@org.junit.Test
+	public void testRecord() {
+
+		final QueryMetrics metrics = new QueryMetrics(true, 1, 10);
+
+		for (int i=0; i<100; i++) {
+			metrics.record("MATCH (n) WHERE n.index = " + i + " RETURN n", (i + 1) * 1000L, 1);
+		}
+
+		metrics.record("MATCH (n:A) RETURN n", 1000L, 0);
+		metrics.record("MATCH (n:B) RETURN n", 1000L, 0);
+
+		final List<Map<String, Object>> statistics = metrics.getStatistics();
+
+		Assert.assertEquals("Invalid number of fingerprints", 2, statistics.size());
+		Assert.assertEquals("Invalid fingerprint", "MATCH (n) WHERE n.index = ? RETURN n", statistics.get(0).get("fingerprint"));
+		Assert.assertEquals("Invalid count", 100L, statistics.get(0).get("count"));
+		Assert.assertEquals("Invalid row count", 100L, statistics.get(0).get("rows"));
+		Assert.assertEquals("Invalid max time", 0.1, statistics.get(0).get("maxTime"));
+		Assert.assertEquals("Invalid overflow fingerprint", QueryMetrics.OTHER, statistics.get(1).get("fingerprint"));
+
+		final Metric metric = metrics.record("MATCH (n) WHERE n.index = 0 RETURN n", 1000L, 1);
+
+		// percentiles are the upper bound of a power-of-two bucket
+		Assert.assertTrue("Invalid percentile", metric.getPercentile(50) >= 50000L && metric.getPercentile(50) <= 100000L);
+		Assert.assertEquals("Invalid percentile", 100000L, metric.getPercentile(100));
+
+		// only slow, read-only statements are profiled, and only once
+		Assert.assertFalse("Fast statement should not be profiled", metrics.shouldProfile(metric, "MATCH (n) RETURN n", 1000L));
+		Assert.assertTrue("Slow statement should be profiled",      metrics.shouldProfile(metric, "MATCH (n) RETURN n", 20000000L));
+		Assert.assertFalse("Statement should be profiled once",     metrics.shouldProfile(metric, "MATCH (n) RETURN n", 20000000L));
+	}
+
+	@org.junit.Test
+	public void testConcurrentRecord() throws InterruptedException {
+
+		final QueryMetrics metrics = new QueryMetrics(true, 10, 0);
+		final List<Thread> threads = new ArrayList<>();
+
+		for (int t=0; t<8; t++) {
+
+			final int offset = t * 1000;
+
+			threads.add(new Thread(() -> {
+
+				// more distinct statements than the fingerprint cache holds
+				for (int i=0; i<1000; i++) {
+					metrics.record("MATCH (n) WHERE n.index = " + (offset + i) + " RETURN n", 1000L, 1);
+				}
+			}));
+		}
+
+		threads.forEach(Thread::start);
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		final List<Map<String, Object>> statistics = metrics.getStatistics();
+
+		Assert.assertEquals("Invalid number of fingerprints", 1, statistics.size());
+		Assert.assertEquals("Invalid count", 8000L, statistics.get(0).get("count"));
+		Assert.assertEquals("Invalid row count", 8000L, statistics.get(0).get("rows"));
+	}
+}
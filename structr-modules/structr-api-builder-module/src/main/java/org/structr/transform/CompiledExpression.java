@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.transform;
+
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.function.Functions;
+import org.structr.core.parser.Expression;
+import org.structr.core.script.Scripting;
+import org.structr.schema.action.ActionContext;
+
+/**
+ * A script of a virtual type or property that is parsed only once.
+ *
+ * StructrScript expressions are parsed into an expression tree when the
+ * script is created, Javascript and other engines are evaluated with
+ * {@link Scripting#evaluate}, which caches compiled Javascript itself.
+ * The expression tree keeps no state between evaluations, so a compiled
+ * expression can be shared by the transformations of concurrent requests.
+ */
+public class CompiledExpression {
+
+	private Expression root   = null;
+	private String expression = null;
+	private String script     = null;
+	private String methodName = null;
+
+	public CompiledExpression(final String expression, final String methodName) throws FrameworkException {
+
+		this.expression = expression;
+		this.script     = "${" + expression + "}";
+		this.methodName = methodName;
+
+		if (Scripting.isStructrScript(script)) {
+
+			this.root = Functions.parse(expression);
+		}
+	}
+
+	public Object evaluate(final ActionContext actionContext, final GraphObject entity) throws FrameworkException {
+
+		if (root != null) {
+
+			return Scripting.evaluateStructrScript(actionContext, entity, root);
+		}
+
+		return Scripting.evaluate(actionContext, entity, script, methodName);
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+}
@@ -24,7 +24,6 @@ import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
-import org.structr.core.script.Scripting;
 import org.structr.schema.action.ActionContext;
 
 /**
@@ -32,22 +31,29 @@ import org.structr.schema.action.ActionContext;
  */
 public class Transformation {
 
-	private String sourceName          = null;
-	private String targetName          = null;
-	private String inputFunction       = null;
-	private String outputFunction      = null;
-	private PropertyKey sourceProperty = null;
-	private PropertyKey targetProperty = null;
+	private String sourceName                 = null;
+	private String targetName                 = null;
+	private CompiledExpression inputFunction  = null;
+	private CompiledExpression outputFunction = null;
+	private PropertyKey sourceProperty        = null;
+	private PropertyKey targetProperty        = null;
 
-	public Transformation(final Class type, final String sourceName, final String targetName, final String inputFunction, final String outputFunction) {
+	public Transformation(final Class type, final String sourceName, final String targetName, final String inputFunction, final String outputFunction) throws FrameworkException {
 
 		this.sourceName     = sourceName;
 		this.targetName     = targetName;
-		this.inputFunction  = inputFunction;
-		this.outputFunction = outputFunction;
 
 		this.sourceProperty = StructrApp.key(type, sourceName);
 		this.targetProperty = new GenericProperty(targetName);
+
+		// parse scripts once, a transformation is applied to many objects
+		if (inputFunction != null) {
+			this.inputFunction = new CompiledExpression(inputFunction, " virtual property " + sourceName);
+		}
+
+		if (outputFunction != null) {
+			this.outputFunction = new CompiledExpression(outputFunction, "virtual property " + targetName);
+		}
 	}
 
 	public Object transformOutput(final ActionContext actionContext, final GraphObject source) throws FrameworkException {
@@ -58,7 +64,7 @@ public class Transformation {
 
 		// output transformation requested
 		actionContext.setConstant("input", source);
-		return Scripting.evaluate(actionContext, null, "${" + outputFunction + "}", "virtual property " + targetName);
+		return outputFunction.evaluate(actionContext, null);
 	}
 
 	public void transformInput(final ActionContext actionContext, final Map<String, Object> source) throws FrameworkException {
@@ -73,7 +79,7 @@ public class Transformation {
 
 					// input transformation requested
 					actionContext.setConstant("input", inputValue);
-					inputValue = Scripting.evaluate(actionContext, null, "${" + inputFunction + "}", " virtual property " + sourceName);
+					inputValue = inputFunction.evaluate(actionContext, null);
 				}
 
 				source.put(sourceName, inputValue);
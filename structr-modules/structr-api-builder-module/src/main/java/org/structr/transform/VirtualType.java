@@ -18,19 +18,27 @@
  */
 package org.structr.transform;
 
+import java.math.BigDecimal;
 import java.net.URI;
+import java.util.AbstractList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.lang.StringUtils;
 import org.structr.api.Predicate;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.api.util.Iterables;
 import org.structr.common.GraphObjectComparator;
+import org.structr.common.PagingHelper;
 import org.structr.common.PropertyView;
 import org.structr.common.ResultTransformer;
 import org.structr.common.SecurityContext;
@@ -38,11 +46,12 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Relation;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.property.AbstractPrimitiveProperty;
 import org.structr.core.property.PropertyKey;
-import org.structr.core.script.Scripting;
 import org.structr.schema.SchemaService;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.json.JsonObjectType;
@@ -72,6 +81,7 @@ public interface VirtualType extends NodeInterface, ResultTransformer {
 		type.overrideMethod("isPrimitiveArray",     false, "return false;");
 		type.overrideMethod("getVirtualProperties", false, "return getProperty(propertiesProperty);");
 		type.overrideMethod("transformOutput",      false, "return " + VirtualType.class.getName() + ".transformOutput(this, arg0, arg1, arg2);");
+		type.overrideMethod("transformPage",        false, "return " + VirtualType.class.getName() + ".transformPage(this, arg0, arg1, arg2, arg3, arg4);");
 		type.overrideMethod("transformInput",       false, VirtualType.class.getName() + ".transformInput(this, arg0, arg1, arg2);");
 
 		type.relate(prop, "virtualProperty", Relation.Cardinality.OneToMany, "virtualType", "properties").setCascadingCreate(JsonSchema.Cascade.sourceToTarget);
@@ -119,13 +129,46 @@ public interface VirtualType extends NodeInterface, ResultTransformer {
 
 	public static Result transformOutput(final VirtualType thisType, final SecurityContext securityContext, final Class sourceType, final Result result) throws FrameworkException {
 
-		final List<VirtualProperty> props         = VirtualType.sort(thisType.getVirtualProperties());
-		final Mapper mapper                       = new Mapper(securityContext, props, thisType.getClass());
-		final Filter filter                       = new Filter(securityContext, thisType.getFilterExpression());
-		final Iterable<GraphObject> iterable      = Iterables.map(mapper, Iterables.filter(filter, result.getResults()));
-		final List<GraphObject> transformedResult = Iterables.toList(iterable);
+		final Plan plan                 = Plan.get(thisType, sourceType);
+		final ActionContext ctx         = new ActionContext(securityContext);
+		final Filter filter             = new Filter(ctx, plan.filter);
+		final List<GraphObject> sources = Iterables.toList(Iterables.filter(filter, result.getResults()));
 
-		return new Result(transformedResult,transformedResult.size(), result.isCollection(), result.isPrimitiveArray());
+		return new Result(new TransformedList(sources, new Mapper(ctx, plan.transformations)), sources.size(), result.isCollection(), result.isPrimitiveArray());
+	}
+
+	public static Result transformPage(final VirtualType thisType, final SecurityContext securityContext, final Class sourceType, final Query query, final int pageSize, final int page) throws FrameworkException {
+
+		final Plan plan         = Plan.get(thisType, sourceType);
+		final ActionContext ctx = new ActionContext(securityContext);
+		final Mapper mapper     = new Mapper(ctx, plan.transformations);
+		final boolean paging    = pageSize > 0 && page != 0;
+
+		// push down the filter conditions that the query can handle
+		for (final Entry<PropertyKey, Object> entry : plan.conditions.entrySet()) {
+			query.and(entry.getKey(), entry.getValue());
+		}
+
+		if (plan.residualFilter == null) {
+
+			// the query returns exactly the requested page
+			if (paging) {
+				query.pageSize(pageSize).page(page);
+			}
+
+			final Result result = query.getResult();
+
+			return new Result(new TransformedList(result.getResults(), mapper), result.getRawResultCount(), result.isCollection(), result.isPrimitiveArray());
+		}
+
+		// the remaining filter needs all results to count them, but
+		// only the objects of the requested page are transformed
+		final Result result             = query.getResult();
+		final Filter filter             = new Filter(ctx, plan.residualFilter);
+		final List<GraphObject> sources = Iterables.toList(Iterables.filter(filter, result.getResults()));
+		final List<GraphObject> subList = paging ? (List<GraphObject>)PagingHelper.subList(sources, pageSize, page) : sources;
+
+		return new Result(new TransformedList(subList, mapper), sources.size(), result.isCollection(), result.isPrimitiveArray());
 	}
 
 	public static void transformInput(final VirtualType thisType, final SecurityContext securityContext, final Class type, final Map<String, Object> propertySet) throws FrameworkException {
@@ -180,25 +223,265 @@ public interface VirtualType extends NodeInterface, ResultTransformer {
 	}
 
 	// ----- nested classes -----
+	/**
+	 * The parsed transformations and filter of a virtual type.
+	 *
+	 * Plans are cached and rebuilt when the virtual type or one of its
+	 * properties is modified. Equality conditions on indexed properties of
+	 * the source type, i.e. filter expressions like
+	 * <code>equal(this.name, 'value')</code> or an <code>and()</code> of
+	 * such expressions, are extracted so that they can be added to the
+	 * query instead of being evaluated for each object.
+	 */
+	static class Plan {
+
+		private static final FixedSizeCache<String, Plan> cache = new FixedSizeCache<>(100);
+		private static final Pattern Condition                  = Pattern.compile("^equal\\(\\s*this\\.(\\w+)\\s*,\\s*(?:'([^'\\\\]*)'|\"([^\"\\\\]*)\"|(true|false)|(-?\\d+(?:\\.\\d+)?))\\s*\\)$");
+
+		private final List<Transformation> transformations = new LinkedList<>();
+		private final Map<PropertyKey, Object> conditions  = new LinkedHashMap<>();
+		private CompiledExpression residualFilter          = null;
+		private CompiledExpression filter                  = null;
+		private String fingerprint                         = null;
+
+		private Plan(final VirtualType type, final Class sourceType, final List<VirtualProperty> properties, final String fingerprint) throws FrameworkException {
+
+			final String filterExpression = type.getFilterExpression();
+
+			this.fingerprint = fingerprint;
+
+			for (final VirtualProperty property : properties) {
+
+				final Transformation transformation = property.getTransformation(sourceType);
+				if (transformation != null) {
+
+					this.transformations.add(transformation);
+				}
+			}
+
+			if (StringUtils.isNotBlank(filterExpression)) {
+
+				final String residual = extractConditions(sourceType, filterExpression.trim());
+
+				this.filter = new CompiledExpression(filterExpression, "virtual type filter");
+
+				if (residual != null) {
+
+					this.residualFilter = residual.equals(filterExpression.trim()) ? filter : new CompiledExpression(residual, "virtual type filter");
+				}
+			}
+		}
+
+		public static Plan get(final VirtualType type, final Class sourceType) throws FrameworkException {
+
+			final List<VirtualProperty> properties = VirtualType.sort(type.getVirtualProperties());
+			final String key                       = type.getUuid() + "." + sourceType.getName();
+			final String fingerprint               = fingerprint(type, properties);
+
+			Plan plan = cache.get(key);
+			if (plan == null || !plan.fingerprint.equals(fingerprint)) {
+
+				plan = new Plan(type, sourceType, properties, fingerprint);
+				cache.put(key, plan);
+			}
+
+			return plan;
+		}
+
+		// ----- private methods -----
+		private static String fingerprint(final VirtualType type, final List<VirtualProperty> properties) {
+
+			final StringBuilder buf = new StringBuilder();
+
+			buf.append(type.getProperty(GraphObject.lastModifiedDate));
+
+			for (final VirtualProperty property : properties) {
+
+				buf.append(";");
+				buf.append(property.getUuid());
+				buf.append(":");
+				buf.append(property.getProperty(GraphObject.lastModifiedDate));
+			}
+
+			return buf.toString();
+		}
+
+		/**
+		 * Extracts the conditions of the given filter expression that can be
+		 * added to the query and returns the remaining expression, or null
+		 * if the whole expression can be handled by the query.
+		 */
+		private String extractConditions(final Class sourceType, final String expression) {
+
+			if (addCondition(sourceType, expression)) {
+				return null;
+			}
+
+			if (expression.startsWith("and(") && expression.endsWith(")")) {
+
+				final List<String> arguments = splitArguments(expression.substring(4, expression.length() - 1));
+				final List<String> remaining = new LinkedList<>();
+
+				if (arguments != null) {
+
+					for (final String argument : arguments) {
+
+						if (!addCondition(sourceType, argument)) {
+							remaining.add(argument);
+						}
+					}
+
+					switch (remaining.size()) {
+
+						case 0:
+							return null;
+
+						case 1:
+							return remaining.get(0);
+
+						default:
+							return "and(" + StringUtils.join(remaining, ", ") + ")";
+					}
+				}
+			}
+
+			return expression;
+		}
+
+		private boolean addCondition(final Class sourceType, final String expression) {
+
+			final Matcher matcher = Condition.matcher(expression);
+			if (matcher.matches()) {
+
+				final PropertyKey key = StructrApp.key(sourceType, matcher.group(1));
+				if (key instanceof AbstractPrimitiveProperty && key.isIndexed() && !conditions.containsKey(key)) {
+
+					final Object value = convert(key.valueType(), matcher);
+					if (value != null) {
+
+						conditions.put(key, value);
+						return true;
+					}
+				}
+			}
+
+			return false;
+		}
+
+		private Object convert(final Class valueType, final Matcher matcher) {
+
+			final String stringValue  = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+			final String booleanValue = matcher.group(4);
+			final String numberValue  = matcher.group(5);
+
+			if (stringValue != null) {
+
+				return String.class.equals(valueType) ? stringValue : null;
+			}
+
+			if (booleanValue != null) {
+
+				return Boolean.class.equals(valueType) ? Boolean.valueOf(booleanValue) : null;
+			}
+
+			if (numberValue != null) {
+
+				try {
+
+					final BigDecimal number = new BigDecimal(numberValue);
+
+					if (Integer.class.equals(valueType)) {
+						return number.intValueExact();
+					}
+
+					if (Long.class.equals(valueType)) {
+						return number.longValueExact();
+					}
+
+					if (Double.class.equals(valueType)) {
+						return number.doubleValue();
+					}
+
+				} catch (ArithmeticException aex) {
+					// not representable in the value type
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * Splits the given argument list at the top-level commas, returns
+		 * null if the quotes or brackets are not balanced.
+		 */
+		private List<String> splitArguments(final String source) {
+
+			final List<String> arguments = new LinkedList<>();
+			final StringBuilder current  = new StringBuilder();
+			char quote                   = 0;
+			int level                    = 0;
+
+			for (final char c : source.toCharArray()) {
+
+				if (quote != 0) {
+
+					if (c == quote) {
+						quote = 0;
+					}
+
+				} else if (c == '\'' || c == '"') {
+
+					quote = c;
+
+				} else if (c == '(') {
+
+					level++;
+
+				} else if (c == ')') {
+
+					if (--level < 0) {
+						return null;
+					}
+
+				} else if (c == ',' && level == 0) {
+
+					arguments.add(current.toString().trim());
+					current.setLength(0);
+					continue;
+				}
+
+				current.append(c);
+			}
+
+			if (quote != 0 || level != 0) {
+				return null;
+			}
+
+			arguments.add(current.toString().trim());
+
+			return arguments;
+		}
+	}
+
 	static class Filter implements Predicate<GraphObject> {
 
-		private ActionContext ctx = null;
-		private String expression = null;
+		private CompiledExpression expression = null;
+		private ActionContext ctx             = null;
 
-		public Filter(final SecurityContext securityContext, final String expression) {
+		public Filter(final ActionContext ctx, final CompiledExpression expression) {
 
-			this.ctx        = new ActionContext(securityContext);
+			this.ctx        = ctx;
 			this.expression = expression;
 		}
 
 		@Override
 		public boolean accept(final GraphObject value) {
 
-			if (StringUtils.isNotBlank(expression)) {
+			if (expression != null) {
 
 				try {
 
-					return Boolean.TRUE.equals(Scripting.evaluate(ctx, value, "${" + expression + "}", "virtual type filter"));
+					return Boolean.TRUE.equals(expression.evaluate(ctx, value));
 
 				} catch (FrameworkException fex) {
 					logger.warn("", fex);
@@ -211,21 +494,13 @@ public interface VirtualType extends NodeInterface, ResultTransformer {
 
 	static class Mapper implements Function<GraphObject, GraphObject> {
 
-		private final List<Transformation> transformations = new LinkedList<>();
-		private ActionContext actionContext                = null;
-
-		public Mapper(final SecurityContext securityContext, final List<VirtualProperty> properties, final Class type) throws FrameworkException {
-
-			this.actionContext = new ActionContext(securityContext);
-
-			for (final VirtualProperty property : properties) {
+		private List<Transformation> transformations = null;
+		private ActionContext actionContext          = null;
 
-				final Transformation transformation = property.getTransformation(type);
-				if (transformation != null) {
+		public Mapper(final ActionContext actionContext, final List<Transformation> transformations) {
 
-					this.transformations.add(transformation);
-				}
-			}
+			this.actionContext   = actionContext;
+			this.transformations = transformations;
 		}
 
 		@Override
@@ -250,4 +525,31 @@ public interface VirtualType extends NodeInterface, ResultTransformer {
 		}
 
 	}
+
+	/**
+	 * List that transforms its elements when they are accessed, so that
+	 * the serializer can write a result without all transformed objects
+	 * being held in memory at the same time.
+	 */
+	static class TransformedList extends AbstractList<GraphObject> {
+
+		private List<? extends GraphObject> source = null;
+		private Mapper mapper                      = null;
+
+		public TransformedList(final List<? extends GraphObject> source, final Mapper mapper) {
+
+			this.source = source;
+			this.mapper = mapper;
+		}
+
+		@Override
+		public GraphObject get(final int index) {
+			return mapper.apply(source.get(index));
+		}
+
+		@Override
+		public int size() {
+			return source.size();
+		}
+	}
 }
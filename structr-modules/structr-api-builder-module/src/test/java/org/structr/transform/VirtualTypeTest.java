@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.transform;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.RequestLoggingFilter;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+import org.structr.schema.ConfigurationProvider;
+import org.structr.schema.export.StructrSchema;
+import org.structr.schema.json.JsonSchema;
+import org.structr.schema.json.JsonType;
+import org.structr.web.entity.User;
+
+/**
+ */
+public class VirtualTypeTest extends StructrApiModuleTest {
+
+	@Test
+	public void testPushedDownFilterAndPaging() {
+
+		setup("ItemsA", "equal(this.category, 'a')");
+
+		// five items match, the query returns the second page only
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.header("X-User",     "admin")
+			.header("X-Password", "admin")
+			.filter(RequestLoggingFilter.logRequestTo(System.out))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+				.body("result_count",    equalTo(5))
+				.body("result",          hasSize(2))
+				.body("result[0].title", equalTo("item4"))
+				.body("result[0].label", equalTo("#4"))
+				.body("result[1].title", equalTo("item6"))
+				.body("result[1].label", equalTo("#6"))
+			.when()
+				.get("/ItemsA?sort=value&pageSize=2&page=2");
+	}
+
+	@Test
+	public void testPartiallyPushedDownFilterAndPaging() {
+
+		setup("ItemsB", "and(equal(this.category, 'a'), gt(this.value, 2))");
+
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.header("X-User",     "admin")
+			.header("X-Password", "admin")
+			.filter(RequestLoggingFilter.logRequestTo(System.out))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+				.body("result_count",    equalTo(3))
+				.body("result",          hasSize(2))
+				.body("result[0].title", equalTo("item4"))
+				.body("result[1].title", equalTo("item6"))
+			.when()
+				.get("/ItemsB?sort=value&pageSize=2&page=1");
+
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.header("X-User",     "admin")
+			.header("X-Password", "admin")
+			.filter(RequestLoggingFilter.logRequestTo(System.out))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+				.body("result_count",    equalTo(3))
+				.body("result",          hasSize(1))
+				.body("result[0].title", equalTo("item8"))
+				.body("result[0].label", equalTo("#8"))
+			.when()
+				.get("/ItemsB?sort=value&pageSize=2&page=2");
+	}
+
+	@Test
+	public void testScriptFilter() {
+
+		setup("ItemsC", "lt(this.value, 3)");
+
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.header("X-User",     "admin")
+			.header("X-Password", "admin")
+			.filter(RequestLoggingFilter.logRequestTo(System.out))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+				.body("result_count",    equalTo(3))
+				.body("result",          hasSize(3))
+				.body("result[0].title", equalTo("item0"))
+				.body("result[2].title", equalTo("item2"))
+				.body("result[2].label", equalTo("#2"))
+			.when()
+				.get("/ItemsC?sort=value");
+	}
+
+	// ----- private methods -----
+	private void setup(final String virtualTypeName, final String filterExpression) {
+
+		try (final Tx tx = app.tx()) {
+
+			final JsonSchema schema = StructrSchema.createEmptySchema();
+			final JsonType newType  = schema.addType("Item");
+
+			newType.addStringProperty("category").setIndexed(true);
+			newType.addIntegerProperty("value").setIndexed(true);
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+			app.create(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final ConfigurationProvider conf = StructrApp.getConfiguration();
+			final Class itemType             = conf.getNodeEntityClass("Item");
+			final Class virtualType          = conf.getNodeEntityClass("VirtualType");
+			final Class virtualProperty      = conf.getNodeEntityClass("VirtualProperty");
+
+			for (int i=0; i<10; i++) {
+
+				app.create(itemType,
+					new NodeAttribute<>(StructrApp.key(itemType, "name"),     "item" + i),
+					new NodeAttribute<>(StructrApp.key(itemType, "category"), i % 2 == 0 ? "a" : "b"),
+					new NodeAttribute<>(StructrApp.key(itemType, "value"),    i)
+				);
+			}
+
+			final NodeInterface type = app.create(virtualType,
+				new NodeAttribute<>(StructrApp.key(virtualType, "name"),             virtualTypeName),
+				new NodeAttribute<>(StructrApp.key(virtualType, "sourceType"),       "Item"),
+				new NodeAttribute<>(StructrApp.key(virtualType, "filterExpression"), filterExpression)
+			);
+
+			app.create(virtualProperty,
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "virtualType"), type),
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "position"),    0),
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "sourceName"),  "name"),
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "targetName"),  "title")
+			);
+
+			app.create(virtualProperty,
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "virtualType"),    type),
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "position"),       1),
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "targetName"),     "label"),
+				new NodeAttribute<>(StructrApp.key(virtualProperty, "outputFunction"), "concat('#', input.value)")
+			);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.crawler;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.structr.api.util.FixedSizeCache;
+
+/**
+ * A CSS selector that is parsed once and can be evaluated on any number of
+ * documents. Compiled selectors are cached by their source, they do not
+ * hold any state of an evaluation.
+ */
+public class CompiledSelector {
+
+	private static final FixedSizeCache<String, CompiledSelector> cache = new FixedSizeCache<>(1000);
+
+	private Evaluator childEvaluator = null;
+	private Evaluator evaluator      = null;
+	private String selector          = null;
+
+	private CompiledSelector(final String selector) {
+
+		this.selector       = selector;
+		this.evaluator      = QueryParser.parse(selector);
+		this.childEvaluator = QueryParser.parse("> " + selector);
+	}
+
+	/**
+	 * Returns the compiled form of the given selector.
+	 *
+	 * @param selector
+	 * @return the compiled selector
+	 * @throws org.jsoup.select.Selector.SelectorParseException if the selector is invalid
+	 */
+	public static CompiledSelector compile(final String selector) {
+
+		CompiledSelector compiled = cache.get(selector);
+		if (compiled == null) {
+
+			compiled = new CompiledSelector(selector);
+			cache.put(selector, compiled);
+		}
+
+		return compiled;
+	}
+
+	public String getSelector() {
+		return selector;
+	}
+
+	/**
+	 * Returns all elements below the given root that match this selector.
+	 *
+	 * @param root
+	 * @return the matching elements
+	 */
+	public Elements select(final Element root) {
+		return Collector.collect(evaluator, root);
+	}
+
+	/**
+	 * Returns the elements that match this selector relative to one of the
+	 * given parents, starting with a direct child of the parent. For the
+	 * elements of one row of {@link #groupBySiblingIndex}, this is the
+	 * result of "&lt;parent selector&gt;:nth-child(i) &gt; &lt;this selector&gt;"
+	 * without evaluating the parent selector again.
+	 *
+	 * @param parents
+	 * @return the matching elements
+	 */
+	public Elements selectChildren(final List<Element> parents) {
+
+		final Set<Element> result = new LinkedHashSet<>();
+
+		if (parents != null) {
+
+			for (final Element parent : parents) {
+				result.addAll(Collector.collect(childEvaluator, parent));
+			}
+		}
+
+		return new Elements(result);
+	}
+
+	/**
+	 * Groups the given elements by their 1-based position among the element
+	 * siblings, i.e. by the index an :nth-child() selector would use.
+	 *
+	 * @param elements
+	 * @return the elements grouped by their position
+	 */
+	public static Map<Integer, List<Element>> groupBySiblingIndex(final Elements elements) {
+
+		final Map<Integer, List<Element>> rows = new LinkedHashMap<>();
+
+		for (final Element element : elements) {
+			rows.computeIfAbsent(element.elementSiblingIndex() + 1, k -> new Elements()).add(element);
+		}
+
+		return rows;
+	}
+}
@@ -0,0 +1,504 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.crawler;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.util.FixedSizeCache;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.converter.PropertyConverter;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
+import org.structr.core.script.Scripting;
+import org.structr.crawler.CrawlScheduler.Content;
+import org.structr.crawler.CrawlScheduler.Site;
+import org.structr.schema.action.ActionContext;
+
+/**
+ * A single run of a source pattern.
+ *
+ * The pattern tree is compiled before the crawl starts, so that the crawl
+ * does not need to read from the database. Pages are taken from a frontier
+ * queue and fetched concurrently by the {@link CrawlScheduler}, the fetched
+ * pages are parsed by the fetcher threads. Pages with the same content are
+ * parsed only once, regardless of their URL.
+ *
+ * The extraction runs in the thread of the crawl. Each extracted object is
+ * collected as a record of raw values until all of its sub pages have been
+ * processed. Completed records are created in batches, each batch in a
+ * transaction of its own, so that no transaction is held open while pages
+ * are fetched.
+ */
+public class Crawl implements Callable<Map<String, Object>> {
+
+	private static final Logger logger = LoggerFactory.getLogger(Crawl.class.getName());
+
+	private final BlockingQueue<Result> completed            = new LinkedBlockingQueue<>();
+	private final FixedSizeCache<String, Document> documents = new FixedSizeCache<>(100);
+	private final FixedSizeCache<String, String> hashes      = new FixedSizeCache<>(10000);
+	private final Map<String, List<Request>> waiting         = new HashMap<>();
+	private final Queue<Request> frontier                    = new LinkedList<>();
+	private final List<Record> batch                         = new ArrayList<>();
+	private SecurityContext securityContext                  = null;
+	private CrawlScheduler scheduler                         = null;
+	private Pattern pattern                                  = null;
+	private Site site                                        = null;
+	private String url                                       = null;
+	private int maxInFlight                                  = 0;
+	private int batchSize                                    = 0;
+	private int inFlight                                     = 0;
+	private int duplicates                                   = 0;
+	private int pages                                        = 0;
+	private int cached                                       = 0;
+	private int created                                      = 0;
+	private int failed                                       = 0;
+
+	public Crawl(final SecurityContext securityContext, final CrawlScheduler scheduler, final Site site, final String url, final Pattern pattern, final int maxInFlight, final int batchSize) {
+
+		this.securityContext = securityContext;
+		this.scheduler       = scheduler;
+		this.site            = site;
+		this.url             = url;
+		this.pattern         = pattern;
+		this.maxInFlight     = Math.max(1, maxInFlight);
+		this.batchSize       = Math.max(1, batchSize);
+	}
+
+	@Override
+	public Map<String, Object> call() throws FrameworkException, InterruptedException {
+
+		final long start = System.currentTimeMillis();
+
+		frontier.add(new Request(url, Collections.singletonList(pattern), null));
+
+		while (!frontier.isEmpty() || inFlight > 0) {
+
+			dispatch();
+
+			if (inFlight > 0) {
+				handle(completed.take());
+			}
+
+			if (batch.size() >= batchSize) {
+				flush();
+			}
+		}
+
+		flush();
+
+		final Map<String, Object> result = new LinkedHashMap<>();
+
+		result.put("pages",      pages);
+		result.put("cached",     cached);
+		result.put("duplicates", duplicates);
+		result.put("failed",     failed);
+		result.put("created",    created);
+		result.put("duration",   System.currentTimeMillis() - start);
+
+		logger.info("Crawl of {} finished: {}", url, result);
+
+		return result;
+	}
+
+	// ----- private methods -----
+	/**
+	 * Starts the requests of the frontier until the maximum number of
+	 * pages is in flight. Requests for a URL that is already in flight
+	 * wait for the running request.
+	 */
+	private void dispatch() {
+
+		Request request = null;
+
+		while (inFlight < maxInFlight && (request = frontier.poll()) != null) {
+
+			final String requestUrl     = request.url;
+			final List<Request> pending = waiting.get(requestUrl);
+
+			if (pending != null) {
+
+				pending.add(request);
+				continue;
+			}
+
+			waiting.put(requestUrl, new LinkedList<>(Collections.singletonList(request)));
+			inFlight++;
+
+			final String hash       = hashes.get(requestUrl);
+			final Document document = hash != null ? documents.get(hash) : null;
+
+			if (document != null) {
+
+				cached++;
+				completed.add(new Result(requestUrl, document, false, null));
+
+			} else {
+
+				start(requestUrl);
+			}
+		}
+	}
+
+	/**
+	 * Schedules the request for the given URL. The fetcher threads add the
+	 * result to the completed queue, a request that can not be scheduled
+	 * because the URL is invalid is completed immediately.
+	 */
+	private void start(final String requestUrl) {
+
+		final Future<Boolean> future = scheduler.execute(requestUrl, () -> completed.add(fetch(requestUrl)));
+
+		if (future.isDone()) {
+
+			try {
+
+				future.get();
+
+			} catch (InterruptedException | ExecutionException ex) {
+
+				completed.add(new Result(requestUrl, null, false, ex.getCause() != null ? ex.getCause() : ex));
+			}
+		}
+	}
+
+	/**
+	 * Fetches and parses the given URL, called by the fetcher threads.
+	 */
+	private Result fetch(final String pageUrl) {
+
+		try {
+
+			final Content content = scheduler.get(pageUrl, site);
+			final String hash     = hash(content.getData());
+			Document document     = documents.get(hash);
+			boolean duplicate     = true;
+
+			if (document == null) {
+
+				document  = Jsoup.parse(content.getText().replace("<head>", "<head>\n  <base href=\"" + pageUrl + "\">"));
+				duplicate = false;
+
+				documents.put(hash, document);
+			}
+
+			hashes.put(pageUrl, hash);
+
+			return new Result(pageUrl, document, duplicate, null);
+
+		} catch (Throwable t) {
+
+			return new Result(pageUrl, null, false, t);
+		}
+	}
+
+	private void handle(final Result result) {
+
+		final List<Request> requests = waiting.remove(result.url);
+
+		inFlight--;
+
+		if (result.document != null) {
+
+			if (result.duplicate) {
+				duplicates++;
+			}
+
+			pages++;
+
+		} else {
+
+			logger.warn("Unable to fetch content from address {}: {}", result.url, result.error != null ? result.error.getMessage() : null);
+			failed++;
+		}
+
+		for (final Request request : requests) {
+
+			if (result.document != null) {
+
+				for (final Pattern p : request.patterns) {
+					apply(p, result.document, request.record);
+				}
+			}
+
+			if (request.record != null) {
+				release(request.record);
+			}
+		}
+	}
+
+	/**
+	 * Applies the given pattern to the given document. If a parent record
+	 * is given, the values are added to the parent, otherwise a record is
+	 * created for each element the pattern selects.
+	 */
+	private void apply(final Pattern p, final Document document, final Record parent) {
+
+		final Elements parts             = p.selector.select(document);
+		final int from                   = p.from != null ? p.from.intValue() : 1;
+		final int to                     = p.to != null ? p.to.intValue() : parts.size();
+		Map<Integer, List<Element>> rows = null;
+
+		if (!p.subPatterns.isEmpty()) {
+			rows = CompiledSelector.groupBySiblingIndex(parts);
+		}
+
+		for (int i=from; i<=to; i++) {
+
+			final Record record = parent != null ? parent : new Record(p.mappedType);
+
+			if (rows != null) {
+
+				for (final Pattern subPattern : p.subPatterns) {
+
+					extract(record, subPattern.selector.selectChildren(rows.get(i)), p.mappedType, subPattern.mappedAttribute, subPattern.mappedAttributeFunction, subPattern.subPage);
+				}
+
+			} else {
+
+				extract(record, parts, p.mappedType, p.mappedAttribute, p.mappedAttributeFunction, null);
+			}
+
+			if (parent == null) {
+				release(record);
+			}
+		}
+	}
+
+	private void extract(final Record record, final Elements elements, final String mappedType, final String mappedAttribute, final String mappedAttributeFunction, final Page subPage) {
+
+		// If the pattern has a mapped attribute, add the extracted value
+		if (StringUtils.isNotEmpty(mappedAttribute)) {
+
+			final String text = elements.text();
+			if (StringUtils.isNotBlank(text)) {
+
+				record.values.add(new Value(mappedType, mappedAttribute, mappedAttributeFunction, text));
+			}
+
+		// If the pattern has no mapped attribute but a sub page, queue the linked page
+		} else if (subPage != null) {
+
+			final String href = elements.attr("href");
+			if (StringUtils.isNotBlank(href)) {
+
+				record.pending++;
+				frontier.add(new Request(subPage.base + href, subPage.patterns, record));
+			}
+		}
+	}
+
+	private void release(final Record record) {
+
+		if (--record.pending == 0) {
+			batch.add(record);
+		}
+	}
+
+	/**
+	 * Creates the objects of all completed records in a single
+	 * transaction.
+	 */
+	private void flush() throws FrameworkException {
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		final App app = StructrApp.getInstance(securityContext);
+
+		try (final Tx tx = app.tx()) {
+
+			for (final Record record : batch) {
+
+				final PropertyMap properties = new PropertyMap();
+
+				for (final Value value : record.values) {
+
+					final PropertyKey key = StructrApp.key(StructrApp.getConfiguration().getNodeEntityClass(value.mappedType), value.mappedAttribute);
+					if (key != null) {
+
+						properties.put(key, convert(key, value));
+					}
+				}
+
+				app.create(StructrApp.getConfiguration().getNodeEntityClass(record.type), properties);
+			}
+
+			tx.success();
+		}
+
+		created += batch.size();
+		batch.clear();
+	}
+
+	private Object convert(final PropertyKey key, final Value value) throws FrameworkException {
+
+		if (StringUtils.isNotBlank(value.mappedAttributeFunction)) {
+
+			// input transformation requested
+			final ActionContext ctx = new ActionContext(securityContext);
+			ctx.setConstant("input", value.text);
+
+			return Scripting.evaluate(ctx, null, "${" + value.mappedAttributeFunction + "}", " virtual property " + value.mappedAttribute);
+		}
+
+		// if no custom transformation is given, try input converter
+		final PropertyConverter inputConverter = key.inputConverter(securityContext);
+		if (inputConverter != null) {
+
+			return inputConverter.convert(value.text);
+		}
+
+		return value.text;
+	}
+
+	private String hash(final byte[] data) throws NoSuchAlgorithmException {
+		return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(data));
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The compiled form of a source pattern.
+	 */
+	public static class Pattern {
+
+		private List<Pattern> subPatterns       = null;
+		private CompiledSelector selector       = null;
+		private String mappedAttributeFunction  = null;
+		private String mappedAttribute          = null;
+		private String mappedType               = null;
+		private Page subPage                    = null;
+		private Long from                       = null;
+		private Long to                         = null;
+
+		public Pattern(final String selector, final String mappedType, final String mappedAttribute, final String mappedAttributeFunction, final Long from, final Long to, final List<Pattern> subPatterns, final Page subPage) {
+
+			this.selector                = CompiledSelector.compile(selector);
+			this.mappedType              = mappedType;
+			this.mappedAttribute         = mappedAttribute;
+			this.mappedAttributeFunction = mappedAttributeFunction;
+			this.from                    = from;
+			this.to                      = to;
+			this.subPatterns             = subPatterns;
+			this.subPage                 = subPage;
+		}
+	}
+
+	/**
+	 * The compiled form of a sub page, i.e. the scheme and authority that
+	 * the links to the page are resolved against, and its patterns.
+	 */
+	public static class Page {
+
+		private List<Pattern> patterns = null;
+		private String base            = null;
+
+		public Page(final String base, final List<Pattern> patterns) {
+
+			this.base     = base;
+			this.patterns = patterns;
+		}
+	}
+
+	private static class Request {
+
+		private List<Pattern> patterns = null;
+		private Record record          = null;
+		private String url             = null;
+
+		public Request(final String url, final List<Pattern> patterns, final Record record) {
+
+			this.url      = url;
+			this.patterns = patterns;
+			this.record   = record;
+		}
+	}
+
+	private static class Result {
+
+		private Document document = null;
+		private Throwable error   = null;
+		private boolean duplicate = false;
+		private String url        = null;
+
+		public Result(final String url, final Document document, final boolean duplicate, final Throwable error) {
+
+			this.url       = url;
+			this.document  = document;
+			this.duplicate = duplicate;
+			this.error     = error;
+		}
+	}
+
+	/**
+	 * The values extracted for a single object. A record is complete when
+	 * all of its sub pages have been processed.
+	 */
+	private static class Record {
+
+		private final List<Value> values = new ArrayList<>();
+		private String type              = null;
+		private int pending              = 1;
+
+		public Record(final String type) {
+			this.type = type;
+		}
+	}
+
+	private static class Value {
+
+		private String mappedAttributeFunction = null;
+		private String mappedAttribute         = null;
+		private String mappedType              = null;
+		private String text                    = null;
+
+		public Value(final String mappedType, final String mappedAttribute, final String mappedAttributeFunction, final String text) {
+
+			this.mappedType              = mappedType;
+			this.mappedAttribute         = mappedAttribute;
+			this.mappedAttributeFunction = mappedAttributeFunction;
+			this.text                    = text;
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.crawler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.rest.common.HttpFetcher;
+
+/**
+ * Executes the requests of all running crawls.
+ *
+ * The requests are executed by an {@link HttpFetcher}, which limits the
+ * number of concurrent requests to the same host. Two requests to the
+ * same host are started at least the host delay apart.
+ *
+ * The crawls themselves are run by {@link #submit(org.structr.crawler.Crawl)}
+ * in a thread of their own, so that their database writes are independent
+ * of the transaction of the caller.
+ */
+public class CrawlScheduler {
+
+	private static final Logger logger     = LoggerFactory.getLogger(CrawlScheduler.class.getName());
+	private static CrawlScheduler instance = null;
+
+	private ExecutorService crawls = null;
+	private HttpFetcher fetcher    = null;
+	private long hostDelay         = 0L;
+
+	public CrawlScheduler(final HttpFetcher fetcher, final int hostDelayMillis) {
+
+		final AtomicInteger crawlNum = new AtomicInteger(0);
+
+		this.fetcher   = fetcher;
+		this.hostDelay = Math.max(0, hostDelayMillis);
+
+		this.crawls = Executors.newCachedThreadPool(r -> {
+
+			final Thread thread = new Thread(r, "Crawl-" + crawlNum.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+	}
+
+	public static synchronized CrawlScheduler getInstance() {
+
+		if (instance == null) {
+
+			instance = new CrawlScheduler(HttpFetcher.getInstance(), Settings.CrawlerHostDelay.getValue());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Runs the given crawl in a thread of its own.
+	 *
+	 * @param crawl
+	 * @return the future statistics of the crawl
+	 */
+	public Future<Map<String, Object>> submit(final Crawl crawl) {
+		return crawls.submit(crawl);
+	}
+
+	/**
+	 * Schedules the given task, which requests the given URL, under the
+	 * connection limit and delay of the URL's host.
+	 *
+	 * @param <T>
+	 * @param url
+	 * @param task
+	 *
+	 * @return the future result of the task, which fails if the URL is invalid
+	 */
+	public <T> Future<T> execute(final String url, final Callable<T> task) {
+		return fetcher.submit(url, hostDelay, task);
+	}
+
+	/**
+	 * Fetches the content of the given URL with the proxy and cookie of
+	 * the given site.
+	 *
+	 * @param url
+	 * @param site
+	 * @return the content
+	 * @throws IOException if the request fails or the response status is not 2xx
+	 */
+	public Content get(final String url, final Site site) throws IOException {
+
+		final Map<String, String> headers  = StringUtils.isNotBlank(site.cookie) ? Collections.singletonMap("Cookie", site.cookie) : null;
+		final HttpURLConnection connection = fetcher.get(url, headers, site.proxyUrl, site.proxyUsername, site.proxyPassword);
+		final int status                   = connection.getResponseCode();
+
+		if (status < 200 || status >= 300) {
+
+			// consume the error stream so that the connection can be reused
+			HttpFetcher.discard(connection);
+
+			throw new IOException("Server returned status " + status);
+		}
+
+		try (final InputStream is = connection.getInputStream()) {
+
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			final byte[] buffer            = new byte[8192];
+			int count                      = 0;
+
+			while ((count = is.read(buffer)) != -1) {
+				os.write(buffer, 0, count);
+			}
+
+			return new Content(os.toByteArray(), getCharset(connection.getContentType()));
+		}
+	}
+
+	public void shutdown() {
+		crawls.shutdownNow();
+	}
+
+	// ----- private methods -----
+	private Charset getCharset(final String contentType) {
+
+		if (contentType != null) {
+
+			for (final String part : contentType.split(";")) {
+
+				final String trimmed = part.trim();
+				if (trimmed.toLowerCase().startsWith("charset=")) {
+
+					try {
+
+						return Charset.forName(StringUtils.strip(trimmed.substring(8), "\"'"));
+
+					} catch (IllegalArgumentException iex) {
+
+						logger.debug("Unsupported charset in content type {}", contentType);
+					}
+				}
+			}
+		}
+
+		return StandardCharsets.UTF_8;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Connection settings of a source site.
+	 */
+	public static class Site {
+
+		private String proxyUsername = null;
+		private String proxyPassword = null;
+		private String proxyUrl      = null;
+		private String cookie        = null;
+
+		public Site(final String proxyUrl, final String proxyUsername, final String proxyPassword, final String cookie) {
+
+			this.proxyUrl      = proxyUrl;
+			this.proxyUsername = proxyUsername;
+			this.proxyPassword = proxyPassword;
+			this.cookie        = cookie;
+		}
+	}
+
+	public static class Content {
+
+		private Charset charset = null;
+		private byte[] data     = null;
+
+		public Content(final byte[] data, final Charset charset) {
+
+			this.data    = data;
+			this.charset = charset;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public String getText() {
+			return new String(data, charset);
+		}
+	}
+}
@@ -20,30 +20,26 @@ package org.structr.crawler;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import org.jsoup.select.Selector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.View;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Export;
-import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
-import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
-import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.*;
-import org.structr.core.script.Scripting;
-import org.structr.rest.common.HttpHelper;
 import org.structr.schema.ConfigurationProvider;
-import org.structr.schema.action.ActionContext;
 import org.structr.web.entity.User;
 
 public class SourcePattern extends AbstractNode {
@@ -88,13 +84,6 @@ public class SourcePattern extends AbstractNode {
 		return type;
 	}
 
-	private NodeInterface create(final String typeString) throws FrameworkException {
-
-		final App app = StructrApp.getInstance(securityContext);
-
-		return app.create(type(typeString));
-	}
-
 	private SourceSite getSite() {
 
 		SourcePattern pattern = this;
@@ -113,7 +102,7 @@ public class SourcePattern extends AbstractNode {
 
 	}
 
-	private String getContent(final String urlString) throws FrameworkException {
+	private CrawlScheduler.Site getSiteSettings() {
 
 		final SourceSite site = getSite();
 
@@ -131,225 +120,145 @@ public class SourcePattern extends AbstractNode {
 
 		final String cookie = site.getProperty(SourceSite.cookie);
 
-		return HttpHelper.get(urlString, proxyUrl, proxyUsername, proxyPassword, cookie, Collections.EMPTY_MAP)
-				.replace("<head>", "<head>\n  <base href=\"" + urlString + "\">");
+		return new CrawlScheduler.Site(proxyUrl, proxyUsername, proxyPassword, cookie);
 	}
 
-	private void extractAndSetValue(final NodeInterface obj, final Document doc, final String selector, final String mappedType, final String mappedAttribute, final String mappedAttributeFunction, final SourcePage subPage)  throws FrameworkException {
+	/**
+	 * Compiles this pattern and all patterns reachable from it, so that
+	 * the crawl can run without reading from the database.
+	 *
+	 * @param path the patterns that are currently being compiled, to detect cycles
+	 */
+	private Crawl.Pattern compile(final Set<String> path) throws FrameworkException {
 
-		// If the sub pattern has a mapped attribute, set the extracted value
-		if (StringUtils.isNotEmpty(mappedAttribute)) {
-
-			// Extract the value for this sub pattern's selector
-			final String ex       = doc.select(selector).text();
-			final PropertyKey key = StructrApp.key(type(mappedType), mappedAttribute);
-
-			if (StringUtils.isNotBlank(ex) && key != null) {
+		if (getProperty(sourcePageProperty) == null) {
+			throw new FrameworkException(422, "Pattern has no source page, exiting.");
+		}
 
-				Object convertedValue = ex;
+		final String selector        = getProperty(selectorProperty);
+		if (selector == null) {
+			throw new FrameworkException(422, "Pattern has no selector, exiting.");
+		}
 
-				if (StringUtils.isNotBlank(mappedAttributeFunction)) {
+		final String mappedType      = getProperty(mappedTypeProperty);
+		if (mappedType == null) {
+			throw new FrameworkException(422, "No mapped type given, exiting.");
+		}
 
-					// input transformation requested
-					ActionContext ctx = new ActionContext(securityContext);
-					ctx.setConstant("input", convertedValue);
-					convertedValue = Scripting.evaluate(ctx, null, "${" + mappedAttributeFunction + "}", " virtual property " + mappedAttribute);
+		// fail early for unknown types
+		type(mappedType);
 
-				} else {
+		if (!path.add(getUuid())) {
+			throw new FrameworkException(422, "Pattern " + getUuid() + " is part of a cycle of sub pages, exiting.");
+		}
 
-					// if no custom transformation is given, try input converter
-					final PropertyConverter inputConverter = key.inputConverter(securityContext);
+		final List<Crawl.Pattern> subPatterns = new ArrayList<>();
 
-					if (inputConverter != null) {
-						convertedValue = inputConverter.convert(convertedValue);
-					}
-				}
+		// Sub patterns are only used for their selector, mapped attribute and sub page
+		for (final SourcePattern subPattern : getProperty(subPatternsProperty)) {
 
-				obj.setProperty(key, convertedValue);
+			final String subSelector = subPattern.getProperty(selectorProperty);
+			if (subSelector == null) {
+				throw new FrameworkException(422, "Sub pattern " + subPattern.getUuid() + " has no selector, exiting.");
 			}
 
-		// If the sub pattern has no mapped attribute but a sub page defined, query the patterns of the sub page
-		} else if (subPage != null) {
+			final SourcePage subPage  = subPattern.getProperty(subPageProperty);
+			final Crawl.Page compiled = subPage != null ? compile(subPage, path) : null;
 
-			final String pageUrl = subPage.getProperty(SourcePage.url);
-			final URI uri;
+			subPatterns.add(compile(subSelector, null, subPattern.getProperty(mappedAttributeProperty), subPattern.getProperty(mappedAttributeFunctionProperty), null, null, new ArrayList<>(), compiled));
+		}
 
-			try {
-				uri = new URI(pageUrl);
-			} catch (URISyntaxException ex) {
-				throw new FrameworkException(422, "Unable to parse sub page url: " + pageUrl);
-			}
+		path.remove(getUuid());
 
-			// This is the URL of the linked page derived from the enclosing selector
-			final String subUrl     = uri.getScheme() + "://" + uri.getAuthority() + doc.select(selector).attr("href");
-
-			// Extract the content of the linked page
-			final String subContent = getContent(subUrl);
-
-			// Parse the content into a document
-			final Document subDoc = Jsoup.parse(subContent);
-
-			final List<SourcePattern> subPagePatterns = subPage.getProperty(SourcePage.patterns);
-
-			// Loop through all patterns of the sub page
-			for (final SourcePattern subPagePattern : subPagePatterns) {
-
-				final Map<String, Object> params = new HashMap<>();
-				params.put("document", subDoc);
-				params.put("object", obj);
-
-				subPagePattern.extract(params);
-
-//				final String subPagePatternSelector = subPagePattern.getProperty(SourcePattern.selectorProperty);
-//
-//
-//				// Extract
-//				final String subEx = subDoc.select(subPagePatternSelector).text();
-//				final String subPagePatternType = subPagePattern.getProperty(SourcePattern.mappedTypeProperty);
-//
-//				if (subPagePatternType != null) {
-//
-//
-//					final Elements subParts = subDoc.select(subPagePatternSelector);
-//
-//					final Long j = 1L;
-//
-//					for (final Element subPart : subParts) {
-//
-//						final NodeInterface subObj = create(subPagePatternType);
-//
-//						final List<SourcePattern> subPagePatternPatterns = subPagePattern.getProperty(SourcePattern.subPatternsProperty);
-//
-//						for (final SourcePattern subPageSubPattern : subPagePatternPatterns) {
-//
-//
-//							final String subPagePatternSelector = subPageSubPattern.getProperty(SourcePattern.selectorProperty);
-//
-//
-//
-//							final String subPageSubPatternSelector = subPagePatternSelector + ":nth-child(" + j + ") > " + subPagePatternSelector;
-//
-//							extractAndSetValue(subObj, subDoc, subSelector, mappedType, subPatternMappedAttribute);
-//
-//
-//							final String subSubEx = subDoc.select(subPageSubPatternSelector).text();
-//
-//							if (subSubEx != null && subSubEx != = '' && subPageSubPattern.mappedAttribute != null) {
-//
-//							final PropertyKey key = StructrApp.key(type(mappedType), subPatternMappedAttribute);
-//							if (key != null) {
-//
-//								subObj.setProperty(key, subSubEx);
-//							}
-//
-//						}
-//
-//						final String subPagePatternMappedAttribute = subPagePattern.getProperty(SourcePattern.mappedAttributeProperty);
-//
-//						final PropertyKey key = StructrApp.key(type(mappedType), subPagePatternMappedAttribute);
-//						if (key != null) {
-//
-//							obj.setProperty(key, subSubEx);
-//						}
-//
-//					}
-//
-//				} else {
-//
-//					if (subEx != null && subEx != = '' && subPagePattern.mappedAttribute != null) {
-//						obj[subPagePattern.mappedAttribute] = subEx;
-	//					}
-			}
-		}
+		return compile(selector, mappedType, getProperty(mappedAttributeProperty), getProperty(mappedAttributeFunctionProperty), getProperty(fromProperty), getProperty(toProperty), subPatterns, null);
 	}
 
-	@Export
-	public void extract(final Map<String, Object> parameters) throws FrameworkException {
-
-		final SourcePage page = getProperty(sourcePageProperty);
+	private Crawl.Page compile(final SourcePage subPage, final Set<String> path) throws FrameworkException {
 
-		if (page == null) {
-			throw new FrameworkException(422, "Pattern has no source page, exiting.");
-		}
+		final String pageUrl = subPage.getProperty(SourcePage.url);
+		final URI uri;
 
-		final String selector        = getProperty(selectorProperty);
-		if (selector == null) {
-			throw new FrameworkException(422, "Pattern has no selector, exiting.");
+		try {
+			uri = new URI(pageUrl);
+		} catch (NullPointerException | URISyntaxException ex) {
+			throw new FrameworkException(422, "Unable to parse sub page url: " + pageUrl);
 		}
 
-		final Long   from     = getProperty(fromProperty);
-		final Long   to       = getProperty(toProperty);
+		final List<Crawl.Pattern> patterns = new ArrayList<>();
 
-		final List<SourcePattern> subPatterns = getProperty(subPatternsProperty);
+		for (final SourcePattern subPagePattern : subPage.getProperty(SourcePage.patterns)) {
+			patterns.add(subPagePattern.compile(path));
+		}
 
+		// Links to the sub page are resolved against the scheme and authority of its URL
+		return new Crawl.Page(uri.getScheme() + "://" + uri.getAuthority(), patterns);
+	}
 
-		Document doc = null;
-		NodeInterface parentObj = null;
+	private Crawl.Pattern compile(final String selector, final String mappedType, final String mappedAttribute, final String mappedAttributeFunction, final Long from, final Long to, final List<Crawl.Pattern> subPatterns, final Crawl.Page subPage) throws FrameworkException {
 
+		try {
 
-		if (parameters.containsKey("object")) {
+			return new Crawl.Pattern(selector, mappedType, mappedAttribute, mappedAttributeFunction, from, to, subPatterns, subPage);
 
-			parentObj = (NodeInterface) parameters.get("object");
+		} catch (Selector.SelectorParseException spex) {
 
+			throw new FrameworkException(422, "Invalid selector '" + selector + "': " + spex.getMessage());
 		}
+	}
 
-		if (parameters.containsKey("document")) {
-
-			doc = (Document) parameters.get("document");
-
-		} else {
-
-			final String url      = page.getProperty(SourcePage.url);
-			if (url == null) {
-				throw new FrameworkException(422, "This pattern's source page has no URL, exiting.");
-			}
-
-			// Get the content from the URL
-			final String content = getContent(url);
+	/**
+	 * Crawls the source page of this pattern and creates an object of the
+	 * mapped type for each element the selector matches.
+	 *
+	 * The crawl runs in the background and writes the objects in batches.
+	 * Unless the parameter "async" is true, this method waits for the crawl
+	 * to finish. It returns the statistics of the crawl.
+	 *
+	 * @param parameters
+	 * @return the statistics of the crawl
+	 * @throws FrameworkException
+	 */
+	@Export
+	public Map<String, Object> extract(final Map<String, Object> parameters) throws FrameworkException {
 
-			// Parse the document with Jsoup and extract the elements matched by the given selector
-			doc = Jsoup.parse(content);
+		final SourcePage page = getProperty(sourcePageProperty);
 
+		if (page == null) {
+			throw new FrameworkException(422, "Pattern has no source page, exiting.");
 		}
 
-		final String mappedType      = getProperty(mappedTypeProperty);
-		if (mappedType == null) {
-			throw new FrameworkException(422, "No mapped type given, exiting.");
+		final String url      = page.getProperty(SourcePage.url);
+		if (url == null) {
+			throw new FrameworkException(422, "This pattern's source page has no URL, exiting.");
 		}
 
-		final Elements parts = doc.select(selector);
-
-		// Loop through all elements found for this pattern; if a start index is given, start at this element
-		for (int i = (from != null ? from.intValue() : 1); i<= (to != null ? to : parts.size()); i++) {
-
-			// If no object was given (from a higher-level pattern), create a new object of the given type
-			final NodeInterface obj = (parentObj == null ? create(mappedType) : parentObj);
+		final CrawlScheduler scheduler           = CrawlScheduler.getInstance();
+		final Crawl crawl                        = new Crawl(securityContext, scheduler, getSiteSettings(), url, compile(new HashSet<>()), Settings.HttpThreads.getValue() * 2, Settings.CrawlerBatchSize.getValue());
+		final Future<Map<String, Object>> future = scheduler.submit(crawl);
 
-			if (subPatterns.size() > 0) {
-
-				// Loop through the sub patterns of this pattern
-				for (final SourcePattern subPattern : subPatterns) {
+		if (parameters != null && Boolean.TRUE.equals(parameters.get("async"))) {
+			return null;
+		}
 
-					final String subSelector = selector + ":nth-child(" + i + ") > " + subPattern.getProperty(SourcePattern.selectorProperty);
+		try {
 
-					final String subPatternMappedAttribute         = subPattern.getProperty(SourcePattern.mappedAttributeProperty);
-					final String subPatternMappedAttributeFunction = subPattern.getProperty(SourcePattern.mappedAttributeFunctionProperty);
-					final SourcePage subPatternSubPage             = subPattern.getProperty(SourcePattern.subPageProperty);
+			return future.get();
 
-					extractAndSetValue(obj, doc, subSelector, mappedType, subPatternMappedAttribute, subPatternMappedAttributeFunction, subPatternSubPage);
+		} catch (InterruptedException iex) {
 
-				}
+			Thread.currentThread().interrupt();
 
-			} else {
+			throw new FrameworkException(422, "Interrupted while waiting for crawl of " + url);
 
-				final String mappedAttribute         = getProperty(mappedAttributeProperty);
-				final String mappedAttributeFunction = getProperty(mappedAttributeFunctionProperty);
+		} catch (ExecutionException eex) {
 
-				extractAndSetValue(obj, doc, selector, mappedType, mappedAttribute, mappedAttributeFunction, null);
+			final Throwable cause = eex.getCause();
+			if (cause instanceof FrameworkException) {
 
+				throw (FrameworkException)cause;
 			}
 
+			throw new FrameworkException(422, "Unable to crawl " + url + ": " + cause.getMessage());
 		}
-
 	}
 }
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.structr.crawler.CrawlScheduler.Site;
+import org.structr.rest.common.HttpFetcher;
+import org.structr.rest.common.TestHttpServer;
+
+/**
+ * Tests the crawl scheduler against a local HTTP server.
+ */
+public class CrawlSchedulerTest {
+
+	private static final String CONTENT = "<html><head></head><body><p>Test</p></body></html>";
+
+	private final Site site = new Site(null, null, null, "session=test");
+
+	@Rule
+	public final TestHttpServer server = new TestHttpServer();
+
+	@Before
+	public void setup() {
+
+		server.handle("/page", 300, this::handlePage);
+		server.handle("/missing", exchange -> TestHttpServer.respond(exchange, 404, "Not found"));
+	}
+
+	@Test
+	public void testGet() throws Exception {
+
+		final HttpFetcher fetcher      = new HttpFetcher("Test", 2, 2, 10);
+		final CrawlScheduler scheduler = new CrawlScheduler(fetcher, 0);
+
+		try {
+
+			assertEquals(CONTENT, scheduler.get(server.getBaseUrl() + "/page", site).getText());
+
+			try {
+
+				scheduler.get(server.getBaseUrl() + "/missing", site);
+				fail("Error status should throw an exception");
+
+			} catch (IOException expected) {}
+
+		} finally {
+
+			scheduler.shutdown();
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testHostDelay() throws Exception {
+
+		final HttpFetcher fetcher          = new HttpFetcher("Test", 8, 2, 10);
+		final CrawlScheduler scheduler     = new CrawlScheduler(fetcher, 100);
+		final List<Future<String>> futures = new ArrayList<>();
+
+		try {
+
+			for (int i=0; i<6; i++) {
+
+				final String url = server.getBaseUrl() + "/page?" + i;
+
+				futures.add(scheduler.execute(url, () -> scheduler.get(url, site).getText()));
+			}
+
+			for (final Future<String> future : futures) {
+				assertEquals(CONTENT, future.get());
+			}
+
+			assertEquals(6, server.getRequests());
+			server.assertHostLimit(2);
+			server.assertHostDelay(90);
+
+		} finally {
+
+			scheduler.shutdown();
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testCompiledSelector() {
+
+		final Document doc = Jsoup.parse("<table><tr><td><a href='/a'>A</a></td><td>1</td></tr><tr><td><a href='/b'>B</a></td><td>2</td></tr></table>");
+
+		final CompiledSelector rows                 = CompiledSelector.compile("tr");
+		final CompiledSelector link                 = CompiledSelector.compile("td a");
+		final Map<Integer, List<Element>> bySibling = CompiledSelector.groupBySiblingIndex(rows.select(doc));
+
+		assertEquals(2, bySibling.size());
+		assertTrue(rows == CompiledSelector.compile("tr"));
+
+		for (int i=1; i<=2; i++) {
+
+			assertEquals(doc.select("tr:nth-child(" + i + ") > td a").text(), link.selectChildren(bySibling.get(i)).text());
+			assertEquals(doc.select("tr:nth-child(" + i + ") > td a").attr("href"), link.selectChildren(bySibling.get(i)).attr("href"));
+		}
+
+		assertEquals(0, link.selectChildren(bySibling.get(3)).size());
+	}
+
+	// ----- private methods -----
+	private void handlePage(final HttpExchange exchange) throws IOException {
+
+		if ("session=test".equals(exchange.getRequestHeaders().getFirst("Cookie"))) {
+
+			TestHttpServer.respond(exchange, 200, "text/html; charset=utf-8", CONTENT);
+
+		} else {
+
+			TestHttpServer.respond(exchange, 403, "");
+		}
+	}
+}
@@ -18,13 +18,18 @@
  */
 package org.structr.csv;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -38,14 +43,18 @@ import org.structr.core.property.DateProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.parser.DatePropertyParser;
+import org.structr.web.entity.File;
 import org.structr.web.function.UiFunction;
 
 /**
  *
  */
 public class ToCsvFunction extends UiFunction {
-	public static final String ERROR_MESSAGE_TO_CSV    = "Usage: ${to_csv(nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain]]]])}. Example: ${to_csv(find('Page'), 'ui')}";
-	public static final String ERROR_MESSAGE_TO_CSV_JS = "Usage: ${{Structr.to_csv(nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain]]]])}}. Example: ${{Structr.to_csv(Structr.find('Page'), 'ui'))}}";
+
+	public static final String ERROR_MESSAGE_TO_CSV    = "Usage: ${to_csv([file, ]nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain]]]])}. Example: ${to_csv(find('Page'), 'ui')}";
+	public static final String ERROR_MESSAGE_TO_CSV_JS = "Usage: ${{Structr.to_csv([file, ]nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain]]]])}}. Example: ${{Structr.to_csv(Structr.find('Page'), 'ui'))}}";
+
+	private static final int FLUSH_INTERVAL = 1000;
 
 	@Override
 	public String getName() {
@@ -54,6 +63,15 @@ public class ToCsvFunction extends UiFunction {
 	@Override
 	public Object apply(ActionContext ctx, Object caller, Object[] sources) throws FrameworkException {
 
+		File file = null;
+
+		// if the first parameter is a file, the CSV is written to the file instead of being returned
+		if (sources != null && sources.length > 0 && sources[0] instanceof File) {
+
+			file    = (File)sources[0];
+			sources = Arrays.copyOfRange(sources, 1, sources.length);
+		}
+
 		try {
 
 			if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 8)) {
@@ -111,6 +129,23 @@ public class ToCsvFunction extends UiFunction {
 				}
 				try {
 
+					if (file != null) {
+
+						final OutputStream os = file.getOutputStream(true, false);
+						if (os == null) {
+
+							return "ERROR: Unable to write to file " + file.getUuid();
+						}
+
+						// stream the rows into the file instead of building the whole CSV in memory
+						try (final Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8))) {
+
+							writeCsv(nodes, writer, propertyView, properties, quoteChar.charAt(0), delimiterChar.charAt(0), recordSeparator, includeHeader, localizeHeader, headerLocalizationDomain, ctx.getLocale());
+						}
+
+						return file;
+					}
+
 					final StringWriter writer = new StringWriter();
 					writeCsv(nodes, writer, propertyView, properties, quoteChar.charAt(0), delimiterChar.charAt(0), recordSeparator, includeHeader, localizeHeader, headerLocalizationDomain, ctx.getLocale());
 					return writer.toString();
@@ -165,8 +200,14 @@ public class ToCsvFunction extends UiFunction {
 		writeCsv(list, out, propertyView, properties, quoteChar, delimiterChar, recordSeparator, includeHeader, localizeHeader, headerLocalizationDomain, locale);
 	}
 
+	/**
+	 * Writes the given objects as CSV. The rows are written one by one as
+	 * the objects are read from the given iterable, and the output is
+	 * flushed periodically, so that no more than a single row is held in
+	 * memory.
+	 */
 	public static void writeCsv(
-			final List list,
+			final Iterable list,
 			final Writer out,
 			final String propertyView,
 			final List<String> properties,
@@ -179,7 +220,11 @@ public class ToCsvFunction extends UiFunction {
 			final Locale locale
 	) throws IOException {
 
+		final Iterator iterator = list.iterator();
 		final StringBuilder row = new StringBuilder();
+		boolean hasFirst        = iterator.hasNext();
+		Object first            = hasFirst ? iterator.next() : null;
+		int count               = 0;
 
 		if (includeHeader) {
 
@@ -189,7 +234,7 @@ public class ToCsvFunction extends UiFunction {
 
 			if (propertyView != null) {
 
-				final Object obj = list.get(0);
+				final Object obj = first;
 
 				if (obj instanceof GraphObject) {
 					for (PropertyKey key : ((GraphObject)obj).getPropertyKeys(propertyView)) {
@@ -228,7 +273,12 @@ public class ToCsvFunction extends UiFunction {
 
 		}
 
-		for (final Object obj : list) {
+		while (hasFirst || iterator.hasNext()) {
+
+			// the first object has already been read for the header
+			final Object obj = hasFirst ? first : iterator.next();
+
+			hasFirst = false;
 
 			row.setLength(0);
 
@@ -270,12 +320,17 @@ public class ToCsvFunction extends UiFunction {
 				}
 			}
 
-			// Replace \r and \n so we dont get multi-line CSV (needs to be four backslashes because regex)
-			final String rowWithoutRecordSeparator = row.toString().replaceAll("\n", "\\\\n").replaceAll("\r", "\\\\r");
+			// Replace \r and \n so we dont get multi-line CSV
+			final String rowWithoutRecordSeparator = StringUtils.replace(StringUtils.replace(row.toString(), "\n", "\\n"), "\r", "\\r");
 
-			out.append(rowWithoutRecordSeparator).append(recordSeparator).flush();
+			out.append(rowWithoutRecordSeparator).append(recordSeparator);
+
+			if (++count % FLUSH_INTERVAL == 0) {
+				out.flush();
+			}
 		}
 
+		out.flush();
 	}
 
 	private static boolean appendColumnString (final StringBuilder row, final Object value, boolean isFirstColumn, final char quoteChar, final char delimiter) {
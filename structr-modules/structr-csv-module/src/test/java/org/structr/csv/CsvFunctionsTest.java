@@ -18,8 +18,11 @@
  */
 package org.structr.csv;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Locale;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -37,6 +40,8 @@ import org.structr.csv.entity.CsvTestEnum;
 import org.structr.csv.entity.CsvTestOne;
 import org.structr.csv.entity.CsvTestTwo;
 import org.structr.schema.action.ActionContext;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
 
 public class CsvFunctionsTest extends StructrCsvModuleTest {
 
@@ -369,4 +374,57 @@ public class CsvFunctionsTest extends StructrCsvModuleTest {
 		}
 	}
 
+	@Test
+	public void testToCsvWithFile() {
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=1; i<=5; i++) {
+
+				final CsvTestOne csvTestOne = app.create(CsvTestOne.class, "CSV Test Node " + StringUtils.leftPad(Integer.toString(i), 4, "0"));
+				csvTestOne.setProperty(CsvTestOne.index, i);
+			}
+
+			FileHelper.createFile(securityContext, new byte[0], "text/csv", File.class, "export.csv");
+
+			tx.success();
+
+		} catch (IOException | FrameworkException ex) {
+
+			logger.warn("", ex);
+
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(securityContext, null);
+			final String expected   = "\"name\";\"index\"\n"
+					+ "\"CSV Test Node 0001\";\"1\"\n"
+					+ "\"CSV Test Node 0002\";\"2\"\n"
+					+ "\"CSV Test Node 0003\";\"3\"\n"
+					+ "\"CSV Test Node 0004\";\"4\"\n"
+					+ "\"CSV Test Node 0005\";\"5\"\n";
+
+			Scripting.replaceVariables(ctx, null, "${to_csv(first(find('File', 'name', 'export.csv')), find('CsvTestOne'), merge('name', 'index'))}");
+
+			final File file = app.nodeQuery(File.class).andName("export.csv").getFirst();
+
+			try (final InputStream is = file.getInputStream()) {
+
+				assertEquals("Invalid content of file written by to_csv()", expected, IOUtils.toString(is, "UTF-8"));
+			}
+
+			// the string result is not affected by the file variant
+			assertEquals("Invalid result of to_csv() call without file", expected, Scripting.replaceVariables(ctx, null, "${to_csv(find('CsvTestOne'), merge('name', 'index'))}"));
+
+			tx.success();
+
+		} catch (IOException | FrameworkException ex) {
+
+			logger.warn("", ex);
+
+			fail("Unexpected exception");
+		}
+	}
 }
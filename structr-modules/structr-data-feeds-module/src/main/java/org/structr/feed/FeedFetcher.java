@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.feed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.util.FixedSizeCache;
+import org.structr.rest.common.HttpFetcher;
+
+/**
+ * Fetches remote feeds and documents concurrently.
+ *
+ * The requests are executed by an {@link HttpFetcher}, which limits the
+ * number of concurrent requests to the same host. Requests can be
+ * conditional, i.e. send the ETag and Last-Modified values of an earlier
+ * response, so that unchanged resources are not transferred again.
+ *
+ * Remote documents are cached by URL and revalidated with a conditional
+ * request, see {@link #getAsStream(java.lang.String, java.lang.Integer)}.
+ */
+public class FeedFetcher {
+
+	private static final Logger logger             = LoggerFactory.getLogger(FeedFetcher.class.getName());
+	private static final int MAX_CACHED_SIZE       = 4 * 1024 * 1024;
+	private static FeedFetcher instance            = null;
+
+	private final FixedSizeCache<String, Response> documents = new FixedSizeCache<>(100);
+	private HttpFetcher fetcher                              = null;
+
+	public FeedFetcher(final HttpFetcher fetcher) {
+		this.fetcher = fetcher;
+	}
+
+	public static synchronized FeedFetcher getInstance() {
+
+		if (instance == null) {
+
+			instance = new FeedFetcher(HttpFetcher.getInstance());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Schedules a GET request for the given URL. If ETag or Last-Modified
+	 * are set, the request is conditional and the response has status 304
+	 * if the resource has not changed.
+	 *
+	 * @param url
+	 * @param etag the ETag of an earlier response, or null
+	 * @param lastModified the Last-Modified value of an earlier response, or null
+	 *
+	 * @return the future response, which fails if the URL is invalid
+	 */
+	public Future<Response> fetch(final String url, final String etag, final String lastModified) {
+		return fetcher.submit(url, () -> execute(url, etag, lastModified, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Returns the content of the given URL as a stream. The content is
+	 * cached and revalidated with a conditional request on each access,
+	 * or only after the given number of seconds if cacheForSeconds is set.
+	 *
+	 * @param url
+	 * @param cacheForSeconds the number of seconds to use the cached content without revalidation, or null
+	 *
+	 * @return the content stream, or null if the content can not be fetched
+	 */
+	public InputStream getAsStream(final String url, final Integer cacheForSeconds) {
+
+		final Response cached = documents.get(url);
+
+		if (cached != null && cacheForSeconds != null && System.currentTimeMillis() - cached.fetched < cacheForSeconds * 1000L) {
+			return new ByteArrayInputStream(cached.content);
+		}
+
+		try {
+
+			final Response response = fetcher.submit(url, () -> execute(url, cached != null ? cached.etag : null, cached != null ? cached.lastModified : null, MAX_CACHED_SIZE)).get();
+
+			if (response.isNotModified() && cached != null) {
+
+				cached.fetched = System.currentTimeMillis();
+
+				return new ByteArrayInputStream(cached.content);
+			}
+
+			if (response.isSuccess()) {
+
+				if (response.remaining != null) {
+
+					// too large to cache
+					documents.remove(url);
+
+					return new SequenceInputStream(new ByteArrayInputStream(response.content), response.remaining);
+				}
+
+				if (response.etag != null || response.lastModified != null || cacheForSeconds != null) {
+					documents.put(url, response);
+				}
+
+				return new ByteArrayInputStream(response.content);
+			}
+
+			logger.warn("Unable to fetch content from {}, status {}", url, response.status);
+
+		} catch (InterruptedException | ExecutionException ex) {
+
+			logger.warn("Unable to fetch content from {}: {}", url, ex.getMessage());
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private Response execute(final String url, final String etag, final String lastModified, final int maxSize) throws IOException {
+
+		final Map<String, String> headers = new LinkedHashMap<>();
+
+		headers.put("Accept-Encoding", "identity");
+
+		if (StringUtils.isNotBlank(etag)) {
+			headers.put("If-None-Match", etag);
+		}
+
+		if (StringUtils.isNotBlank(lastModified)) {
+			headers.put("If-Modified-Since", lastModified);
+		}
+
+		final HttpURLConnection connection = fetcher.get(url, headers);
+		final int status                   = connection.getResponseCode();
+		final Response response            = new Response(status, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), connection.getContentType());
+
+		if (response.isSuccess()) {
+
+			final InputStream is           = connection.getInputStream();
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			final byte[] buffer            = new byte[8192];
+			int count                      = 0;
+			int len                        = 0;
+
+			while (len < maxSize && (count = is.read(buffer, 0, Math.min(buffer.length, maxSize - len))) != -1) {
+
+				os.write(buffer, 0, count);
+				len += count;
+			}
+
+			response.content = os.toByteArray();
+
+			if (len >= maxSize) {
+
+				// leave the rest of the content to the caller
+				response.remaining = is;
+
+			} else {
+
+				is.close();
+			}
+
+		} else {
+
+			// consume the error stream so that the connection can be reused
+			HttpFetcher.discard(connection);
+		}
+
+		return response;
+	}
+
+	// ----- nested classes -----
+	public static class Response {
+
+		private InputStream remaining = null;
+		private String lastModified   = null;
+		private String contentType    = null;
+		private byte[] content        = null;
+		private String etag           = null;
+		private long fetched          = 0L;
+		private int status            = 0;
+
+		public Response(final int status, final String etag, final String lastModified, final String contentType) {
+
+			this.fetched      = System.currentTimeMillis();
+			this.status       = status;
+			this.etag         = etag;
+			this.lastModified = lastModified;
+			this.contentType  = contentType;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public InputStream getContent() {
+			return content != null ? new ByteArrayInputStream(content) : null;
+		}
+
+		public boolean isSuccess() {
+			return status >= 200 && status < 300;
+		}
+
+		public boolean isNotModified() {
+			return status == HttpURLConnection.HTTP_NOT_MODIFIED;
+		}
+	}
+}
@@ -18,18 +18,32 @@
  */
 package org.structr.feed.cron;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.agent.Agent;
 import org.structr.agent.ReturnValue;
 import org.structr.agent.Task;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
+import org.structr.feed.FeedFetcher;
+import org.structr.feed.FeedFetcher.Response;
 import org.structr.feed.entity.DataFeed;
 
 /**
+ * Updates all data feeds that are due.
  *
+ * The feeds are fetched concurrently with conditional requests. Feeds that
+ * have not changed are marked as updated in a single transaction, the
+ * others are updated in a transaction per feed.
  */
 public class UpdateFeedAgent<T extends DataFeed> extends Agent<T> {
 
@@ -40,19 +54,77 @@ public class UpdateFeedAgent<T extends DataFeed> extends Agent<T> {
 
 		logger.debug("Processing task {}", task.getClass().getName());
 
-		final App app = StructrApp.getInstance();
+		final Map<String, Future<Response>> responses = new LinkedHashMap<>();
+		final List<String> unchanged                  = new LinkedList<>();
+		final FeedFetcher fetcher                     = FeedFetcher.getInstance();
+		final App app                                 = StructrApp.getInstance();
+
 		try (final Tx tx = app.tx(true, true, false)) {
 
 			for (DataFeed feed : task.getWorkObjects()) {
 
-				logger.debug("Updating data feed {} if due", feed.getProperty(DataFeed.name));
+				final String url = feed.getUrl();
+
+				if (StringUtils.isNotBlank(url) && DataFeed.isDue(feed)) {
+
+					logger.debug("Updating data feed {}", feed.getProperty(DataFeed.name));
 
-				feed.updateIfDue();
+					responses.put(feed.getUuid(), fetcher.fetch(url, feed.getHttpEtag(), feed.getHttpLastModified()));
+				}
 			}
 
 			tx.success();
 		}
 
+		for (final Map.Entry<String, Future<Response>> entry : responses.entrySet()) {
+
+			final String uuid = entry.getKey();
+
+			try {
+
+				final Response response = entry.getValue().get();
+				if (response.isNotModified()) {
+
+					unchanged.add(uuid);
+					continue;
+				}
+
+				try (final Tx tx = app.tx(true, true, false)) {
+
+					final DataFeed feed = app.get(DataFeed.class, uuid);
+					if (feed != null) {
+
+						DataFeed.updateFeed(feed, response);
+						feed.cleanUp();
+					}
+
+					tx.success();
+				}
+
+			} catch (ExecutionException | FrameworkException ex) {
+
+				logger.warn("Unable to update data feed {}: {}", uuid, ex.getMessage());
+			}
+		}
+
+		if (!unchanged.isEmpty()) {
+
+			try (final Tx tx = app.tx(true, true, false)) {
+
+				for (final String uuid : unchanged) {
+
+					final DataFeed feed = app.get(DataFeed.class, uuid);
+					if (feed != null) {
+
+						DataFeed.updateFeed(feed, new Response(304, null, null, null));
+						feed.cleanUp();
+					}
+				}
+
+				tx.success();
+			}
+		}
+
 		return ReturnValue.Success;
 	}
 
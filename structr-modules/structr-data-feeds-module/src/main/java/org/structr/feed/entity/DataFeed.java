@@ -29,10 +29,12 @@ import com.rometools.rome.io.XmlReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.net.URI;
-import java.net.URL;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.api.util.Iterables;
 import org.structr.common.GraphObjectComparator;
@@ -45,6 +47,8 @@ import org.structr.core.entity.Relation.Cardinality;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.feed.FeedFetcher;
+import org.structr.feed.FeedFetcher.Response;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
@@ -69,6 +73,8 @@ public interface DataFeed extends NodeInterface {
 		type.addDateProperty("lastUpdated",    PropertyView.Ui);  // last updated
 		type.addLongProperty("maxAge",         PropertyView.Ui);  // maximum age of the oldest feed entry in milliseconds
 		type.addIntegerProperty("maxItems",    PropertyView.Ui);  // maximum number of feed entries to retain
+		type.addStringProperty("httpEtag",     PropertyView.Ui);  // ETag of the last response
+		type.addStringProperty("httpLastModified", PropertyView.Ui);  // Last-Modified header of the last response
 
 		type.addPropertyGetter("items",            Iterable.class);
 		type.addPropertyGetter("url",              String.class);
@@ -78,6 +84,8 @@ public interface DataFeed extends NodeInterface {
 		type.addPropertyGetter("lastUpdated",      Date.class);
 		type.addPropertyGetter("maxAge",           Long.class);
 		type.addPropertyGetter("maxItems",         Integer.class);
+		type.addPropertyGetter("httpEtag",         String.class);
+		type.addPropertyGetter("httpLastModified", String.class);
 
 		type.overrideMethod("onCreation", true,  "updateFeed(true);");
 
@@ -112,6 +120,8 @@ public interface DataFeed extends NodeInterface {
 	Date getLastUpdated();
 	Long getMaxAge();
 	Integer getMaxItems();
+	String getHttpEtag();
+	String getHttpLastModified();
 
 	Iterable<FeedItem> getItems();
 
@@ -186,10 +196,7 @@ public interface DataFeed extends NodeInterface {
 
 	static void updateIfDue(final DataFeed thisFeed) {
 
-		final Date lastUpdate = thisFeed.getLastUpdated();
-		final Long interval   = thisFeed.getUpdateInterval();
-
-		if (lastUpdate == null || (interval != null && new Date().after(new Date(lastUpdate.getTime() + interval)))) {
+		if (DataFeed.isDue(thisFeed)) {
 
 			// Update feed and clean-up afterwards
 			thisFeed.updateFeed(true);
@@ -197,95 +204,219 @@ public interface DataFeed extends NodeInterface {
 
 	}
 
+	static boolean isDue(final DataFeed thisFeed) {
+
+		final Date lastUpdate = thisFeed.getLastUpdated();
+		final Long interval   = thisFeed.getUpdateInterval();
+
+		return lastUpdate == null || (interval != null && new Date().after(new Date(lastUpdate.getTime() + interval)));
+	}
+
 	static void updateFeed(final DataFeed thisFeed, final boolean cleanUp) {
 
 		final String remoteUrl = thisFeed.getUrl();
 		if (StringUtils.isNotBlank(remoteUrl)) {
 
-			final SecurityContext securityContext = thisFeed.getSecurityContext();
-			final App app                         = StructrApp.getInstance(securityContext);
-
 			try {
 
-				final PropertyKey<Date> dateKey  = StructrApp.key(FeedItem.class, "pubDate");
-				final PropertyKey<String> urlKey = StructrApp.key(FeedItem.class, "url");
-                                final URL remote                 = new URL(remoteUrl);
-                                final SyndFeedInput input        = new SyndFeedInput();
+				final Response response = FeedFetcher.getInstance().fetch(remoteUrl, thisFeed.getHttpEtag(), thisFeed.getHttpLastModified()).get();
 
-				try (final Reader reader = new XmlReader(remote)) {
+				DataFeed.updateFeed(thisFeed, response);
 
-					final SyndFeed      feed      = input.build(reader);
-					final List<SyndEntry> entries = feed.getEntries();
+			} catch (InterruptedException | ExecutionException ex) {
+				logger.error("Error while updating feed", ex);
+			}
+		}
 
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "feedType"),    feed.getFeedType());
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "description"), feed.getDescription());
+		if (cleanUp) {
+			thisFeed.cleanUp();
+		}
+	}
 
-					final List<FeedItem> newItems = Iterables.toList(thisFeed.getItems());
+	/**
+	 * Updates the given feed from the given response. Only the entries that
+	 * are not known yet are created, and only the properties that have
+	 * changed are written.
+	 *
+	 * @param thisFeed
+	 * @param response
+	 */
+	static void updateFeed(final DataFeed thisFeed, final Response response) {
 
-					for (final SyndEntry entry : entries) {
+		final SecurityContext securityContext = thisFeed.getSecurityContext();
+		final App app                         = StructrApp.getInstance(securityContext);
 
-						final PropertyMap props = new PropertyMap();
+		try {
 
-						final String link = entry.getLink();
+			final PropertyKey<Date> lastUpdatedKey = StructrApp.key(DataFeed.class, "lastUpdated");
 
-						// Check if item with this link already exists
-						if (app.nodeQuery(FeedItem.class).and(urlKey, link).getFirst() == null) {
+			if (response.isNotModified()) {
 
-							props.put(urlKey,                                        entry.getLink());
-							props.put(StructrApp.key(FeedItem.class, "name"),        entry.getTitle());
-							props.put(StructrApp.key(FeedItem.class, "author"),      entry.getAuthor());
-							props.put(StructrApp.key(FeedItem.class, "comments"),    entry.getComments());
-							props.put(StructrApp.key(FeedItem.class, "description"), entry.getDescription().getValue());
+				thisFeed.setProperty(lastUpdatedKey, new Date());
+				return;
+			}
+
+			if (!response.isSuccess()) {
+
+				logger.warn("Unable to update feed {}, server responded with status {}", thisFeed.getUrl(), response.getStatus());
+				return;
+			}
+
+			final PropertyKey<Date> dateKey   = StructrApp.key(FeedItem.class, "pubDate");
+			final PropertyKey<String> urlKey  = StructrApp.key(FeedItem.class, "url");
+			final PropertyKey<String> guidKey = StructrApp.key(FeedItem.class, "guid");
+			final SyndFeedInput input         = new SyndFeedInput();
+			final String contentType          = response.getContentType();
+
+			try (final Reader reader = contentType != null ? new XmlReader(response.getContent(), contentType) : new XmlReader(response.getContent())) {
+
+				final SyndFeed      feed      = input.build(reader);
+				final List<FeedItem> newItems = Iterables.toList(thisFeed.getItems());
+				final Set<String> known       = new HashSet<>();
+				final PropertyMap changes     = new PropertyMap();
+
+				for (final FeedItem item : newItems) {
 
-							final FeedItem item = app.create(FeedItem.class, props);
-							item.setProperty(dateKey, entry.getPublishedDate());
+					addIfNotNull(known, item.getProperty(guidKey));
+					addIfNotNull(known, item.getUrl());
+				}
+
+				setIfChanged(thisFeed, changes, StructrApp.key(DataFeed.class, "feedType"),         feed.getFeedType());
+				setIfChanged(thisFeed, changes, StructrApp.key(DataFeed.class, "description"),      feed.getDescription());
+				setIfChanged(thisFeed, changes, StructrApp.key(DataFeed.class, "httpEtag"),         response.getEtag());
+				setIfChanged(thisFeed, changes, StructrApp.key(DataFeed.class, "httpLastModified"), response.getLastModified());
+
+				final List<SyndEntry> entries = DataFeed.getNewEntries(feed.getEntries(), known);
+
+				for (final SyndEntry entry : entries) {
 
-							final List<FeedItemContent> itemContents = new LinkedList<>();
-							final List<FeedItemEnclosure> itemEnclosures = new LinkedList<>();
+					final String link = entry.getLink();
 
-							//Get and add all contents
-							final List<SyndContent> contents = entry.getContents();
-							for (final SyndContent content : contents) {
+					// Item URLs are unique, the item may already exist in another feed
+					if (link != null && app.nodeQuery(FeedItem.class).and(urlKey, link).getFirst() != null) {
+						continue;
+					}
+
+					final PropertyMap props = new PropertyMap();
 
-								final FeedItemContent itemContent = app.create(FeedItemContent.class);
-								itemContent.setValue(content.getValue());
+					props.put(urlKey,                                        link);
+					props.put(guidKey,                                       DataFeed.getGuid(entry));
+					props.put(StructrApp.key(FeedItem.class, "name"),        entry.getTitle());
+					props.put(StructrApp.key(FeedItem.class, "author"),      entry.getAuthor());
+					props.put(StructrApp.key(FeedItem.class, "comments"),    entry.getComments());
+					props.put(StructrApp.key(FeedItem.class, "description"), entry.getDescription() != null ? entry.getDescription().getValue() : null);
 
-								itemContents.add(itemContent);
-							}
+					final FeedItem item = app.create(FeedItem.class, props);
+					item.setProperty(dateKey, entry.getPublishedDate());
 
-							//Get and add all enclosures
-							final List<SyndEnclosure> enclosures = entry.getEnclosures();
-							for (final SyndEnclosure enclosure : enclosures){
+					final List<FeedItemContent> itemContents = new LinkedList<>();
+					final List<FeedItemEnclosure> itemEnclosures = new LinkedList<>();
 
-								final FeedItemEnclosure itemEnclosure = app.create(FeedItemEnclosure.class);
+					//Get and add all contents
+					final List<SyndContent> contents = entry.getContents();
+					for (final SyndContent content : contents) {
 
-								itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "url"),             enclosure.getUrl());
-								itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureLength"), enclosure.getLength());
-								itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureType"),   enclosure.getType());
+						final FeedItemContent itemContent = app.create(FeedItemContent.class);
+						itemContent.setValue(content.getValue());
+
+						itemContents.add(itemContent);
+					}
 
-								itemEnclosures.add(itemEnclosure);
-							}
+					//Get and add all enclosures
+					final List<SyndEnclosure> enclosures = entry.getEnclosures();
+					for (final SyndEnclosure enclosure : enclosures){
 
-							item.setProperty(StructrApp.key(FeedItem.class, "contents"),   itemContents);
-							item.setProperty(StructrApp.key(FeedItem.class, "enclosures"), itemEnclosures);
+						final FeedItemEnclosure itemEnclosure = app.create(FeedItemEnclosure.class);
 
-							newItems.add(item);
+						itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "url"),             enclosure.getUrl());
+						itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureLength"), enclosure.getLength());
+						itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureType"),   enclosure.getType());
 
-							logger.debug("Created new item: {} ({}) ", item.getProperty(FeedItem.name), item.getProperty(dateKey));
-						}
+						itemEnclosures.add(itemEnclosure);
 					}
 
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "items"),       newItems);
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "lastUpdated"), new Date());
+					item.setProperty(StructrApp.key(FeedItem.class, "contents"),   itemContents);
+					item.setProperty(StructrApp.key(FeedItem.class, "enclosures"), itemEnclosures);
+
+					newItems.add(item);
+
+					logger.debug("Created new item: {} ({}) ", item.getProperty(FeedItem.name), item.getProperty(dateKey));
 				}
 
-			} catch (IllegalArgumentException | IOException | FeedException | FrameworkException ex) {
-				logger.error("Error while updating feed", ex);
+				if (!entries.isEmpty()) {
+					changes.put(StructrApp.key(DataFeed.class, "items"), newItems);
+				}
+
+				changes.put(lastUpdatedKey, new Date());
+
+				thisFeed.setProperties(securityContext, changes);
 			}
+
+		} catch (IllegalArgumentException | IOException | FeedException | FrameworkException ex) {
+			logger.error("Error while updating feed", ex);
 		}
+	}
 
-		if (cleanUp) {
-			thisFeed.cleanUp();
+	/**
+	 * Returns the entries whose GUID or link is not contained in the given
+	 * set, the set is updated with the GUIDs and links of the new entries.
+	 *
+	 * @param entries
+	 * @param known the GUIDs and links of the existing items
+	 * @return the new entries
+	 */
+	static List<SyndEntry> getNewEntries(final List<SyndEntry> entries, final Set<String> known) {
+
+		final List<SyndEntry> newEntries = new LinkedList<>();
+
+		for (final SyndEntry entry : entries) {
+
+			final String guid = DataFeed.getGuid(entry);
+			final String link = entry.getLink();
+
+			if ((guid == null || !known.contains(guid)) && (link == null || !known.contains(link))) {
+
+				newEntries.add(entry);
+
+				addIfNotNull(known, guid);
+				addIfNotNull(known, link);
+			}
+		}
+
+		return newEntries;
+	}
+
+	/**
+	 * Returns the GUID of the given entry, or its link if the entry has no
+	 * GUID.
+	 *
+	 * @param entry
+	 * @return the GUID
+	 */
+	static String getGuid(final SyndEntry entry) {
+
+		final String uri = entry.getUri();
+		if (StringUtils.isNotBlank(uri)) {
+
+			return uri;
+		}
+
+		return entry.getLink();
+	}
+
+	static void addIfNotNull(final Set<String> set, final String value) {
+
+		if (value != null) {
+			set.add(value);
+		}
+	}
+
+	static <T> void setIfChanged(final DataFeed thisFeed, final PropertyMap changes, final PropertyKey<T> key, final T value) {
+
+		final T existing = thisFeed.getProperty(key);
+
+		if (existing == null ? value != null : !existing.equals(value)) {
+			changes.put(key, value);
 		}
 	}
 }
@@ -28,7 +28,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Relation.Cardinality;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.PropertyKey;
-import org.structr.rest.common.HttpHelper;
+import org.structr.feed.FeedFetcher;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
@@ -51,6 +51,7 @@ public interface FeedItem extends NodeInterface, Indexable {
 		type.setImplements(URI.create("#/definitions/Indexable"));
 
 		type.addStringProperty("url",              PropertyView.Public, PropertyView.Ui).setRequired(true).setUnique(true).setIndexed(true);
+		type.addStringProperty("guid",             PropertyView.Public, PropertyView.Ui).setIndexed(true);
 		type.addStringProperty("author",           PropertyView.Public, PropertyView.Ui);
 		type.addStringProperty("comments",         PropertyView.Public, PropertyView.Ui);
 		type.addStringProperty("description",      PropertyView.Public, PropertyView.Ui);
@@ -60,6 +61,7 @@ public interface FeedItem extends NodeInterface, Indexable {
 		type.addIntegerProperty("version",         PropertyView.Ui).setIndexed(true).setReadOnly(true);
 
 		type.addPropertyGetter("url",              String.class);
+		type.addPropertyGetter("cacheForSeconds",  Integer.class);
 		type.addPropertyGetter("contentType",      String.class);
 		type.addPropertyGetter("extractedContent", String.class);
 
@@ -85,6 +87,7 @@ public interface FeedItem extends NodeInterface, Indexable {
 	}}
 
 	String getUrl();
+	Integer getCacheForSeconds();
 
 	static void increaseVersion(final FeedItem thisItem) throws FrameworkException {
 
@@ -107,7 +110,7 @@ public interface FeedItem extends NodeInterface, Indexable {
 		final String remoteUrl = thisItem.getUrl();
 		if (StringUtils.isNotBlank(remoteUrl)) {
 
-			return HttpHelper.getAsStream(remoteUrl);
+			return FeedFetcher.getInstance().getAsStream(remoteUrl, thisItem.getCacheForSeconds());
 		}
 
 		return null;
@@ -89,7 +89,7 @@ public interface FeedItemContent extends NodeInterface, Indexable {
 		if (StringUtils.isNotBlank(text)) {
 
 			final FulltextIndexer indexer = StructrApp.getInstance(thisIndexable.getSecurityContext()).getFulltextIndexer();
-			return indexer.getContextObject(searchTerm, text, contextLength);
+			return indexer.getContextObject(searchTerm, thisIndexable.getUuid(), text, contextLength);
 		}
 
 		return null;
@@ -24,7 +24,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.structr.common.PropertyView;
 import org.structr.common.fulltext.Indexable;
 import org.structr.core.graph.NodeInterface;
-import org.structr.rest.common.HttpHelper;
+import org.structr.feed.FeedFetcher;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
@@ -49,6 +49,7 @@ public interface RemoteDocument extends NodeInterface, Indexable {
 		type.addIntegerProperty("version",         PropertyView.Ui).setIndexed(true).setReadOnly(true);
 
 		type.addPropertyGetter("url",              String.class);
+		type.addPropertyGetter("cacheForSeconds",  Integer.class);
 		type.addPropertyGetter("contentType",      String.class);
 		type.addPropertyGetter("extractedContent", String.class);
 
@@ -63,13 +64,14 @@ public interface RemoteDocument extends NodeInterface, Indexable {
 	}}
 
 	String getUrl();
+	Integer getCacheForSeconds();
 
 	static InputStream getInputStream(final RemoteDocument thisDocument) {
 
 		final String remoteUrl = thisDocument.getUrl();
 		if (StringUtils.isNotBlank(remoteUrl)) {
 
-			return HttpHelper.getAsStream(remoteUrl);
+			return FeedFetcher.getInstance().getAsStream(remoteUrl, thisDocument.getCacheForSeconds());
 		}
 
 		return null;
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.feed;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+import com.rometools.rome.feed.synd.SyndEntryImpl;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.structr.feed.FeedFetcher.Response;
+import org.structr.feed.entity.DataFeed;
+import org.structr.rest.common.HttpFetcher;
+import org.structr.rest.common.TestHttpServer;
+
+/**
+ * Tests the feed fetcher against a local HTTP server.
+ */
+public class FeedFetcherTest {
+
+	private static final String CONTENT = "<rss version=\"2.0\"><channel><title>Test</title></channel></rss>";
+	private static final String ETAG    = "\"v1\"";
+
+	private final AtomicInteger notModified = new AtomicInteger();
+
+	@Rule
+	public final TestHttpServer server = new TestHttpServer();
+
+	@Before
+	public void setup() {
+		server.handle("/feed", this::handleFeed);
+	}
+
+	@Test
+	public void testConditionalGet() throws Exception {
+
+		final HttpFetcher fetcher     = new HttpFetcher("Test", 2, 2, 10);
+		final FeedFetcher feedFetcher = new FeedFetcher(fetcher);
+
+		try {
+
+			final Response first = feedFetcher.fetch(server.getBaseUrl() + "/feed", null, null).get();
+
+			assertEquals(200, first.getStatus());
+			assertEquals(ETAG, first.getEtag());
+			assertEquals(CONTENT, IOUtils.toString(first.getContent(), StandardCharsets.UTF_8));
+
+			final Response second = feedFetcher.fetch(server.getBaseUrl() + "/feed", first.getEtag(), first.getLastModified()).get();
+
+			assertTrue("Unchanged feed should not be transferred again", second.isNotModified());
+			assertEquals(1, notModified.get());
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testInvalidAddress() throws Exception {
+
+		final HttpFetcher fetcher     = new HttpFetcher("Test", 2, 2, 10);
+		final FeedFetcher feedFetcher = new FeedFetcher(fetcher);
+
+		try {
+
+			try {
+
+				feedFetcher.fetch("htp:/invalid feed", null, null).get();
+				fail("Invalid address should fail only the future of the feed");
+
+			} catch (ExecutionException expected) {
+
+				assertTrue(expected.getCause() instanceof IOException);
+			}
+
+			assertEquals(200, feedFetcher.fetch(server.getBaseUrl() + "/feed", null, null).get().getStatus());
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testCachedDocument() throws Exception {
+
+		final HttpFetcher fetcher     = new HttpFetcher("Test", 2, 2, 10);
+		final FeedFetcher feedFetcher = new FeedFetcher(fetcher);
+
+		try {
+
+			for (int i=0; i<3; i++) {
+
+				try (final InputStream is = feedFetcher.getAsStream(server.getBaseUrl() + "/feed", null)) {
+
+					assertNotNull(is);
+					assertEquals(CONTENT, IOUtils.toString(is, StandardCharsets.UTF_8));
+				}
+			}
+
+			assertEquals("Cached document should be revalidated", 2, notModified.get());
+
+			// no revalidation within cacheForSeconds
+			try (final InputStream is = feedFetcher.getAsStream(server.getBaseUrl() + "/feed", 60)) {
+				assertEquals(CONTENT, IOUtils.toString(is, StandardCharsets.UTF_8));
+			}
+
+			assertEquals(3, server.getRequests());
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testNewEntries() {
+
+		final Set<String> known = new HashSet<>(Arrays.asList("guid-1", "http://example.com/2"));
+
+		final List<SyndEntry> entries = DataFeed.getNewEntries(Arrays.asList(
+			entry("guid-1", "http://example.com/1"),
+			entry(null,     "http://example.com/2"),
+			entry("guid-3", "http://example.com/3"),
+			entry("guid-3", "http://example.com/3")
+		), known);
+
+		assertEquals(1, entries.size());
+		assertEquals("guid-3", DataFeed.getGuid(entries.get(0)));
+		assertTrue(known.contains("http://example.com/3"));
+	}
+
+	// ----- private methods -----
+	private SyndEntry entry(final String guid, final String link) {
+
+		final SyndEntry entry = new SyndEntryImpl();
+
+		entry.setUri(guid);
+		entry.setLink(link);
+
+		return entry;
+	}
+
+	private void handleFeed(final HttpExchange exchange) throws IOException {
+
+		if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+
+			notModified.incrementAndGet();
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+
+			return;
+		}
+
+		exchange.getResponseHeaders().add("ETag", ETAG);
+
+		TestHttpServer.respond(exchange, 200, "application/rss+xml; charset=UTF-8", CONTENT);
+	}
+}
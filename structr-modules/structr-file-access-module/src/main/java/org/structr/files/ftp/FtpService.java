@@ -18,6 +18,9 @@
  */
 package org.structr.files.ftp;
 
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import org.apache.ftpserver.FtpServer;
 import org.apache.ftpserver.FtpServerFactory;
 import org.apache.ftpserver.listener.ListenerFactory;
@@ -27,6 +30,8 @@ import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
+import org.structr.core.graph.NodeService;
+import org.structr.schema.SchemaService;
 
 /**
  *
@@ -115,6 +120,11 @@ public class FtpService implements RunnableService {
 		return false;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return new LinkedHashSet<>(Arrays.asList(NodeService.class, SchemaService.class));
+	}
+
 	// ----- interface Feature -----
 	@Override
 	public String getModuleName() {
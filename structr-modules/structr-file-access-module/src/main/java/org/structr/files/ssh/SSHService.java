@@ -24,10 +24,13 @@ import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.PublicKey;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.sshd.common.Factory;
 import org.apache.sshd.common.NamedFactory;
 import org.apache.sshd.common.config.keys.KeyUtils;
@@ -61,9 +64,11 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.auth.exception.AuthenticationException;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
+import org.structr.core.graph.NodeService;
 import org.structr.core.graph.Tx;
 import org.structr.files.ssh.filesystem.StructrFilesystem;
 import org.structr.rest.auth.AuthHelper;
+import org.structr.schema.SchemaService;
 
 /**
  *
@@ -156,6 +161,11 @@ public class SSHService implements SingletonService, PasswordAuthenticator, Publ
 		return false;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return new LinkedHashSet<>(Arrays.asList(NodeService.class, SchemaService.class));
+	}
+
 	// ----- interface Feature -----
 	@Override
 	public String getModuleName() {
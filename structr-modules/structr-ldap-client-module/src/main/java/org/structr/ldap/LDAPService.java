@@ -19,16 +19,27 @@
 package org.structr.ldap;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.apache.commons.lang.StringUtils;
 import org.apache.directory.api.ldap.model.cursor.CursorException;
 import org.apache.directory.api.ldap.model.cursor.EntryCursor;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
 import org.apache.directory.api.ldap.model.entry.DefaultModification;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.entry.Modification;
 import org.apache.directory.api.ldap.model.entry.ModificationOperation;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
 import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.ldap.client.api.LdapConnection;
 import org.apache.directory.ldap.client.api.LdapNetworkConnection;
@@ -49,6 +60,18 @@ import org.structr.core.property.PropertyKey;
 /**
  * The LDAP synchronization service. This is a system service that requires
  * superuser permissions.
+ *
+ * The first update after startup synchronizes all entries, later updates
+ * only search for entries whose sync attribute (modifyTimestamp by default)
+ * is not older than the highest value seen so far. Searches are paged,
+ * and the entries of each page are written in a single transaction. If an
+ * entry can not be written, the marker is not advanced past its value, so
+ * the entry is searched for again in the next update.
+ *
+ * Deleted entries are detected by a separate check that lists the DNs of
+ * all entries without their attributes. A local user that is missing from
+ * the directory is marked with a tombstone first, and deleted when it is
+ * still missing in the next check.
  */
 public class LDAPService extends Thread implements RunnableService {
 
@@ -63,17 +86,25 @@ public class LDAPService extends Thread implements RunnableService {
 	public static final String CONFIG_KEY_LDAP_BASEDN     = "ldap.baseDn";
 	public static final String CONFIG_KEY_LDAP_FILTER     = "ldap.filter";
 	public static final String CONFIG_KEY_LDAP_SCOPE      = "ldap.scope";
-
-	private long updateInterval = 1800;		// completely arbitrary update interval, set your own in structr.conf!
-	private String host         = "localhost";
-	private String binddn       = null;
-	private String secret       = null;
-	private String baseDn       = null;
-	private String filter       = null;
-	private String scope        = null;
-	private boolean useSsl      = true;
-	private boolean doRun       = false;
-	private int port            = 389;
+	public static final String CONFIG_KEY_PAGE_SIZE       = "ldap.pageSize";
+	public static final String CONFIG_KEY_SYNC_ATTRIBUTE  = "ldap.syncAttribute";
+	public static final String CONFIG_KEY_DELETION_CHECK  = "ldap.deletionCheckInterval";
+
+	private long updateInterval    = 1800;		// completely arbitrary update interval, set your own in structr.conf!
+	private long deletionInterval  = 86400;
+	private long lastDeletionCheck = 0L;
+	private String host            = "localhost";
+	private String syncAttribute   = "modifyTimestamp";
+	private String syncMarker      = null;
+	private String binddn          = null;
+	private String secret          = null;
+	private String baseDn          = null;
+	private String filter          = null;
+	private String scope           = null;
+	private boolean useSsl         = true;
+	private boolean doRun          = false;
+	private int pageSize           = 500;
+	private int port               = 389;
 
 	public LDAPService() {
 
@@ -150,7 +181,6 @@ public class LDAPService extends Thread implements RunnableService {
 	public void doUpdate() throws IOException, LdapException, CursorException, FrameworkException {
 
 		final LdapConnection connection = new LdapNetworkConnection(host, port, useSsl);
-		final App app                   = StructrApp.getInstance();
 
 		if (connection != null) {
 
@@ -170,44 +200,36 @@ public class LDAPService extends Thread implements RunnableService {
 					connection.bind(binddn);
 				}
 
-				// step 1: fetch / update all users from LDAP server
-				final EntryCursor cursor = connection.search(baseDn, filter, SearchScope.valueOf(scope));
-				while (cursor.next()) {
-
-					final Entry entry = cursor.get();
-					synchronizeUserEntry(connection, entry);
-				}
-
-				// step 2: examine local users and refresh / remove
-				try (final Tx tx = app.tx()) {
+				// step 1: fetch / update all users that changed since the last update
+				final String changedFilter  = getIncrementalFilter(filter, syncAttribute, syncMarker);
+				final List<Entry> page      = new ArrayList<>(pageSize);
+				final SyncProgress progress = new SyncProgress();
+				byte[] cookie               = null;
+				int count                   = 0;
 
-					for (final LDAPUser user : app.nodeQuery(LDAPUser.class).getAsList()) {
+				do {
 
-						final String dn = user.getDistinguishedName();
-						if (dn != null) {
+					cookie = searchPage(connection, changedFilter, cookie, page, "*", "entryUUID", "createTimestamp", syncAttribute);
+					synchronizeUserEntries(connection, page, progress);
+					count += page.size();
 
-							final Entry userEntry = connection.lookup(dn);
-							if (userEntry != null) {
+					page.clear();
 
-								// update user information
-								user.initializeFrom(userEntry);
+				} while (cookie != null);
 
-							} else {
+				// advance the marker only after all changes have been synchronized
+				syncMarker = progress.getMarker(syncMarker);
 
-								logger.info("User {} doesn't exist in LDAP directory, deleting.", user);
-								app.delete(user);
-							}
+				logger.info("{} changed LDAP entries synchronized.", count);
 
-						} else {
+				// step 2: examine local users and remove the ones that no longer exist
+				final long now = System.currentTimeMillis();
+				if (now - lastDeletionCheck >= deletionInterval * 1000) {
 
-							logger.warn("User {} doesn't have an LDAP distinguished name, ignoring.", user);
-						}
-					}
-
-					tx.success();
+					checkDeletions(connection);
+					lastDeletionCheck = now;
 				}
 
-				cursor.close();
 				connection.close();
 
 			} else {
@@ -218,44 +240,288 @@ public class LDAPService extends Thread implements RunnableService {
 	}
 
 	// ----- private methods -----
-	private String synchronizeUserEntry(final LdapConnection connection, final Entry entry) {
+	/**
+	 * Fetches a single page of search results into the given list.
+	 *
+	 * @return the cookie for the next page, or null if this was the last page
+	 */
+	private byte[] searchPage(final LdapConnection connection, final String searchFilter, final byte[] cookie, final List<Entry> entries, final String... attributes) throws LdapException, CursorException, IOException {
+
+		final SearchRequest request = new SearchRequestImpl();
+		final PagedResults paged    = new PagedResultsImpl();
+
+		paged.setSize(pageSize);
+
+		if (cookie != null) {
+			paged.setCookie(cookie);
+		}
+
+		request.setBase(new Dn(baseDn));
+		request.setFilter(searchFilter);
+		request.setScope(SearchScope.valueOf(scope));
+		request.addAttributes(attributes);
+		request.addControl(paged);
+
+		try (final SearchCursor cursor = connection.search(request)) {
+
+			while (cursor.next()) {
+
+				if (cursor.isEntry()) {
+
+					entries.add(cursor.getEntry());
+				}
+			}
+
+			final SearchResultDone done = cursor.getSearchResultDone();
+			if (done != null) {
+
+				final PagedResults result = (PagedResults)done.getControl(PagedResults.OID);
+				if (result != null && result.getCookie() != null && result.getCookie().length > 0) {
+
+					return result.getCookie();
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Synchronizes the given entries in a single transaction, or one by one
+	 * if the transaction fails. The value of the sync attribute of each
+	 * entry is reported to the given progress, together with the outcome.
+	 */
+	private void synchronizeUserEntries(final LdapConnection connection, final List<Entry> entries, final SyncProgress progress) {
+
+		final App app = StructrApp.getInstance();
+
+		if (entries.size() > 1) {
+
+			try (final Tx tx = app.tx()) {
+
+				for (final Entry entry : entries) {
+					synchronizeUserEntry(app, connection, entry);
+				}
+
+				tx.success();
+
+				for (final Entry entry : entries) {
+					progress.succeeded(getSyncValue(entry));
+				}
+
+				return;
+
+			} catch (Throwable t) {
+				logger.warn("Unable to update {} LDAP entries in a single transaction, updating entries separately: {}", entries.size(), t.getMessage());
+			}
+		}
+
+		for (final Entry entry : entries) {
+
+			try (final Tx tx = app.tx()) {
+
+				synchronizeUserEntry(app, connection, entry);
+
+				tx.success();
+
+				progress.succeeded(getSyncValue(entry));
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to update LDAP information of {}: {}", entry.getDn(), t.getMessage());
+				progress.failed(getSyncValue(entry));
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the sync attribute of the given entry, or its
+	 * createTimestamp if the entry was never modified.
+	 */
+	private String getSyncValue(final Entry entry) {
+
+		try {
+
+			final String value = LDAPUser.getString(entry, syncAttribute);
+			if (value != null) {
+
+				return value;
+			}
+
+			return LDAPUser.getString(entry, "createTimestamp");
+
+		} catch (LdapInvalidAttributeValueException ex) {
+			logger.warn("Unable to read {} of {}: {}", syncAttribute, entry.getDn(), ex.getMessage());
+		}
+
+		return null;
+	}
+
+	private void synchronizeUserEntry(final App app, final LdapConnection connection, final Entry entry) throws FrameworkException, LdapInvalidAttributeValueException {
+
+		final PropertyKey<String> dnKey   = StructrApp.key(LDAPUser.class, "distinguishedName");
+		final PropertyKey<String> uuidKey = StructrApp.key(LDAPUser.class, "entryUuid");
+		final String entryUuid            = LDAPUser.getString(entry, "entryUUID");
+		final Dn dn                       = entry.getDn();
+		final String dnString             = dn.toString();
+		LDAPUser user                     = null;
+
+		// find renamed entries by their entryUUID
+		if (entryUuid != null) {
+			user = app.nodeQuery(LDAPUser.class).and(uuidKey, entryUuid).getFirst();
+		}
+
+		if (user == null) {
+			user = app.nodeQuery(LDAPUser.class).and(dnKey, dnString).getFirst();
+		}
+
+		if (user == null) {
+
+			user = app.create(LDAPUser.class, new NodeAttribute(dnKey, dnString));
+			user.initializeFrom(entry);
 
-		final PropertyKey<String> dnKey = StructrApp.key(LDAPUser.class, "distinguishedName");
-		final App app                   = StructrApp.getInstance();
-		final Dn dn                     = entry.getDn();
-		final String dnString           = dn.toString();
+			final String uuid = user.getUuid();
+			if (user.getEntryUuid() == null) {
+
+				try {
+					// try to set "our" UUID in the remote database
+					final Modification addUuid = new DefaultModification(ModificationOperation.ADD_ATTRIBUTE, "entryUUID", normalizeUUID(uuid));
+					connection.modify(dn, addUuid);
+
+				} catch (LdapException ex) {
+					logger.warn("Unable to set entryUUID: {}", ex.getMessage());
+				}
+			}
+
+		} else {
+
+			if (!dnString.equals(user.getDistinguishedName())) {
+				user.setDistinguishedName(dnString);
+			}
+
+			if (user.getTombstone() != null) {
+				user.setTombstone(null);
+			}
+
+			// update user information
+			user.initializeFrom(entry);
+		}
+	}
+
+	/**
+	 * Lists the DNs of all entries and marks local users that are missing
+	 * in the directory with a tombstone. Users that already have a tombstone
+	 * from an earlier check are deleted.
+	 */
+	private void checkDeletions(final LdapConnection connection) throws IOException, LdapException, CursorException, FrameworkException {
+
+		final Set<String> dns   = new HashSet<>();
+		final List<Entry> page  = new ArrayList<>(pageSize);
+		final App app           = StructrApp.getInstance();
+		byte[] cookie           = null;
+
+		do {
+
+			// no attributes, only the DNs
+			cookie = searchPage(connection, filter, cookie, page, "1.1");
+
+			for (final Entry entry : page) {
+				dns.add(entry.getDn().toString());
+			}
+
+			page.clear();
+
+		} while (cookie != null);
+
+		if (dns.isEmpty()) {
+
+			logger.warn("LDAP search for {} in {} returned no entries, skipping deletion check.", filter, baseDn);
+			return;
+		}
 
 		try (final Tx tx = app.tx()) {
 
-			LDAPUser user = app.nodeQuery(LDAPUser.class).and(dnKey, dnString).getFirst();
-			if (user == null) {
+			for (final LDAPUser user : app.nodeQuery(LDAPUser.class).getAsList()) {
 
-				user = app.create(LDAPUser.class, new NodeAttribute(dnKey, dnString));
-				user.initializeFrom(entry);
+				final String dn = user.getDistinguishedName();
+				if (dn != null) {
 
-				final String uuid = user.getUuid();
-				if (user.getEntryUuid() == null) {
+					if (dns.contains(dn)) {
 
-					try {
-						// try to set "our" UUID in the remote database
-						final Modification addUuid = new DefaultModification(ModificationOperation.ADD_ATTRIBUTE, "entryUUID", normalizeUUID(uuid));
-						connection.modify(dn, addUuid);
+						if (user.getTombstone() != null) {
+							user.setTombstone(null);
+						}
 
-					} catch (LdapException ex) {
-						logger.warn("Unable to set entryUUID: {}", ex.getMessage());
+					} else if (user.getTombstone() == null) {
+
+						logger.info("User {} doesn't exist in LDAP directory, marking for deletion.", user);
+						user.setTombstone(new Date());
+
+					} else {
+
+						logger.info("User {} doesn't exist in LDAP directory, deleting.", user);
+						app.delete(user);
 					}
+
+				} else {
+
+					logger.warn("User {} doesn't have an LDAP distinguished name, ignoring.", user);
 				}
 			}
 
 			tx.success();
+		}
+	}
+
+	/**
+	 * Restricts the given filter to entries whose sync attribute is not
+	 * older than the given marker. Entries that were never modified are
+	 * found by their createTimestamp.
+	 *
+	 * @param filter the configured filter
+	 * @param attribute the sync attribute
+	 * @param marker the highest value of the sync attribute seen so far, or null
+	 * @return the filter
+	 */
+	static String getIncrementalFilter(final String filter, final String attribute, final String marker) {
+
+		if (marker == null) {
+			return filter;
+		}
 
-			return user.getUuid();
+		final String wrapped = filter.startsWith("(") ? filter : "(" + filter + ")";
+		final String value   = escape(marker);
 
-		} catch (FrameworkException | LdapInvalidAttributeValueException fex) {
-			logger.warn("Unable to update LDAP information", fex);
+		if ("modifyTimestamp".equalsIgnoreCase(attribute)) {
+
+			return "(&" + wrapped + "(|(" + attribute + ">=" + value + ")(createTimestamp>=" + value + ")))";
 		}
 
-		return null;
+		return "(&" + wrapped + "(" + attribute + ">=" + value + "))";
+	}
+
+	static String escape(final String value) {
+
+		final StringBuilder buf = new StringBuilder();
+
+		for (final char c : value.toCharArray()) {
+
+			switch (c) {
+
+				case '\\': buf.append("\\5c"); break;
+				case '*':  buf.append("\\2a"); break;
+				case '(':  buf.append("\\28"); break;
+				case ')':  buf.append("\\29"); break;
+				case '\0': buf.append("\\00"); break;
+				default:   buf.append(c); break;
+			}
+		}
+
+		return buf.toString();
+	}
+
+	String getSyncMarker() {
+		return syncMarker;
 	}
 
 	// ----- class Thread -----
@@ -322,14 +588,18 @@ public class LDAPService extends Thread implements RunnableService {
 		this.binddn         = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_BINDDN).getValue("");
 		this.secret         = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_SECRET).getValue("");
 
-		this.host           = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_HOST, "localhost").getValue();
-		this.baseDn         = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_BASEDN, "ou=system").getValue();
-		this.filter         = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_FILTER, "(objectclass=*)").getValue();
-		this.scope          = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_SCOPE, "SUBTREE").getValue();
+		this.host           = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_HOST).getValue("localhost");
+		this.baseDn         = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_BASEDN).getValue("ou=system");
+		this.filter         = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_FILTER).getValue("(objectclass=*)");
+		this.scope          = Settings.getOrCreateStringSetting(CONFIG_KEY_LDAP_SCOPE).getValue("SUBTREE");
 
 		this.port           = Settings.getOrCreateIntegerSetting(CONFIG_KEY_LDAP_PORT).getValue(339);
 		this.useSsl         = Settings.getOrCreateBooleanSetting(CONFIG_KEY_LDAP_SSL).getValue(true);
 
+		this.pageSize         = Settings.getOrCreateIntegerSetting(CONFIG_KEY_PAGE_SIZE).getValue(500);
+		this.syncAttribute    = Settings.getOrCreateStringSetting(CONFIG_KEY_SYNC_ATTRIBUTE).getValue("modifyTimestamp");
+		this.deletionInterval = Settings.getOrCreateIntegerSetting(CONFIG_KEY_DELETION_CHECK).getValue(86400);
+
 		return true;
 	}
 
@@ -365,5 +635,57 @@ public class LDAPService extends Thread implements RunnableService {
 
 		return buf.toString();
 	}
-}
 
+	// ----- nested classes -----
+	/**
+	 * Tracks the values of the sync attribute during an update. The marker
+	 * is the highest value of all synchronized entries, but never higher
+	 * than the lowest value of an entry that failed, so that entry is found
+	 * again by the incremental filter. If an entry without a value fails,
+	 * the marker is not advanced at all.
+	 */
+	static class SyncProgress {
+
+		private String highestSucceeded = null;
+		private String lowestFailed     = null;
+		private boolean blocked         = false;
+
+		public void succeeded(final String value) {
+
+			if (value != null && (highestSucceeded == null || value.compareTo(highestSucceeded) > 0)) {
+				highestSucceeded = value;
+			}
+		}
+
+		public void failed(final String value) {
+
+			if (value == null) {
+
+				blocked = true;
+
+			} else if (lowestFailed == null || value.compareTo(lowestFailed) < 0) {
+
+				lowestFailed = value;
+			}
+		}
+
+		public String getMarker(final String previous) {
+
+			if (blocked) {
+				return previous;
+			}
+
+			String marker = previous;
+
+			if (highestSucceeded != null && (marker == null || highestSucceeded.compareTo(marker) > 0)) {
+				marker = highestSucceeded;
+			}
+
+			if (lowestFailed != null && marker != null && lowestFailed.compareTo(marker) < 0) {
+				marker = lowestFailed;
+			}
+
+			return marker;
+		}
+	}
+}
@@ -19,6 +19,8 @@
 package org.structr.ldap;
 
 import java.net.URI;
+import java.util.Date;
+import java.util.Objects;
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
@@ -26,6 +28,7 @@ import org.structr.common.PropertyView;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
+import org.structr.core.property.PropertyKey;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
@@ -48,16 +51,19 @@ public interface LDAPUser extends User {
 		type.addStringProperty("description",       PropertyView.Public).setIndexed(true);
 		type.addStringProperty("commonName",        PropertyView.Public).setIndexed(true);
 		type.addStringProperty("entryUuid",         PropertyView.Public).setUnique(true).setIndexed(true);
+		type.addDateProperty("tombstone");
 
 		type.addPropertyGetter("distinguishedName", String.class);
 		type.addPropertyGetter("description",       String.class);
 		type.addPropertyGetter("commonName",        String.class);
 		type.addPropertyGetter("entryUuid",         String.class);
+		type.addPropertyGetter("tombstone",         Date.class);
 
 		type.addPropertySetter("distinguishedName", String.class);
 		type.addPropertySetter("description",       String.class);
 		type.addPropertySetter("commonName",        String.class);
 		type.addPropertySetter("entryUuid",         String.class);
+		type.addPropertySetter("tombstone",         Date.class);
 
 		type.overrideMethod("initializeFrom",  false, LDAPUser.class.getName() + ".initializeFrom(this, arg0);");
 		type.overrideMethod("printDebug",      false, LDAPUser.class.getName() + ".printDebug(this);").setDoExport(true);
@@ -68,20 +74,23 @@ public interface LDAPUser extends User {
 	String getDescription();
 	String getCommonName();
 	String getEntryUuid();
+	Date getTombstone();
 
 	void initializeFrom(final Entry entry) throws FrameworkException, LdapInvalidAttributeValueException;
 	void setDistinguishedName(final String distinguishedName) throws FrameworkException;
 	void setDescription(final String description) throws FrameworkException;
 	void setCommonName(final String commonName) throws FrameworkException;
 	void setEntryUuid(final String uuid) throws FrameworkException;
+	void setTombstone(final Date tombstone) throws FrameworkException;
 
 	static void initializeFrom(final LDAPUser thisUser, final Entry entry) throws FrameworkException, LdapInvalidAttributeValueException {
 
-		thisUser.setProperty(StructrApp.key(LDAPUser.class, "description"), LDAPUser.getString(entry, "description"));
-		thisUser.setProperty(StructrApp.key(LDAPUser.class, "entryUuid"),   LDAPUser.getString(entry, "entryUUID"));
-		thisUser.setProperty(StructrApp.key(LDAPUser.class, "name"),        LDAPUser.getString(entry, "uid"));
-		thisUser.setProperty(StructrApp.key(LDAPUser.class, "commonName"),  LDAPUser.getString(entry, "cn"));
-		thisUser.setProperty(StructrApp.key(LDAPUser.class, "eMail"),       LDAPUser.getString(entry, "mail"));
+		// only write the values that have changed, so that unchanged entries do not cause any writes
+		LDAPUser.setIfChanged(thisUser, "description", LDAPUser.getString(entry, "description"));
+		LDAPUser.setIfChanged(thisUser, "entryUuid",   LDAPUser.getString(entry, "entryUUID"));
+		LDAPUser.setIfChanged(thisUser, "name",        LDAPUser.getString(entry, "uid"));
+		LDAPUser.setIfChanged(thisUser, "commonName",  LDAPUser.getString(entry, "cn"));
+		LDAPUser.setIfChanged(thisUser, "eMail",       LDAPUser.getString(entry, "mail"));
 	}
 
 	static boolean isValidPassword(final LDAPUser thisUser, final String password) {
@@ -116,6 +125,16 @@ public interface LDAPUser extends User {
 		}
 	}
 
+	static void setIfChanged(final LDAPUser thisUser, final String name, final Object value) throws FrameworkException {
+
+		final PropertyKey key = StructrApp.key(LDAPUser.class, name);
+
+		if (!Objects.equals(thisUser.getProperty(key), value)) {
+
+			thisUser.setProperty(key, value);
+		}
+	}
+
 	static String getString(final Entry entry, final String key) throws LdapInvalidAttributeValueException {
 
 		final Attribute attribute = entry.get(key);
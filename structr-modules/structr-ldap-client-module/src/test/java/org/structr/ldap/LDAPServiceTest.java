@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Tests the filters and the marker of the incremental LDAP synchronization.
+ */
+public class LDAPServiceTest {
+
+	@Test
+	public void testIncrementalFilter() {
+
+		assertEquals("(objectclass=*)", LDAPService.getIncrementalFilter("(objectclass=*)", "modifyTimestamp", null));
+
+		assertEquals(
+			"(&(objectclass=person)(|(modifyTimestamp>=20180101120000.000Z)(createTimestamp>=20180101120000.000Z)))",
+			LDAPService.getIncrementalFilter("objectclass=person", "modifyTimestamp", "20180101120000.000Z")
+		);
+
+		assertEquals(
+			"(&(objectclass=*)(entryCSN>=20180101120000.000000Z#000000#000#000000))",
+			LDAPService.getIncrementalFilter("(objectclass=*)", "entryCSN", "20180101120000.000000Z#000000#000#000000")
+		);
+	}
+
+	@Test
+	public void testEscape() {
+		assertEquals("a\\2a\\28b\\29\\5c", LDAPService.escape("a*(b)\\"));
+	}
+
+	@Test
+	public void testSyncMarker() {
+
+		final LDAPService.SyncProgress allSucceeded = new LDAPService.SyncProgress();
+
+		allSucceeded.succeeded("20180101120000.000Z");
+		allSucceeded.succeeded("20180301120000.000Z");
+		allSucceeded.succeeded("20180201120000.000Z");
+
+		assertEquals("20180301120000.000Z", allSucceeded.getMarker(null));
+		assertEquals("20180301120000.000Z", allSucceeded.getMarker("20170101120000.000Z"));
+
+		// the marker must not be advanced past a failed entry
+		final LDAPService.SyncProgress oneFailed = new LDAPService.SyncProgress();
+
+		oneFailed.succeeded("20180101120000.000Z");
+		oneFailed.failed("20180201120000.000Z");
+		oneFailed.succeeded("20180301120000.000Z");
+
+		assertEquals("20180201120000.000Z", oneFailed.getMarker("20170101120000.000Z"));
+
+		// nothing succeeded in a full sync
+		final LDAPService.SyncProgress noneSucceeded = new LDAPService.SyncProgress();
+
+		noneSucceeded.failed("20180201120000.000Z");
+
+		assertNull(noneSucceeded.getMarker(null));
+
+		// a failed entry without a value blocks the marker
+		final LDAPService.SyncProgress blocked = new LDAPService.SyncProgress();
+
+		blocked.succeeded("20180301120000.000Z");
+		blocked.failed(null);
+
+		assertEquals("20170101120000.000Z", blocked.getMarker("20170101120000.000Z"));
+		assertNull(blocked.getMarker(null));
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.ldap;
+
+import java.util.List;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.DefaultModification;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapNetworkConnection;
+import org.apache.directory.server.annotations.CreateLdapServer;
+import org.apache.directory.server.annotations.CreateTransport;
+import org.apache.directory.server.core.annotations.ApplyLdifs;
+import org.apache.directory.server.core.annotations.CreateDS;
+import org.apache.directory.server.core.annotations.CreatePartition;
+import org.apache.directory.server.core.integ.FrameworkRunner;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.structr.api.config.Settings;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+
+/**
+ * Synchronizes users from an embedded ApacheDS server.
+ */
+@RunWith(FrameworkRunner.class)
+@CreateDS(name = "structr", partitions = { @CreatePartition(name = "example", suffix = "dc=example,dc=com") })
+@CreateLdapServer(transports = { @CreateTransport(protocol = "LDAP", address = "localhost", port = LDAPSyncTest.ldapPort) })
+@ApplyLdifs({
+	"dn: dc=example,dc=com",
+	"objectClass: top",
+	"objectClass: domain",
+	"dc: example",
+	"",
+	"dn: ou=users,dc=example,dc=com",
+	"objectClass: top",
+	"objectClass: organizationalUnit",
+	"ou: users",
+	"",
+	"dn: uid=alice,ou=users,dc=example,dc=com",
+	"objectClass: top",
+	"objectClass: inetOrgPerson",
+	"uid: alice",
+	"cn: Alice",
+	"sn: Alice",
+	"description: first",
+	"",
+	"dn: uid=bob,ou=users,dc=example,dc=com",
+	"objectClass: top",
+	"objectClass: inetOrgPerson",
+	"uid: bob",
+	"cn: Bob",
+	"sn: Bob"
+})
+public class LDAPSyncTest extends StructrLDAPClientModuleTest {
+
+	static final int ldapPort = 10389;
+
+	@Test
+	public void testSynchronization() {
+
+		Settings.getOrCreateStringSetting(LDAPService.CONFIG_KEY_LDAP_HOST).setValue("localhost");
+		Settings.getOrCreateIntegerSetting(LDAPService.CONFIG_KEY_LDAP_PORT).setValue(ldapPort);
+		Settings.getOrCreateBooleanSetting(LDAPService.CONFIG_KEY_LDAP_SSL).setValue(false);
+		Settings.getOrCreateStringSetting(LDAPService.CONFIG_KEY_LDAP_BINDDN).setValue("uid=admin,ou=system");
+		Settings.getOrCreateStringSetting(LDAPService.CONFIG_KEY_LDAP_SECRET).setValue("secret");
+		Settings.getOrCreateStringSetting(LDAPService.CONFIG_KEY_LDAP_BASEDN).setValue("ou=users,dc=example,dc=com");
+		Settings.getOrCreateStringSetting(LDAPService.CONFIG_KEY_LDAP_FILTER).setValue("(objectclass=inetOrgPerson)");
+		Settings.getOrCreateIntegerSetting(LDAPService.CONFIG_KEY_PAGE_SIZE).setValue(1);
+		Settings.getOrCreateIntegerSetting(LDAPService.CONFIG_KEY_DELETION_CHECK).setValue(0);
+
+		final LDAPService service = new LDAPService();
+
+		try {
+
+			service.initialize(null);
+
+			// full sync
+			service.doUpdate();
+
+			assertNotNull("Full synchronization should set a sync marker", service.getSyncMarker());
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Full synchronization should create all users", 2, getUsers().size());
+				assertEquals("first", getUser("uid=alice,ou=users,dc=example,dc=com").getDescription());
+
+				tx.success();
+			}
+
+			// incremental sync
+			try (final LdapConnection connection = connect()) {
+
+				connection.modify("uid=alice,ou=users,dc=example,dc=com", new DefaultModification(ModificationOperation.REPLACE_ATTRIBUTE, "description", "second"));
+				connection.add(new DefaultEntry(
+					"uid=carol,ou=users,dc=example,dc=com",
+					"objectClass: top",
+					"objectClass: inetOrgPerson",
+					"uid: carol",
+					"cn: Carol",
+					"sn: Carol"
+				));
+			}
+
+			final String fullSyncMarker = service.getSyncMarker();
+
+			service.doUpdate();
+
+			assertNotNull(service.getSyncMarker());
+			assertTrue("Incremental synchronization should not move the marker backwards", service.getSyncMarker().compareTo(fullSyncMarker) >= 0);
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Incremental synchronization should add new users", 3, getUsers().size());
+				assertEquals("second", getUser("uid=alice,ou=users,dc=example,dc=com").getDescription());
+				assertNotNull(getUser("uid=carol,ou=users,dc=example,dc=com"));
+
+				tx.success();
+			}
+
+			// tombstone, then delete
+			try (final LdapConnection connection = connect()) {
+				connection.delete("uid=bob,ou=users,dc=example,dc=com");
+			}
+
+			service.doUpdate();
+
+			try (final Tx tx = app.tx()) {
+
+				final LDAPUser bob = getUser("uid=bob,ou=users,dc=example,dc=com");
+
+				assertNotNull("Missing user should not be deleted in the first check", bob);
+				assertNotNull("Missing user should be marked with a tombstone", bob.getTombstone());
+				assertNull(getUser("uid=alice,ou=users,dc=example,dc=com").getTombstone());
+
+				tx.success();
+			}
+
+			service.doUpdate();
+
+			try (final Tx tx = app.tx()) {
+
+				assertNull("Missing user should be deleted in the second check", getUser("uid=bob,ou=users,dc=example,dc=com"));
+				assertEquals(2, getUsers().size());
+
+				tx.success();
+			}
+
+		} catch (Throwable t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private LdapConnection connect() throws Exception {
+
+		final LdapConnection connection = new LdapNetworkConnection("localhost", ldapPort, false);
+
+		connection.connect();
+		connection.bind("uid=admin,ou=system", "secret");
+
+		return connection;
+	}
+
+	private List<LDAPUser> getUsers() throws Exception {
+		return app.nodeQuery(LDAPUser.class).getAsList();
+	}
+
+	private LDAPUser getUser(final String dn) throws Exception {
+		return app.nodeQuery(LDAPUser.class).and(StructrApp.key(LDAPUser.class, "distinguishedName"), dn).getFirst();
+	}
+}
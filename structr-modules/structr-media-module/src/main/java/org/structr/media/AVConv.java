@@ -20,12 +20,18 @@ package org.structr.media;
 
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.media.MediaJobScheduler.JobType;
+import org.structr.media.MediaJobScheduler.Priority;
+import org.structr.util.AbstractProcess;
 import org.structr.web.entity.Image;
 
 /**
@@ -37,7 +43,6 @@ public class AVConv implements VideoHelper {
 
 	private static final Logger logger = LoggerFactory.getLogger(AVConv.class.getName());
 
-	private static final ExecutorService service = Executors.newCachedThreadPool();
 	private SecurityContext securityContext      = null;
 	private VideoFile inputVideo                 = null;
 	private String outputFileName                = null;
@@ -58,64 +63,118 @@ public class AVConv implements VideoHelper {
 	}
 
 	@Override
-	public Future<VideoFile> doConversion(final String scriptName) {
-		return service.submit(new ConverterProcess(securityContext, inputVideo, outputFileName, scriptName));
-	}
+	public Future<VideoFile> doConversion(final String scriptName) throws FrameworkException {
 
-	@Override
-	public Future<Image> grabFrame(final String scriptName, final String imageName, final long frameIndex) {
-		return service.submit(new FrameGrabberProcess(securityContext, inputVideo, imageName, frameIndex, scriptName));
+		try {
+
+			return MediaJobScheduler.getInstance().submit(JobType.Conversion, Priority.Normal, inputVideo.getUuid(), new ConverterProcess(securityContext, inputVideo, outputFileName, scriptName));
+
+		} catch (RejectedExecutionException rex) {
+
+			throw new FrameworkException(503, rex.getMessage());
+		}
 	}
 
 	@Override
-	public Map<String, String> getMetadata() {
+	public Future<Image> grabFrame(final String scriptName, final String imageName, final long frameIndex) throws FrameworkException {
 
 		try {
 
-			return service.submit(new GetMetadataProcess(securityContext, inputVideo)).get();
+			return MediaJobScheduler.getInstance().submit(JobType.FrameGrab, Priority.Normal, inputVideo.getUuid(), new FrameGrabberProcess(securityContext, inputVideo, imageName, frameIndex, scriptName));
 
-		} catch (InterruptedException | ExecutionException ex) {
-			logger.warn("", ex);
+		} catch (RejectedExecutionException rex) {
+
+			throw new FrameworkException(503, rex.getMessage());
 		}
+	}
 
-		return null;
+	@Override
+	public Map<String, String> getMetadata() {
+		return probe(cacheKey("metadata"), new GetMetadataProcess(securityContext, inputVideo));
 	}
 
 	@Override
 	public void setMetadata(final String key, final String value) {
+		updateMetadata(new SetMetadataProcess(securityContext, inputVideo, key, value));
+	}
 
-		try {
-
-			service.submit(new SetMetadataProcess(securityContext, inputVideo, key, value)).get();
+	@Override
+	public void setMetadata(final Map<String, String> metadata) {
+		updateMetadata(new SetMetadataProcess(securityContext, inputVideo, metadata));
+	}
 
-		} catch (InterruptedException | ExecutionException ex) {
-			logger.warn("", ex);
-		}
+	@Override
+	public Map<String, Object> getVideoInfo() {
+		return probe(cacheKey("info"), new GetVideoInfoProcess(securityContext, inputVideo.getDiskFilePath(securityContext)));
 	}
 
 	@Override
-	public void setMetadata(final Map<String, String> metadata) {
+	public int cancelJobs() {
+		return MediaJobScheduler.getInstance().cancel(inputVideo.getUuid());
+	}
+
+	// ----- private methods -----
+	private <T> T probe(final String cacheKey, final AbstractProcess<T> process) {
+
+		final MediaJobScheduler scheduler = MediaJobScheduler.getInstance();
 
 		try {
 
-			service.submit(new SetMetadataProcess(securityContext, inputVideo, metadata)).get();
+			final T result = scheduler.probe(cacheKey, inputVideo.getUuid(), process).get(Settings.MediaProbeTimeout.getValue(), TimeUnit.SECONDS);
+			if (result == null) {
+
+				// do not cache failed probes
+				scheduler.invalidate(cacheKey);
+			}
+
+			return result;
+
+		} catch (TimeoutException tex) {
+
+			// the probe keeps running, its result is cached for the next call
+			logger.info("Probing video {} did not finish within {} seconds.", inputVideo.getUuid(), Settings.MediaProbeTimeout.getValue());
+
+		} catch (RejectedExecutionException rex) {
+
+			logger.warn("Unable to probe video {}: {}", inputVideo.getUuid(), rex.getMessage());
 
 		} catch (InterruptedException | ExecutionException ex) {
+
+			scheduler.invalidate(cacheKey);
 			logger.warn("", ex);
 		}
+
+		return null;
 	}
 
-	@Override
-	public Map<String, Object> getVideoInfo() {
+	private void updateMetadata(final SetMetadataProcess process) {
+
+		final MediaJobScheduler scheduler = MediaJobScheduler.getInstance();
+		final String metadataKey          = cacheKey("metadata");
+		final String infoKey              = cacheKey("info");
 
 		try {
 
-			return service.submit(new GetVideoInfoProcess(securityContext, inputVideo.getDiskFilePath(securityContext))).get();
+			// not a probe, the process probes the file again when it is finished
+			scheduler.submit(JobType.Metadata, Priority.Normal, inputVideo.getUuid(), process).get();
 
-		} catch (InterruptedException | ExecutionException ex) {
+		} catch (RejectedExecutionException | InterruptedException | ExecutionException ex) {
 			logger.warn("", ex);
 		}
 
+		// the file content has changed
+		scheduler.invalidate(metadataKey);
+		scheduler.invalidate(infoKey);
+	}
+
+	private String cacheKey(final String prefix) {
+
+		final Long checksum = inputVideo.getChecksum();
+		if (checksum != null) {
+
+			return prefix + ":" + checksum;
+		}
+
 		return null;
 	}
 }
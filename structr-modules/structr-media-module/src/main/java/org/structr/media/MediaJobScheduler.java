@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.media;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.config.Settings;
+import org.structr.api.util.FixedSizeCache;
+
+/**
+ * Scheduler for the external processes of the media module.
+ *
+ * Each job type has its own pool with a fixed number of threads, so that
+ * a batch of conversions can not starve frame grabs and probes, and the
+ * number of concurrent avconv/avprobe processes is limited. Metadata
+ * updates have their own pool because they probe the file again when they
+ * are finished, a job must never wait for a job of its own type. Waiting
+ * jobs are ordered by priority, then by submission order. The number of
+ * waiting jobs per type is limited as well, submitting more jobs fails.
+ *
+ * Probe results are cached by the checksum of the probed file, so that a
+ * file is only probed once, even if it is probed again while the first
+ * probe is still running.
+ */
+public class MediaJobScheduler {
+
+	public enum JobType {
+		Conversion, FrameGrab, Probe, Metadata
+	}
+
+	public enum Priority {
+		High, Normal, Low
+	}
+
+	private static MediaJobScheduler instance = null;
+
+	private final Map<JobType, ThreadPoolExecutor> executors = new EnumMap<>(JobType.class);
+	private final Map<String, Set<Job<?>>> jobs              = new ConcurrentHashMap<>();
+	private final AtomicLong sequence                        = new AtomicLong();
+	private FixedSizeCache<String, Future<?>> probeCache     = null;
+	private int queueSize                                    = 0;
+
+	MediaJobScheduler() {
+
+		this.probeCache = new FixedSizeCache<>(Math.max(1, Settings.MediaProbeCacheSize.getValue()));
+		this.queueSize  = Math.max(1, Settings.MediaQueueSize.getValue());
+
+		executors.put(JobType.Conversion, createExecutor(JobType.Conversion, Settings.MediaConversionThreads.getValue()));
+		executors.put(JobType.FrameGrab,  createExecutor(JobType.FrameGrab,  Settings.MediaFrameGrabThreads.getValue()));
+		executors.put(JobType.Probe,      createExecutor(JobType.Probe,      Settings.MediaProbeThreads.getValue()));
+		executors.put(JobType.Metadata,   createExecutor(JobType.Metadata,   Settings.MediaMetadataThreads.getValue()));
+	}
+
+	public static synchronized MediaJobScheduler getInstance() {
+
+		if (instance == null) {
+			instance = new MediaJobScheduler();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Schedules the given job.
+	 *
+	 * @param <T>
+	 * @param type the type of the job
+	 * @param priority the priority of the job
+	 * @param uuid the UUID of the file the job belongs to
+	 * @param callable the job
+	 *
+	 * @return the future of the job
+	 * @throws RejectedExecutionException if the queue of the job type is full
+	 */
+	public <T> Future<T> submit(final JobType type, final Priority priority, final String uuid, final Callable<T> callable) {
+
+		final ThreadPoolExecutor executor = executors.get(type);
+		final Job<T> job                  = new Job<>(executor, priority, uuid, callable);
+
+		if (uuid != null) {
+			jobs.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet()).add(job);
+		}
+
+		try {
+
+			executor.execute(job);
+
+		} catch (RejectedExecutionException rex) {
+
+			unregister(job);
+			throw rex;
+		}
+
+		return job;
+	}
+
+	/**
+	 * Schedules the given probe with high priority, or returns the future
+	 * of an earlier probe with the same cache key.
+	 *
+	 * @param <T>
+	 * @param cacheKey the cache key, or null if the result should not be cached
+	 * @param uuid the UUID of the probed file
+	 * @param callable the probe
+	 *
+	 * @return the future of the probe
+	 * @throws RejectedExecutionException if the probe queue is full
+	 */
+	public synchronized <T> Future<T> probe(final String cacheKey, final String uuid, final Callable<T> callable) {
+
+		if (cacheKey == null) {
+			return submit(JobType.Probe, Priority.High, uuid, callable);
+		}
+
+		Future<T> future = (Future<T>)probeCache.get(cacheKey);
+		if (future == null || future.isCancelled()) {
+
+			future = submit(JobType.Probe, Priority.High, uuid, callable);
+			probeCache.put(cacheKey, future);
+		}
+
+		return future;
+	}
+
+	public void invalidate(final String cacheKey) {
+
+		if (cacheKey != null) {
+			probeCache.remove(cacheKey);
+		}
+	}
+
+	/**
+	 * Cancels all running and waiting jobs of the file with the given UUID.
+	 *
+	 * @param uuid
+	 * @return the number of cancelled jobs
+	 */
+	public int cancel(final String uuid) {
+
+		final Set<Job<?>> set = jobs.remove(uuid);
+		int count             = 0;
+
+		if (set != null) {
+
+			for (final Job<?> job : set) {
+
+				if (job.cancel(true)) {
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	public int getQueueSize(final JobType type) {
+		return executors.get(type).getQueue().size();
+	}
+
+	public int getActiveCount(final JobType type) {
+		return executors.get(type).getActiveCount();
+	}
+
+	// ----- private methods -----
+	private ThreadPoolExecutor createExecutor(final JobType type, final int threads) {
+
+		final AtomicInteger num = new AtomicInteger(0);
+		final int poolSize      = Math.max(1, threads);
+
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new BoundedPriorityBlockingQueue<>(queueSize), r -> {
+
+			final Thread thread = new Thread(r, "Media" + type + "-" + num.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+
+		}, (r, e) -> {
+
+			throw new RejectedExecutionException("Media job queue for " + type + " jobs is full.");
+		});
+
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	private void unregister(final Job<?> job) {
+
+		if (job.uuid != null) {
+
+			jobs.computeIfPresent(job.uuid, (k, set) -> {
+
+				set.remove(job);
+
+				return set.isEmpty() ? null : set;
+			});
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Priority queue that rejects elements when it is full, the size
+	 * check and the insertion are atomic.
+	 */
+	private static class BoundedPriorityBlockingQueue<E> extends PriorityBlockingQueue<E> {
+
+		private int capacity = 0;
+
+		public BoundedPriorityBlockingQueue(final int capacity) {
+			this.capacity = capacity;
+		}
+
+		@Override
+		public synchronized boolean offer(final E e) {
+
+			if (size() >= capacity) {
+				return false;
+			}
+
+			return super.offer(e);
+		}
+	}
+
+	private class Job<T> extends FutureTask<T> implements Comparable<Job<?>> {
+
+		private ThreadPoolExecutor executor = null;
+		private Priority priority           = null;
+		private String uuid                 = null;
+		private long seq                    = 0L;
+
+		public Job(final ThreadPoolExecutor executor, final Priority priority, final String uuid, final Callable<T> callable) {
+
+			super(callable);
+
+			this.executor = executor;
+			this.priority = priority != null ? priority : Priority.Normal;
+			this.seq      = sequence.incrementAndGet();
+			this.uuid     = uuid;
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+
+			final boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+			// free the slot in the queue
+			executor.remove(this);
+
+			return cancelled;
+		}
+
+		@Override
+		public int compareTo(final Job<?> other) {
+
+			final int result = priority.compareTo(other.priority);
+			if (result != 0) {
+
+				return result;
+			}
+
+			return Long.compare(seq, other.seq);
+		}
+
+		@Override
+		protected void done() {
+			unregister(this);
+		}
+	}
+}
@@ -110,6 +110,11 @@ public interface VideoFile extends File {
 			.addException(FrameworkException.class.getName())
 			.setDoExport(true);
 
+		type.addMethod("cancelJobs")
+			.setReturnType("int")
+			.setSource("return " + AVConv.class.getName() + ".newInstance(securityContext, this).cancelJobs();")
+			.setDoExport(true);
+
 		type.relate(type, "HAS_CONVERTED_VIDEO", Cardinality.OneToMany, "originalVideo",      "convertedVideos").setCascadingDelete(Cascade.sourceToTarget);
 		type.relate(img,  "HAS_POSTER_IMAGE",    Cardinality.OneToOne,  "posterImageOfVideo", "posterImage").setCascadingDelete(Cascade.sourceToTarget);
 
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.media;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.media.MediaJobScheduler.JobType;
+import org.structr.media.MediaJobScheduler.Priority;
+
+/**
+ * Tests the bounded queues of the media job scheduler.
+ */
+public class MediaJobSchedulerTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private int probeThreads             = 0;
+	private int metadataThreads          = 0;
+	private int queueSize                = 0;
+
+	@Before
+	public void setup() {
+
+		probeThreads    = Settings.MediaProbeThreads.getValue();
+		metadataThreads = Settings.MediaMetadataThreads.getValue();
+		queueSize       = Settings.MediaQueueSize.getValue();
+
+		Settings.MediaProbeThreads.setValue(1);
+		Settings.MediaMetadataThreads.setValue(1);
+		Settings.MediaQueueSize.setValue(2);
+	}
+
+	@After
+	public void cleanup() {
+
+		release.countDown();
+
+		Settings.MediaProbeThreads.setValue(probeThreads);
+		Settings.MediaMetadataThreads.setValue(metadataThreads);
+		Settings.MediaQueueSize.setValue(queueSize);
+	}
+
+	@Test
+	public void testQueueLimit() throws InterruptedException {
+
+		final MediaJobScheduler scheduler = new MediaJobScheduler();
+		final CountDownLatch started      = new CountDownLatch(1);
+
+		// occupy the only probe thread
+		scheduler.submit(JobType.Probe, Priority.Normal, "blocker", () -> {
+
+			started.countDown();
+
+			return release.await(30, TimeUnit.SECONDS);
+		});
+
+		assertTrue("Job did not start", started.await(10, TimeUnit.SECONDS));
+
+		final AtomicInteger accepted = new AtomicInteger(0);
+		final AtomicInteger rejected = new AtomicInteger(0);
+		final CountDownLatch go      = new CountDownLatch(1);
+		final List<Thread> threads   = new ArrayList<>();
+
+		// submit concurrently, the size check and the insertion must be atomic
+		for (int i=0; i<10; i++) {
+
+			final String uuid   = "job" + i;
+			final Thread thread = new Thread(() -> {
+
+				try {
+
+					go.await();
+
+					scheduler.submit(JobType.Probe, Priority.Normal, uuid, () -> true);
+					accepted.incrementAndGet();
+
+				} catch (RejectedExecutionException rex) {
+
+					rejected.incrementAndGet();
+
+				} catch (InterruptedException iex) {
+				}
+			});
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		go.countDown();
+
+		for (final Thread thread : threads) {
+			thread.join(10000L);
+		}
+
+		assertEquals("Only the queue size should be accepted", 2, accepted.get());
+		assertEquals("Jobs that exceed the queue size should be rejected", 8, rejected.get());
+		assertEquals("Invalid queue size", 2, scheduler.getQueueSize(JobType.Probe));
+
+		// only accepted jobs are registered for cancellation
+		int cancelled = 0;
+
+		for (int i=0; i<10; i++) {
+			cancelled += scheduler.cancel("job" + i);
+		}
+
+		assertEquals("Only accepted jobs should be cancelled", 2, cancelled);
+		assertEquals("Cancelled jobs should free their slots", 0, scheduler.getQueueSize(JobType.Probe));
+	}
+
+	@Test
+	public void testMetadataUpdateProbesAgain() throws Exception {
+
+		final MediaJobScheduler scheduler = new MediaJobScheduler();
+
+		// a metadata update probes the file again when it is finished, like
+		// SetMetadataProcess does, which must not wait for its own pool
+		final Future<Boolean> update = scheduler.submit(JobType.Metadata, Priority.Normal, "video", () -> {
+
+			return scheduler.probe("info:1", "video", () -> true).get(10, TimeUnit.SECONDS);
+		});
+
+		try {
+
+			assertTrue("Probe should succeed", update.get(20, TimeUnit.SECONDS));
+
+		} catch (Throwable t) {
+
+			fail("Metadata update must not wait for a job of its own type.");
+		}
+	}
+}
@@ -27,6 +27,7 @@ import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 
 public class MQTTClientConnection implements MqttCallback {
@@ -34,6 +35,8 @@ public class MQTTClientConnection implements MqttCallback {
 	private MqttConnectOptions connOpts;
 	private MqttClient client;
 	private MQTTInfo info;
+	private volatile MQTTMessageDispatcher dispatcher;
+	private volatile boolean subscribed = false;
 
 	private static final Logger	logger = LoggerFactory.getLogger(MQTTClientConnection.class.getName());
 
@@ -53,6 +56,14 @@ public class MQTTClientConnection implements MqttCallback {
 
 			if(!client.isConnected()){
 
+				if (dispatcher == null) {
+
+					dispatcher = new MQTTMessageDispatcher(info, Settings.MqttThreads.getValue(), Settings.MqttQueueSize.getValue(), Settings.MqttBatchSize.getValue());
+				}
+
+				// the topics must be subscribed again after a new connection
+				subscribed = false;
+
 				client.connect(connOpts);
 				info.connectionStatusCallback(true);
 			}
@@ -71,6 +82,12 @@ public class MQTTClientConnection implements MqttCallback {
 				client.disconnect();
 				info.connectionStatusCallback(false);
 			}
+
+			if (dispatcher != null) {
+
+				dispatcher.shutdown();
+				dispatcher = null;
+			}
 		} catch (MqttException ex) {
 
 			throw new FrameworkException(422, "Error while disconnecting from MQTT broker.");
@@ -82,6 +99,14 @@ public class MQTTClientConnection implements MqttCallback {
 		return client.isConnected();
 	}
 
+	public boolean isSubscribed() {
+		return subscribed;
+	}
+
+	void setSubscribed(final boolean subscribed) {
+		this.subscribed = subscribed;
+	}
+
 	public void sendMessage(String topic, String message) throws FrameworkException {
 
 		try{
@@ -133,51 +158,25 @@ public class MQTTClientConnection implements MqttCallback {
 	@Override
 	public void messageArrived(String topic, MqttMessage msg) throws Exception {
 
-		Thread workerThread = new Thread(new CallbackWorker(info, topic, msg.toString()));
-		workerThread.start();
+		final MQTTMessageDispatcher current = dispatcher;
+		if (current != null) {
+
+			current.dispatch(topic, msg.toString());
+		}
 	}
 
 	@Override
 	public void connectionLost(Throwable cause) {
-		try{
-
-			info.connectionStatusCallback(false);
-			connect();
-			MQTTContext.subscribeAllTopics(info);
-		} catch (FrameworkException ex) {
 
-			try {
+		subscribed = false;
 
-				logger.warn("Removing faulty connection from MQTTContext.");
-				MQTTContext.disconnect(info);
-			} catch (FrameworkException ex1) {
+		info.connectionStatusCallback(false);
 
-				logger.error("Could not remove connection from MQTTContext.");
-			}
-			logger.error("Could not reconnect to MQTT broker.");
-		}
+		// reconnect in the background, the queued messages are still delivered
+		MQTTContext.reconnect(info);
 	}
 
 	@Override
 	public void deliveryComplete(IMqttDeliveryToken token) {
 	}
-
-	private class CallbackWorker implements Runnable {
-		private final MQTTInfo info;
-		private final String topic;
-		private final String message;
-
-		public CallbackWorker(MQTTInfo info, String topic, String message){
-			this.info = info;
-			this.topic = topic;
-			this.message = message;
-		}
-
-		@Override
-		public void run() {
-			info.messageCallback(topic, message);
-		}
-
-	}
-
 }
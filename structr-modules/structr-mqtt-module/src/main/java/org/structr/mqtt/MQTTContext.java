@@ -18,8 +18,11 @@
  */
 package org.structr.mqtt;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.apache.cxf.common.util.StringUtils;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.slf4j.Logger;
@@ -35,7 +38,17 @@ import org.structr.mqtt.entity.MQTTClient;
 public abstract class MQTTContext {
 
 	private static final Logger logger                                 = LoggerFactory.getLogger(MQTTContext.class.getName());
-	private static final Map<String, MQTTClientConnection> connections = new HashMap<>();
+	private static final Map<String, MQTTClientConnection> connections = new ConcurrentHashMap<>();
+	private static final ScheduledExecutorService reconnector          = new ScheduledThreadPoolExecutor(1, r -> {
+
+		final Thread thread = new Thread(r, "MQTTReconnect");
+		thread.setDaemon(true);
+
+		return thread;
+	});
+
+	private static final long MIN_RECONNECT_DELAY = 1L;
+	private static final long MAX_RECONNECT_DELAY = 60L;
 
 	static {
 
@@ -90,9 +103,58 @@ public abstract class MQTTContext {
 
 	}
 
+	/**
+	 * Tries to reconnect the given client in the background, the delay
+	 * between two attempts doubles up to a maximum of one minute. Stops
+	 * when the client was disconnected in the meantime.
+	 *
+	 * @param info
+	 */
+	public static void reconnect(final MQTTInfo info) {
+		scheduleReconnect(info, MIN_RECONNECT_DELAY);
+	}
+
 	public static void subscribeAllTopics(MQTTInfo info) throws FrameworkException {
 
-		MQTTClientConnection con = getClientForId(info.getUuid());
+		subscribeAllTopics(info, getClientForId(info.getUuid()));
+	}
+
+	// ----- package-private static methods -----
+	/**
+	 * Connects the given client and subscribes its topics, unless it is
+	 * connected and subscribed already.
+	 *
+	 * @param info
+	 * @param con
+	 * @return whether the client is connected and subscribed
+	 */
+	static boolean tryReconnect(final MQTTInfo info, final MQTTClientConnection con) {
+
+		if (con.isConnected() && con.isSubscribed()) {
+			return true;
+		}
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			con.connect();
+			subscribeAllTopics(info, con);
+
+			tx.success();
+
+			logger.info("Reconnected to MQTT broker {}", info.getUrl());
+
+			return true;
+
+		} catch (Throwable t) {
+
+			logger.warn("Could not reconnect to MQTT broker {}: {}", info.getUrl(), t.getMessage());
+		}
+
+		return false;
+	}
+
+	// ----- private methods -----
+	private static void subscribeAllTopics(final MQTTInfo info, final MQTTClientConnection con) throws FrameworkException {
 
 		for(String topic : info.getTopics()) {
 			if(!StringUtils.isEmpty(topic)){
@@ -101,6 +163,26 @@ public abstract class MQTTContext {
 			}
 		}
 
+		con.setSubscribed(true);
+	}
+
+	private static void scheduleReconnect(final MQTTInfo info, final long delay) {
+
+		reconnector.schedule(() -> {
+
+			final MQTTClientConnection con = getClientForId(info.getUuid());
+
+			// client was disconnected in the meantime
+			if (con != null && !tryReconnect(info, con)) {
+
+				final long nextDelay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+
+				logger.info("Trying again to reconnect to MQTT broker {} in {} seconds", info.getUrl(), nextDelay);
+
+				scheduleReconnect(info, nextDelay);
+			}
+
+		}, delay, TimeUnit.SECONDS);
 	}
 
 	private static class SubscriptionWorker implements Runnable {
@@ -108,11 +190,6 @@ public abstract class MQTTContext {
 		@Override
 		public void run() {
 
-			// wait for service layer to be initialized
-			while (!Services.getInstance().isInitialized()) {
-				try { Thread.sleep(1000); } catch(InterruptedException iex) { }
-			}
-
 			final App app = StructrApp.getInstance();
 
 			try (final Tx tx = app.tx()) {
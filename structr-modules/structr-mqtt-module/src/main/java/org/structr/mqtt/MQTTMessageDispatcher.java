@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+
+/**
+ * Bounded worker pool that delivers the messages of one MQTT client to its
+ * message callback.
+ *
+ * Each topic is assigned to one of a fixed number of lanes, every lane is
+ * processed by a single thread, so that the messages of a topic are
+ * delivered in the order in which they arrived. A worker takes all queued
+ * messages of its lane, up to the batch size, and delivers each of them in
+ * its own transaction, so that a failing message neither rolls back nor
+ * repeats the delivery of the other messages.
+ *
+ * The lane queues are bounded, if a queue is full, {@link #dispatch} blocks
+ * the receiving thread of the MQTT client until there is room again, which
+ * slows down the broker instead of creating more threads.
+ */
+public class MQTTMessageDispatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(MQTTMessageDispatcher.class.getName());
+
+	private List<BlockingQueue<Message>> lanes = new ArrayList<>();
+	private volatile boolean running           = true;
+	private ExecutorService executor           = null;
+	private MQTTInfo info                      = null;
+	private int batchSize                      = 0;
+
+	public MQTTMessageDispatcher(final MQTTInfo info, final int threads, final int queueSize, final int batchSize) {
+
+		final int laneCount     = Math.max(1, threads);
+		final AtomicInteger num = new AtomicInteger(0);
+
+		this.info      = info;
+		this.batchSize = Math.max(1, batchSize);
+		this.executor  = Executors.newFixedThreadPool(laneCount, r -> {
+
+			final Thread thread = new Thread(r, "MQTT-" + info.getUuid() + "-" + num.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		for (int i=0; i<laneCount; i++) {
+
+			final BlockingQueue<Message> lane = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+
+			lanes.add(lane);
+			executor.execute(() -> work(lane));
+		}
+	}
+
+	/**
+	 * Queues the given message for delivery, blocks while the queue of the
+	 * topic's lane is full.
+	 *
+	 * @param topic
+	 * @param message
+	 * @throws InterruptedException
+	 */
+	public void dispatch(final String topic, final String message) throws InterruptedException {
+
+		if (running) {
+
+			lanes.get((topic.hashCode() & Integer.MAX_VALUE) % lanes.size()).put(new Message(topic, message));
+		}
+	}
+
+	public int getQueueDepth() {
+
+		int depth = 0;
+
+		for (final BlockingQueue<Message> lane : lanes) {
+			depth += lane.size();
+		}
+
+		return depth;
+	}
+
+	/**
+	 * Stops accepting messages, the queued messages are still delivered.
+	 */
+	public void shutdown() {
+
+		running = false;
+		executor.shutdown();
+	}
+
+	// ----- private methods -----
+	private void work(final BlockingQueue<Message> lane) {
+
+		final List<Message> batch = new ArrayList<>(batchSize);
+
+		while (running || !lane.isEmpty()) {
+
+			try {
+
+				final Message first = lane.poll(1, TimeUnit.SECONDS);
+				if (first != null) {
+
+					batch.add(first);
+					lane.drainTo(batch, batchSize - 1);
+
+					for (final Message message : batch) {
+						deliver(message);
+					}
+
+					batch.clear();
+				}
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void deliver(final Message message) {
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			info.messageCallback(message.topic, message.message);
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to deliver MQTT message on topic {}: {}", message.topic, t.getMessage());
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Message {
+
+		private String message = null;
+		private String topic   = null;
+
+		public Message(final String topic, final String message) {
+
+			this.topic   = topic;
+			this.message = message;
+		}
+	}
+}
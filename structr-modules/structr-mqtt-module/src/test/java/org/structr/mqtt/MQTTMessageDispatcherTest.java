@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.mqtt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.GenericNode;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+
+/**
+ * Tests the delivery of MQTT messages through the dispatcher.
+ */
+public class MQTTMessageDispatcherTest extends StructrMQTTModuleTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(MQTTMessageDispatcherTest.class.getName());
+
+	@Test
+	public void testFailedMessageIsIsolated() throws InterruptedException {
+
+		final TestInfo info                    = new TestInfo();
+		final MQTTMessageDispatcher dispatcher = new MQTTMessageDispatcher(info, 1, 10, 10);
+
+		// the worker takes all queued messages of the lane as one batch
+		dispatcher.dispatch("topic", "one");
+		dispatcher.dispatch("topic", "fail");
+		dispatcher.dispatch("topic", "three");
+
+		info.waitFor(3);
+		dispatcher.shutdown();
+
+		assertEquals("Each message must be delivered exactly once", Arrays.asList("topic:one", "topic:fail", "topic:three"), info.getDelivered());
+
+		try (final Tx tx = app.tx()) {
+
+			final List<String> names = new LinkedList<>();
+
+			for (final NodeInterface node : app.nodeQuery(GenericNode.class).getAsList()) {
+				names.add(node.getName());
+			}
+
+			Collections.sort(names);
+
+			assertEquals("Only the changes of the failed message should be rolled back", Arrays.asList("one", "three"), names);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testTopicOrder() throws InterruptedException {
+
+		final TestInfo info                    = new TestInfo();
+		final MQTTMessageDispatcher dispatcher = new MQTTMessageDispatcher(info, 4, 5, 3);
+		final int count                        = 50;
+
+		for (int i=0; i<count; i++) {
+
+			for (int t=0; t<4; t++) {
+				dispatcher.dispatch("topic" + t, Integer.toString(i));
+			}
+		}
+
+		info.waitFor(count * 4);
+		dispatcher.shutdown();
+
+		final Map<String, List<String>> messagesByTopic = new ConcurrentHashMap<>();
+
+		for (final String delivered : info.getDelivered()) {
+
+			final String[] parts = delivered.split(":");
+
+			messagesByTopic.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
+		}
+
+		for (int t=0; t<4; t++) {
+
+			final List<String> messages = messagesByTopic.get("topic" + t);
+
+			assertEquals("Invalid number of messages", count, messages.size());
+
+			for (int i=0; i<count; i++) {
+				assertEquals("Messages of a topic must be delivered in order", Integer.toString(i), messages.get(i));
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	static class TestInfo implements MQTTInfo {
+
+		private final List<String> delivered = new ArrayList<>();
+
+		@Override
+		public String getProtocol() {
+			return "tcp://";
+		}
+
+		@Override
+		public String getUrl() {
+			return "localhost";
+		}
+
+		@Override
+		public int getPort() {
+			return 1883;
+		}
+
+		@Override
+		public int getQos() {
+			return 0;
+		}
+
+		@Override
+		public String getUuid() {
+			return "test";
+		}
+
+		@Override
+		public String[] getTopics() {
+			return new String[] { "topic" };
+		}
+
+		@Override
+		public void messageCallback(final String topic, final String message) {
+
+			synchronized (delivered) {
+
+				delivered.add(topic + ":" + message);
+				delivered.notifyAll();
+			}
+
+			try {
+
+				StructrApp.getInstance().create(GenericNode.class, message);
+
+			} catch (FrameworkException fex) {
+				throw new RuntimeException(fex);
+			}
+
+			if ("fail".equals(message)) {
+				throw new RuntimeException("Message failed");
+			}
+		}
+
+		@Override
+		public void connectionStatusCallback(final boolean connected) {
+		}
+
+		public List<String> getDelivered() {
+
+			synchronized (delivered) {
+				return new ArrayList<>(delivered);
+			}
+		}
+
+		public void waitFor(final int count) throws InterruptedException {
+
+			final long timeout = System.currentTimeMillis() + 30000L;
+
+			synchronized (delivered) {
+
+				while (delivered.size() < count && System.currentTimeMillis() < timeout) {
+					delivered.wait(100L);
+				}
+			}
+
+			// wait for the transaction of the last message
+			Thread.sleep(500L);
+		}
+	}
+}
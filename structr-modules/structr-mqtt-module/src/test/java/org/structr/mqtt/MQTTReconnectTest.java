@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.mqtt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.structr.common.error.FrameworkException;
+
+/**
+ * Tests that a reconnect is only finished when the topics are subscribed.
+ */
+public class MQTTReconnectTest extends StructrMQTTModuleTest {
+
+	@Test
+	public void testReconnectAfterFailedSubscription() throws MqttException {
+
+		final MQTTMessageDispatcherTest.TestInfo info = new MQTTMessageDispatcherTest.TestInfo();
+		final TestConnection con                      = new TestConnection(info);
+
+		// the connection is established, but subscribing the topics fails
+		assertFalse("Reconnect must fail if the topics cannot be subscribed", MQTTContext.tryReconnect(info, con));
+		assertTrue("Client should be connected", con.isConnected());
+		assertFalse("Client must not be subscribed", con.isSubscribed());
+
+		// the next attempt must subscribe the topics although the client is connected
+		assertTrue("Reconnect should succeed", MQTTContext.tryReconnect(info, con));
+		assertTrue("Client should be subscribed", con.isSubscribed());
+		assertEquals("Client should connect once", 1, con.connects);
+		assertEquals("Topics should be subscribed again", Arrays.asList("topic", "topic"), con.subscriptions);
+
+		// nothing to do for a connected and subscribed client
+		assertTrue("Reconnect should succeed", MQTTContext.tryReconnect(info, con));
+		assertEquals("Topics must not be subscribed again", 2, con.subscriptions.size());
+
+		// a lost connection requires a new subscription
+		con.connectionLost(new Exception("lost"));
+
+		assertFalse("Client must not be subscribed after the connection was lost", con.isSubscribed());
+	}
+
+	// ----- nested classes -----
+	private static class TestConnection extends MQTTClientConnection {
+
+		private final List<String> subscriptions = new ArrayList<>();
+		private boolean connected                = false;
+		private int connects                     = 0;
+
+		public TestConnection(final MQTTInfo info) throws MqttException {
+			super(info);
+		}
+
+		@Override
+		public void connect() throws FrameworkException {
+
+			if (!connected) {
+
+				setSubscribed(false);
+
+				connected = true;
+				connects++;
+			}
+		}
+
+		@Override
+		public boolean isConnected() {
+			return connected;
+		}
+
+		@Override
+		public void subscribeTopic(final String topic) throws FrameworkException {
+
+			subscriptions.add(topic);
+
+			if (subscriptions.size() == 1) {
+				throw new FrameworkException(422, "Error while subscribing to topic.");
+			}
+		}
+
+		@Override
+		public void connectionLost(final Throwable cause) {
+
+			connected = false;
+
+			super.connectionLost(cause);
+		}
+	}
+}
@@ -23,11 +23,11 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
@@ -45,7 +45,6 @@ import org.w3c.dom.NodeList;
 
 public class OWLInstance extends RDFItem<OWLInstance> {
 
-	private static final Map<URI, NodeInterface> instances = new LinkedHashMap<>();
 	private final SimpleDateFormat isoFormat                = new SimpleDateFormat(ISO8601DateProperty.getDefaultFormat());
 	private final SimpleDateFormat dateFormat              = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
 	protected OWLClass type                                = null;
@@ -76,10 +75,11 @@ public class OWLInstance extends RDFItem<OWLInstance> {
 			originIdKey = StructrApp.key(nodeType, "originId");
 			if (originIdKey != null) {
 
-				instance = app.create(nodeType, new NodeAttribute(originIdKey, getId().toString()));
-				if (instance != null) {
+				// the node exists if the import is resumed after a batch was committed but not checkpointed
+				instance = (NodeInterface)app.nodeQuery(nodeType).and(originIdKey, getId().toString()).getFirst();
+				if (instance == null) {
 
-					instances.put(getId(), instance);
+					instance = app.create(nodeType, new NodeAttribute(originIdKey, getId().toString()));
 				}
 
 			} else {
@@ -93,14 +93,65 @@ public class OWLInstance extends RDFItem<OWLInstance> {
 		}
 	}
 
-	public void resolveExtensions(final App app, final Map<String, OWLClass> owlClassesByFragment, final Map<URI, OWLInstance> owlInstances, final List<OWLInstance> newInstances) throws FrameworkException {
+	/**
+	 * Looks up the database node that was created for this instance in an
+	 * earlier transaction.
+	 *
+	 * @param app
+	 * @throws FrameworkException
+	 */
+	public void lookupDatabaseNode(final App app) throws FrameworkException {
+
+		final ConfigurationProvider config = StructrApp.getConfiguration();
+		final String className             = type.getStructrName(true);
+		nodeType = config.getNodeEntityClass(className);
+
+		if (nodeType != null) {
+
+			originIdKey = StructrApp.key(nodeType, "originId");
+			if (originIdKey != null) {
+
+				instance = (NodeInterface)app.nodeQuery(nodeType).and(originIdKey, getId().toString()).getFirst();
+			}
+		}
+	}
+
+	public void resolveExtensions(final App app, final Map<String, OWLClass> owlClassesByFragment) throws FrameworkException {
 
-		final NodeList extensions          = getElements(getElement(), "krdf:KExtendedByRelation");
 		final ConfigurationProvider config = StructrApp.getConfiguration();
 		final Class baseType               = config.getNodeEntityClass("BaseNode");
 		final PropertyKey extensionsKey    = StructrApp.key(baseType, "extendedBy");
 
-		if (extensions != null && extensionsKey != null) {
+		if (extensionsKey != null) {
+
+			for (final OWLInstance inst : getExtensions(owlClassesByFragment)) {
+
+				inst.createDatabaseNode(app);
+
+				if (instance != null) {
+
+					// create extension entity and link
+					final Set extendedBySet = new HashSet<>((List)instance.getProperty(extensionsKey));
+					extendedBySet.add(inst.instance);
+
+					instance.setProperty(extensionsKey, new LinkedList<>(extendedBySet));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the typed instances that extend this instance.
+	 *
+	 * @param owlClassesByFragment
+	 * @return the extension instances
+	 */
+	public List<OWLInstance> getExtensions(final Map<String, OWLClass> owlClassesByFragment) {
+
+		final List<OWLInstance> result = new LinkedList<>();
+		final NodeList extensions      = getElements(getElement(), "krdf:KExtendedByRelation");
+
+		if (extensions != null) {
 
 			int len = extensions.getLength();
 			for (int i=0; i<len; i++) {
@@ -128,18 +179,7 @@ public class OWLInstance extends RDFItem<OWLInstance> {
 									if (owlType != null) {
 
 										inst.setType(owlType);
-										newInstances.add(inst);
-
-										inst.createDatabaseNode(app);
-
-										if (instance != null) {
-
-											// create extension entity and link
-											final Set extendedBySet = new HashSet<>((List)instance.getProperty(extensionsKey));
-											extendedBySet.add(inst.instance);
-
-											instance.setProperty(extensionsKey, new LinkedList<>(extendedBySet));
-										}
+										result.add(inst);
 									}
 								}
 							}
@@ -149,6 +189,8 @@ public class OWLInstance extends RDFItem<OWLInstance> {
 				}
 			}
 		}
+
+		return result;
 	}
 
 	public void resolveProperties() throws FrameworkException {
@@ -216,7 +258,7 @@ public class OWLInstance extends RDFItem<OWLInstance> {
 		}
 	}
 
-	public void resolveRelationships(final JsonSchema schema, final Map<String, OWLClass> owlClassesByFragment, final Map<URI, OWLInstance> instances, final Map<String, RDFDescription> descriptions, final Map<String, OWLProperty> properties) throws FrameworkException {
+	public void resolveRelationships(final JsonSchema schema, final Map<String, OWLClass> owlClassesByFragment, final Function<URI, NodeInterface> instances, final Map<String, RDFDescription> descriptions, final Map<String, OWLProperty> properties) throws FrameworkException {
 
 		if (instance != null && type != null) {
 
@@ -240,7 +282,7 @@ public class OWLInstance extends RDFItem<OWLInstance> {
 
 						if (reference != null) {
 
-							final OWLInstance relatedInstance = instances.get(URI.create(reference));
+							final NodeInterface relatedInstance = instances.apply(URI.create(reference));
 							if (relatedInstance != null) {
 
 								final OWLClass relationshipType = owlClassesByFragment.get(tagName);
@@ -262,12 +304,19 @@ public class OWLInstance extends RDFItem<OWLInstance> {
 
 											if (sourceKey != null && targetKey != null) {
 
-												if (this.instance != null && relatedInstance.instance != null) {
+												if (this.instance != null) {
+
+													final App app = StructrApp.getInstance();
 
-													final NodeInterface hyperNode = StructrApp.getInstance().create(hyperRelationshipType,
-														new NodeAttribute(sourceKey, this.instance),
-														new NodeAttribute(targetKey, relatedInstance.instance)
-													);
+													// the hyper node exists if the import is resumed after a batch was committed but not checkpointed
+													NodeInterface hyperNode = (NodeInterface)app.nodeQuery(hyperRelationshipType).and(sourceKey, this.instance).and(targetKey, relatedInstance).getFirst();
+													if (hyperNode == null) {
+
+														hyperNode = app.create(hyperRelationshipType,
+															new NodeAttribute(sourceKey, this.instance),
+															new NodeAttribute(targetKey, relatedInstance)
+														);
+													}
 
 													// resolve properties that come via rdf:Description
 													final String referenceId = getAttribute(element, "rdf:ID");
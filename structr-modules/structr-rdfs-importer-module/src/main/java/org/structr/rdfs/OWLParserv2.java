@@ -19,9 +19,13 @@
 package org.structr.rdfs;
 
 import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.FileVisitResult;
@@ -35,10 +39,12 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.zip.CRC32;
 import org.apache.commons.lang.StringUtils;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
@@ -65,9 +71,7 @@ import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
 import org.structr.web.entity.File;
 import org.structr.web.entity.Image;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 
 public class OWLParserv2 {
@@ -88,6 +92,8 @@ public class OWLParserv2 {
 
 	public static PrintWriter logger                     = null;
 
+	private static final int BATCH_SIZE                  = 100;
+
 	static {
 
 		unwantedPrefixes.add("http://www.intelligent-views.de");
@@ -152,9 +158,10 @@ public class OWLParserv2 {
 	private final Map<URI, OWLProperty> owlPropertiesByURI     = new TreeMap<>();
 	private final Map<String, RDFDescription> rdfDescriptions  = new TreeMap<>();
 	private final Map<String, OWLClass> owlClassesByFragment   = new TreeMap<>();
-	private final Map<URI, OWLInstance> owlInstances           = new TreeMap<>();
 	private final Map<URI, OWLClass> owlClassesByURI           = new TreeMap<>();
 
+	private final FixedSizeCache<URI, NodeInterface> nodeCache = new FixedSizeCache<>(10000);
+
 	private final boolean importSchema                         = true;
 	private final boolean importData                           = true;
 	private final boolean importFiles                          = false;
@@ -191,13 +198,14 @@ public class OWLParserv2 {
 
 		try (final App app = StructrApp.getInstance()) {
 
-			final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new java.io.File(fileName));
+			final java.io.File file     = new java.io.File(fileName);
+			final Checkpoint checkpoint = new Checkpoint(new java.io.File(fileName + ".checkpoint"), file);
 
 			System.out.println("Parsing XML document..");
 			logger.println("Parsing XML document..");
 
-			// parse XML document
-			parseDocument(doc.getDocumentElement(), 0);
+			// parse classes, properties and descriptions, instances are read later
+			RDFStreamReader.read(file, (index, tagName) -> isSchemaElement(tagName), (index, element) -> parseSchemaElement(element));
 
 			System.out.println("Filtering unwanted classes..");
 			logger.println("Filtering unwanted classes..");
@@ -234,306 +242,87 @@ public class OWLParserv2 {
 					owlProperty.resolveClassProperties(owlClassesByURI);
 				}
 
+				final JsonSchema schema;
 
-				final JsonSchema schema = StructrSchema.newInstance(URI.create("http://localhost/test/#"));
-
-				// create common base class
-				final JsonType baseType = schema.addType("BaseNode");
-				final JsonType nameType = schema.addType("LocalizedName");
-
-				nameType.addStringProperty("locale").setIndexed(true);
-				nameType.addStringProperty("name").setIndexed(true);
-
-				baseType.addStringProperty("originId").setIndexed(true);
-				baseType.addDateProperty("createdAt").setIndexed(true);
-				baseType.addDateProperty("modifiedAt").setIndexed(true);
-				baseType.addFunctionProperty("isFallbackLang", "ui").setContentType("application/x-structr-script").setReadFunction("(empty(get_or_null(first(filter(this.names, equal(data.locale, substring(locale, 0, 2)))), 'name')))").setIndexed(true);
-				baseType.addFunctionProperty("localizedName", "ui").setContentType("application/x-structr-script").setReadFunction("(if (equal('zh', substring(locale, 0, 2)),(if (empty(first(filter(this.names, equal(data.locale, 'zh')))),if (empty(first(filter(this.names, equal(data.locale, 'en')))),get_or_null(first(filter(this.names, equal(data.locale, 'de'))), 'name'),get(first(filter(this.names, equal(data.locale, 'en'))), 'name')),get(first(filter(this.names, equal(data.locale, 'zh'))), 'name'))),if (equal('de', substring(locale, 0, 2)),(if (empty(first(filter(this.names, equal(data.locale, 'de')))),if (empty(first(filter(this.names, equal(data.locale, 'en')))),get_or_null(first(filter(this.names, equal(data.locale, 'zh'))), 'name'),get(first(filter(this.names, equal(data.locale, 'en'))), 'name')),get(first(filter(this.names, equal(data.locale, 'de'))), 'name'))),(if (empty(first(filter(this.names, equal(data.locale, 'en')))),if (empty(first(filter(this.names, equal(data.locale, 'de')))),get_or_null(first(filter(this.names, equal(data.locale, 'zh'))), 'name'),get(first(filter(this.names, equal(data.locale, 'de'))), 'name')),get(first(filter(this.names, equal(data.locale, 'en'))), 'name'))))))").setIndexed(true);
-				baseType.addFunctionProperty("nameDE", "ui").setContentType("application/x-structr-script").setReadFunction("get_or_null(first(filter(this.names, equal(data.locale, 'de'))), 'name')").setWriteFunction("(store('node', first(filter(this.names, equal(data.locale, 'de')))),if (empty(retrieve('node')),set(this, 'names', merge(this.names, create('LocalizedName', 'locale', 'de', 'name', value))),(if (empty(value),delete(retrieve('node')),set(retrieve('node'), 'name', value)))))").setIndexed(true);
-				baseType.addFunctionProperty("nameEN", "ui").setContentType("application/x-structr-script").setReadFunction("get_or_null(first(filter(this.names, equal(data.locale, 'en'))), 'name')").setWriteFunction("(store('node', first(filter(this.names, equal(data.locale, 'en')))),if (empty(retrieve('node')),set(this, 'names', merge(this.names, create('LocalizedName', 'locale', 'en', 'name', value))),(if (empty(value),delete(retrieve('node')),set(retrieve('node'), 'name', value)))))").setIndexed(true);
-				baseType.addFunctionProperty("nameZH", "ui").setContentType("application/x-structr-script").setReadFunction("get_or_null(first(filter(this.names, equal(data.locale, 'zh'))), 'name')").setWriteFunction("(store('node', first(filter(this.names, equal(data.locale, 'zh')))),if (empty(retrieve('node')),set(this, 'names', merge(this.names, create('LocalizedName', 'locale', 'zh', 'name', value))),(if (empty(value),delete(retrieve('node')),set(retrieve('node'), 'name', value)))))").setIndexed(true);
-
-				final JsonReferenceType names = ((JsonObjectType)baseType).relate((JsonObjectType)nameType, "HasName", Cardinality.OneToMany);
-				names.setSourcePropertyName("isNameOf");
-				names.setTargetPropertyName("names");
+				if (checkpoint.getPhase() == Phase.Schema) {
 
-				final JsonReferenceType extensions = ((JsonObjectType)baseType).relate((JsonObjectType)baseType, "ExtendedBy", Cardinality.ManyToMany);
-				extensions.setSourcePropertyName("extends");
-				extensions.setTargetPropertyName("extendedBy");
+					schema = createSchema(app);
 
-				baseType.addStringProperty("name").setIndexed(true);
+					checkpoint.save(Phase.Instances, 0);
 
-				System.out.println("Creating schema..");
-				logger.println("Creating schema..");
+				} else {
 
+					System.out.println("Schema already created, resuming import at " + checkpoint.getPhase() + " " + checkpoint.getPosition());
+					logger.println("Schema already created, resuming import at " + checkpoint.getPhase() + " " + checkpoint.getPosition());
 
-				try (final Tx tx = StructrApp.getInstance().tx()) {
+					try (final Tx tx = app.tx()) {
 
-					for (final OWLClass owlClass : owlClassesByURI.values()) {
-
-						final String name = owlClass.getStructrName(true);
-						if (name != null && schema.getType(name) == null && owlClass.isPrimary()) {
-
-							logger.println("Creating type " + name + "..");
-							schema.addType(name);
-						}
+						schema = StructrSchema.createFromDatabase(app);
+						tx.success();
 					}
-
-					StructrSchema.replaceDatabaseSchema(app, schema);
-
-					tx.success();
-
-				} catch (FrameworkException fex) {
-					System.out.println(fex.getErrorBuffer().getErrorTokens());
 				}
 
-				// resolve inheritance
-				System.out.println("Resolving class inheritance..");
-				logger.println("Resolving class inheritance..");
-
-				try (final Tx tx = StructrApp.getInstance().tx()) {
+				if (importData) {
 
-					for (final OWLClass owlClass : owlClassesByURI.values()) {
+					if (checkpoint.getPhase() == Phase.Instances) {
 
-						final String name         = owlClass.getStructrName(true);
-						final JsonType type       = schema.getType(name);
-						final OWLClass superclass = owlClass.getSuperclass();
+						// create instances
+						System.out.println("Resolving instances..");
+						logger.println("Resolving instances..");
 
-						// type can be null if it is inverseOf another type
-						if (type != null) {
+						final int start = checkpoint.getPosition();
 
-							if (superclass != null) {
+						try (final Batch batch = new Batch(app, checkpoint, Phase.Instances)) {
 
-								final JsonType superType = schema.getType(superclass.getStructrName(true));
-								if (superType != null) {
+							RDFStreamReader.read(file, (index, tagName) -> index >= start && !isSchemaElement(tagName), (index, element) -> {
 
-									type.setExtends(superType);
+								batch.begin();
 
-								} else {
+								final OWLInstance instance = createInstance(element);
+								if (instance != null && instance.getType() != null) {
 
-									type.setExtends(baseType);
+									instance.createDatabaseNode(app);
+									instance.resolveProperties();
+									instance.resolveExtensions(app, owlClassesByFragment);
 								}
 
-							} else {
+								batch.next(index);
+							});
 
-								type.setExtends(baseType);
-							}
-
-							for (final Name localizedName : owlClass.getNames()) {
-
-								app.create(Localization.class,
-									new NodeAttribute(StructrApp.key(Localization.class, "name"), name),
-									new NodeAttribute(StructrApp.key(Localization.class, "localizedName"), localizedName.name),
-									new NodeAttribute(StructrApp.key(Localization.class, "locale"), localizedName.lang)
-								);
-							}
+							batch.finish(Phase.Relationships);
 						}
 					}
 
-					StructrSchema.replaceDatabaseSchema(app, schema);
+					if (checkpoint.getPhase() == Phase.Relationships) {
 
-					tx.success();
+						System.out.println("Resolving instance relationships..");
+						logger.println("Resolving instance relationships..");
 
-				} catch (FrameworkException fex) {
-					System.out.println(fex.getErrorBuffer().getErrorTokens());
-				}
+						final int start = checkpoint.getPosition();
 
-				// resolve relationship types
-				System.out.println("Resolving relationship types..");
-				logger.println("Resolving relationship types..");
+						try (final Batch batch = new Batch(app, checkpoint, Phase.Relationships)) {
 
-				try (final Tx tx = StructrApp.getInstance().tx()) {
+							RDFStreamReader.read(file, (index, tagName) -> index >= start && !isSchemaElement(tagName), (index, element) -> {
 
-					for (final OWLClass possibleOutgoingRelationshipType : owlClassesByURI.values()) {
+								batch.begin();
 
-						final OWLClass possibleIncomingRelationshipType = possibleOutgoingRelationshipType.getInverse();
-						if (possibleOutgoingRelationshipType.isPrimary() && possibleIncomingRelationshipType != null) {
+								final OWLInstance instance = createInstance(element);
+								if (instance != null) {
 
-							// this is a relationship
-							final List<OWLClass> sourceTypes = possibleOutgoingRelationshipType.getActualSourceTypes();
-							final List<OWLClass> targetTypes = possibleOutgoingRelationshipType.getActualTargetTypes();
+									resolveRelationships(app, schema, instance);
 
-							for (final OWLClass sourceType : sourceTypes) {
-
-								for (final OWLClass targetType : targetTypes) {
-
-									final String sourceName     = possibleOutgoingRelationshipType.getStructrName(false);
-									final String targetName     = possibleIncomingRelationshipType.getStructrName(false);
-									final String sourceTypeName = sourceType.getStructrName(true);
-									final String targetTypeName = targetType.getStructrName(true);
-
-									final JsonType sourceJsonType = schema.getType(sourceTypeName);
-									final JsonType targetJsonType = schema.getType(targetTypeName);
-
-									if (sourceJsonType != null && targetJsonType != null) {
-
-										final String relationshipTypeName = possibleOutgoingRelationshipType.getStructrName(true);
-										final JsonObjectType relType      = schema.addType(relationshipTypeName);
-										final JsonObjectType srcType      = (JsonObjectType)sourceJsonType;
-										final JsonObjectType tgtType      = (JsonObjectType)targetJsonType;
-
-										srcType.relate(relType, sourceName, Cardinality.OneToMany, sourceType.getStructrName(false), sourceName);
-										relType.relate(tgtType, targetName, Cardinality.ManyToOne, targetName, targetType.getStructrName(false));
-
-										possibleOutgoingRelationshipType.setIsRelationship(true);
+									// extension instances are not top-level elements
+									for (final OWLInstance extension : instance.getExtensions(owlClassesByFragment)) {
+										resolveRelationships(app, schema, extension);
 									}
 								}
-							}
-						}
-					}
-
-					StructrSchema.replaceDatabaseSchema(app, schema);
-
-					tx.success();
-
-				} catch (FrameworkException fex) {
-
-					System.out.println(fex.getErrorBuffer().getErrorTokens());
-				}
-
-				System.out.println("Adding properties to types");
-				logger.println("Adding properties to types");
-
-				try (final Tx tx = StructrApp.getInstance().tx()) {
-
-					for (final OWLClass owlClass : owlClassesByURI.values()) {
-
-						final String typeName = owlClass.getStructrName(true);
-						JsonType type         = schema.getType(typeName);
-
-						// type not found, try to set property on inverse type
-						if (type == null) {
 
-							final OWLClass inverse = owlClass.getInverse();
-							if (inverse != null) {
+								batch.next(index);
+							});
 
-								type = schema.getType(inverse.getStructrName(true));
-							}
-						}
-
-						if (type != null) {
-
-							for (final OWLProperty prop : owlClass.getAllProperties()) {
-
-								addProperty(type, prop, prop.getStructrName(false));
-							}
-
-						} else {
-
-							System.out.println("Class: no type found for " + owlClass.getId());
-						}
-					}
-
-					StructrSchema.replaceDatabaseSchema(app, schema);
-
-					tx.success();
-				}
-
-				System.out.println("Adding metdata to node types");
-				logger.println("Adding metdata to node types");
-
-				try (final Tx tx = StructrApp.getInstance().tx()) {
-
-					for (final OWLClass owlClass : owlClassesByURI.values()) {
-
-						final String name           = owlClass.getStructrName(true);
-						final SchemaNode schemaNode = app.nodeQuery(SchemaNode.class).andName(name).getFirst();
-						String icon                 = owlClass.getIcon();
-
-						if (schemaNode != null) {
-
-							// truncate icon name, use only the
-							// part after the second dash
-							if (icon != null && icon.contains("-")) {
-
-								// start with
-								final int pos = icon.indexOf("-", 7);
-								if (pos > -1) {
-
-									icon = icon.substring(pos + 1);
-								}
-							}
-
-							schemaNode.setProperty(SchemaNode.icon, icon);
+							batch.finish(Phase.Done);
 						}
 					}
-
-					tx.success();
-
-				} catch (FrameworkException fex) {
-					System.out.println(fex.getErrorBuffer().getErrorTokens());
-				}
-
-				// create instances
-				System.out.println("Resolving instances..");
-				logger.println("Resolving instances..");
-
-				final Iterator<OWLInstance> instancesIterator = owlInstances.values().iterator();
-				final List<OWLInstance> newInstances          = new LinkedList<>();
-				int count                                      = 0;
-
-				while (instancesIterator.hasNext()) {
-
-					try (final Tx tx = StructrApp.getInstance().tx()) {
-
-						while (instancesIterator.hasNext()) {
-
-							final OWLInstance instance = instancesIterator.next();
-							final OWLClass owlType     = instance.getType();
-
-							if (owlType != null) {
-
-								instance.createDatabaseNode(app);
-								instance.resolveProperties();
-								instance.resolveExtensions(app, owlClassesByFragment, owlInstances, newInstances);
-							}
-
-							if (++count == 100) {
-
-								count = 0;
-								break;
-							}
-						}
-
-						tx.success();
-					}
-				}
-
-				// add newly created extension instances to global map
-				for (final OWLInstance newInstance : newInstances) {
-					owlInstances.put(newInstance.getId(), newInstance);
-				}
-
-
-				System.out.println("Resolving instance relationships..");
-				logger.println("Resolving instance relationships..");
-
-				final Iterator<OWLInstance> relationshipsIterator = owlInstances.values().iterator();
-				count = 0;
-
-				while (relationshipsIterator.hasNext()) {
-
-					try (final Tx tx = StructrApp.getInstance().tx()) {
-
-						while (relationshipsIterator.hasNext()) {
-
-							final OWLInstance instance = relationshipsIterator.next();
-							final OWLClass owlType     = instance.getType();
-
-							if (owlType != null) {
-
-								instance.resolveRelationships(schema, owlClassesByFragment, owlInstances, rdfDescriptions, owlPropertiesByName);
-							}
-
-							if (++count == 100) {
-
-								count = 0;
-								break;
-							}
-						}
-
-						tx.success();
-					}
 				}
 			}
 
@@ -790,6 +579,9 @@ public class OWLParserv2 {
 
 		if (success) {
 
+			// the next import starts from the beginning
+			new java.io.File(fileName + ".checkpoint").delete();
+
 			System.out.println("Import successful");
 			logger.println("Import successful");
 		}
@@ -869,7 +661,292 @@ public class OWLParserv2 {
 
 	}
 
-	private void parseDocument(final Element element, final int depth) {
+	private JsonSchema createSchema(final App app) throws FrameworkException, URISyntaxException {
+
+		final JsonSchema schema = StructrSchema.newInstance(URI.create("http://localhost/test/#"));
+
+		// create common base class
+		final JsonType baseType = schema.addType("BaseNode");
+		final JsonType nameType = schema.addType("LocalizedName");
+
+		nameType.addStringProperty("locale").setIndexed(true);
+		nameType.addStringProperty("name").setIndexed(true);
+
+		baseType.addStringProperty("originId").setIndexed(true);
+		baseType.addDateProperty("createdAt").setIndexed(true);
+		baseType.addDateProperty("modifiedAt").setIndexed(true);
+		baseType.addFunctionProperty("isFallbackLang", "ui").setContentType("application/x-structr-script").setReadFunction("(empty(get_or_null(first(filter(this.names, equal(data.locale, substring(locale, 0, 2)))), 'name')))").setIndexed(true);
+		baseType.addFunctionProperty("localizedName", "ui").setContentType("application/x-structr-script").setReadFunction("(if (equal('zh', substring(locale, 0, 2)),(if (empty(first(filter(this.names, equal(data.locale, 'zh')))),if (empty(first(filter(this.names, equal(data.locale, 'en')))),get_or_null(first(filter(this.names, equal(data.locale, 'de'))), 'name'),get(first(filter(this.names, equal(data.locale, 'en'))), 'name')),get(first(filter(this.names, equal(data.locale, 'zh'))), 'name'))),if (equal('de', substring(locale, 0, 2)),(if (empty(first(filter(this.names, equal(data.locale, 'de')))),if (empty(first(filter(this.names, equal(data.locale, 'en')))),get_or_null(first(filter(this.names, equal(data.locale, 'zh'))), 'name'),get(first(filter(this.names, equal(data.locale, 'en'))), 'name')),get(first(filter(this.names, equal(data.locale, 'de'))), 'name'))),(if (empty(first(filter(this.names, equal(data.locale, 'en')))),if (empty(first(filter(this.names, equal(data.locale, 'de')))),get_or_null(first(filter(this.names, equal(data.locale, 'zh'))), 'name'),get(first(filter(this.names, equal(data.locale, 'de'))), 'name')),get(first(filter(this.names, equal(data.locale, 'en'))), 'name'))))))").setIndexed(true);
+		baseType.addFunctionProperty("nameDE", "ui").setContentType("application/x-structr-script").setReadFunction("get_or_null(first(filter(this.names, equal(data.locale, 'de'))), 'name')").setWriteFunction("(store('node', first(filter(this.names, equal(data.locale, 'de')))),if (empty(retrieve('node')),set(this, 'names', merge(this.names, create('LocalizedName', 'locale', 'de', 'name', value))),(if (empty(value),delete(retrieve('node')),set(retrieve('node'), 'name', value)))))").setIndexed(true);
+		baseType.addFunctionProperty("nameEN", "ui").setContentType("application/x-structr-script").setReadFunction("get_or_null(first(filter(this.names, equal(data.locale, 'en'))), 'name')").setWriteFunction("(store('node', first(filter(this.names, equal(data.locale, 'en')))),if (empty(retrieve('node')),set(this, 'names', merge(this.names, create('LocalizedName', 'locale', 'en', 'name', value))),(if (empty(value),delete(retrieve('node')),set(retrieve('node'), 'name', value)))))").setIndexed(true);
+		baseType.addFunctionProperty("nameZH", "ui").setContentType("application/x-structr-script").setReadFunction("get_or_null(first(filter(this.names, equal(data.locale, 'zh'))), 'name')").setWriteFunction("(store('node', first(filter(this.names, equal(data.locale, 'zh')))),if (empty(retrieve('node')),set(this, 'names', merge(this.names, create('LocalizedName', 'locale', 'zh', 'name', value))),(if (empty(value),delete(retrieve('node')),set(retrieve('node'), 'name', value)))))").setIndexed(true);
+
+		final JsonReferenceType names = ((JsonObjectType)baseType).relate((JsonObjectType)nameType, "HasName", Cardinality.OneToMany);
+		names.setSourcePropertyName("isNameOf");
+		names.setTargetPropertyName("names");
+
+		final JsonReferenceType extensions = ((JsonObjectType)baseType).relate((JsonObjectType)baseType, "ExtendedBy", Cardinality.ManyToMany);
+		extensions.setSourcePropertyName("extends");
+		extensions.setTargetPropertyName("extendedBy");
+
+		baseType.addStringProperty("name").setIndexed(true);
+
+		System.out.println("Creating schema..");
+		logger.println("Creating schema..");
+
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			for (final OWLClass owlClass : owlClassesByURI.values()) {
+
+				final String name = owlClass.getStructrName(true);
+				if (name != null && schema.getType(name) == null && owlClass.isPrimary()) {
+
+					logger.println("Creating type " + name + "..");
+					schema.addType(name);
+				}
+			}
+
+			StructrSchema.replaceDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			System.out.println(fex.getErrorBuffer().getErrorTokens());
+		}
+
+		// resolve inheritance
+		System.out.println("Resolving class inheritance..");
+		logger.println("Resolving class inheritance..");
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			for (final OWLClass owlClass : owlClassesByURI.values()) {
+
+				final String name         = owlClass.getStructrName(true);
+				final JsonType type       = schema.getType(name);
+				final OWLClass superclass = owlClass.getSuperclass();
+
+				// type can be null if it is inverseOf another type
+				if (type != null) {
+
+					if (superclass != null) {
+
+						final JsonType superType = schema.getType(superclass.getStructrName(true));
+						if (superType != null) {
+
+							type.setExtends(superType);
+
+						} else {
+
+							type.setExtends(baseType);
+						}
+
+					} else {
+
+						type.setExtends(baseType);
+					}
+
+					for (final Name localizedName : owlClass.getNames()) {
+
+						app.create(Localization.class,
+							new NodeAttribute(StructrApp.key(Localization.class, "name"), name),
+							new NodeAttribute(StructrApp.key(Localization.class, "localizedName"), localizedName.name),
+							new NodeAttribute(StructrApp.key(Localization.class, "locale"), localizedName.lang)
+						);
+					}
+				}
+			}
+
+			StructrSchema.replaceDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			System.out.println(fex.getErrorBuffer().getErrorTokens());
+		}
+
+		// resolve relationship types
+		System.out.println("Resolving relationship types..");
+		logger.println("Resolving relationship types..");
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			for (final OWLClass possibleOutgoingRelationshipType : owlClassesByURI.values()) {
+
+				final OWLClass possibleIncomingRelationshipType = possibleOutgoingRelationshipType.getInverse();
+				if (possibleOutgoingRelationshipType.isPrimary() && possibleIncomingRelationshipType != null) {
+
+					// this is a relationship
+					final List<OWLClass> sourceTypes = possibleOutgoingRelationshipType.getActualSourceTypes();
+					final List<OWLClass> targetTypes = possibleOutgoingRelationshipType.getActualTargetTypes();
+
+					for (final OWLClass sourceType : sourceTypes) {
+
+						for (final OWLClass targetType : targetTypes) {
+
+							final String sourceName     = possibleOutgoingRelationshipType.getStructrName(false);
+							final String targetName     = possibleIncomingRelationshipType.getStructrName(false);
+							final String sourceTypeName = sourceType.getStructrName(true);
+							final String targetTypeName = targetType.getStructrName(true);
+
+							final JsonType sourceJsonType = schema.getType(sourceTypeName);
+							final JsonType targetJsonType = schema.getType(targetTypeName);
+
+							if (sourceJsonType != null && targetJsonType != null) {
+
+								final String relationshipTypeName = possibleOutgoingRelationshipType.getStructrName(true);
+								final JsonObjectType relType      = schema.addType(relationshipTypeName);
+								final JsonObjectType srcType      = (JsonObjectType)sourceJsonType;
+								final JsonObjectType tgtType      = (JsonObjectType)targetJsonType;
+
+								srcType.relate(relType, sourceName, Cardinality.OneToMany, sourceType.getStructrName(false), sourceName);
+								relType.relate(tgtType, targetName, Cardinality.ManyToOne, targetName, targetType.getStructrName(false));
+
+								possibleOutgoingRelationshipType.setIsRelationship(true);
+							}
+						}
+					}
+				}
+			}
+
+			StructrSchema.replaceDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			System.out.println(fex.getErrorBuffer().getErrorTokens());
+		}
+
+		System.out.println("Adding properties to types");
+		logger.println("Adding properties to types");
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			for (final OWLClass owlClass : owlClassesByURI.values()) {
+
+				final String typeName = owlClass.getStructrName(true);
+				JsonType type         = schema.getType(typeName);
+
+				// type not found, try to set property on inverse type
+				if (type == null) {
+
+					final OWLClass inverse = owlClass.getInverse();
+					if (inverse != null) {
+
+						type = schema.getType(inverse.getStructrName(true));
+					}
+				}
+
+				if (type != null) {
+
+					for (final OWLProperty prop : owlClass.getAllProperties()) {
+
+						addProperty(type, prop, prop.getStructrName(false));
+					}
+
+				} else {
+
+					System.out.println("Class: no type found for " + owlClass.getId());
+				}
+			}
+
+			StructrSchema.replaceDatabaseSchema(app, schema);
+
+			tx.success();
+		}
+
+		System.out.println("Adding metdata to node types");
+		logger.println("Adding metdata to node types");
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			for (final OWLClass owlClass : owlClassesByURI.values()) {
+
+				final String name           = owlClass.getStructrName(true);
+				final SchemaNode schemaNode = app.nodeQuery(SchemaNode.class).andName(name).getFirst();
+				String icon                 = owlClass.getIcon();
+
+				if (schemaNode != null) {
+
+					// truncate icon name, use only the
+					// part after the second dash
+					if (icon != null && icon.contains("-")) {
+
+						// start with
+						final int pos = icon.indexOf("-", 7);
+						if (pos > -1) {
+
+							icon = icon.substring(pos + 1);
+						}
+					}
+
+					schemaNode.setProperty(SchemaNode.icon, icon);
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			System.out.println(fex.getErrorBuffer().getErrorTokens());
+		}
+
+		return schema;
+	}
+
+	private void resolveRelationships(final App app, final JsonSchema schema, final OWLInstance instance) throws FrameworkException {
+
+		if (instance.getType() != null) {
+
+			instance.lookupDatabaseNode(app);
+			instance.resolveRelationships(schema, owlClassesByFragment, uri -> findNode(app, uri), rdfDescriptions, owlPropertiesByName);
+		}
+	}
+
+	private NodeInterface findNode(final App app, final URI id) {
+
+		NodeInterface node = nodeCache.get(id);
+		if (node == null) {
+
+			final Class baseType  = StructrApp.getConfiguration().getNodeEntityClass("BaseNode");
+			final PropertyKey key = StructrApp.key(baseType, "originId");
+
+			if (key != null) {
+
+				try {
+
+					node = (NodeInterface)app.nodeQuery(baseType).and(key, id.toString()).getFirst();
+					if (node != null) {
+
+						nodeCache.put(id, node);
+					}
+
+				} catch (FrameworkException fex) {
+					logger.println("Unable to find node for " + id + ": " + fex.getMessage());
+				}
+			}
+		}
+
+		return node;
+	}
+
+	private boolean isSchemaElement(final String tagName) {
+
+		switch (tagName) {
+
+			case "owl:Class":
+			case "owl:ObjectProperty":
+			case "owl:DatatypeProperty":
+			case "rdf:Property":
+			case "rdf:Description":
+				return true;
+		}
+
+		return false;
+	}
+
+	private void parseSchemaElement(final Element element) {
 
 		final String elementType  = element.getTagName();
 		switch (elementType) {
@@ -884,15 +961,12 @@ public class OWLParserv2 {
 
 					owlClassesByFragment.put(fragment, owlClass);
 				}
-				return;
-
-			case "rdf:Property":
 				break;
 
 			case "rdf:Description":
 				final RDFDescription description = new RDFDescription(element);
 				rdfDescriptions.put(description.getReferenceId(), description);
-				return;
+				break;
 
 			case "owl:DatatypeProperty":
 				final OWLProperty owlProperty = new OWLProperty(element);
@@ -903,45 +977,30 @@ public class OWLParserv2 {
 
 					owlPropertiesByName.put(rawFragmentName, owlProperty);
 				}
-				return;
-
-			default:
-
-				if (importData) {
+				break;
+		}
+	}
 
-					final OWLInstance instance = new OWLInstance(element);
-					final URI id               = instance.getId();
-					if (id != null) {
+	private OWLInstance createInstance(final Element element) {
 
-						final String type = instance.getTypeName();
-						if (type != null) {
+		final OWLInstance instance = new OWLInstance(element);
+		final URI id               = instance.getId();
+		if (id != null) {
 
-							final OWLClass owlType = owlClassesByFragment.get(type);
-							if (owlType != null) {
+			final String type = instance.getTypeName();
+			if (type != null) {
 
-								instance.setType(owlType);
-							}
-						}
+				final OWLClass owlType = owlClassesByFragment.get(type);
+				if (owlType != null) {
 
-						owlInstances.put(instance.getId(), instance);
-					}
+					instance.setType(owlType);
 				}
-				break;
-		}
+			}
 
-		// do not descend further
-		if (depth >= 1) {
-			return;
+			return instance;
 		}
 
-		// recurse
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-
-			if (child instanceof Element) {
-
-				parseDocument((Element)child, depth+1);
-			}
-		}
+		return null;
 	}
 
 	private <T extends RDFItem> void filter(final Collection<T> items) {
@@ -1004,6 +1063,156 @@ public class OWLParserv2 {
 	}
 
 	// ----- nested classes -----
+	enum Phase {
+		Schema, Instances, Relationships, Done
+	}
+
+	/**
+	 * Stores the progress of an import next to the import file, so that an
+	 * interrupted import can be resumed after the last committed batch. The
+	 * checkpoint contains a fingerprint of the import file and is ignored
+	 * if the file has changed since.
+	 */
+	static class Checkpoint {
+
+		private java.io.File file  = null;
+		private String fingerprint = null;
+		private Phase phase        = Phase.Schema;
+		private int position       = 0;
+
+		public Checkpoint(final java.io.File file, final java.io.File importFile) throws IOException {
+
+			this.file        = file;
+			this.fingerprint = getFingerprint(importFile);
+
+			if (file.exists()) {
+
+				final Properties properties = new Properties();
+
+				try (final Reader reader = new FileReader(file)) {
+					properties.load(reader);
+				}
+
+				if (fingerprint.equals(properties.getProperty("fingerprint"))) {
+
+					phase    = Phase.valueOf(properties.getProperty("phase", Phase.Schema.name()));
+					position = Integer.valueOf(properties.getProperty("position", "0"));
+
+				} else {
+
+					System.out.println("Import file " + importFile + " has changed, ignoring checkpoint");
+					logger.println("Import file " + importFile + " has changed, ignoring checkpoint");
+				}
+			}
+		}
+
+		public Phase getPhase() {
+			return phase;
+		}
+
+		public int getPosition() {
+			return position;
+		}
+
+		public void save(final Phase phase, final int position) throws IOException {
+
+			final Properties properties = new Properties();
+
+			this.phase    = phase;
+			this.position = position;
+
+			properties.setProperty("fingerprint", fingerprint);
+			properties.setProperty("phase",       phase.name());
+			properties.setProperty("position",    Integer.toString(position));
+
+			try (final Writer writer = new FileWriter(file)) {
+				properties.store(writer, null);
+			}
+		}
+
+		// ----- private methods -----
+		private String getFingerprint(final java.io.File importFile) throws IOException {
+
+			final CRC32 crc     = new CRC32();
+			final byte[] buffer = new byte[65536];
+			int count           = 0;
+
+			try (final InputStream is = new FileInputStream(importFile)) {
+
+				while ((count = is.read(buffer)) != -1) {
+					crc.update(buffer, 0, count);
+				}
+			}
+
+			return importFile.length() + "-" + importFile.lastModified() + "-" + Long.toHexString(crc.getValue());
+		}
+	}
+
+	/**
+	 * Commits a transaction every {@link #BATCH_SIZE} top-level elements and
+	 * updates the checkpoint after each commit.
+	 */
+	private static class Batch implements AutoCloseable {
+
+		private Checkpoint checkpoint = null;
+		private Phase phase           = null;
+		private App app               = null;
+		private Tx tx                 = null;
+		private int count             = 0;
+
+		public Batch(final App app, final Checkpoint checkpoint, final Phase phase) {
+
+			this.app        = app;
+			this.checkpoint = checkpoint;
+			this.phase      = phase;
+		}
+
+		public void begin() throws FrameworkException {
+
+			if (tx == null) {
+				tx = app.tx();
+			}
+		}
+
+		public void next(final int index) throws FrameworkException, IOException {
+
+			if (++count == BATCH_SIZE) {
+
+				commit();
+				checkpoint.save(phase, index + 1);
+			}
+		}
+
+		public void finish(final Phase nextPhase) throws FrameworkException, IOException {
+
+			commit();
+			checkpoint.save(nextPhase, 0);
+		}
+
+		@Override
+		public void close() throws FrameworkException {
+
+			// rollback if not committed
+			if (tx != null) {
+
+				tx.close();
+				tx = null;
+			}
+		}
+
+		private void commit() throws FrameworkException {
+
+			if (tx != null) {
+
+				tx.success();
+				tx.close();
+
+				tx    = null;
+				count = 0;
+			}
+		}
+	}
+
 	private static class Visitor implements FileVisitor<Path> {
 
 		private Set<Path> files = null;
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rdfs;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * Reads the top-level elements of an RDF/XML document with a streaming
+ * parser.
+ *
+ * Only the element that is currently handled is converted to a DOM tree,
+ * elements that are not accepted by the filter are skipped without being
+ * converted, so the memory needed does not depend on the size of the
+ * document. The DOM elements use the qualified names of the source, like
+ * a DOM that was parsed without namespace awareness.
+ */
+public class RDFStreamReader {
+
+	public interface ElementFilter {
+		boolean accept(final int index, final String tagName);
+	}
+
+	public interface ElementHandler {
+		void handle(final int index, final Element element) throws Exception;
+	}
+
+	/**
+	 * Passes each top-level element of the given file that is accepted by
+	 * the filter to the handler. The index of an element is its position
+	 * among all top-level elements of the document.
+	 *
+	 * @param file
+	 * @param filter
+	 * @param handler
+	 * @throws Exception
+	 */
+	public static void read(final java.io.File file, final ElementFilter filter, final ElementHandler handler) throws Exception {
+
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		final DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+		try (final InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+
+			final XMLStreamReader reader = factory.createXMLStreamReader(is);
+			boolean root                 = true;
+			int index                    = 0;
+
+			try {
+
+				while (reader.hasNext()) {
+
+					if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+
+						if (root) {
+
+							root = false;
+							continue;
+						}
+
+						if (filter.accept(index, getQualifiedName(reader.getPrefix(), reader.getLocalName()))) {
+
+							handler.handle(index, readElement(reader, builder.newDocument()));
+
+						} else {
+
+							skipElement(reader);
+						}
+
+						index++;
+					}
+				}
+
+			} finally {
+
+				reader.close();
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private static Element readElement(final XMLStreamReader reader, final Document document) throws XMLStreamException {
+
+		final Element element = createElement(reader, document);
+		Element current       = element;
+
+		document.appendChild(element);
+
+		while (reader.hasNext()) {
+
+			switch (reader.next()) {
+
+				case XMLStreamConstants.START_ELEMENT:
+					final Element child = createElement(reader, document);
+					current.appendChild(child);
+					current = child;
+					break;
+
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					appendText(current, reader.getText());
+					break;
+
+				case XMLStreamConstants.END_ELEMENT:
+					if (current == element) {
+						return element;
+					}
+					current = (Element)current.getParentNode();
+					break;
+			}
+		}
+
+		return element;
+	}
+
+	private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+
+		int depth = 1;
+
+		while (depth > 0 && reader.hasNext()) {
+
+			switch (reader.next()) {
+
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					break;
+
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					break;
+			}
+		}
+	}
+
+	private static Element createElement(final XMLStreamReader reader, final Document document) {
+
+		final Element element = document.createElement(getQualifiedName(reader.getPrefix(), reader.getLocalName()));
+		final int count       = reader.getAttributeCount();
+
+		for (int i=0; i<count; i++) {
+
+			element.setAttribute(getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+		}
+
+		return element;
+	}
+
+	private static void appendText(final Element element, final String text) {
+
+		final Node last = element.getLastChild();
+		if (last instanceof Text) {
+
+			((Text)last).appendData(text);
+
+		} else {
+
+			element.appendChild(element.getOwnerDocument().createTextNode(text));
+		}
+	}
+
+	private static String getQualifiedName(final String prefix, final String localName) {
+
+		if (prefix == null || prefix.isEmpty()) {
+			return localName;
+		}
+
+		return prefix + ":" + localName;
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rdfs;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+
+/**
+ *
+ */
+public class OWLParserv2Test extends StructrRdfsModuleTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(OWLParserv2Test.class.getName());
+
+	@Test
+	public void testResumeAfterUncheckpointedCommit() {
+
+		try {
+
+			final File file       = new File(basePath, "resume.owl");
+			final File checkpoint = new File(file.getPath() + ".checkpoint");
+
+			FileUtils.copyURLToFile(OWLParserv2Test.class.getResource("/resume.owl"), file);
+
+			parse(file);
+
+			assertFalse("Checkpoint should be removed after a successful import", checkpoint.exists());
+
+			final Class hyperType = StructrApp.getConfiguration().getNodeEntityClass("WorksFor");
+			assertNotNull("Hyper relationship type was not created", hyperType);
+
+			final int nodes         = countNodes();
+			final int relationships = countRelationships();
+
+			assertEquals("Invalid number of hyper relationship nodes", 3, countNodes(hyperType));
+
+			// the import was interrupted after the last batch of relationships was committed, but before the checkpoint was saved
+			new OWLParserv2.Checkpoint(checkpoint, file).save(OWLParserv2.Phase.Relationships, 0);
+
+			parse(file);
+
+			assertFalse("Checkpoint should be removed after a successful import", checkpoint.exists());
+
+			assertEquals("Resumed import must not create nodes twice", nodes, countNodes());
+			assertEquals("Resumed import must not create relationships twice", relationships, countRelationships());
+			assertEquals("Invalid number of hyper relationship nodes", 3, countNodes(hyperType));
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private void parse(final File file) {
+
+		// the parser closes its log after each import
+		OWLParserv2.logger = new PrintWriter(new StringWriter());
+
+		new OWLParserv2().parse(file.getAbsolutePath(), new File(basePath, "blobs").getAbsolutePath());
+	}
+
+	private int countNodes() throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			final int count = app.nodeQuery().getAsList().size();
+
+			tx.success();
+
+			return count;
+		}
+	}
+
+	private int countNodes(final Class type) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			final int count = app.nodeQuery(type).getAsList().size();
+
+			tx.success();
+
+			return count;
+		}
+	}
+
+	private int countRelationships() throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			final int count = app.relationshipQuery().getAsList().size();
+
+			tx.success();
+
+			return count;
+		}
+	}
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds search result snippets from term hits.
+ *
+ * A hit is an array of token position, character offset and term index, as
+ * returned by {@link FulltextIndex#getHits(String, List)}. A sliding window
+ * of <code>contextLength</code> tokens is moved over the hits, windows are
+ * scored by the number of distinct terms and hits they contain, and the best
+ * non-overlapping windows are cut out of the text and extended to the
+ * context length. Only the characters around the selected windows are
+ * read, so the cost depends on the number of hits and the context length,
+ * not on the length of the text.
+ */
+public class FulltextHighlighter {
+
+	public static final int DEFAULT_MAX_PASSAGES = 5;
+
+	private final Map<String, Integer> termIndexes = new HashMap<>();
+	private List<String> terms                     = null;
+	private int contextLength                      = 0;
+	private int maxPassages                        = 0;
+
+	public FulltextHighlighter(final List<String> terms, final int contextLength, final int maxPassages) {
+
+		this.terms         = terms;
+		this.contextLength = Math.max(1, contextLength);
+		this.maxPassages   = Math.max(1, maxPassages);
+
+		for (int i=0; i<terms.size(); i++) {
+			termIndexes.putIfAbsent(terms.get(i), i);
+		}
+	}
+
+	/**
+	 * Returns the hits that lie within the given text, or null if a hit
+	 * does not match the text, i.e. the offsets are out of date.
+	 *
+	 * @param text
+	 * @param hits
+	 * @return the valid hits or null
+	 */
+	public List<int[]> validate(final String text, final List<int[]> hits) {
+
+		final List<int[]> result = new ArrayList<>(hits.size());
+		final int textLength     = text.length();
+
+		for (final int[] hit : hits) {
+
+			final String term = terms.get(hit[2]);
+			final int offset  = hit[1];
+
+			// the extracted text is truncated, hits beyond its end are ignored
+			if (offset + term.length() <= textLength) {
+
+				if (!text.regionMatches(true, offset, term, 0, term.length())) {
+					return null;
+				}
+
+				result.add(hit);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Finds the hits in the given text with a single pass over the text,
+	 * used for documents that have no offsets in the index.
+	 *
+	 * @param text
+	 * @return the hits in ascending position order
+	 */
+	public List<int[]> findHits(final String text) {
+
+		final List<int[]> hits = new ArrayList<>();
+		final int length       = text.length();
+		int position           = 0;
+		int start              = -1;
+
+		for (int i=0; i<=length; i++) {
+
+			if (i < length && FulltextTokenizer.isWordCharacter(text.charAt(i))) {
+
+				if (start < 0) {
+					start = i;
+				}
+
+			} else if (start >= 0) {
+
+				position = addHits(hits, text, start, i, position);
+				start    = -1;
+			}
+		}
+
+		return hits;
+	}
+
+	/**
+	 * Selects the best passages for the given hits and returns them in
+	 * document order.
+	 *
+	 * @param text
+	 * @param hits the hits in ascending position order
+	 * @return the passages
+	 */
+	public List<String> getPassages(final String text, final List<int[]> hits) {
+
+		final List<int[]> windows = new ArrayList<>();
+		final int[] counts        = new int[terms.size()];
+		int distinct              = 0;
+		int left                  = 0;
+
+		// for every hit, find the largest window of at most contextLength tokens that ends there
+		for (int right=0; right<hits.size(); right++) {
+
+			if (counts[hits.get(right)[2]]++ == 0) {
+				distinct++;
+			}
+
+			while (hits.get(right)[0] - hits.get(left)[0] >= contextLength) {
+
+				if (--counts[hits.get(left)[2]] == 0) {
+					distinct--;
+				}
+
+				left++;
+			}
+
+			windows.add(new int[] { left, right, distinct * hits.size() + (right - left + 1) });
+		}
+
+		// pick the best non-overlapping windows
+		windows.sort(Comparator.comparingInt((int[] w) -> w[2]).reversed().thenComparingInt(w -> w[0]));
+
+		final List<int[]> selected = new ArrayList<>();
+
+		for (final int[] window : windows) {
+
+			if (selected.size() == maxPassages) {
+				break;
+			}
+
+			if (!overlaps(selected, window)) {
+				selected.add(window);
+			}
+		}
+
+		selected.sort(Comparator.comparingInt(w -> w[0]));
+
+		final List<String> passages = new ArrayList<>(selected.size());
+
+		for (final int[] window : selected) {
+
+			final int[] first = hits.get(window[0]);
+			final int[] last  = hits.get(window[1]);
+			final int words   = last[0] - first[0] + 1;
+			final int[] start = expandBackward(text, first[1], Math.max(0, contextLength - words) / 2);
+
+			// words that are not available before the hits are added after them
+			final int end     = expandForward(text, last[1] + terms.get(last[2]).length(), Math.max(0, contextLength - words - start[1]));
+
+			passages.add(text.substring(start[0], end).replaceAll("[\\n\\t]+", " ").trim());
+		}
+
+		return passages;
+	}
+
+	// ----- private methods -----
+	private int addHits(final List<int[]> hits, final String text, final int start, final int end, int position) {
+
+		final String word = text.substring(start, end);
+
+		// split words at dots and commas like the tokenizer does, except numbers
+		if ((word.indexOf('.') >= 0 || word.indexOf(',') >= 0) && !word.matches("[\\-0-9\\.,]+")) {
+
+			int offset = start;
+
+			for (final String part : word.split("[\\.,]+")) {
+
+				if (!part.isEmpty()) {
+
+					offset = text.indexOf(part, offset);
+					addHit(hits, part, offset, position++);
+					offset += part.length();
+				}
+			}
+
+			return position;
+		}
+
+		addHit(hits, word, start, position);
+
+		return position + 1;
+	}
+
+	private void addHit(final List<int[]> hits, final String word, final int offset, final int position) {
+
+		final Integer index = termIndexes.get(word.toLowerCase());
+		if (index != null) {
+
+			hits.add(new int[] { position, offset, index });
+		}
+	}
+
+	private boolean overlaps(final List<int[]> selected, final int[] window) {
+
+		for (final int[] other : selected) {
+
+			if (window[0] <= other[1] && other[0] <= window[1]) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Moves the start of a passage backward by the given number of words,
+	 * stopping at paragraph boundaries.
+	 *
+	 * @return the new start offset and the number of words added
+	 */
+	private int[] expandBackward(final String text, final int offset, final int words) {
+
+		int pos   = offset;
+		int count = 0;
+
+		while (pos > 0) {
+
+			final char c = text.charAt(pos - 1);
+
+			if (c == '\n' && pos > 1 && text.charAt(pos - 2) == '\n') {
+				break;
+			}
+
+			// entering a word from its end
+			if (FulltextTokenizer.isWordCharacter(c) && (pos == offset || !FulltextTokenizer.isWordCharacter(text.charAt(pos)))) {
+
+				if (count == words) {
+					break;
+				}
+
+				count++;
+			}
+
+			pos--;
+		}
+
+		return new int[] { pos, count };
+	}
+
+	/**
+	 * Moves the end of a passage forward by the given number of words,
+	 * stopping at paragraph boundaries.
+	 */
+	private int expandForward(final String text, final int offset, final int words) {
+
+		final int length = text.length();
+		int pos          = Math.min(offset, length);
+		int count        = 0;
+
+		while (pos < length) {
+
+			final char c = text.charAt(pos);
+
+			if (c == '\n' && pos + 1 < length && text.charAt(pos + 1) == '\n') {
+				break;
+			}
+
+			// entering a word from its start
+			if (FulltextTokenizer.isWordCharacter(c) && (pos == offset || !FulltextTokenizer.isWordCharacter(text.charAt(pos - 1)))) {
+
+				if (count++ == words) {
+					break;
+				}
+			}
+
+			pos++;
+		}
+
+		return pos;
+	}
+}
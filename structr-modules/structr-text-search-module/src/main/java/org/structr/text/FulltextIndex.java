@@ -0,0 +1,1256 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * On-disk inverted index for the fulltext search.
+ *
+ * New documents are collected in an in-memory buffer that is written to an
+ * immutable segment file on {@link #commit()}. Each segment contains the
+ * documents (UUID and length), a posting list with term frequencies, token
+ * positions and character offsets for every term, and a sorted term
+ * dictionary that is kept in memory while the posting lists are read on
+ * demand.
+ *
+ * A document is live in exactly one segment (the one it was written to last),
+ * older copies are ignored and dropped when segments are merged. Deletions
+ * are recorded in a tombstone log so that they survive a restart. Search
+ * results are ranked using BM25.
+ */
+public class FulltextIndex implements Closeable {
+
+	private static final Logger logger          = LoggerFactory.getLogger(FulltextIndex.class.getName());
+	private static final String SEGMENT_SUFFIX  = ".seg";
+	private static final String TEMP_SUFFIX     = ".tmp";
+	private static final String TOMBSTONE_FILE  = "tombstones";
+	private static final int MAGIC              = 0x53545849;
+	private static final int VERSION            = 2;
+	private static final double K1              = 1.2;
+	private static final double B               = 0.75;
+
+	private static FulltextIndex instance = null;
+
+	private final ReentrantReadWriteLock lock           = new ReentrantReadWriteLock();
+	private final Map<String, DocInfo> liveDocs         = new HashMap<>();
+	private final TreeMap<Integer, Segment> segments    = new TreeMap<>();
+	private final Map<String, BufferedDocument> buffer  = new LinkedHashMap<>();
+	private final AtomicBoolean merging                 = new AtomicBoolean(false);
+	private Writer tombstones                           = null;
+	private File directory                              = null;
+	private boolean initialized                         = false;
+	private long totalLength                            = 0L;
+	private int nextSegmentId                           = 1;
+	private int maxSegments                             = 10;
+
+	public FulltextIndex(final File directory, final int maxSegments) {
+
+		this.directory   = directory;
+		this.maxSegments = Math.max(2, maxSegments);
+	}
+
+	public static synchronized FulltextIndex getInstance() {
+
+		if (instance == null) {
+
+			instance = new FulltextIndex(new File(Settings.getFullSettingPath(Settings.IndexingPath)), Settings.IndexingMaxSegments.getValue());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Adds or replaces the document with the given UUID, without character
+	 * offsets.
+	 *
+	 * @param uuid
+	 * @param terms
+	 * @throws IOException
+	 */
+	public void add(final String uuid, final List<String> terms) throws IOException {
+		add(uuid, terms, null);
+	}
+
+	/**
+	 * Adds or replaces the document with the given UUID. The position of a
+	 * term in the list is its token position, <code>null</code> elements
+	 * (e.g. removed stop words) are skipped but still count as a position.
+	 * The offsets are the character offsets of the terms in the extracted
+	 * text and are used to build search result snippets.
+	 *
+	 * @param uuid
+	 * @param terms
+	 * @param offsets the character offsets of the terms, or null
+	 * @throws IOException
+	 */
+	public void add(final String uuid, final List<String> terms, final List<Integer> offsets) throws IOException {
+
+		final Iterator<Integer> offsetIterator = offsets != null ? offsets.iterator() : null;
+		final BufferedDocument document        = new BufferedDocument();
+		int position                           = 0;
+
+		for (final String term : terms) {
+
+			final Integer offset = offsetIterator != null && offsetIterator.hasNext() ? offsetIterator.next() : null;
+
+			if (term != null && !term.isEmpty()) {
+
+				document.add(term, position, offset != null ? offset : -1);
+			}
+
+			position++;
+		}
+
+		initialize();
+
+		lock.writeLock().lock();
+		try {
+
+			removeLiveDocument(uuid);
+
+			buffer.put(uuid, document);
+			liveDocs.put(uuid, new DocInfo(0, document.length));
+
+			totalLength += document.length;
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the document with the given UUID from the index.
+	 *
+	 * @param uuid
+	 * @throws IOException
+	 */
+	public void remove(final String uuid) throws IOException {
+
+		initialize();
+
+		lock.writeLock().lock();
+		try {
+
+			if (removeLiveDocument(uuid)) {
+
+				appendTombstone(uuid, nextSegmentId - 1);
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes all buffered documents to a new segment and merges segments
+	 * if there are more than the configured maximum.
+	 *
+	 * @throws IOException
+	 */
+	public void commit() throws IOException {
+
+		initialize();
+
+		lock.writeLock().lock();
+		try {
+
+			if (!buffer.isEmpty()) {
+
+				final TreeMap<String, List<int[]>> postings = new TreeMap<>();
+				final List<String> uuids                    = new ArrayList<>(buffer.keySet());
+				final int[] lengths                         = new int[uuids.size()];
+				final int id                                = nextSegmentId++;
+
+				for (int i=0; i<uuids.size(); i++) {
+
+					final BufferedDocument document = buffer.get(uuids.get(i));
+
+					lengths[i] = document.length;
+
+					for (final Map.Entry<String, IntList> entry : document.terms.entrySet()) {
+
+						final String term = entry.getKey();
+
+						postings.computeIfAbsent(term, k -> new ArrayList<>()).add(posting(i, entry.getValue().toArray(), document.offsets.get(term).toArray()));
+					}
+				}
+
+				final File file = segmentFile(id);
+
+				try (final SegmentWriter writer = new SegmentWriter(tempFile(file), uuids, lengths)) {
+
+					for (final Map.Entry<String, List<int[]>> entry : postings.entrySet()) {
+						writer.addTerm(entry.getKey(), entry.getValue());
+					}
+				}
+
+				java.nio.file.Files.move(tempFile(file).toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+				segments.put(id, new Segment(id, file));
+
+				for (final String uuid : uuids) {
+					liveDocs.get(uuid).segmentId = id;
+				}
+
+				buffer.clear();
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+
+		if (getSegmentCount() > maxSegments) {
+			merge();
+		}
+	}
+
+	/**
+	 * Searches the index for the given terms and returns the UUIDs of the
+	 * best matching documents, ordered by descending BM25 score.
+	 *
+	 * @param terms the (normalized) search terms
+	 * @param maxResults the maximum number of results
+	 * @param matchAll whether all terms must occur in a document
+	 * @return a map of UUID to score, ordered by descending score
+	 * @throws IOException
+	 */
+	public Map<String, Double> search(final List<String> terms, final int maxResults, final boolean matchAll) throws IOException {
+
+		final Map<String, Double> result = new LinkedHashMap<>();
+		final Set<String> uniqueTerms    = new LinkedHashSet<>(terms);
+
+		if (uniqueTerms.isEmpty()) {
+			return result;
+		}
+
+		initialize();
+
+		lock.readLock().lock();
+		try {
+
+			final int documentCount = liveDocs.size();
+			if (documentCount == 0) {
+				return result;
+			}
+
+			final double averageLength = Math.max(1.0, (double)totalLength / documentCount);
+			final List<Map<String, Integer>> frequencies = new ArrayList<>();
+
+			for (final String term : uniqueTerms) {
+				frequencies.add(getTermFrequencies(term));
+			}
+
+			// process rarest terms first, so intersection candidates shrink as fast as possible
+			Collections.sort(frequencies, Comparator.comparingInt(Map::size));
+
+			final Map<String, Double> scores = new HashMap<>();
+			boolean first                    = true;
+
+			for (final Map<String, Integer> termFrequencies : frequencies) {
+
+				final int df     = termFrequencies.size();
+				final double idf = Math.log(1.0 + (documentCount - df + 0.5) / (df + 0.5));
+
+				if (matchAll && !first) {
+
+					// intersection with the documents of the previous terms
+					scores.keySet().retainAll(termFrequencies.keySet());
+				}
+
+				for (final Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+
+					final String uuid = entry.getKey();
+
+					if (first || !matchAll || scores.containsKey(uuid)) {
+
+						final int tf     = entry.getValue();
+						final int length = liveDocs.get(uuid).length;
+						final double s   = idf * (tf * (K1 + 1.0)) / (tf + K1 * (1.0 - B + B * length / averageLength));
+
+						scores.merge(uuid, s, Double::sum);
+					}
+				}
+
+				if (matchAll && scores.isEmpty()) {
+					break;
+				}
+
+				first = false;
+			}
+
+			// select top results
+			final PriorityQueue<Map.Entry<String, Double>> top = new PriorityQueue<>(Math.max(1, maxResults), Map.Entry.comparingByValue());
+
+			for (final Map.Entry<String, Double> entry : scores.entrySet()) {
+
+				top.add(entry);
+
+				if (top.size() > maxResults) {
+					top.poll();
+				}
+			}
+
+			final List<Map.Entry<String, Double>> sorted = new ArrayList<>(top);
+
+			sorted.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+
+			for (final Map.Entry<String, Double> entry : sorted) {
+				result.put(entry.getKey(), entry.getValue());
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the token positions of the given term in the given document.
+	 *
+	 * @param uuid
+	 * @param term
+	 * @return the positions or an empty array
+	 * @throws IOException
+	 */
+	public int[] getPositions(final String uuid, final String term) throws IOException {
+
+		final int[] posting = getPosting(uuid, term);
+		if (posting != null) {
+
+			return Arrays.copyOfRange(posting, 2, 2 + posting[1]);
+		}
+
+		return new int[0];
+	}
+
+	/**
+	 * Returns the character offsets of the given term in the given document,
+	 * -1 for occurrences that were added without offsets.
+	 *
+	 * @param uuid
+	 * @param term
+	 * @return the offsets or an empty array
+	 * @throws IOException
+	 */
+	public int[] getOffsets(final String uuid, final String term) throws IOException {
+
+		final int[] posting = getPosting(uuid, term);
+		if (posting != null) {
+
+			return Arrays.copyOfRange(posting, 2 + posting[1], posting.length);
+		}
+
+		return new int[0];
+	}
+
+	/**
+	 * Returns the occurrences of the given terms in the given document, in
+	 * ascending position order. Each hit is an array of token position,
+	 * character offset and the index of the term in the given list.
+	 *
+	 * @param uuid
+	 * @param terms
+	 * @return the hits, or null if the document is not in the index or was added without offsets
+	 * @throws IOException
+	 */
+	public List<int[]> getHits(final String uuid, final List<String> terms) throws IOException {
+
+		final List<int[]> hits = new ArrayList<>();
+
+		initialize();
+
+		lock.readLock().lock();
+		try {
+
+			if (!liveDocs.containsKey(uuid)) {
+				return null;
+			}
+
+			for (int i=0; i<terms.size(); i++) {
+
+				final int[] posting = getPosting(uuid, terms.get(i));
+				if (posting != null) {
+
+					final int frequency = posting[1];
+
+					for (int j=0; j<frequency; j++) {
+
+						final int offset = posting[2 + frequency + j];
+						if (offset < 0) {
+							return null;
+						}
+
+						hits.add(new int[] { posting[2 + j], offset, i });
+					}
+				}
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		hits.sort(Comparator.comparingInt(h -> h[0]));
+
+		return hits;
+	}
+
+	public int getDocumentCount() {
+
+		lock.readLock().lock();
+		try {
+
+			return liveDocs.size();
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getSegmentCount() {
+
+		lock.readLock().lock();
+		try {
+
+			return segments.size();
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Merges the smallest segments into a single new segment, dropping
+	 * deleted and replaced documents.
+	 *
+	 * @throws IOException
+	 */
+	public void merge() throws IOException {
+
+		if (!merging.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+
+			final Map<Integer, int[]> ordinalMaps = new HashMap<>();
+			final List<Segment> sources           = new ArrayList<>();
+			final List<String> uuids              = new ArrayList<>();
+			final IntList lengths                 = new IntList();
+			final int id;
+
+			lock.readLock().lock();
+			try {
+
+				if (segments.size() < 2) {
+					return;
+				}
+
+				// merge the smaller half of the segments
+				final List<Segment> candidates = new ArrayList<>(segments.values());
+
+				candidates.sort(Comparator.comparingInt(s -> s.uuids.length));
+				sources.addAll(candidates.subList(0, Math.max(2, candidates.size() - maxSegments / 2)));
+				sources.sort(Comparator.comparingInt(s -> s.id));
+
+				for (final Segment segment : sources) {
+
+					final int[] ordinalMap = new int[segment.uuids.length];
+
+					for (int i=0; i<segment.uuids.length; i++) {
+
+						final DocInfo info = liveDocs.get(segment.uuids[i]);
+						if (info != null && info.segmentId == segment.id) {
+
+							ordinalMap[i] = uuids.size();
+
+							uuids.add(segment.uuids[i]);
+							lengths.add(segment.lengths[i]);
+
+						} else {
+
+							ordinalMap[i] = -1;
+						}
+					}
+
+					ordinalMaps.put(segment.id, ordinalMap);
+				}
+
+			} finally {
+
+				lock.readLock().unlock();
+			}
+
+			lock.writeLock().lock();
+			try {
+
+				id = nextSegmentId++;
+
+			} finally {
+
+				lock.writeLock().unlock();
+			}
+
+			final File file = segmentFile(id);
+
+			try (final SegmentWriter writer = new SegmentWriter(tempFile(file), uuids, lengths.toArray())) {
+
+				final PriorityQueue<TermCursor> queue = new PriorityQueue<>();
+
+				for (final Segment segment : sources) {
+
+					if (segment.terms.length > 0) {
+						queue.add(new TermCursor(segment));
+					}
+				}
+
+				while (!queue.isEmpty()) {
+
+					final List<TermCursor> advanced = new LinkedList<>();
+					final List<int[]> postings      = new ArrayList<>();
+					final String term               = queue.peek().term();
+
+					while (!queue.isEmpty() && queue.peek().term().equals(term)) {
+						advanced.add(queue.poll());
+					}
+
+					// sources are in segment order, so the mapped ordinals are ascending
+					advanced.sort(Comparator.comparingInt(c -> c.segment.id));
+
+					for (final TermCursor cursor : advanced) {
+
+						final int[] ordinalMap = ordinalMaps.get(cursor.segment.id);
+
+						for (final int[] posting : cursor.segment.getPostings(cursor.index, true)) {
+
+							final int ordinal = ordinalMap[posting[0]];
+							if (ordinal >= 0) {
+
+								posting[0] = ordinal;
+								postings.add(posting);
+							}
+						}
+
+						if (cursor.next()) {
+							queue.add(cursor);
+						}
+					}
+
+					if (!postings.isEmpty()) {
+						writer.addTerm(term, postings);
+					}
+				}
+			}
+
+			java.nio.file.Files.move(tempFile(file).toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+			lock.writeLock().lock();
+			try {
+
+				final Segment merged = new Segment(id, file);
+
+				for (final String uuid : uuids) {
+
+					final DocInfo info = liveDocs.get(uuid);
+					if (info == null) {
+
+						// deleted while merging, make sure the merged copy stays deleted
+						appendTombstone(uuid, id);
+
+					} else if (ordinalMaps.containsKey(info.segmentId)) {
+
+						info.segmentId = id;
+					}
+				}
+
+				segments.put(id, merged);
+
+				for (final Segment segment : sources) {
+
+					segments.remove(segment.id);
+					segment.close();
+
+					if (!segment.file.delete()) {
+						logger.warn("Unable to delete merged fulltext index segment {}", segment.file.getAbsolutePath());
+					}
+				}
+
+				compactTombstones();
+
+			} finally {
+
+				lock.writeLock().unlock();
+			}
+
+			logger.info("Merged {} fulltext index segments into segment {} with {} documents", sources.size(), id, uuids.size());
+
+		} finally {
+
+			merging.set(false);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		commit();
+
+		lock.writeLock().lock();
+		try {
+
+			for (final Segment segment : segments.values()) {
+				segment.close();
+			}
+
+			if (tombstones != null) {
+				tombstones.close();
+			}
+
+			segments.clear();
+			liveDocs.clear();
+
+			tombstones  = null;
+			totalLength = 0L;
+			initialized = false;
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	// ----- private methods -----
+	private void initialize() throws IOException {
+
+		if (initialized) {
+			return;
+		}
+
+		lock.writeLock().lock();
+		try {
+
+			if (initialized) {
+				return;
+			}
+
+			directory.mkdirs();
+
+			final File[] files = directory.listFiles();
+			if (files != null) {
+
+				for (final File file : files) {
+
+					final String name = file.getName();
+
+					if (name.endsWith(TEMP_SUFFIX)) {
+
+						// left over from an interrupted commit or merge
+						file.delete();
+
+					} else if (name.endsWith(SEGMENT_SUFFIX)) {
+
+						try {
+
+							final int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+							segments.put(id, new Segment(id, file));
+
+						} catch (NumberFormatException | IOException ex) {
+							logger.warn("Ignoring invalid fulltext index segment {}: {}", file.getAbsolutePath(), ex.getMessage());
+						}
+					}
+				}
+			}
+
+			// later segments replace the documents of earlier ones
+			for (final Segment segment : segments.values()) {
+
+				for (int i=0; i<segment.uuids.length; i++) {
+					liveDocs.put(segment.uuids[i], new DocInfo(segment.id, segment.lengths[i]));
+				}
+			}
+
+			final File tombstoneFile = new File(directory, TOMBSTONE_FILE);
+			if (tombstoneFile.exists()) {
+
+				try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(tombstoneFile), StandardCharsets.UTF_8))) {
+
+					String line = null;
+
+					while ((line = reader.readLine()) != null) {
+
+						final int pos = line.indexOf('\t');
+						if (pos > 0) {
+
+							final String uuid     = line.substring(0, pos);
+							final int generation  = Integer.parseInt(line.substring(pos + 1));
+							final DocInfo info    = liveDocs.get(uuid);
+
+							if (info != null && info.segmentId <= generation) {
+								liveDocs.remove(uuid);
+							}
+						}
+					}
+				}
+			}
+
+			for (final DocInfo info : liveDocs.values()) {
+				totalLength += info.length;
+			}
+
+			nextSegmentId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+			tombstones    = new FileWriter(tombstoneFile, true);
+			initialized   = true;
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return an array of ordinal, frequency, positions and offsets, or null
+	 */
+	private int[] getPosting(final String uuid, final String term) throws IOException {
+
+		initialize();
+
+		lock.readLock().lock();
+		try {
+
+			final DocInfo info = liveDocs.get(uuid);
+			if (info != null) {
+
+				if (info.segmentId == 0) {
+
+					final BufferedDocument document = buffer.get(uuid);
+					final IntList positions         = document.terms.get(term);
+
+					if (positions != null) {
+
+						return posting(0, positions.toArray(), document.offsets.get(term).toArray());
+					}
+
+				} else {
+
+					final Segment segment = segments.get(info.segmentId);
+					final int ordinal     = segment.getOrdinal(uuid);
+
+					for (final int[] posting : segment.getPostings(term, true)) {
+
+						if (posting[0] == ordinal) {
+
+							return posting;
+						}
+					}
+				}
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		return null;
+	}
+
+	private Map<String, Integer> getTermFrequencies(final String term) throws IOException {
+
+		final Map<String, Integer> frequencies = new HashMap<>();
+
+		for (final Segment segment : segments.values()) {
+
+			for (final int[] posting : segment.getPostings(term, false)) {
+
+				final String uuid  = segment.uuids[posting[0]];
+				final DocInfo info = liveDocs.get(uuid);
+
+				if (info != null && info.segmentId == segment.id) {
+					frequencies.put(uuid, posting[1]);
+				}
+			}
+		}
+
+		for (final Map.Entry<String, BufferedDocument> entry : buffer.entrySet()) {
+
+			final IntList positions = entry.getValue().terms.get(term);
+			if (positions != null) {
+
+				frequencies.put(entry.getKey(), positions.size);
+			}
+		}
+
+		return frequencies;
+	}
+
+	private boolean removeLiveDocument(final String uuid) {
+
+		final DocInfo info = liveDocs.remove(uuid);
+		if (info != null) {
+
+			totalLength -= info.length;
+			buffer.remove(uuid);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private void appendTombstone(final String uuid, final int generation) throws IOException {
+
+		tombstones.write(uuid + "\t" + generation + "\n");
+		tombstones.flush();
+	}
+
+	private void compactTombstones() throws IOException {
+
+		final File tombstoneFile = new File(directory, TOMBSTONE_FILE);
+		final File tempFile      = tempFile(tombstoneFile);
+		final int minSegmentId   = segments.isEmpty() ? Integer.MAX_VALUE : segments.firstKey();
+
+		tombstones.close();
+
+		try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(tombstoneFile), StandardCharsets.UTF_8));
+			final Writer writer = new FileWriter(tempFile)) {
+
+			String line = null;
+
+			while ((line = reader.readLine()) != null) {
+
+				final int pos = line.indexOf('\t');
+
+				// tombstones are only needed as long as a segment they refer to exists
+				if (pos > 0 && Integer.parseInt(line.substring(pos + 1)) >= minSegmentId) {
+
+					writer.write(line);
+					writer.write("\n");
+				}
+			}
+		}
+
+		java.nio.file.Files.move(tempFile.toPath(), tombstoneFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		tombstones = new FileWriter(tombstoneFile, true);
+	}
+
+	private File segmentFile(final int id) {
+		return new File(directory, String.format("%010d%s", id, SEGMENT_SUFFIX));
+	}
+
+	private File tempFile(final File file) {
+		return new File(file.getAbsolutePath() + TEMP_SUFFIX);
+	}
+
+	private static int[] posting(final int ordinal, final int[] positions, final int[] offsets) {
+
+		final int[] posting = new int[positions.length * 2 + 2];
+
+		posting[0] = ordinal;
+		posting[1] = positions.length;
+
+		System.arraycopy(positions, 0, posting, 2, positions.length);
+		System.arraycopy(offsets, 0, posting, 2 + positions.length, offsets.length);
+
+		return posting;
+	}
+
+	private static void writeVInt(final DataOutputStream out, int value) throws IOException {
+
+		while ((value & ~0x7F) != 0) {
+
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+
+	// ----- nested classes -----
+	private static class DocInfo {
+
+		private int segmentId = 0;
+		private int length    = 0;
+
+		public DocInfo(final int segmentId, final int length) {
+
+			this.segmentId = segmentId;
+			this.length    = length;
+		}
+	}
+
+	private static class BufferedDocument {
+
+		private final Map<String, IntList> offsets = new HashMap<>();
+		private final Map<String, IntList> terms   = new HashMap<>();
+		private int length                         = 0;
+
+		public void add(final String term, final int position, final int offset) {
+
+			terms.computeIfAbsent(term, k -> new IntList()).add(position);
+			offsets.computeIfAbsent(term, k -> new IntList()).add(offset);
+			length++;
+		}
+	}
+
+	private static class IntList {
+
+		private int[] data = new int[4];
+		private int size   = 0;
+
+		public void add(final int value) {
+
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+
+			data[size++] = value;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+
+	/**
+	 * Writes a segment file: header, document table, posting lists, term
+	 * dictionary and a footer with the offset of the dictionary. Posting
+	 * lists are written as variable-length integers: document ordinal delta,
+	 * term frequency and pairs of position delta and offset delta, where
+	 * offsets are stored incremented by one so that missing offsets (-1)
+	 * are encoded as zero.
+	 */
+	private static class SegmentWriter implements Closeable {
+
+		private final List<String> terms      = new ArrayList<>();
+		private final IntList docFreqs        = new IntList();
+		private final List<Long> offsets      = new ArrayList<>();
+		private CountingOutputStream counter  = null;
+		private DataOutputStream out          = null;
+
+		public SegmentWriter(final File file, final List<String> uuids, final int[] lengths) throws IOException {
+
+			this.counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+			this.out     = new DataOutputStream(counter);
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(uuids.size());
+
+			for (int i=0; i<uuids.size(); i++) {
+
+				out.writeUTF(uuids.get(i));
+				out.writeInt(lengths[i]);
+			}
+		}
+
+		/**
+		 * @param term
+		 * @param postings arrays of ordinal, frequency, positions and offsets, in ascending ordinal order
+		 */
+		public void addTerm(final String term, final List<int[]> postings) throws IOException {
+
+			terms.add(term);
+			docFreqs.add(postings.size());
+			offsets.add(counter.getByteCount());
+
+			int lastOrdinal = 0;
+
+			for (final int[] posting : postings) {
+
+				final int frequency = posting[1];
+
+				writeVInt(out, posting[0] - lastOrdinal);
+				writeVInt(out, frequency);
+
+				int lastPosition = 0;
+				int lastOffset   = 0;
+
+				for (int i=0; i<frequency; i++) {
+
+					final int position = posting[2 + i];
+					final int offset   = posting[2 + frequency + i] + 1;
+
+					writeVInt(out, position - lastPosition);
+					writeVInt(out, offset - lastOffset);
+
+					lastPosition = position;
+					lastOffset   = offset;
+				}
+
+				lastOrdinal = posting[0];
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			final long dictionaryOffset = counter.getByteCount();
+
+			out.writeInt(terms.size());
+
+			for (int i=0; i<terms.size(); i++) {
+
+				out.writeUTF(terms.get(i));
+				out.writeInt(docFreqs.data[i]);
+				out.writeLong(offsets.get(i));
+			}
+
+			out.writeLong(dictionaryOffset);
+			out.writeInt(MAGIC);
+			out.close();
+		}
+	}
+
+	private static class Segment {
+
+		private Map<String, Integer> ordinals = null;
+		private FileChannel channel           = null;
+		private String[] uuids                = null;
+		private int[] lengths                 = null;
+		private String[] terms                = null;
+		private long[] offsets                = null;
+		private long dictionaryOffset         = 0L;
+		private File file                     = null;
+		private int id                        = 0;
+
+		public Segment(final int id, final File file) throws IOException {
+
+			this.id      = id;
+			this.file    = file;
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+			try {
+
+				final ByteBuffer footer = ByteBuffer.allocate(12);
+
+				channel.read(footer, channel.size() - 12);
+				footer.flip();
+
+				dictionaryOffset = footer.getLong();
+
+				if (footer.getInt() != MAGIC) {
+					throw new IOException("Invalid footer");
+				}
+
+				final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 65536));
+
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new IOException("Invalid header");
+				}
+
+				final int docCount = in.readInt();
+
+				uuids   = new String[docCount];
+				lengths = new int[docCount];
+
+				for (int i=0; i<docCount; i++) {
+
+					uuids[i]   = in.readUTF();
+					lengths[i] = in.readInt();
+				}
+
+				final DataInputStream dict = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(dictionaryOffset)), 65536));
+				final int termCount        = dict.readInt();
+
+				terms   = new String[termCount];
+				offsets = new long[termCount];
+
+				for (int i=0; i<termCount; i++) {
+
+					terms[i]   = dict.readUTF();
+					dict.readInt();
+					offsets[i] = dict.readLong();
+				}
+
+			} catch (IOException ioex) {
+
+				channel.close();
+				throw ioex;
+			}
+		}
+
+		public synchronized int getOrdinal(final String uuid) {
+
+			if (ordinals == null) {
+
+				ordinals = new HashMap<>();
+
+				for (int i=0; i<uuids.length; i++) {
+					ordinals.put(uuids[i], i);
+				}
+			}
+
+			final Integer ordinal = ordinals.get(uuid);
+
+			return ordinal != null ? ordinal : -1;
+		}
+
+		public List<int[]> getPostings(final String term, final boolean withPositions) throws IOException {
+
+			final int index = Arrays.binarySearch(terms, term);
+			if (index >= 0) {
+
+				return getPostings(index, withPositions);
+			}
+
+			return Collections.emptyList();
+		}
+
+		/**
+		 * @return arrays of ordinal and frequency, followed by the positions and offsets if requested
+		 */
+		public List<int[]> getPostings(final int index, final boolean withPositions) throws IOException {
+
+			final List<int[]> result = new ArrayList<>();
+			final long start         = offsets[index];
+			final long end           = index + 1 < offsets.length ? offsets[index + 1] : dictionaryOffset;
+			final ByteBuffer buffer  = ByteBuffer.allocate((int)(end - start));
+
+			while (buffer.hasRemaining()) {
+
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of segment " + file.getName());
+				}
+			}
+
+			buffer.flip();
+
+			int ordinal = 0;
+
+			while (buffer.hasRemaining()) {
+
+				ordinal += readVInt(buffer);
+
+				final int frequency = readVInt(buffer);
+				final int[] posting = new int[withPositions ? frequency * 2 + 2 : 2];
+				int position        = 0;
+				int offset          = 0;
+
+				posting[0] = ordinal;
+				posting[1] = frequency;
+
+				for (int i=0; i<frequency; i++) {
+
+					position += readVInt(buffer);
+					offset   += readVInt(buffer);
+
+					if (withPositions) {
+
+						posting[2 + i]             = position;
+						posting[2 + frequency + i] = offset - 1;
+					}
+				}
+
+				result.add(posting);
+			}
+
+			return result;
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		private static int readVInt(final ByteBuffer buffer) {
+
+			int value = 0;
+			int shift = 0;
+			byte b    = 0;
+
+			do {
+
+				b      = buffer.get();
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+
+			} while ((b & 0x80) != 0);
+
+			return value;
+		}
+	}
+
+	private static class TermCursor implements Comparable<TermCursor> {
+
+		private Segment segment = null;
+		private int index       = 0;
+
+		public TermCursor(final Segment segment) {
+			this.segment = segment;
+		}
+
+		public String term() {
+			return segment.terms[index];
+		}
+
+		public boolean next() {
+			return ++index < segment.terms.length;
+		}
+
+		@Override
+		public int compareTo(final TermCursor other) {
+			return term().compareTo(other.term());
+		}
+	}
+}
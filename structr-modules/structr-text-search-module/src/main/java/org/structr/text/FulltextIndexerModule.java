@@ -18,16 +18,23 @@
  */
 package org.structr.text;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.structr.api.service.LicenseManager;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.FulltextIndexer;
 import org.structr.common.fulltext.Indexable;
 import org.structr.core.GraphObjectMap;
-import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractSchemaNode;
+import org.structr.core.function.Functions;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.GenericProperty;
 import org.structr.module.StructrModule;
 import org.structr.schema.action.Actions;
@@ -37,157 +44,86 @@ import org.structr.schema.action.Actions;
  */
 public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 
+	private static final Logger logger = LoggerFactory.getLogger(FulltextIndexerModule.class.getName());
+
 	@Override
 	public void onLoad(final LicenseManager licenseManager) {
-	}
 
-	@Override
-	public void addToFulltextIndex(final Indexable node) throws FrameworkException {
-		StructrApp.getInstance(node.getSecurityContext()).processTasks(new FulltextIndexingTask(node.getUuid()));
+		final boolean basicEdition = licenseManager == null || licenseManager.isEdition(LicenseManager.Basic);
+
+		Functions.put(basicEdition, LicenseManager.Basic, "fulltext_search", new FulltextSearchFunction());
 	}
 
 	@Override
-	public GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength) {
-
-		final GraphObjectMap contextObject = new GraphObjectMap();
-		final Set<String> contextValues = new LinkedHashSet<>();
-		final String[] searchParts = searchTerm.split("[\\s,;]+");
-		final GenericProperty contextKey = new GenericProperty("context");
-
-		for (final String searchString : searchParts) {
-
-			final String lowerCaseSearchString = searchString.toLowerCase();
-			final String lowerCaseText = text.toLowerCase();
-			final StringBuilder wordBuffer = new StringBuilder();
-			final StringBuilder lineBuffer = new StringBuilder();
-			final int textLength = text.length();
-
-			/*
-				 * we take an average word length of 8 characters, multiply
-				 * it by the desired prefix and suffix word count, add 20%
-				 * and try to extract up to prefixLength words.
-			 */
-			// modify these parameters to tune prefix and suffix word extraction
-			// loop variables
-			int newlineCount = 0;
-			int wordCount = 0;	// wordCount starts at 1 because we include the matching word
-			int pos = -1;
-
-			do {
-
-				// find next occurrence
-				pos = lowerCaseText.indexOf(lowerCaseSearchString, pos + 1);
-				if (pos > 0) {
-
-					lineBuffer.setLength(0);
-					wordBuffer.setLength(0);
-
-					wordCount = 0;
-					newlineCount = 0;
-
-					// fetch context words before search hit
-					for (int i = pos; i >= 0; i--) {
-
-						final char c = text.charAt(i);
-
-						if (!Character.isAlphabetic(c) && !Character.isDigit(c) && !FulltextTokenizer.SpecialChars.contains(c)) {
-
-							wordCount += flushWordBuffer(lineBuffer, wordBuffer, true);
-
-							// store character in buffer
-							wordBuffer.insert(0, c);
-
-							if (c == '\n') {
-
-								// increase newline count
-								newlineCount++;
-
-							} else {
-
-								// reset newline count
-								newlineCount = 0;
-							}
-
-							// paragraph boundary reached
-							if (newlineCount > 1) {
-								break;
-							}
-
-							// stop if we collected half of the desired word count
-							if (wordCount > contextLength / 2) {
-								break;
-							}
+	public void addToFulltextIndex(final Indexable node) throws FrameworkException {
 
-						} else {
+		final String uuid = node.getUuid();
 
-							// store character in buffer
-							wordBuffer.insert(0, c);
+		// queue the node once it is visible to the indexing workers,
+		// submitting does not block the transaction
+		TransactionCommand.afterCommit(() -> FulltextIndexingPipeline.getInstance().submit(uuid));
+	}
 
-							// reset newline count
-							newlineCount = 0;
-						}
-					}
+	@Override
+	public void removeFromFulltextIndex(final String uuid) throws FrameworkException {
 
-					wordCount += flushWordBuffer(lineBuffer, wordBuffer, true);
+		try {
 
-					wordBuffer.setLength(0);
+			FulltextIndex.getInstance().remove(uuid);
 
-					// fetch context words after search hit
-					for (int i = pos + 1; i < textLength; i++) {
+		} catch (IOException ioex) {
 
-						final char c = text.charAt(i);
+			throw new FrameworkException(500, "Unable to remove " + uuid + " from fulltext index: " + ioex.getMessage());
+		}
+	}
 
-						if (!Character.isAlphabetic(c) && !Character.isDigit(c) && !FulltextTokenizer.SpecialChars.contains(c)) {
+	@Override
+	public Map<String, Double> search(final String searchTerm, final int maxResults) throws FrameworkException {
 
-							wordCount += flushWordBuffer(lineBuffer, wordBuffer, false);
+		try {
 
-							// store character in buffer
-							wordBuffer.append(c);
+			return FulltextIndex.getInstance().search(tokenize(searchTerm), maxResults, true);
 
-							if (c == '\n') {
+		} catch (IOException ioex) {
 
-								// increase newline count
-								newlineCount++;
+			throw new FrameworkException(500, "Unable to search fulltext index: " + ioex.getMessage());
+		}
+	}
 
-							} else {
+	@Override
+	public GraphObjectMap getContextObject(final String searchTerm, final String uuid, final String text, final int contextLength) {
 
-								// reset newline count
-								newlineCount = 0;
-							}
+		final GraphObjectMap contextObject    = new GraphObjectMap();
+		final GenericProperty contextKey      = new GenericProperty("context");
+		final List<String> terms              = tokenize(searchTerm);
+		final FulltextHighlighter highlighter = new FulltextHighlighter(terms, contextLength, FulltextHighlighter.DEFAULT_MAX_PASSAGES);
+		List<int[]> hits                      = null;
 
-							// paragraph boundary reached
-							if (newlineCount > 1) {
-								break;
-							}
+		if (uuid != null) {
 
-							// stop if we collected enough words
-							if (wordCount > contextLength) {
-								break;
-							}
+			try {
 
-						} else {
+				final List<int[]> indexedHits = FulltextIndex.getInstance().getHits(uuid, terms);
+				if (indexedHits != null) {
 
-							// store character in buffer
-							wordBuffer.append(c);
+					hits = highlighter.validate(text, indexedHits);
+				}
 
-							// reset newline count
-							newlineCount = 0;
-						}
-					}
+			} catch (IOException ioex) {
 
-					wordCount += flushWordBuffer(lineBuffer, wordBuffer, false);
+				logger.warn("Unable to read term positions of {} from fulltext index: {}", uuid, ioex.getMessage());
+			}
+		}
 
-					// replace single newlines with space
-					contextValues.add(lineBuffer.toString().trim());
-				}
+		if (hits == null) {
 
-			} while (pos >= 0);
+			// not indexed yet or the index is out of date
+			hits = highlighter.findHits(text);
 		}
 
-		contextObject.put(contextKey, contextValues);
+		contextObject.put(contextKey, new LinkedHashSet<>(highlighter.getPassages(text, hits)));
 
 		return contextObject;
-
 	}
 
 	// ----- interface StructrModule -----
@@ -224,31 +160,25 @@ public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 	}
 
 	//~--- private methods --------------------------------------------------------
-	private static int flushWordBuffer(final StringBuilder lineBuffer, final StringBuilder wordBuffer, final boolean prepend) {
-
-		int wordCount = 0;
+	private List<String> tokenize(final String searchTerm) {
 
-		if (wordBuffer.length() > 0) {
+		final List<String> terms = new ArrayList<>();
 
-			final String word = wordBuffer.toString().replaceAll("[\\n\\t]+", " ");
-			if (StringUtils.isNotBlank(word)) {
+		try (final FulltextTokenizer tokenizer = new FulltextTokenizer(null)) {
 
-				if (prepend) {
+			// use the same normalization as the indexing agent
+			tokenizer.write(searchTerm);
+			tokenizer.flush();
 
-					lineBuffer.insert(0, word);
-
-				} else {
-
-					lineBuffer.append(word);
-				}
-
-				// increase word count
-				wordCount = 1;
+			for (final String word : tokenizer.getWords()) {
+				terms.add(StringUtils.strip(word, "\""));
 			}
 
-			wordBuffer.setLength(0);
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to tokenize search term {}: {}", searchTerm, ioex.getMessage());
 		}
 
-		return wordCount;
+		return terms;
 	}
 }
@@ -28,6 +28,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -50,13 +51,10 @@ import org.structr.agent.Agent;
 import org.structr.agent.ReturnValue;
 import org.structr.agent.Task;
 import org.structr.api.config.Settings;
-import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.Indexable;
-import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Person;
 import org.structr.core.entity.Principal;
-import org.structr.core.graph.Tx;
 import org.structr.web.entity.File;
 
 /**
@@ -82,42 +80,22 @@ public class FulltextIndexingAgent extends Agent<String> {
 		*/
 	}));
 
+	public static final String QUEUE_DEPTH                            = "queue_depth";
+	public static final String THROUGHPUT                             = "throughput";
+
+	private static final Detector detector   = new DefaultDetector(MimeTypes.getDefaultMimeTypes());
 	private static final int maxStringLength = 32700;
 	private static final int maxTopWords     = 1000;
-	private final Detector detector;
-
-	public FulltextIndexingAgent() {
-
-		detector = new DefaultDetector(MimeTypes.getDefaultMimeTypes());
-	}
 
 	@Override
 	public ReturnValue processTask(final Task<String> task) throws Throwable {
 
 		if (TASK_NAME.equals(task.getType())) {
 
+			// extraction runs on the worker threads of the indexing pipeline
 			for (final String indexableId : task.getWorkObjects()) {
 
-				for (int i=0; i<3; i++) {
-
-					try (final Tx tx = StructrApp.getInstance().tx()) {
-
-						final Indexable indexable = StructrApp.getInstance().nodeQuery(Indexable.class).and(GraphObject.id, indexableId).getFirst();
-						if (indexable != null) {
-
-							doIndexing(indexable);
-
-							// only try indexing once..
-							return ReturnValue.Success;
-						}
-
-						tx.success();
-
-					} catch (FrameworkException fex) {}
-
-					// wait for the transaction in a different thread to finish
-					try { Thread.sleep(1000); } catch (InterruptedException ex) {}
-				}
+				FulltextIndexingPipeline.getInstance().submit(indexableId);
 			}
 
 			return ReturnValue.Success;
@@ -131,8 +109,36 @@ public class FulltextIndexingAgent extends Agent<String> {
 		return FulltextIndexingTask.class;
 	}
 
-	// ----- private methods -----
-	private boolean doIndexing(final Indexable indexable) {
+	@Override
+	public boolean createEnclosingTransaction() {
+		return false;
+	}
+
+	@Override
+	public Object getStatusProperty(final String key) {
+
+		if (QUEUE_DEPTH.equals(key)) {
+
+			return FulltextIndexingPipeline.getInstance().getQueueDepth();
+
+		} else if (THROUGHPUT.equals(key)) {
+
+			return FulltextIndexingPipeline.getInstance().getThroughput();
+		}
+
+		return super.getStatusProperty(key);
+	}
+
+	// ----- package-private static methods -----
+	/**
+	 * Extracts and indexes the content of the given node, must be called
+	 * in a transaction.
+	 *
+	 * @param indexable the node to index
+	 * @param job the indexing job
+	 * @return whether the node could be indexed
+	 */
+	static boolean doIndexing(final Indexable indexable, final FulltextIndexingPipeline.Job job) {
 
 		boolean parsingSuccessful         = false;
 		InputStream inputStream           = null;
@@ -166,6 +172,9 @@ public class FulltextIndexingAgent extends Agent<String> {
 
 				if (inputStream != null) {
 
+					// allows the pipeline to abort parsing after the timeout
+					job.setInputStream(inputStream);
+
 					final Metadata metadata = new Metadata();
 
 					try (final FulltextTokenizer tokenizer = new FulltextTokenizer(fileName)) {
@@ -176,7 +185,7 @@ public class FulltextIndexingAgent extends Agent<String> {
 
 							parser.parse(is, new BodyContentHandler(tokenizer), metadata);
 
-							parsingSuccessful = !EmptyParser.class.getName().equals(metadata.get("X-Parsed-By"));
+							parsingSuccessful = !job.isTimedOut() && !EmptyParser.class.getName().equals(metadata.get("X-Parsed-By"));
 						}
 
 						// only do indexing when parsing was successful
@@ -186,7 +195,7 @@ public class FulltextIndexingAgent extends Agent<String> {
 							indexable.setProperty(StructrApp.key(File.class, "extractedContent"), trimToLength(tokenizer.getRawText(), maxStringLength));
 
 							// tokenize name
-							tokenizer.write(getName());
+							tokenizer.write(fileName);
 
 							// tokenize owner name
 							final Principal _owner = indexable.getOwnerNode();
@@ -215,6 +224,8 @@ public class FulltextIndexingAgent extends Agent<String> {
 							final Set<String> stopWords             = languageStopwordMap.get(tokenizer.getLanguage());
 							final Iterator<String> wordIterator     = tokenizer.getWords().iterator();
 							final Map<String, Integer> indexedWords = new LinkedHashMap<>();
+							final List<String> terms                = new ArrayList<>(tokenizer.getWordCount());
+							final List<Integer> offsets             = tokenizer.getOffsets();
 
 							while (wordIterator.hasNext()) {
 
@@ -223,9 +234,24 @@ public class FulltextIndexingAgent extends Agent<String> {
 								if (!stopWords.contains(word)) {
 
 									add(indexedWords, word);
+									terms.add(word);
+
+								} else {
+
+									// keep token positions intact
+									terms.add(null);
 								}
 							}
 
+							try {
+
+								FulltextIndex.getInstance().add(indexable.getUuid(), terms, offsets);
+
+							} catch (IOException ioex) {
+
+								logger.warn("Unable to add {} to fulltext index: {}", fileName, ioex.getMessage());
+							}
+
 							final String[] topWords = getFrequencySortedTopWords(indexedWords, maxTopWords);
 
 							try {
@@ -243,9 +269,8 @@ public class FulltextIndexingAgent extends Agent<String> {
 
 			} else {
 
-				// File is not available yet because it was probably created
-				// in a separate transaction that is not yet committed.
-				return false;
+				// templates are not indexed
+				return true;
 			}
 
 		} catch (final Throwable t) {
@@ -258,7 +283,7 @@ public class FulltextIndexingAgent extends Agent<String> {
 		return true;
 	}
 
-	private void add(final Map<String, Integer> frequencyMap, final String word) {
+	private static void add(final Map<String, Integer> frequencyMap, final String word) {
 
 		Integer count = frequencyMap.get(word);
 		if (count == null) {
@@ -271,7 +296,7 @@ public class FulltextIndexingAgent extends Agent<String> {
 		}
 	}
 
-	private String[] getFrequencySortedTopWords(final Map<String, Integer> frequency, int maxWords) {
+	private static String[] getFrequencySortedTopWords(final Map<String, Integer> frequency, int maxWords) {
 
 		final Map<Integer, Set<String>> words = new TreeMap<>(Collections.reverseOrder());
 		final ArrayList<String> resultList    = new ArrayList<>();
@@ -310,7 +335,7 @@ public class FulltextIndexingAgent extends Agent<String> {
 		return resultList.toArray(new String[0]);
 	}
 
-	private String trimToLength(final String source, final int maxLength) {
+	private static String trimToLength(final String source, final int maxLength) {
 
 		final Charset utf = Charset.forName("utf-8");
 		final byte[] data = source.getBytes(utf);
@@ -325,7 +350,7 @@ public class FulltextIndexingAgent extends Agent<String> {
 		return source;
 	}
 
-	private long getFileSize(final Indexable indexable) {
+	private static long getFileSize(final Indexable indexable) {
 
 		if (indexable instanceof File) {
 
@@ -0,0 +1,428 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.fulltext.Indexable;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+
+/**
+ * Bounded worker pool that extracts and indexes the content of indexable
+ * nodes in parallel.
+ *
+ * The number of documents that are queued for the workers is limited,
+ * {@link #submit(String)} never blocks. UUIDs that do not fit into the
+ * queue are kept in a bounded backlog and queued when a slot becomes
+ * available, UUIDs that do not fit into the backlog either are dropped,
+ * logged and counted. Each document has its own transaction and extraction
+ * timeout, after which its input stream is closed to abort parsing. Nodes
+ * that are not visible yet are retried with an increasing delay instead of
+ * blocking a worker, and the fulltext index is committed in batches.
+ */
+public class FulltextIndexingPipeline {
+
+	private static final Logger logger                = LoggerFactory.getLogger(FulltextIndexingPipeline.class.getName());
+	private static final int MAX_ATTEMPTS             = 5;
+	private static FulltextIndexingPipeline instance  = null;
+
+	private final AtomicLong submitted      = new AtomicLong(0L);
+	private final AtomicLong processed      = new AtomicLong(0L);
+	private final AtomicLong failed         = new AtomicLong(0L);
+	private final AtomicLong timedOut       = new AtomicLong(0L);
+	private final AtomicLong retried        = new AtomicLong(0L);
+	private final AtomicLong dropped        = new AtomicLong(0L);
+	private final AtomicLong extractionTime = new AtomicLong(0L);
+	private final AtomicInteger pending     = new AtomicInteger(0);
+	private final AtomicInteger active      = new AtomicInteger(0);
+	private final AtomicInteger uncommitted = new AtomicInteger(0);
+	private final Object commitLock         = new Object();
+	private final Set<String> backlog       = new LinkedHashSet<>();
+	private final long startTime            = System.currentTimeMillis();
+	private ScheduledExecutorService scheduler = null;
+	private ThreadPoolExecutor workers         = null;
+	private Semaphore permits                  = null;
+	private long lastReportTime                = startTime;
+	private long lastReportCount               = 0L;
+	private long retryDelay                    = 0L;
+	private int backlogSize                    = 0;
+	private int queueSize                      = 0;
+	private int batchSize                      = 0;
+	private int threads                        = 0;
+	private int timeout                        = 0;
+
+	public FulltextIndexingPipeline(final int threads, final int queueSize, final int backlogSize, final int timeout, final int batchSize) {
+		this(threads, queueSize, backlogSize, timeout, batchSize, 1000L);
+	}
+
+	FulltextIndexingPipeline(final int threads, final int queueSize, final int backlogSize, final int timeout, final int batchSize, final long retryDelay) {
+
+		this.threads     = Math.max(1, threads);
+		this.queueSize   = Math.max(1, queueSize);
+		this.backlogSize = Math.max(0, backlogSize);
+		this.timeout     = Math.max(1, timeout);
+		this.batchSize   = Math.max(1, batchSize);
+		this.retryDelay  = Math.max(1L, retryDelay);
+		this.permits     = new Semaphore(this.queueSize);
+		this.workers   = new ThreadPoolExecutor(this.threads, this.threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("FulltextIndexing"));
+		this.scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("FulltextIndexingScheduler"));
+
+		// do not keep idle threads
+		this.workers.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized FulltextIndexingPipeline getInstance() {
+
+		if (instance == null) {
+
+			instance = new FulltextIndexingPipeline(
+				Settings.IndexingThreads.getValue(),
+				Settings.IndexingQueueSize.getValue(),
+				Settings.IndexingBacklogSize.getValue(),
+				Settings.IndexingTimeout.getValue(),
+				Settings.IndexingBatchSize.getValue()
+			);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Queues the indexable node with the given UUID for indexing. Does not
+	 * block, the UUID is added to the backlog if the queue is full and
+	 * dropped if the backlog is full as well.
+	 *
+	 * @param uuid the UUID of the indexable node
+	 */
+	public void submit(final String uuid) {
+
+		submitted.incrementAndGet();
+
+		if (permits.tryAcquire()) {
+
+			start(new Job(uuid));
+
+		} else {
+
+			boolean full = false;
+
+			synchronized (backlog) {
+
+				// UUIDs that are already waiting in the backlog are indexed once
+				full = backlog.size() >= backlogSize && !backlog.contains(uuid);
+				if (!full) {
+
+					backlog.add(uuid);
+				}
+			}
+
+			if (full) {
+
+				logger.warn("Fulltext indexing backlog is full ({} documents), {} will not be indexed.", backlogSize, uuid);
+				dropped.incrementAndGet();
+			}
+
+			// a slot may have become available in the meantime
+			drainBacklog();
+		}
+	}
+
+	public int getQueueDepth() {
+		return workers.getQueue().size();
+	}
+
+	public int getBacklogSize() {
+
+		synchronized (backlog) {
+			return backlog.size();
+		}
+	}
+
+	/**
+	 * @return the number of indexed documents per second since startup
+	 */
+	public double getThroughput() {
+
+		final long duration = System.currentTimeMillis() - startTime;
+		if (duration > 0) {
+
+			return (processed.get() + failed.get() + timedOut.get()) * 1000.0 / duration;
+		}
+
+		return 0.0;
+	}
+
+	public Map<String, Object> getStatus() {
+
+		final Map<String, Object> status = new LinkedHashMap<>();
+		final long finished              = processed.get() + failed.get() + timedOut.get();
+
+		status.put("threads",               threads);
+		status.put("active",                active.get());
+		status.put("queueDepth",            getQueueDepth());
+		status.put("pending",               pending.get());
+		status.put("backlog",               getBacklogSize());
+		status.put("submitted",             submitted.get());
+		status.put("processed",             processed.get());
+		status.put("failed",                failed.get());
+		status.put("timedOut",              timedOut.get());
+		status.put("retried",               retried.get());
+		status.put("dropped",               dropped.get());
+		status.put("throughput",            Math.round(getThroughput() * 100.0) / 100.0);
+		status.put("averageExtractionTime", finished > 0 ? TimeUnit.NANOSECONDS.toMillis(extractionTime.get() / finished) : 0L);
+
+		return status;
+	}
+
+	public void shutdown() {
+
+		workers.shutdown();
+		scheduler.shutdownNow();
+
+		commit();
+	}
+
+	// ----- private methods -----
+	private void start(final Job job) {
+
+		pending.incrementAndGet();
+
+		workers.execute(() -> process(job));
+	}
+
+	private void drainBacklog() {
+
+		while (permits.tryAcquire()) {
+
+			String uuid = null;
+
+			synchronized (backlog) {
+
+				final Iterator<String> iterator = backlog.iterator();
+				if (iterator.hasNext()) {
+
+					uuid = iterator.next();
+					iterator.remove();
+				}
+			}
+
+			if (uuid == null) {
+
+				permits.release();
+				return;
+			}
+
+			start(new Job(uuid));
+		}
+	}
+
+	private void process(final Job job) {
+
+		final long start = System.nanoTime();
+		boolean found    = false;
+		boolean success  = false;
+
+		active.incrementAndGet();
+		job.attempts++;
+
+		final ScheduledFuture<?> watchdog = scheduler.schedule(job::timeout, timeout, TimeUnit.SECONDS);
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			final Indexable indexable = StructrApp.getInstance().nodeQuery(Indexable.class).and(GraphObject.id, job.uuid).getFirst();
+			if (indexable != null) {
+
+				found   = true;
+				success = FulltextIndexingAgent.doIndexing(indexable, job);
+			}
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to index {}: {}", job.uuid, t.getMessage());
+
+		} finally {
+
+			watchdog.cancel(false);
+			active.decrementAndGet();
+		}
+
+		extractionTime.addAndGet(System.nanoTime() - start);
+
+		if (!found && job.attempts < MAX_ATTEMPTS) {
+
+			// the transaction that created the node is probably not
+			// committed yet, try again later without blocking a worker
+			retried.incrementAndGet();
+			scheduler.schedule(() -> workers.execute(() -> process(job)), retryDelay << (job.attempts - 1), TimeUnit.MILLISECONDS);
+
+			return;
+		}
+
+		if (!found) {
+
+			logger.warn("Node {} not found after {} attempts, it will not be indexed.", job.uuid, job.attempts);
+			dropped.incrementAndGet();
+
+		} else if (job.timedOut) {
+
+			logger.warn("Indexing of {} aborted after {} seconds.", job.uuid, timeout);
+			timedOut.incrementAndGet();
+
+		} else if (success) {
+
+			processed.incrementAndGet();
+
+		} else {
+
+			failed.incrementAndGet();
+		}
+
+		permits.release();
+		drainBacklog();
+
+		final int remaining = pending.decrementAndGet();
+
+		if (uncommitted.incrementAndGet() >= batchSize || remaining == 0) {
+			commit();
+		}
+	}
+
+	private void commit() {
+
+		synchronized (commitLock) {
+
+			final int count = uncommitted.getAndSet(0);
+			if (count > 0) {
+
+				try {
+
+					FulltextIndex.getInstance().commit();
+
+				} catch (IOException ioex) {
+
+					logger.warn("Unable to commit fulltext index: {}", ioex.getMessage());
+				}
+
+				final long now      = System.currentTimeMillis();
+				final long finished = processed.get() + failed.get() + timedOut.get();
+				final long duration = now - lastReportTime;
+
+				logger.info("Fulltext indexing: {} documents committed, {} documents/s, {} queued, {} failed, {} timed out",
+					count,
+					duration > 0 ? Math.round((finished - lastReportCount) * 1000.0 / duration) : 0,
+					getQueueDepth(),
+					failed.get(),
+					timedOut.get()
+				);
+
+				lastReportTime  = now;
+				lastReportCount = finished;
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A single indexing job, used to abort the extraction when the timeout
+	 * expires.
+	 */
+	static class Job {
+
+		private volatile InputStream inputStream = null;
+		private volatile boolean timedOut        = false;
+		private String uuid                      = null;
+		private int attempts                     = 0;
+
+		public Job(final String uuid) {
+			this.uuid = uuid;
+		}
+
+		public void setInputStream(final InputStream inputStream) {
+
+			this.inputStream = inputStream;
+
+			if (timedOut) {
+				close();
+			}
+		}
+
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+
+		public void timeout() {
+
+			timedOut = true;
+
+			// closing the stream makes the parser fail on the next read,
+			// parsers that do not read any more input run to completion
+			close();
+		}
+
+		private void close() {
+
+			final InputStream is = inputStream;
+			if (is != null) {
+
+				try { is.close(); } catch (IOException ignore) {}
+			}
+		}
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger(0);
+		private String name               = null;
+
+		public NamedThreadFactory(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(final Runnable r) {
+
+			final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
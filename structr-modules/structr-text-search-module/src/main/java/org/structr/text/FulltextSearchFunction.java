@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.structr.common.error.FrameworkException;
+import org.structr.common.fulltext.Indexable;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.schema.action.ActionContext;
+import org.structr.web.function.UiFunction;
+
+/**
+ * Searches the fulltext index and returns the matching nodes, ordered by
+ * relevance.
+ */
+public class FulltextSearchFunction extends UiFunction {
+
+	public static final String ERROR_MESSAGE_FULLTEXT_SEARCH    = "Usage: ${fulltext_search(searchTerm[, maxResults])}. Example: ${fulltext_search('structr graph database', 10)}";
+	public static final String ERROR_MESSAGE_FULLTEXT_SEARCH_JS = "Usage: ${{Structr.fulltextSearch(searchTerm[, maxResults])}}. Example: ${{Structr.fulltextSearch('structr graph database', 10)}}";
+
+	@Override
+	public String getName() {
+		return "fulltext_search()";
+	}
+
+	@Override
+	public Object apply(final ActionContext ctx, final Object caller, final Object[] sources) throws FrameworkException {
+
+		if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 1, 2)) {
+
+			final Integer maxResults         = sources.length > 1 ? parseInt(sources[1]) : null;
+			final App app                    = StructrApp.getInstance(ctx.getSecurityContext());
+			final List<GraphObject> result   = new LinkedList<>();
+			final Map<String, Double> scores = app.getFulltextIndexer().search(sources[0].toString(), maxResults != null ? maxResults : 100);
+
+			for (final String uuid : scores.keySet()) {
+
+				// nodes that are not visible in the current context are skipped
+				final Indexable node = app.get(Indexable.class, uuid);
+				if (node != null) {
+
+					result.add(node);
+				}
+			}
+
+			return result;
+
+		} else {
+
+			logParameterError(caller, sources, ctx.isJavaScriptContext());
+		}
+
+		return usage(ctx.isJavaScriptContext());
+	}
+
+	@Override
+	public String usage(boolean inJavaScriptContext) {
+		return (inJavaScriptContext ? ERROR_MESSAGE_FULLTEXT_SEARCH_JS : ERROR_MESSAGE_FULLTEXT_SEARCH);
+	}
+
+	@Override
+	public String shortDescription() {
+		return "Searches the fulltext index and returns the matching nodes ordered by relevance";
+	}
+}
@@ -20,6 +20,7 @@ package org.structr.text;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -45,10 +46,12 @@ public class FulltextTokenizer extends Writer {
 	private final StringBuilder rawText      = new StringBuilder();
 	private final StringBuilder wordBuffer   = new StringBuilder();
 	private final List<String> words         = new LinkedList<>();
+	private final List<Integer> offsets      = new LinkedList<>();
 	private String language                  = "de";
 	private String fileName                  = null;
 	private char lastCharacter               = 0;
 	private int consecutiveCharCount         = 0;
+	private int wordStart                    = 0;
 	private int wordCount                    = 0;
 	private boolean wordCountLimitInfoShown  = false;
 
@@ -106,7 +109,7 @@ public class FulltextTokenizer extends Writer {
 					consecutiveCharCount = 0;
 				}
 
-				if (!Character.isAlphabetic(c) && !Character.isDigit(c) && !SpecialChars.contains(c)) {
+				if (!isWordCharacter(c)) {
 
 					flush();
 
@@ -121,6 +124,10 @@ public class FulltextTokenizer extends Writer {
 
 				} else {
 
+					if (wordBuffer.length() == 0) {
+						wordStart = rawText.length();
+					}
+
 					wordBuffer.append(c);
 					rawText.append(c);
 				}
@@ -142,6 +149,30 @@ public class FulltextTokenizer extends Writer {
 		return words;
 	}
 
+	/**
+	 * Returns the character offsets of the words in the raw text, in the
+	 * same order as {@link #getWords()}.
+	 *
+	 * @return the offsets
+	 */
+	public List<Integer> getOffsets() {
+
+		final List<Integer> result = new ArrayList<>(offsets.size());
+		final int length           = rawText.length();
+		int leading                = 0;
+
+		// getRawText() removes leading whitespace
+		while (leading < length && rawText.charAt(leading) <= ' ') {
+			leading++;
+		}
+
+		for (final Integer offset : offsets) {
+			result.add(offset - leading);
+		}
+
+		return result;
+	}
+
 	@Override
 	public void flush() throws IOException {
 
@@ -154,12 +185,13 @@ public class FulltextTokenizer extends Writer {
 				// try to separate numbers
 				if (word.matches("[\\-0-9\\.,]+")) {
 
-					addWord(word);
+					addWord(word, wordStart);
 
 				} else {
 
 					final String[] parts = word.split("[\\.,]+");
 					final int len        = parts.length;
+					int offset           = 0;
 
 					for (int i=0; i<len; i++) {
 
@@ -167,14 +199,18 @@ public class FulltextTokenizer extends Writer {
 
 						if (StringUtils.isNotBlank(part)) {
 
-							addWord(part.toLowerCase());
+							offset = word.indexOf(part, offset);
+
+							addWord(part.toLowerCase(), wordStart + offset);
+
+							offset += part.length();
 						}
 					}
 				}
 
 			} else {
 
-				addWord(word.toLowerCase());
+				addWord(word.toLowerCase(), wordStart);
 			}
 		}
 
@@ -197,13 +233,18 @@ public class FulltextTokenizer extends Writer {
 		return wordCount;
 	}
 
+	public static boolean isWordCharacter(final char c) {
+		return Character.isAlphabetic(c) || Character.isDigit(c) || SpecialChars.contains(c);
+	}
+
 	// ----- private methods -----
-	private void addWord(final String word) {
+	private void addWord(final String word, final int offset) {
 
 		final int length = word.length();
 		if (length >= wordMinLength && length <= wordMaxLength) {
 
 			words.add(word);
+			offsets.add(offset);
 
 			wordCount++;
 
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.util.Arrays;
+import java.util.List;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ *
+ */
+public class FulltextHighlighterTest {
+
+	private static final String text = "Structr is an open source graph application platform.\n\nIt combines a graph database with a CMS. The graph database stores all data.";
+
+	@Test
+	public void testPassagesFromScan() {
+
+		final FulltextHighlighter highlighter = new FulltextHighlighter(Arrays.asList("graph", "database"), 6, 1);
+		final List<int[]> hits                = highlighter.findHits(text);
+
+		assertEquals("Invalid number of hits", 5, hits.size());
+
+		final List<String> passages = highlighter.getPassages(text, hits);
+
+		assertEquals("Invalid number of passages", 1, passages.size());
+		assertEquals("Invalid passage", "combines a graph database with a", passages.get(0));
+	}
+
+	@Test
+	public void testParagraphBoundary() {
+
+		final FulltextHighlighter highlighter = new FulltextHighlighter(Arrays.asList("combines"), 10, 5);
+		final List<String> passages           = highlighter.getPassages(text, highlighter.findHits(text));
+
+		assertEquals("Invalid number of passages", 1, passages.size());
+		assertEquals("Passage crosses paragraph boundary", "It combines a graph database with a CMS. The graph", passages.get(0));
+	}
+
+	@Test
+	public void testIndexedHits() {
+
+		final FulltextHighlighter highlighter = new FulltextHighlighter(Arrays.asList("platform"), 3, 5);
+		final int offset                      = text.indexOf("platform");
+
+		// valid offsets are used as they are
+		assertNotNull("Valid hits rejected", highlighter.validate(text, Arrays.asList(new int[] { 7, offset, 0 })));
+		assertEquals("Invalid passage", "application platform.", highlighter.getPassages(text, Arrays.asList(new int[] { 7, offset, 0 })).get(0));
+
+		// offsets that do not match the text are rejected
+		assertNull("Invalid hits accepted", highlighter.validate(text, Arrays.asList(new int[] { 7, offset + 1, 0 })));
+
+		// offsets beyond the end of the (truncated) text are ignored
+		assertEquals("Hits beyond end of text not ignored", 0, highlighter.validate(text, Arrays.asList(new int[] { 7, text.length() + 10, 0 })).size());
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ *
+ */
+public class FulltextIndexTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(FulltextIndexTest.class);
+
+	@Test
+	public void testSearchAndRanking() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".fulltext");
+
+		try (final FulltextIndex index = new FulltextIndex(directory, 10)) {
+
+			index.add("a", terms("graph database with graph queries"));
+			index.add("b", terms("relational database"));
+			index.add("c", terms("graph drawing"));
+			index.commit();
+
+			final Map<String, Double> graph = index.search(terms("graph"), 10, true);
+
+			assertEquals("Invalid number of search results", 2, graph.size());
+			assertEquals("Invalid ranking of search results", "a", graph.keySet().iterator().next());
+
+			assertEquals("Invalid number of search results", 1, index.search(terms("graph database"), 10, true).size());
+			assertEquals("Invalid number of search results", 3, index.search(terms("graph database"), 10, false).size());
+			assertEquals("Invalid number of search results", 0, index.search(terms("unknown"), 10, true).size());
+
+			assertTrue("Invalid term positions", Arrays.equals(new int[] { 0, 3 }, index.getPositions("a", "graph")));
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testRemoveAndRestart() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".fulltext");
+
+		try (final FulltextIndex index = new FulltextIndex(directory, 10)) {
+
+			index.add("a", terms("structr graph"));
+			index.add("b", terms("structr cms"));
+			index.commit();
+
+			index.remove("a");
+			index.add("b", terms("structr graph cms"));
+			index.commit();
+
+			assertEquals("Invalid search result after update", "b", index.search(terms("graph"), 10, true).keySet().iterator().next());
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+
+		try (final FulltextIndex index = new FulltextIndex(directory, 10)) {
+
+			final Map<String, Double> result = index.search(terms("structr"), 10, true);
+
+			assertEquals("Invalid number of documents after restart", 1, index.getDocumentCount());
+			assertEquals("Invalid number of search results after restart", 1, result.size());
+			assertTrue("Removed document found after restart", !result.containsKey("a"));
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testMerge() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".fulltext");
+
+		try (final FulltextIndex index = new FulltextIndex(directory, 3)) {
+
+			for (int i=0; i<20; i++) {
+
+				index.add("doc" + i, terms("common term" + i));
+				index.commit();
+			}
+
+			index.remove("doc5");
+			index.commit();
+
+			assertTrue("Segments not merged", index.getSegmentCount() <= 3);
+			assertEquals("Invalid number of search results after merge", 19, index.search(terms("common"), 100, true).size());
+			assertEquals("Invalid number of search results after merge", 1, index.search(terms("term7"), 100, true).size());
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testOffsets() {
+
+		final File directory = new File("/tmp/" + System.nanoTime() + ".fulltext");
+		final String text    = "Structr stores documents in a graph database, graph queries are fast.";
+
+		try (final FulltextIndex index = new FulltextIndex(directory, 10); final FulltextTokenizer tokenizer = new FulltextTokenizer("test")) {
+
+			tokenizer.write(text);
+			tokenizer.flush();
+
+			index.add("a", tokenizer.getWords(), tokenizer.getOffsets());
+			index.commit();
+
+			assertTrue("Invalid term offsets", Arrays.equals(new int[] { text.indexOf("graph"), text.lastIndexOf("graph") }, index.getOffsets("a", "graph")));
+
+			final FulltextHighlighter highlighter = new FulltextHighlighter(terms("graph database"), 4, 1);
+			final List<int[]> hits                = highlighter.validate(text, index.getHits("a", terms("graph database")));
+
+			assertEquals("Invalid number of hits", 3, hits.size());
+			assertEquals("Invalid passage", "graph database, graph queries", highlighter.getPassages(text, hits).get(0));
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private List<String> terms(final String text) {
+		return new ArrayList<>(Arrays.asList(text.split(" ")));
+	}
+}
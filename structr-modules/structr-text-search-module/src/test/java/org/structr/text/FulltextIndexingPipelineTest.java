@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
+
+/**
+ * Tests for the bounded fulltext indexing pipeline.
+ */
+public class FulltextIndexingPipelineTest extends TextSearchModuleTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(FulltextIndexingPipelineTest.class.getName());
+
+	@Test
+	public void testSubmitDoesNotBlock() {
+
+		// one slot, nodes that do not exist keep their slot while waiting for the retry
+		final FulltextIndexingPipeline pipeline = new FulltextIndexingPipeline(1, 1, 10, 60, 10, 60000L);
+
+		try {
+
+			final long start = System.currentTimeMillis();
+
+			for (int i=0; i<5; i++) {
+				pipeline.submit(UUID.randomUUID().toString().replace("-", ""));
+			}
+
+			assertTrue("Submitting to a full queue must not block", System.currentTimeMillis() - start < 1000L);
+			assertEquals("Invalid backlog size", 4, pipeline.getBacklogSize());
+			assertEquals("No UUID should be dropped", 0L, getCount(pipeline, "dropped"));
+
+		} finally {
+
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void testBacklogOverflowIsCounted() {
+
+		final FulltextIndexingPipeline pipeline = new FulltextIndexingPipeline(1, 1, 2, 60, 10, 60000L);
+
+		try {
+
+			final List<String> uuids = new LinkedList<>();
+
+			for (int i=0; i<5; i++) {
+
+				final String uuid = UUID.randomUUID().toString().replace("-", "");
+
+				uuids.add(uuid);
+				pipeline.submit(uuid);
+			}
+
+			assertEquals("Invalid backlog size", 2, pipeline.getBacklogSize());
+			assertEquals("UUIDs that exceed the backlog should be dropped", 2L, getCount(pipeline, "dropped"));
+
+			// a UUID that is already in the backlog is not dropped again
+			pipeline.submit(uuids.get(1));
+
+			assertEquals("Invalid backlog size", 2, pipeline.getBacklogSize());
+			assertEquals("Resubmitted UUID should not be dropped", 2L, getCount(pipeline, "dropped"));
+
+		} finally {
+
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void testMissingNodeIsCounted() {
+
+		final FulltextIndexingPipeline pipeline = new FulltextIndexingPipeline(1, 1, 10, 60, 10, 10L);
+
+		try {
+
+			pipeline.submit(UUID.randomUUID().toString().replace("-", ""));
+
+			waitFor(pipeline, "dropped", 1L);
+
+			assertEquals("Missing node should be retried", 4L, getCount(pipeline, "retried"));
+			assertEquals("Missing node should not count as failed", 0L, getCount(pipeline, "failed"));
+			assertEquals("No job should be pending", 0L, getCount(pipeline, "pending"));
+
+		} finally {
+
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void testBacklogIsIndexed() {
+
+		final FulltextIndexingPipeline pipeline = new FulltextIndexingPipeline(1, 1, 10, 60, 10, 100L);
+		final List<String> uuids                = new LinkedList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<5; i++) {
+
+				try (final InputStream is = new ByteArrayInputStream(("document number " + i).getBytes(StandardCharsets.UTF_8))) {
+
+					uuids.add(FileHelper.createFile(securityContext, is, "text/plain", File.class, "test" + i + ".txt").getUuid());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException|IOException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try {
+
+			for (final String uuid : uuids) {
+				pipeline.submit(uuid);
+			}
+
+			waitFor(pipeline, "processed", 5L);
+
+			assertEquals("Backlog should be empty", 0, pipeline.getBacklogSize());
+			assertEquals("No UUID should be dropped", 0L, getCount(pipeline, "dropped"));
+			assertEquals("No document should fail", 0L, getCount(pipeline, "failed"));
+
+		} finally {
+
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void testSubmitAfterCommit() {
+
+		final FulltextIndexingPipeline pipeline = FulltextIndexingPipeline.getInstance();
+		long before                             = 0L;
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = app.create(File.class, "test.txt");
+
+			before = getCount(pipeline, "submitted");
+
+			StructrApp.getInstance().getFulltextIndexer().addToFulltextIndex(file);
+
+			assertEquals("Node must not be submitted before the transaction is committed", before, getCount(pipeline, "submitted"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertEquals("Node should be submitted after the transaction is committed", before + 1, getCount(pipeline, "submitted"));
+	}
+
+	// ----- private methods -----
+	private long getCount(final FulltextIndexingPipeline pipeline, final String key) {
+
+		final Map<String, Object> status = pipeline.getStatus();
+
+		return ((Number)status.get(key)).longValue();
+	}
+
+	private void waitFor(final FulltextIndexingPipeline pipeline, final String key, final long expected) {
+
+		final long timeout = System.currentTimeMillis() + 30000L;
+
+		while (getCount(pipeline, key) < expected) {
+
+			if (System.currentTimeMillis() > timeout) {
+				fail("Timeout waiting for " + key + " to reach " + expected + ", status is " + pipeline.getStatus());
+			}
+
+			try { Thread.sleep(50L); } catch (InterruptedException iex) {}
+		}
+	}
+}
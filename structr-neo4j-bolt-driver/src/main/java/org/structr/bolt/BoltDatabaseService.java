@@ -57,9 +57,11 @@ import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
+import org.structr.api.util.QueryMetrics.Metric;
 import org.structr.api.util.QueryUtils;
 import org.structr.bolt.index.CypherNodeIndex;
 import org.structr.bolt.index.CypherRelationshipIndex;
+import org.structr.bolt.index.NgramIndex;
 import org.structr.bolt.index.NodeResultStream;
 import org.structr.bolt.index.RelationshipResultStream;
 import org.structr.bolt.index.SimpleCypherQuery;
@@ -80,11 +82,13 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	private Properties globalGraphProperties                          = null;
 	private CypherRelationshipIndex relationshipIndex                 = null;
 	private CypherNodeIndex nodeIndex                                 = null;
+	private NgramIndex ngramIndex                                     = null;
 	private GraphDatabaseService graphDb                              = null;
 	private boolean needsIndexRebuild                                 = false;
 	private String databaseUrl                                        = null;
 	private String databasePath                                       = null;
 	private Driver driver                                             = null;
+	private QueryProfiler profiler                                    = null;
 
 	@Override
 	public boolean initialize() {
@@ -151,6 +155,11 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 			RelationshipWrapper.initialize(relCacheSize);
 			logger.info("Relationship cache size set to {}", relCacheSize);
 
+			try (final Session session = driver.session()) {
+
+				getNgramIndex().initialize(session);
+			}
+
 			// drop :NodeInterface index and create uniqueness constraint
 			// disabled, planned for Structr 2.4
 			//createUUIDConstraint();
@@ -172,6 +181,10 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		RelationshipWrapper.clearCache();
 		NodeWrapper.clearCache();
 
+		if (profiler != null) {
+			profiler.shutdown();
+		}
+
 		driver.close();
 		graphDb.shutdown();
 	}
@@ -254,7 +267,7 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 
 	@Override
 	public QueryResult<Node> getAllNodes() {
-		return QueryUtils.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery("MATCH (n) RETURN n")));
+		return QueryUtils.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery("MATCH (n) WHERE NOT n:" + NgramIndex.LABEL + " RETURN n")));
 	}
 
 	@Override
@@ -322,6 +335,15 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return relationshipIndex;
 	}
 
+	public NgramIndex getNgramIndex() {
+
+		if (ngramIndex == null) {
+			ngramIndex = new NgramIndex(this);
+		}
+
+		return ngramIndex;
+	}
+
 	@Override
 	public NativeResult execute(final String nativeQuery, final Map<String, Object> parameters) {
 		return getCurrentTransaction().run(nativeQuery, parameters);
@@ -347,6 +369,15 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return Settings.CypherDebugLogging.getValue();
 	}
 
+	public synchronized void profile(final Metric metric, final String statement, final Map<String, Object> parameters) {
+
+		if (profiler == null) {
+			profiler = new QueryProfiler(driver);
+		}
+
+		profiler.profile(metric, statement, parameters);
+	}
+
 	// ----- interface GraphProperties -----
 	@Override
 	public void setProperty(final String name, final Object value) {
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang.StringUtils;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.summary.ProfiledPlan;
+import org.neo4j.driver.v1.summary.ResultSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.util.QueryMetrics.Metric;
+
+/**
+ * Executes slow read-only statements with PROFILE in a background thread
+ * and stores the plan and the number of database hits in their metric.
+ *
+ * The profiled statement runs in its own transaction which is rolled
+ * back. At most a few statements are queued, others are dropped and can
+ * be profiled again after the metrics are reset.
+ */
+public class QueryProfiler {
+
+	private static final Logger logger = LoggerFactory.getLogger(QueryProfiler.class.getName());
+
+	private ThreadPoolExecutor executor = null;
+	private Driver driver               = null;
+
+	public QueryProfiler(final Driver driver) {
+
+		this.driver   = driver;
+		this.executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10), r -> {
+
+			final Thread thread = new Thread(r, "QueryProfiler");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public void profile(final Metric metric, final String statement, final Map<String, Object> parameters) {
+
+		final Map<String, Object> copy = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+
+		try {
+
+			executor.execute(() -> doProfile(metric, statement, copy));
+
+		} catch (RejectedExecutionException rex) {
+
+			logger.debug("Profiling queue is full, statement {} is not profiled.", metric.getFingerprint());
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	// ----- private methods -----
+	private void doProfile(final Metric metric, final String statement, final Map<String, Object> parameters) {
+
+		try (final Session session = driver.session()) {
+
+			try (final Transaction tx = session.beginTransaction()) {
+
+				final ResultSummary summary = tx.run("PROFILE " + statement, parameters).consume();
+				if (summary.hasProfile()) {
+
+					final StringBuilder buf = new StringBuilder();
+					final long dbHits       = printPlan(buf, summary.profile(), 0);
+
+					metric.setProfile(buf.toString(), dbHits);
+				}
+
+				// never commit the profiled statement
+				tx.failure();
+			}
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to profile statement {}: {}", metric.getFingerprint(), t.getMessage());
+		}
+	}
+
+	private long printPlan(final StringBuilder buf, final ProfiledPlan plan, final int depth) {
+
+		long dbHits = plan.dbHits();
+
+		buf.append(StringUtils.repeat("  ", depth));
+		buf.append(plan.operatorType());
+		buf.append(" ");
+		buf.append(plan.identifiers());
+		buf.append(", rows: ");
+		buf.append(plan.records());
+		buf.append(", db hits: ");
+		buf.append(plan.dbHits());
+		buf.append("\n");
+
+		for (final ProfiledPlan child : plan.children()) {
+			dbHits += printPlan(buf, child, depth + 1);
+		}
+
+		return dbHits;
+	}
+}
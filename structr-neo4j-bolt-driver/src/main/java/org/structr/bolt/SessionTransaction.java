@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
@@ -45,6 +46,7 @@ import org.structr.api.NetworkException;
 import org.structr.api.NotFoundException;
 import org.structr.api.QueryResult;
 import org.structr.api.RetryException;
+import org.structr.api.util.QueryMetrics;
 import org.structr.api.util.QueryUtils;
 import org.structr.bolt.mapper.RecordLongMapper;
 import org.structr.bolt.mapper.RecordNodeMapper;
@@ -144,8 +146,6 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public boolean getBoolean(final String statement) {
 
-		final long t0 = System.currentTimeMillis();
-
 		try {
 
 			return getBoolean(statement, Collections.EMPTY_MAP);
@@ -157,14 +157,12 @@ public class SessionTransaction implements org.structr.api.Transaction {
 			throw new NotFoundException(nex);
 		} catch (ServiceUnavailableException ex) {
 			throw new NetworkException(ex.getMessage(), ex);
-		} finally {
-			logQuery(statement, t0);
 		}
 	}
 
 	public boolean getBoolean(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -184,8 +182,6 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public long getLong(final String statement) {
 
-		final long t0 = System.currentTimeMillis();
-
 		try {
 
 			return getLong(statement, Collections.EMPTY_MAP);
@@ -197,14 +193,12 @@ public class SessionTransaction implements org.structr.api.Transaction {
 			throw new NotFoundException(nex);
 		} catch (ServiceUnavailableException ex) {
 			throw new NetworkException(ex.getMessage(), ex);
-		} finally {
-			logQuery(statement, t0);
 		}
 	}
 
 	public long getLong(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -224,7 +218,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Object getObject(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -250,7 +244,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Entity getEntity(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -270,7 +264,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Node getNode(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -290,7 +284,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Relationship getRelationship(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -310,11 +304,11 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Node> getNodes(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
-			return QueryUtils.map(new RecordNodeMapper(), new StatementIterable(tx.run(statement, map)));
+			return QueryUtils.map(new RecordNodeMapper(), new StatementIterable(statement, tx.run(statement, map)));
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -330,11 +324,11 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Relationship> getRelationships(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
-			return QueryUtils.map(new RecordRelationshipMapper(), new StatementIterable(tx.run(statement, map)));
+			return QueryUtils.map(new RecordRelationshipMapper(), new StatementIterable(statement, tx.run(statement, map)));
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -350,11 +344,11 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Long> getIds(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
-			return QueryUtils.map(new RecordLongMapper(), new StatementIterable(tx.run(statement, map)));
+			return QueryUtils.map(new RecordLongMapper(), new StatementIterable(statement, tx.run(statement, map)));
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -370,7 +364,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<String> getStrings(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -405,7 +399,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public NativeResult run(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -429,7 +423,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public void set(final String statement, final Map<String, Object> map) {
 
-		final long t0 = System.currentTimeMillis();
+		final long t0 = System.nanoTime();
 
 		try {
 
@@ -457,9 +451,21 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public void logQuery(final String statement, final Map<String, Object> map, final long t0) {
 
+		final long nanos = System.nanoTime() - t0;
+
+		final QueryMetrics metrics = QueryMetrics.getInstance();
+		if (metrics.isEnabled()) {
+
+			final QueryMetrics.Metric metric = metrics.record(statement, nanos, 0);
+			if (metrics.shouldProfile(metric, statement, nanos)) {
+
+				db.profile(metric, statement, map);
+			}
+		}
+
 		if (db.logQueries()) {
 
-			final long time  = System.currentTimeMillis() - t0;
+			final long time  = TimeUnit.NANOSECONDS.toMillis(nanos);
 			final String log = time + "ms";
 
 			if (map != null && map.size() > 0) {
@@ -515,9 +521,13 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	private class StatementIterable implements QueryResult<Record> {
 
 		private StatementResult result = null;
+		private String statement       = null;
+		private long rows              = 0L;
 
-		public StatementIterable(final StatementResult result) {
-			this.result = result;
+		public StatementIterable(final String statement, final StatementResult result) {
+
+			this.statement = statement;
+			this.result    = result;
 		}
 
 		@Override
@@ -534,7 +544,16 @@ public class SessionTransaction implements org.structr.api.Transaction {
 				public boolean hasNext() {
 
 					try {
-						return result.hasNext();
+
+						final boolean hasNext = result.hasNext();
+						if (!hasNext && rows > 0) {
+
+							// count the rows of streamed results when they are exhausted
+							QueryMetrics.getInstance().addRows(statement, rows);
+							rows = 0L;
+						}
+
+						return hasNext;
 
 					} catch (ServiceUnavailableException ex) {
 						closed = true;
@@ -547,7 +566,11 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 					try {
 
-						return result.next();
+						final Record record = result.next();
+
+						rows++;
+
+						return record;
 
 					} catch (TransientException tex) {
 						closed = true;
@@ -24,6 +24,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
@@ -137,6 +138,10 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 		t.setProperty(key, indexValue);
 	}
 
+	@Override
+	public void addNgrams(final PropertyContainer t, final String key, final Object value) {
+	}
+
 	@Override
 	public void remove(final PropertyContainer t) {
 	}
@@ -145,6 +150,20 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 	public void remove(final PropertyContainer t, final String key) {
 	}
 
+	/**
+	 * Returns the IDs of the candidates for an inexact search on the
+	 * given key, or null if the n-gram index cannot narrow down the
+	 * result.
+	 *
+	 * @param key
+	 * @param value
+	 * @param wildcards
+	 * @return the candidate IDs or null
+	 */
+	public List<Long> getNgramCandidates(final String key, final String value, final boolean wildcards) {
+		return null;
+	}
+
 	@Override
 	public QueryResult<T> query(final QueryPredicate predicate) {
 
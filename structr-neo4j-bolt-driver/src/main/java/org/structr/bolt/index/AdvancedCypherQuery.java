@@ -181,6 +181,10 @@ public class AdvancedCypherQuery implements PageableQuery {
 		return parameters;
 	}
 
+	public List<Long> getNgramCandidates(final String key, final String value, final boolean wildcards) {
+		return index.getNgramCandidates(key, value, wildcards);
+	}
+
 	public void beginGroup() {
 		buffer.append("(");
 	}
@@ -18,8 +18,10 @@
  */
 package org.structr.bolt.index;
 
+import java.util.List;
 import org.structr.api.QueryResult;
 import org.structr.api.graph.Node;
+import org.structr.api.graph.PropertyContainer;
 import org.structr.api.util.QueryUtils;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.mapper.NodeNodeMapper;
@@ -48,6 +50,21 @@ public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 		return " RETURN DISTINCT n";
 	}
 
+	@Override
+	public void addNgrams(final PropertyContainer t, final String key, final Object value) {
+		db.getNgramIndex().update(t.getId(), key, value);
+	}
+
+	@Override
+	public void remove(final PropertyContainer t) {
+		db.getNgramIndex().remove(t.getId());
+	}
+
+	@Override
+	public List<Long> getNgramCandidates(final String key, final String value, final boolean wildcards) {
+		return db.getNgramIndex().getCandidates(key, value, wildcards);
+	}
+
 	@Override
 	public QueryResult<Node> getResult(final PageableQuery query) {
 		return QueryUtils.map(new NodeNodeMapper(db), new NodeResultStream(db, query));
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.neo4j.driver.v1.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.api.index.Index;
+import org.structr.api.util.Iterables;
+import org.structr.bolt.BoltDatabaseService;
+
+/**
+ * Trigram index for inexact string and string array searches.
+ *
+ * The trigrams of a property value are stored in separate index entry nodes
+ * that contain the trigram (prefixed with the property key) and the ID of
+ * the indexed node, so they can be found with a schema index lookup without
+ * adding relationships to the indexed nodes. A search term is narrowed down
+ * to the IDs of the nodes that contain all of its trigrams. The candidates
+ * are a superset of the matching nodes, so the exact predicate still has to
+ * be evaluated for them, and stale entries can never hide a match.
+ */
+public class NgramIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(NgramIndex.class.getName());
+
+	public static final String LABEL   = Index.NGRAM_LABEL;
+	public static final int LENGTH     = 3;
+
+	private final BoltDatabaseService db;
+	private volatile boolean inUse     = false;
+
+	public NgramIndex(final BoltDatabaseService db) {
+		this.db = db;
+	}
+
+	/**
+	 * Creates the schema indexes for the index entries, must be called
+	 * outside of a transaction.
+	 *
+	 * @param session
+	 */
+	public void initialize(final Session session) {
+
+		try (final org.neo4j.driver.v1.Transaction tx = session.beginTransaction()) {
+
+			tx.run("CREATE INDEX ON :" + LABEL + "(gram)");
+			tx.run("CREATE INDEX ON :" + LABEL + "(node)");
+			tx.success();
+
+		} catch (Throwable t) {
+			logger.warn("Unable to create n-gram index: {}", t.getMessage());
+		}
+
+		try (final org.neo4j.driver.v1.Transaction tx = session.beginTransaction()) {
+
+			inUse = tx.run("MATCH (e:" + LABEL + ") RETURN e LIMIT 1").hasNext();
+			tx.success();
+
+		} catch (Throwable t) {
+			logger.warn("Unable to query n-gram index: {}", t.getMessage());
+		}
+	}
+
+	public void update(final long id, final String key, final Object value) {
+
+		final Map<String, Object> map = new HashMap<>();
+		final Set<String> grams       = new LinkedHashSet<>();
+
+		if (value instanceof Object[]) {
+
+			for (final Object element : (Object[])value) {
+
+				if (element != null) {
+					addNgrams(grams, key, element.toString());
+				}
+			}
+
+		} else if (value != null) {
+
+			addNgrams(grams, key, value.toString());
+		}
+
+		map.put("id",     id);
+		map.put("prefix", key + ":");
+		map.put("grams",  new ArrayList<>(grams));
+
+		db.getCurrentTransaction().set(
+			"OPTIONAL MATCH (e:" + LABEL + ") WHERE e.node = {id} AND e.gram STARTS WITH {prefix} DELETE e " +
+			"WITH count(*) AS removed UNWIND {grams} AS gram CREATE (:" + LABEL + " { node: {id}, gram: gram })",
+			map
+		);
+
+		if (!grams.isEmpty()) {
+			inUse = true;
+		}
+	}
+
+	public void remove(final long id) {
+
+		if (inUse) {
+
+			final Map<String, Object> map = new HashMap<>();
+
+			map.put("id", id);
+
+			db.getCurrentTransaction().set("MATCH (e:" + LABEL + ") WHERE e.node = {id} DELETE e", map);
+		}
+	}
+
+	/**
+	 * Returns the IDs of the nodes whose value for the given key contains
+	 * all trigrams of the given search term, or null if the search term
+	 * is too short or too unspecific to narrow down the result.
+	 *
+	 * @param key the property key
+	 * @param value the search term
+	 * @param wildcards whether the search term contains * and ? wildcards
+	 *
+	 * @return the candidate IDs or null
+	 */
+	public List<Long> getCandidates(final String key, final String value, final boolean wildcards) {
+
+		final Set<String> grams = new LinkedHashSet<>();
+		final int max           = Settings.NgramMaxCandidates.getValue();
+
+		if (wildcards) {
+
+			for (final String part : value.split("[\\*\\?]+")) {
+				addNgrams(grams, key, part);
+			}
+
+		} else {
+
+			addNgrams(grams, key, value);
+		}
+
+		if (grams.isEmpty() || max <= 0) {
+			return null;
+		}
+
+		final Map<String, Object> map = new HashMap<>();
+
+		map.put("grams", new ArrayList<>(grams));
+		map.put("count", grams.size());
+		map.put("limit", max + 1);
+
+		final List<Long> candidates = Iterables.toList(db.getCurrentTransaction().getIds(
+			"MATCH (e:" + LABEL + ") WHERE e.gram IN {grams} " +
+			"WITH e.node AS id, count(DISTINCT e.gram) AS hits WHERE hits = {count} RETURN id LIMIT {limit}",
+			map
+		));
+
+		if (candidates.size() > max) {
+			return null;
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Adds the trigrams of the given value, prefixed with the given key,
+	 * to the given set. Values that are shorter than a trigram have none.
+	 *
+	 * @param grams
+	 * @param key
+	 * @param value
+	 */
+	public static void addNgrams(final Set<String> grams, final String key, final String value) {
+
+		final String lowerCase = value.toLowerCase();
+		final int length       = lowerCase.length();
+
+		for (int i=0; i<=length-LENGTH; i++) {
+
+			grams.add(key + ":" + lowerCase.substring(i, i + LENGTH));
+		}
+	}
+}
@@ -43,7 +43,9 @@ public class ArrayQueryFactory extends KeywordQueryFactory {
 
 			} else {
 
+				beginNgramGroup(predicate, query, value.toString(), true);
 				query.addListParameter(name, "=~", "(?i).*" + escape(value) + ".*");
+				query.endGroup();
 			}
 		}
 
@@ -19,6 +19,7 @@
 package org.structr.bolt.index.factory;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.structr.api.search.QueryPredicate;
 import org.structr.bolt.index.AdvancedCypherQuery;
@@ -81,7 +82,9 @@ public class KeywordQueryFactory extends AbstractQueryFactory {
 				//query.addSimpleParameter(name, "=~", "(?i).*" + escape(value) + ".*");    // doesn't support multi-line values properly
 				//query.addSimpleParameter(name, "=~", "(?ims).*" + escape(value) + ".*");  // works but slow
 				//query.addSimpleParameter(name, "CONTAINS", escape(value), true, true);            // works and takes half the time
+				beginNgramGroup(predicate, query, value.toString(), false);
 				query.addSimpleParameter(name, "CONTAINS", value, true, true);            // works and takes half the time
+				query.endGroup();
 
 			} else {
 
@@ -96,7 +99,27 @@ public class KeywordQueryFactory extends AbstractQueryFactory {
 		return true;
 	}
 
-	// ----- private methods -----
+	// ----- protected methods -----
+	/**
+	 * Restricts an inexact search to the candidates from the n-gram index
+	 * if the property is n-gram indexed. Opens a group that must be closed
+	 * after the inexact predicate.
+	 */
+	protected void beginNgramGroup(final QueryPredicate predicate, final AdvancedCypherQuery query, final String value, final boolean wildcards) {
+
+		query.beginGroup();
+
+		if (predicate.isNgramIndexed()) {
+
+			final List<Long> candidates = query.getNgramCandidates(predicate.getName(), value, wildcards);
+			if (candidates != null) {
+
+				query.addSimpleParameter("id(n)", "IN", candidates, false);
+				query.and();
+			}
+		}
+	}
+
 	protected String escape(final Object src) {
 
 		final StringBuilder output = new StringBuilder();
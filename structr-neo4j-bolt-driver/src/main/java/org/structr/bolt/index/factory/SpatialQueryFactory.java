@@ -18,15 +18,26 @@
  */
 package org.structr.bolt.index.factory;
 
+import java.util.Arrays;
 import org.structr.api.search.QueryPredicate;
 import org.structr.api.search.SpatialQuery;
 import org.structr.bolt.index.AdvancedCypherQuery;
 
 /**
+ * Creates distance and bounding box queries on the latitude and longitude
+ * properties.
  *
+ * Distance queries are pre-filtered by the bounding box of the search
+ * circle, so that the range predicates on the (indexed) latitude and
+ * longitude properties select the candidates and the exact distance is
+ * only computed for nodes within the box.
  */
 public class SpatialQueryFactory extends AbstractQueryFactory {
 
+	// the polar radius of the earth in kilometers, the smallest radius
+	// results in the largest bounding box, so no matches are lost
+	private static final double EARTH_RADIUS = 6356.752;
+
 	@Override
 	public boolean createQuery(final QueryFactory parent, final QueryPredicate predicate, final AdvancedCypherQuery query, final boolean isFirst) {
 
@@ -35,26 +46,42 @@ public class SpatialQueryFactory extends AbstractQueryFactory {
 			checkOccur(query, predicate.getOccurrence(), isFirst);
 
 			final SpatialQuery spatial = (SpatialQuery)predicate;
+			final Double[] boundingBox = spatial.getBoundingBox();
+
+			if (boundingBox != null) {
+
+				if (boundingBox.length != 4 || Arrays.asList(boundingBox).contains(null)) {
+					return false;
+				}
+
+				query.beginGroup();
+				addBoundingBox(query, boundingBox[0], boundingBox[1], boundingBox[2], boundingBox[3]);
+				query.endGroup();
+
+				return true;
+			}
+
 			final StringBuilder buf    = new StringBuilder();
 			final Double[] coords      = spatial.getCoords();
-			
-			if (coords == null || coords.length != 2)  {
+			final Double distance      = spatial.getDistance();
+
+			if (coords == null || coords.length != 2 || coords[0] == null || coords[1] == null || distance == null)  {
 				return false;
 			}
 
+			final double[] box = getBoundingBox(coords[0], coords[1], distance);
+
 			buf.append("distance(point({latitude:");
 			buf.append(coords[0]);
 			buf.append(",longitude:");
 			buf.append(coords[1]);
 			buf.append("}), point(n))");
 
-			// do not include nodes that have no lat/lon properties
+			// the bounding box also excludes nodes that have no lat/lon properties
 			query.beginGroup();
-			query.addSimpleParameter("latitude", "IS NOT", null);
+			addBoundingBox(query, box[0], box[1], box[2], box[3]);
 			query.and();
-			query.addSimpleParameter("longitude", "IS NOT", null);
-			query.and();
-			query.addSimpleParameter(buf.toString(), "<", spatial.getDistance() * 1000.0, false); // distance is in kilometers
+			query.addSimpleParameter(buf.toString(), "<", distance * 1000.0, false); // distance is in kilometers
 			query.endGroup();
 
 			return true;
@@ -63,4 +90,68 @@ public class SpatialQueryFactory extends AbstractQueryFactory {
 		return false;
 	}
 
+	/**
+	 * Returns the bounding box of a circle on the surface of the earth.
+	 *
+	 * @param latitude the latitude of the center
+	 * @param longitude the longitude of the center
+	 * @param distance the radius in kilometers
+	 *
+	 * @return the south, west, north and east boundaries, west is greater than east if the box crosses the 180th meridian
+	 */
+	public static double[] getBoundingBox(final double latitude, final double longitude, final double distance) {
+
+		final double angle = distance / EARTH_RADIUS;
+		final double south = latitude - Math.toDegrees(angle);
+		final double north = latitude + Math.toDegrees(angle);
+
+		if (south <= -90.0 || north >= 90.0 || angle >= Math.PI / 2.0) {
+
+			// the circle contains a pole, all longitudes are possible
+			return new double[] { Math.max(-90.0, south), -180.0, Math.min(90.0, north), 180.0 };
+		}
+
+		final double delta = Math.toDegrees(Math.asin(Math.min(1.0, Math.sin(angle) / Math.cos(Math.toRadians(latitude)))));
+		double west        = longitude - delta;
+		double east        = longitude + delta;
+
+		if (east - west >= 360.0) {
+
+			west = -180.0;
+			east = 180.0;
+
+		} else {
+
+			if (west < -180.0) {
+				west += 360.0;
+			}
+
+			if (east > 180.0) {
+				east -= 360.0;
+			}
+		}
+
+		return new double[] { south, west, north, east };
+	}
+
+	// ----- private methods -----
+	private void addBoundingBox(final AdvancedCypherQuery query, final double south, final double west, final double north, final double east) {
+
+		query.addParameters("latitude", ">=", south, "<=", north);
+		query.and();
+
+		if (west <= east) {
+
+			query.addParameters("longitude", ">=", west, "<=", east);
+
+		} else {
+
+			// bounding box crosses the 180th meridian
+			query.beginGroup();
+			query.addSimpleParameter("longitude", ">=", west);
+			query.or();
+			query.addSimpleParameter("longitude", "<=", east);
+			query.endGroup();
+		}
+	}
 }
@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Executes outbound HTTP requests concurrently with a limit per host.
+ *
+ * The requests are executed by a fixed number of threads. The number of
+ * concurrent requests to the same host is limited, requests that exceed the
+ * limit wait in a per-host queue without occupying a thread. A request can
+ * ask for a minimum delay after the start of the previous request to the
+ * same host. Each request is started as a task of its own, so a cancelled
+ * request does not affect the next request that runs in the same thread.
+ *
+ * Unlike {@link HttpHelper}, this class keeps no request state in static
+ * fields and can be used by many threads at once.
+ */
+public class HttpFetcher {
+
+	private static final Logger logger     = LoggerFactory.getLogger(HttpFetcher.class.getName());
+	private static final int MAX_REDIRECTS = 5;
+	private static HttpFetcher instance    = null;
+
+	private final Map<String, HostQueue> hosts   = new ConcurrentHashMap<>();
+	private ScheduledThreadPoolExecutor executor = null;
+	private int hostConnections                  = 0;
+	private int timeout                          = 0;
+
+	public HttpFetcher(final String name, final int threads, final int hostConnections, final int timeoutSeconds) {
+
+		final AtomicInteger num = new AtomicInteger(0);
+
+		this.hostConnections = Math.max(1, hostConnections);
+		this.timeout         = Math.max(1, timeoutSeconds) * 1000;
+		this.executor        = new ScheduledThreadPoolExecutor(Math.max(1, threads), r -> {
+
+			final Thread thread = new Thread(r, name + "-" + num.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+	}
+
+	public static synchronized HttpFetcher getInstance() {
+
+		if (instance == null) {
+
+			instance = new HttpFetcher(
+				"HttpFetcher",
+				Settings.HttpThreads.getValue(),
+				Settings.HttpHostConnections.getValue(),
+				Settings.HttpTimeout.getValue()
+			);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Schedules the given task, which requests the given URL, under the
+	 * connection limit of the URL's host.
+	 *
+	 * @param <T>
+	 * @param url
+	 * @param task
+	 *
+	 * @return the future result of the task, which fails with an IOException if the URL is invalid
+	 */
+	public <T> Future<T> submit(final String url, final Callable<T> task) {
+		return submit(url, 0L, task);
+	}
+
+	/**
+	 * Schedules the given task, which requests the given URL, under the
+	 * connection limit of the URL's host. The task is started at least
+	 * hostDelay milliseconds after the previous request to that host.
+	 *
+	 * @param <T>
+	 * @param url
+	 * @param hostDelay the minimum delay after the start of the previous request to the same host
+	 * @param task
+	 *
+	 * @return the future result of the task, which fails with an IOException if the URL is invalid
+	 */
+	public <T> Future<T> submit(final String url, final long hostDelay, final Callable<T> task) {
+
+		try {
+
+			final FutureTask<T> future = new FutureTask<>(task);
+
+			getHostQueue(url).submit(future, Math.max(0L, hostDelay));
+
+			return future;
+
+		} catch (MalformedURLException | IllegalArgumentException ex) {
+
+			final CompletableFuture<T> failed = new CompletableFuture<>();
+
+			failed.completeExceptionally(new IOException("Invalid address " + url + ": " + ex.getMessage(), ex));
+
+			return failed;
+		}
+	}
+
+	/**
+	 * Sends a GET request to the given URL with the configured proxy and
+	 * returns the connection once the response status is available.
+	 *
+	 * @param url
+	 * @param headers additional request headers
+	 *
+	 * @return the connection
+	 * @throws IOException
+	 */
+	public HttpURLConnection get(final String url, final Map<String, String> headers) throws IOException {
+		return get(url, headers, null, null, null);
+	}
+
+	/**
+	 * Sends a GET request to the given URL and returns the connection once
+	 * the response status is available. Redirects are followed, also from
+	 * http to https, which HttpURLConnection does not do by itself. If no
+	 * proxy URL is given, the configured proxy is used.
+	 *
+	 * @param url
+	 * @param headers additional request headers
+	 * @param proxyUrl
+	 * @param proxyUsername
+	 * @param proxyPassword
+	 *
+	 * @return the connection
+	 * @throws IOException
+	 */
+	public HttpURLConnection get(final String url, final Map<String, String> headers, final String proxyUrl, final String proxyUsername, final String proxyPassword) throws IOException {
+
+		if (StringUtils.isBlank(proxyUrl)) {
+
+			return get(new URL(url), headers != null ? headers : Collections.emptyMap(), Settings.HttpProxyUrl.getValue(), Settings.HttpProxyUser.getValue(), Settings.HttpProxyPassword.getValue(), 0);
+		}
+
+		return get(new URL(url), headers != null ? headers : Collections.emptyMap(), proxyUrl, proxyUsername, proxyPassword, 0);
+	}
+
+	/**
+	 * Reads and closes the error stream of the given connection, so that
+	 * the connection can be reused.
+	 *
+	 * @param connection
+	 * @throws IOException
+	 */
+	public static void discard(final HttpURLConnection connection) throws IOException {
+
+		final InputStream es = connection.getErrorStream();
+		if (es != null) {
+
+			while (es.read() != -1) {}
+			es.close();
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	// ----- private methods -----
+	private HostQueue getHostQueue(final String url) throws MalformedURLException {
+
+		final URL parsed = new URL(url);
+
+		if (StringUtils.isBlank(parsed.getHost())) {
+			throw new MalformedURLException("no host");
+		}
+
+		return hosts.computeIfAbsent(parsed.getHost() + ":" + parsed.getPort(), k -> new HostQueue());
+	}
+
+	private HttpURLConnection get(final URL url, final Map<String, String> headers, final String proxyUrl, final String proxyUsername, final String proxyPassword, final int redirects) throws IOException {
+
+		final URLConnection connection = url.openConnection(getProxy(proxyUrl));
+
+		if (!(connection instanceof HttpURLConnection)) {
+			throw new IOException("Unsupported protocol in address " + url);
+		}
+
+		final HttpURLConnection http = (HttpURLConnection)connection;
+
+		http.setConnectTimeout(timeout);
+		http.setReadTimeout(timeout);
+		http.setInstanceFollowRedirects(false);
+		http.setRequestProperty("User-Agent", "curl/7.35.0");
+
+		if (StringUtils.isNoneBlank(proxyUrl, proxyUsername, proxyPassword)) {
+			http.setRequestProperty("Proxy-Authorization", "Basic " + Base64.getEncoder().encodeToString((proxyUsername + ":" + proxyPassword).getBytes(StandardCharsets.UTF_8)));
+		}
+
+		for (final Map.Entry<String, String> header : headers.entrySet()) {
+			http.setRequestProperty(header.getKey(), header.getValue());
+		}
+
+		final int status      = http.getResponseCode();
+		final String location = http.getHeaderField("Location");
+
+		if (status >= 300 && status < 400 && location != null && redirects < MAX_REDIRECTS) {
+
+			discard(http);
+			http.disconnect();
+
+			return get(new URL(url, location), headers, proxyUrl, proxyUsername, proxyPassword, redirects + 1);
+		}
+
+		return http;
+	}
+
+	private Proxy getProxy(final String proxyUrl) {
+
+		if (StringUtils.isNotBlank(proxyUrl)) {
+
+			final URI uri = URI.create(proxyUrl.contains("://") ? proxyUrl : "http://" + proxyUrl);
+
+			return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 80));
+		}
+
+		return Proxy.NO_PROXY;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Limits the number of concurrent requests to a single host and keeps
+	 * the requested delay between the start of two requests. Tasks that
+	 * exceed the limit are queued and started when a running task of the
+	 * same host has finished.
+	 */
+	private class HostQueue {
+
+		private final Queue<Delayed> queue = new LinkedList<>();
+		private long nextStart             = 0L;
+		private int active                 = 0;
+
+		public synchronized void submit(final Runnable task, final long delay) {
+
+			if (active < hostConnections) {
+
+				active++;
+				start(new Delayed(task, delay));
+
+			} else {
+
+				queue.add(new Delayed(task, delay));
+			}
+		}
+
+		// must be called with the lock held
+		private void start(final Delayed delayed) {
+
+			final long now = System.currentTimeMillis();
+			final long at  = Math.max(now, nextStart + delayed.delay);
+
+			nextStart = at;
+
+			// each task is scheduled separately, the pool clears a pending
+			// interrupt of a cancelled task before it runs the next one
+			executor.schedule(() -> run(delayed.task), at - now, TimeUnit.MILLISECONDS);
+		}
+
+		private void run(final Runnable task) {
+
+			try {
+
+				task.run();
+
+			} catch (Throwable t) {
+
+				logger.warn("Unexpected exception in HTTP request task: {}", t.getMessage());
+
+			} finally {
+
+				synchronized (this) {
+
+					final Delayed next = queue.poll();
+					if (next != null) {
+
+						start(next);
+
+					} else {
+
+						active--;
+					}
+				}
+			}
+		}
+	}
+
+	private static class Delayed {
+
+		private Runnable task = null;
+		private long delay    = 0L;
+
+		public Delayed(final Runnable task, final long delay) {
+
+			this.task  = task;
+			this.delay = delay;
+		}
+	}
+}
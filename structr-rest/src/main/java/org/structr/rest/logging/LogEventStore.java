@@ -0,0 +1,939 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.core.graph.TransactionCommand;
+
+/**
+ * Append-only, time-partitioned columnar storage for log events.
+ *
+ * Events are stored in one partition per day (UTC). Each partition is a
+ * directory that contains one file per column: the timestamps, the
+ * dictionary-encoded action, subject and object, and the messages with
+ * an offset index. Queries read only the columns they need, skip whole
+ * partitions by time range or when a requested value does not occur in
+ * the partition dictionary, and stream the matching events to a visitor,
+ * so that aggregations never hold more than the aggregated values in
+ * memory.
+ *
+ * Partitions whose events are all older than the configured retention
+ * period are deleted.
+ */
+public class LogEventStore implements Closeable {
+
+	private static final Logger logger         = LoggerFactory.getLogger(LogEventStore.class.getName());
+	private static final long DAY              = TimeUnit.DAYS.toMillis(1);
+	private static final int NULL_ID           = -1;
+
+	private static final String TIME_COLUMN    = "time.col";
+	private static final String ACTION_COLUMN  = "action.col";
+	private static final String SUBJECT_COLUMN = "subject.col";
+	private static final String OBJECT_COLUMN  = "object.col";
+	private static final String MESSAGE_INDEX  = "message.idx";
+	private static final String MESSAGE_DATA   = "message.dat";
+	private static final String DICTIONARY     = "dictionary.dat";
+	private static final String SUMMARY        = "summary.dat";
+
+	private static LogEventStore instance = null;
+
+	private final TreeMap<Long, Partition> partitions = new TreeMap<>();
+	private volatile boolean initialized              = false;
+	private long lastCompaction                       = 0L;
+	private File directory                            = null;
+	private long retention                            = 0L;
+
+	public LogEventStore(final File directory, final long retention) {
+
+		this.directory = directory;
+		this.retention = retention;
+	}
+
+	public static synchronized LogEventStore getInstance() {
+
+		if (instance == null) {
+
+			final File path      = new File(Settings.getFullSettingPath(Settings.LogEventsPath));
+			final long retention = TimeUnit.DAYS.toMillis(Math.max(0, Settings.LogEventsRetention.getValue()));
+
+			instance = new LogEventStore(path, retention);
+		}
+
+		return instance;
+	}
+
+	public void append(final long time, final String action, final String subject, final String object, final String message) throws IOException {
+
+		final List<Event> events = new ArrayList<>(1);
+
+		events.add(new Event(time, action, subject, object, message));
+
+		append(events);
+	}
+
+	/**
+	 * Appends the given events once the current transaction has been
+	 * committed, so that events of a transaction that is rolled back are
+	 * never stored. Without a transaction, the events are appended
+	 * immediately.
+	 *
+	 * @param events
+	 */
+	public void appendAfterCommit(final List<Event> events) {
+
+		TransactionCommand.afterCommit(() -> {
+
+			try {
+
+				append(events);
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to store {} log events: {}", events.size(), ioex.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Appends the given events to the partitions of their respective days.
+	 *
+	 * @param events
+	 * @throws IOException
+	 */
+	public void append(final List<Event> events) throws IOException {
+
+		if (events.isEmpty()) {
+			return;
+		}
+
+		initialize();
+
+		final Map<Long, List<Event>> byDay = new TreeMap<>();
+		final long today                   = Math.floorDiv(System.currentTimeMillis(), DAY);
+
+		for (final Event event : events) {
+			byDay.computeIfAbsent(Math.floorDiv(event.time, DAY), k -> new ArrayList<>()).add(event);
+		}
+
+		synchronized (partitions) {
+
+			for (final Map.Entry<Long, List<Event>> entry : byDay.entrySet()) {
+
+				final long day      = entry.getKey();
+				Partition partition = partitions.get(day);
+
+				if (partition == null) {
+
+					partition = new Partition(day, new File(directory, LocalDate.ofEpochDay(day).format(DateTimeFormatter.BASIC_ISO_DATE)));
+					partitions.put(day, partition);
+				}
+
+				partition.append(entry.getValue());
+			}
+
+			// only the partition of the current day is kept open
+			for (final Partition partition : partitions.values()) {
+
+				if (partition.day != today) {
+					partition.closeWriter();
+				}
+			}
+
+			if (today != lastCompaction) {
+
+				lastCompaction = today;
+				compact();
+			}
+		}
+	}
+
+	/**
+	 * Streams all events that match the given filter to the given visitor,
+	 * in partition order.
+	 *
+	 * @param filter
+	 * @param visitor
+	 * @throws IOException
+	 */
+	public void scan(final Filter filter, final Visitor visitor) throws IOException {
+
+		initialize();
+
+		for (final Partition partition : getPartitions(filter)) {
+			partition.scan(filter, visitor);
+		}
+	}
+
+	/**
+	 * Returns the timestamp of the first event that matches the given
+	 * filter, or null if there is no such event. Only the first partition
+	 * that contains a matching event is read.
+	 *
+	 * @param filter
+	 * @return the first timestamp or null
+	 * @throws IOException
+	 */
+	public Long getFirstTimestamp(final Filter filter) throws IOException {
+
+		initialize();
+
+		final Filter timeFilter = new Filter(filter.from, filter.to, filter.action, filter.subject, filter.object, false);
+		final long[] min        = { Long.MAX_VALUE };
+
+		for (final Partition partition : getPartitions(filter)) {
+
+			partition.scan(timeFilter, event -> min[0] = Math.min(min[0], event.time));
+
+			if (min[0] != Long.MAX_VALUE) {
+				return min[0];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the number of events per action and the first and last
+	 * timestamp of all events, calculated from the partition summaries.
+	 *
+	 * @return the overview
+	 * @throws IOException
+	 */
+	public Overview getOverview() throws IOException {
+
+		initialize();
+
+		final Overview overview = new Overview();
+
+		for (final Partition partition : getPartitions(null)) {
+
+			synchronized (partition) {
+
+				if (partition.count > 0) {
+
+					overview.count     += partition.count;
+					overview.firstEntry = Math.min(overview.firstEntry, partition.minTime);
+					overview.lastEntry  = Math.max(overview.lastEntry, partition.maxTime);
+
+					for (final Map.Entry<String, Integer> entry : partition.actionCounts.entrySet()) {
+						overview.actions.merge(entry.getKey(), entry.getValue(), Integer::sum);
+					}
+				}
+			}
+		}
+
+		return overview;
+	}
+
+	/**
+	 * Deletes all partitions whose events are older than the retention
+	 * period.
+	 */
+	public void compact() {
+
+		if (retention <= 0) {
+			return;
+		}
+
+		final long cutoff = System.currentTimeMillis() - retention;
+
+		synchronized (partitions) {
+
+			for (final Partition partition : new ArrayList<>(partitions.values())) {
+
+				if ((partition.day + 1) * DAY <= cutoff) {
+
+					try {
+
+						partition.closeWriter();
+						FileUtils.deleteDirectory(partition.directory);
+
+						partitions.remove(partition.day);
+
+						logger.info("Deleted log event partition {} ({} events)", partition.directory.getName(), partition.count);
+
+					} catch (IOException ioex) {
+
+						logger.warn("Unable to delete log event partition {}: {}", partition.directory.getAbsolutePath(), ioex.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		synchronized (partitions) {
+
+			for (final Partition partition : partitions.values()) {
+				partition.closeWriter();
+			}
+
+			partitions.clear();
+			initialized = false;
+		}
+	}
+
+	// ----- private methods -----
+	private void initialize() throws IOException {
+
+		if (!initialized) {
+
+			synchronized (partitions) {
+
+				if (!initialized) {
+
+					directory.mkdirs();
+
+					final File[] files = directory.listFiles(File::isDirectory);
+					if (files != null) {
+
+						final long t0 = System.currentTimeMillis();
+						long count    = 0L;
+
+						for (final File file : files) {
+
+							try {
+
+								final long day            = LocalDate.parse(file.getName(), DateTimeFormatter.BASIC_ISO_DATE).toEpochDay();
+								final Partition partition = new Partition(day, file);
+
+								partition.open();
+								partitions.put(day, partition);
+
+								count += partition.count;
+
+							} catch (DateTimeParseException pex) {
+								logger.warn("Ignoring unknown directory {} in log event directory", file.getAbsolutePath());
+							}
+						}
+
+						if (!partitions.isEmpty()) {
+							logger.info("Opened {} log event partitions with {} events in {} ms", partitions.size(), count, System.currentTimeMillis() - t0);
+						}
+					}
+
+					initialized = true;
+				}
+			}
+
+			compact();
+		}
+	}
+
+	private List<Partition> getPartitions(final Filter filter) {
+
+		final List<Partition> result = new ArrayList<>();
+
+		synchronized (partitions) {
+
+			for (final Partition partition : partitions.values()) {
+
+				final long start = partition.day * DAY;
+				final long end   = start + DAY - 1;
+
+				if (filter == null || ((filter.from == null || end >= filter.from) && (filter.to == null || start <= filter.to))) {
+					result.add(partition);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static void truncate(final File file, final long length) throws IOException {
+
+		if (file.exists() && file.length() > length) {
+
+			try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(length);
+			}
+		}
+	}
+
+	private static long length(final File file, final int width) {
+		return file.length() / width;
+	}
+
+	private static DataInputStream openInput(final File file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+	}
+
+	private static void skipFully(final InputStream is, final long count) throws IOException {
+
+		long remaining = count;
+
+		while (remaining > 0) {
+
+			final long skipped = is.skip(remaining);
+			if (skipped <= 0) {
+
+				if (is.read() < 0) {
+					throw new EOFException();
+				}
+
+				remaining--;
+
+			} else {
+
+				remaining -= skipped;
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	@FunctionalInterface
+	public interface Visitor {
+
+		void visit(final Event event) throws IOException;
+	}
+
+	public static class Event {
+
+		private String subject = null;
+		private String message = null;
+		private String object  = null;
+		private String action  = null;
+		private long time      = 0L;
+
+		public Event(final long time, final String action, final String subject, final String object, final String message) {
+
+			this.time    = time;
+			this.action  = action;
+			this.subject = subject;
+			this.object  = object;
+			this.message = message;
+		}
+
+		public long getTimestamp() {
+			return time;
+		}
+
+		public String getAction() {
+			return action;
+		}
+
+		public String getSubjectId() {
+			return subject;
+		}
+
+		public String getObjectId() {
+			return object;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+	}
+
+	/**
+	 * Selects events by (inclusive) time range and exact action, subject
+	 * and object values. Null values match all events. Messages are only
+	 * read if requested.
+	 */
+	public static class Filter {
+
+		private boolean messages = false;
+		private String subject   = null;
+		private String object    = null;
+		private String action    = null;
+		private Long from        = null;
+		private Long to          = null;
+
+		public Filter(final Long from, final Long to, final String action, final String subject, final String object, final boolean messages) {
+
+			this.from     = from;
+			this.to       = to;
+			this.action   = action;
+			this.subject  = subject;
+			this.object   = object;
+			this.messages = messages;
+		}
+	}
+
+	public static class Overview {
+
+		private final Map<String, Integer> actions = new LinkedHashMap<>();
+		private long firstEntry                    = Long.MAX_VALUE;
+		private long lastEntry                     = 0L;
+		private int count                          = 0;
+
+		public Map<String, Integer> getActions() {
+			return actions;
+		}
+
+		public long getFirstEntry() {
+			return firstEntry;
+		}
+
+		public long getLastEntry() {
+			return lastEntry;
+		}
+
+		public int getCount() {
+			return count;
+		}
+	}
+
+	private static class Partition {
+
+		private final Map<String, Integer> actionCounts = new LinkedHashMap<>();
+		private Map<String, Integer> ids                = null;
+		private List<String> dictionary                 = null;
+		private OutputStream[] writers                  = null;
+		private long dictionaryLength                   = 0L;
+		private long messageLength                      = 0L;
+		private long minTime                            = Long.MAX_VALUE;
+		private long maxTime                            = 0L;
+		private File directory                          = null;
+		private long day                                = 0L;
+		private int count                               = 0;
+
+		public Partition(final long day, final File directory) {
+
+			this.day       = day;
+			this.directory = directory;
+		}
+
+		/**
+		 * Restores the state of an existing partition, discarding rows
+		 * that were not written completely.
+		 */
+		public synchronized void open() throws IOException {
+
+			long rows = length(file(TIME_COLUMN), 8);
+
+			rows = Math.min(rows, length(file(ACTION_COLUMN), 4));
+			rows = Math.min(rows, length(file(SUBJECT_COLUMN), 4));
+			rows = Math.min(rows, length(file(OBJECT_COLUMN), 4));
+			rows = Math.min(rows, length(file(MESSAGE_INDEX), 8));
+
+			// message data is written before the index
+			while (rows > 0 && readMessageEnd(rows) > file(MESSAGE_DATA).length()) {
+				rows--;
+			}
+
+			truncate(file(TIME_COLUMN),    rows * 8);
+			truncate(file(ACTION_COLUMN),  rows * 4);
+			truncate(file(SUBJECT_COLUMN), rows * 4);
+			truncate(file(OBJECT_COLUMN),  rows * 4);
+			truncate(file(MESSAGE_INDEX),  rows * 8);
+
+			messageLength = rows > 0 ? readMessageEnd(rows) : 0L;
+			count         = (int)rows;
+
+			truncate(file(MESSAGE_DATA), messageLength);
+
+			final List<String> values = readDictionary(Long.MAX_VALUE);
+
+			truncate(file(DICTIONARY), dictionaryLength);
+
+			if (!readSummary()) {
+
+				// no valid summary, calculate from the columns
+				try (final DataInputStream time = openInput(file(TIME_COLUMN)); final DataInputStream action = openInput(file(ACTION_COLUMN))) {
+
+					for (int i=0; i<count; i++) {
+
+						final long timestamp = time.readLong();
+						final int actionId   = action.readInt();
+
+						addToSummary(timestamp, actionId == NULL_ID ? null : values.get(actionId));
+					}
+				}
+
+				writeSummary();
+			}
+		}
+
+		public synchronized void append(final List<Event> events) throws IOException {
+
+			if (writers == null) {
+				openWriter();
+			}
+
+			final ByteArrayOutputStream dictionaryBuffer = new ByteArrayOutputStream();
+			final ByteArrayOutputStream messageBuffer    = new ByteArrayOutputStream();
+			final ByteArrayOutputStream[] columns        = new ByteArrayOutputStream[5];
+			final DataOutputStream dictionaryOut         = new DataOutputStream(dictionaryBuffer);
+			final DataOutputStream[] columnOut           = new DataOutputStream[5];
+
+			for (int i=0; i<columns.length; i++) {
+
+				columns[i]   = new ByteArrayOutputStream(events.size() * 8);
+				columnOut[i] = new DataOutputStream(columns[i]);
+			}
+
+			long messageEnd = messageLength;
+
+			try {
+
+				for (final Event event : events) {
+
+					final byte[] message = event.message != null ? event.message.getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+					messageBuffer.write(message, 0, message.length);
+					messageEnd += message.length;
+
+					columnOut[0].writeLong(messageEnd);
+					columnOut[1].writeLong(event.time);
+					columnOut[2].writeInt(getId(event.action, dictionaryOut));
+					columnOut[3].writeInt(getId(event.subject, dictionaryOut));
+					columnOut[4].writeInt(getId(event.object, dictionaryOut));
+				}
+
+				// the dictionary and the message data must be written before the rows that reference them
+				writers[0].write(dictionaryBuffer.toByteArray());
+				writers[1].write(messageBuffer.toByteArray());
+
+				for (int i=0; i<columns.length; i++) {
+					writers[i + 2].write(columns[i].toByteArray());
+				}
+
+			} catch (IOException ioex) {
+
+				// restore a consistent state from the files
+				abortWriter();
+
+				throw ioex;
+			}
+
+			for (final Event event : events) {
+				addToSummary(event.time, event.action);
+			}
+
+			dictionaryLength += dictionaryBuffer.size();
+			messageLength     = messageEnd;
+			count            += events.size();
+		}
+
+		public void scan(final Filter filter, final Visitor visitor) throws IOException {
+
+			final List<String> values;
+			final int rows;
+
+			synchronized (this) {
+
+				if (count == 0 || (filter.from != null && maxTime < filter.from) || (filter.to != null && minTime > filter.to)) {
+					return;
+				}
+
+				rows   = count;
+				values = dictionary != null ? new ArrayList<>(dictionary) : readDictionary(dictionaryLength);
+			}
+
+			final int actionId  = lookup(values, filter.action);
+			final int subjectId = lookup(values, filter.subject);
+			final int objectId  = lookup(values, filter.object);
+
+			if (actionId == Integer.MIN_VALUE || subjectId == Integer.MIN_VALUE || objectId == Integer.MIN_VALUE) {
+
+				// a requested value does not occur in this partition
+				return;
+			}
+
+			try (final DataInputStream time    = openInput(file(TIME_COLUMN));
+			     final DataInputStream action  = openInput(file(ACTION_COLUMN));
+			     final DataInputStream subject = openInput(file(SUBJECT_COLUMN));
+			     final DataInputStream object  = openInput(file(OBJECT_COLUMN));
+			     final DataInputStream index   = filter.messages ? openInput(file(MESSAGE_INDEX)) : null;
+			     final DataInputStream message = filter.messages ? openInput(file(MESSAGE_DATA)) : null) {
+
+				long messageStart = 0L;
+
+				for (int i=0; i<rows; i++) {
+
+					final long timestamp = time.readLong();
+					final int a          = action.readInt();
+					final int s          = subject.readInt();
+					final int o          = object.readInt();
+					long messageEnd      = 0L;
+
+					if (filter.messages) {
+						messageEnd = index.readLong();
+					}
+
+					final boolean matches = (filter.from == null || timestamp >= filter.from)
+						&& (filter.to == null || timestamp <= filter.to)
+						&& (actionId == NULL_ID || a == actionId)
+						&& (subjectId == NULL_ID || s == subjectId)
+						&& (objectId == NULL_ID || o == objectId);
+
+					if (filter.messages) {
+
+						final int length = (int)(messageEnd - messageStart);
+
+						if (matches) {
+
+							final byte[] data = new byte[length];
+
+							message.readFully(data);
+
+							visitor.visit(new Event(timestamp, value(values, a), value(values, s), value(values, o), length > 0 ? new String(data, StandardCharsets.UTF_8) : null));
+
+						} else {
+
+							skipFully(message, length);
+						}
+
+						messageStart = messageEnd;
+
+					} else if (matches) {
+
+						visitor.visit(new Event(timestamp, value(values, a), value(values, s), value(values, o), null));
+					}
+				}
+			}
+		}
+
+		public synchronized void closeWriter() throws IOException {
+
+			if (writers != null) {
+
+				for (final OutputStream writer : writers) {
+					writer.close();
+				}
+
+				writers    = null;
+				dictionary = null;
+				ids        = null;
+
+				writeSummary();
+			}
+		}
+
+		// ----- private methods -----
+		private void abortWriter() throws IOException {
+
+			for (final OutputStream writer : writers) {
+				try { writer.close(); } catch (IOException ignore) {}
+			}
+
+			writers    = null;
+			dictionary = null;
+			ids        = null;
+			minTime    = Long.MAX_VALUE;
+			maxTime    = 0L;
+
+			actionCounts.clear();
+
+			open();
+		}
+
+		private void openWriter() throws IOException {
+
+			directory.mkdirs();
+
+			// the summary is outdated as soon as new rows are written
+			file(SUMMARY).delete();
+
+			dictionary = readDictionary(dictionaryLength);
+			ids        = new HashMap<>();
+
+			for (int i=0; i<dictionary.size(); i++) {
+				ids.put(dictionary.get(i), i);
+			}
+
+			writers = new OutputStream[] {
+				new FileOutputStream(file(DICTIONARY), true),
+				new FileOutputStream(file(MESSAGE_DATA), true),
+				new FileOutputStream(file(MESSAGE_INDEX), true),
+				new FileOutputStream(file(TIME_COLUMN), true),
+				new FileOutputStream(file(ACTION_COLUMN), true),
+				new FileOutputStream(file(SUBJECT_COLUMN), true),
+				new FileOutputStream(file(OBJECT_COLUMN), true)
+			};
+		}
+
+		private int getId(final String value, final DataOutputStream dictionaryOut) throws IOException {
+
+			if (value == null) {
+				return NULL_ID;
+			}
+
+			Integer id = ids.get(value);
+			if (id == null) {
+
+				id = dictionary.size();
+
+				dictionary.add(value);
+				ids.put(value, id);
+
+				dictionaryOut.writeUTF(value);
+			}
+
+			return id;
+		}
+
+		private void addToSummary(final long time, final String action) {
+
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+
+			actionCounts.merge(action != null ? action : "null", 1, Integer::sum);
+		}
+
+		private List<String> readDictionary(final long maxLength) throws IOException {
+
+			final List<String> values = new ArrayList<>();
+			final File file           = file(DICTIONARY);
+			long position             = 0L;
+
+			if (file.exists()) {
+
+				try (final DataInputStream dis = openInput(file)) {
+
+					while (position < maxLength) {
+
+						final int length = dis.readUnsignedShort();
+						final byte[] data = new byte[length];
+
+						dis.readFully(data);
+
+						values.add(new String(data, StandardCharsets.UTF_8));
+						position += length + 2;
+					}
+
+				} catch (EOFException eof) {
+					// incomplete trailing entry is ignored
+				}
+			}
+
+			if (maxLength == Long.MAX_VALUE) {
+				dictionaryLength = position;
+			}
+
+			return values;
+		}
+
+		private long readMessageEnd(final long rows) throws IOException {
+
+			try (final RandomAccessFile raf = new RandomAccessFile(file(MESSAGE_INDEX), "r")) {
+
+				raf.seek((rows - 1) * 8);
+
+				return raf.readLong();
+			}
+		}
+
+		private boolean readSummary() {
+
+			final File file = file(SUMMARY);
+			if (file.exists()) {
+
+				try (final DataInputStream dis = openInput(file)) {
+
+					final int rows = dis.readInt();
+					if (rows != count) {
+						return false;
+					}
+
+					final long min  = dis.readLong();
+					final long max  = dis.readLong();
+					final int size  = dis.readInt();
+
+					for (int i=0; i<size; i++) {
+						actionCounts.put(dis.readUTF(), dis.readInt());
+					}
+
+					minTime = min;
+					maxTime = max;
+
+					return true;
+
+				} catch (IOException ioex) {
+
+					actionCounts.clear();
+				}
+			}
+
+			return false;
+		}
+
+		private void writeSummary() {
+
+			try (final DataOutputStream dos = new DataOutputStream(new FileOutputStream(file(SUMMARY)))) {
+
+				dos.writeInt(count);
+				dos.writeLong(minTime);
+				dos.writeLong(maxTime);
+				dos.writeInt(actionCounts.size());
+
+				for (final Map.Entry<String, Integer> entry : actionCounts.entrySet()) {
+
+					dos.writeUTF(entry.getKey());
+					dos.writeInt(entry.getValue());
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to write summary of log event partition {}: {}", directory.getName(), ioex.getMessage());
+			}
+		}
+
+		private File file(final String name) {
+			return new File(directory, name);
+		}
+
+		/**
+		 * @return the id of the given value, NULL_ID for null (matches all), or Integer.MIN_VALUE if the value is unknown
+		 */
+		private int lookup(final List<String> values, final String value) {
+
+			if (value == null) {
+				return NULL_ID;
+			}
+
+			final int index = values.indexOf(value);
+
+			return index >= 0 ? index : Integer.MIN_VALUE;
+		}
+
+		private String value(final List<String> values, final int id) {
+			return id == NULL_ID ? null : values.get(id);
+		}
+	}
+}
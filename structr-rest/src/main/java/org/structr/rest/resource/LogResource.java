@@ -18,14 +18,16 @@
  */
 package org.structr.rest.resource;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -39,7 +41,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -58,22 +59,26 @@ import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.ISO8601DateProperty;
 import org.structr.core.property.IntProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
-import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.LogEventStore.Event;
+import org.structr.rest.logging.LogEventStore.Filter;
+import org.structr.rest.logging.LogEventStore.Overview;
 import org.structr.rest.logging.entity.LogEvent;
 
 /**
- *
- *
- *
+ * Stores log events in the {@link LogEventStore} and answers overview,
+ * histogram, aggregation and correlation queries by streaming the
+ * matching events from the store.
  */
 public class LogResource extends Resource {
 
@@ -82,6 +87,7 @@ public class LogResource extends Resource {
 
 	private static final String SUBJECTS                        = "/s/";
 	private static final String CORRELATION_SEPARATOR           = "::";
+	private static final int BATCH_SIZE                         = 1000;
 
 	private static final Property<String> subjectProperty       = new StringProperty("subject");
 	private static final Property<String> objectProperty        = new StringProperty("object");
@@ -149,52 +155,42 @@ public class LogResource extends Resource {
 			final GraphObjectMap overviewMap = new GraphObjectMap();
 			final LogState logState          = new LogState(request);
 
-			if (StringUtils.isNotEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
+			try {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				if (StringUtils.isNotEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
-			} else if (StringUtils.isNotEmpty(subjectId) && StringUtils.isEmpty(objectId)) {
+					processData(logState, logState.filter(subjectId, objectId));
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				} else if (StringUtils.isNotEmpty(subjectId) && StringUtils.isEmpty(objectId)) {
 
-			} else if (StringUtils.isEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
+					processData(logState, logState.filter(subjectId, null));
 
-				logState.inverse(true);
+				} else if (StringUtils.isEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+					logState.inverse(true);
 
-			} else if (logState.doActionQuery()) {
+					processData(logState, logState.filter(null, objectId));
 
-				processData(logState);
+				} else if (logState.doActionQuery()) {
 
-			} else {
+					processData(logState);
 
-				// create overview of existing logs
-				logState.overview(true);
+				} else {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.getAsList()
-				);
+					// create overview of existing logs
+					logState.overview(true);
+
+					final Overview overview = LogEventStore.getInstance().getOverview();
+
+					logState.beginTimestamp(overview.getFirstEntry());
+					logState.endTimestamp(overview.getLastEntry());
+					logState.actions().putAll(overview.getActions());
+					logState.actionCount(overview.getCount());
+				}
+
+			} catch (IOException ioex) {
+
+				throw new FrameworkException(500, "Unable to read log events: " + ioex.getMessage());
 			}
 
 			if (logState.overview()) {
@@ -206,12 +202,7 @@ public class LogResource extends Resource {
 
 				return new Result(overviewMap, false);
 
-			} else if (logState.doHistogram()) {
-
-				// aggregate results
-				return histogram(logState);
-
-			} else if (logState.doAggregate()) {
+			} else if (logState.doHistogram() || logState.doAggregate()) {
 
 				// aggregate results
 				return aggregate(logState);
@@ -238,19 +229,34 @@ public class LogResource extends Resource {
 			// initialize?!
 			if ("true".equals(request.getParameter("initialize"))) {
 
-				final String filesPath = Settings.FilesPath.getValue();
+				final String filesPath   = Settings.FilesPath.getValue();
+				final Path root          = new File(filesPath + SUBJECTS).toPath();
+				final List<Event> batch  = new ArrayList<>(BATCH_SIZE);
+				final List<Path> pending = new ArrayList<>();
 
-				try (final Context context  = new Context(1000)) {
+				try {
 
-					collectFilesAndStore(context, new File(filesPath + SUBJECTS).toPath(), 0);
+					collectFilesAndStore(batch, pending, root, 0);
 
-				} catch (FrameworkException fex) {
-					logger.warn("", fex);
+					// files are only deleted after all of their events have been stored
+					storeBatch(batch, pending);
+					deleteEmptyDirectories(root);
+
+				} catch (IOException ioex) {
+					logger.warn("", ioex);
 				}
 
 				return new RestMethodResult(200);
 			}
 
+			// move log events from the database to the log event store
+			if ("true".equals(request.getParameter("migrate"))) {
+
+				migrateLogEvents();
+
+				return new RestMethodResult(200);
+			}
+
 			final String subjectId = (String) propertySet.get(subjectProperty.jsonName());
 			final String objectId  = (String) propertySet.get(objectProperty.jsonName());
 			final String action    = (String) propertySet.get(actionProperty.jsonName());
@@ -258,27 +264,19 @@ public class LogResource extends Resource {
 
 			if (subjectId != null && objectId != null && action != null) {
 
-				final App app  = StructrApp.getInstance(securityContext);
-				LogEvent event = null;
+				final Event event = new Event(System.currentTimeMillis(), action, subjectId, objectId, message);
 
-				try (final Tx tx = app.tx()) {
+				try {
 
-					final PropertyMap properties = new PropertyMap();
-					properties.put(LogEvent.timestampProperty,           new Date());
-					properties.put(LogEvent.actionProperty,              action);
-					properties.put(LogEvent.subjectProperty,             subjectId);
-					properties.put(LogEvent.objectProperty,              objectId);
-					properties.put(LogEvent.messageProperty,             message);
-					properties.put(LogEvent.visibleToPublicUsers,        true);
-					properties.put(LogEvent.visibleToAuthenticatedUsers, true);
+					LogEventStore.getInstance().append(Collections.singletonList(event));
 
-					event = app.create(LogEvent.class, properties);
+				} catch (IOException ioex) {
 
-					tx.success();
+					throw new FrameworkException(500, "Unable to store log event: " + ioex.getMessage());
 				}
 
 				final RestMethodResult result = new RestMethodResult(201);
-				result.addContent(event);
+				result.addContent(toGraphObject(event));
 
 				return result;
 
@@ -337,7 +335,7 @@ public class LogResource extends Resource {
 	}
 
 	// ----- private methods -----
-	private void collectFilesAndStore(final Context context, final Path dir, final int level) throws FrameworkException {
+	private void collectFilesAndStore(final List<Event> batch, final List<Path> pending, final Path dir, final int level) throws IOException {
 
 		if (level == 1) {
 			logger.info("Path {}", dir);
@@ -349,36 +347,124 @@ public class LogResource extends Resource {
 
 				if (Files.isDirectory(p)) {
 
-					collectFilesAndStore(context, p, level+1);
+					collectFilesAndStore(batch, pending, p, level+1);
 
 				} else {
 
-					context.update(storeLogEntry(p));
+					storeLogEntry(batch, pending, p);
 
-					// update object count and commit
-					context.commit(true);
+					pending.add(p);
 				}
+			}
+		}
+	}
+
+	/**
+	 * Appends the given batch to the log event store and deletes the
+	 * files whose events have all been stored.
+	 */
+	private void storeBatch(final List<Event> batch, final List<Path> pending) throws IOException {
 
-				Files.delete(p);
+		LogEventStore.getInstance().append(batch);
+		batch.clear();
+
+		for (final Path path : pending) {
+			Files.delete(path);
+		}
+
+		pending.clear();
+	}
 
+	private void deleteEmptyDirectories(final Path dir) throws IOException {
+
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+
+			for (final Path p : stream) {
+
+				deleteEmptyDirectories(p);
+
+				try (final DirectoryStream<Path> children = Files.newDirectoryStream(p)) {
+
+					if (!children.iterator().hasNext()) {
+						Files.delete(p);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves LogEvent nodes to the log event store in batches. Each batch
+	 * is appended to the store only after the transaction that deletes
+	 * its nodes has been committed, so a failed commit can not store the
+	 * same events twice. If the append fails, the nodes of the batch are
+	 * created again.
+	 */
+	private void migrateLogEvents() throws FrameworkException {
+
+		final App app           = StructrApp.getInstance(securityContext);
+		final List<Event> batch = new ArrayList<>(BATCH_SIZE);
+		int count               = 0;
+
+		do {
+
+			batch.clear();
+
+			try (final Tx tx = app.tx(false, false, false)) {
+
+				for (final LogEvent event : app.nodeQuery(LogEvent.class).pageSize(BATCH_SIZE).page(1).getAsList()) {
+
+					batch.add(new Event(event.getTimestamp(), event.getAction(), event.getSubjectId(), event.getObjectId(), event.getMessage()));
+
+					app.delete(event);
+				}
+
+				tx.success();
 			}
 
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
+			try {
+
+				LogEventStore.getInstance().append(batch);
+
+			} catch (IOException ioex) {
+
+				restoreLogEvents(app, batch);
+
+				throw new FrameworkException(500, "Unable to store log events: " + ioex.getMessage());
+			}
+
+			count += batch.size();
+
+			logger.info("Migrated {} log events", count);
+
+		} while (!batch.isEmpty());
+	}
+
+	private void restoreLogEvents(final App app, final List<Event> batch) throws FrameworkException {
+
+		try (final Tx tx = app.tx(false, false, false)) {
+
+			for (final Event event : batch) {
+
+				app.create(LogEvent.class,
+					new NodeAttribute(LogEvent.actionProperty,    event.getAction()),
+					new NodeAttribute(LogEvent.messageProperty,   event.getMessage()),
+					new NodeAttribute(LogEvent.timestampProperty, new Date(event.getTimestamp())),
+					new NodeAttribute(LogEvent.subjectProperty,   event.getSubjectId()),
+					new NodeAttribute(LogEvent.objectProperty,    event.getObjectId())
+				);
+			}
+
+			tx.success();
 		}
 	}
 
-	private void processData(final LogState state) throws FrameworkException {
+	private void processData(final LogState state) throws FrameworkException, IOException {
 
 		if (state.doCorrelate()) {
 
 			// get the basic correlation set (pds_click in the test case)
-			final List<LogEvent> correlationResult = StructrApp.getInstance(securityContext)
-				.nodeQuery(LogEvent.class)
-				.and(LogEvent.actionProperty, state.correlationAction)
-				.getAsList();
-
-			for (final LogEvent entry : correlationResult) {
+			LogEventStore.getInstance().scan(new Filter(null, null, state.correlationAction, null, null, true), entry -> {
 
 				final String pathSubjectId = state.inverse() ? entry.getObjectId() : entry.getSubjectId();
 				final String pathObjectId  = state.inverse() ? entry.getSubjectId() : entry.getObjectId();
@@ -386,7 +472,7 @@ public class LogResource extends Resource {
 
 				if (state.correlationPattern != null) {
 
-					final Matcher matcher = state.correlationPattern.matcher(entryMessage);
+					final Matcher matcher = state.correlationPattern.matcher(StringUtils.defaultString(entryMessage));
 					if (matcher.matches()) {
 
 						state.addCorrelationEntry(matcher.group(1), entry);
@@ -397,34 +483,36 @@ public class LogResource extends Resource {
 					// fallback: subjectId and objectId
 					state.addCorrelationEntry(key(pathSubjectId, pathObjectId), entry);
 				}
-			}
+			});
 		}
 
 		logger.debug("No. of correlations: {}", state.getCorrelations().entrySet().size());
 
-		final List<LogEvent> result = StructrApp.getInstance(securityContext).nodeQuery(LogEvent.class)
-			.and(LogEvent.actionProperty, state.logAction)
-			.andRange(LogEvent.timestampProperty, new Date(state.beginTimestamp()), new Date(state.endTimestamp()))
-			.getAsList();
-
-		processData(state, result);
+		processData(state, state.filter(null, null));
 	}
 
-	private void processData(final LogState state, final Iterable<LogEvent> result) throws FrameworkException {
+	private void processData(final LogState state, final Filter filter) throws FrameworkException, IOException {
 
-		int count = 0;
+		final boolean aggregate = state.doHistogram() || state.doAggregate();
 
-		for (final LogEvent event : result) {
+		if (aggregate) {
 
-			if ((++count % 100000) == 0) {
-				System.out.println(count);
+			// the intervals start at the beginning of the requested range or at the first event
+			final Long first = state.hasRange() ? Long.valueOf(state.beginTimestamp()) : LogEventStore.getInstance().getFirstTimestamp(filter);
+			if (first == null) {
+				return;
 			}
 
+			state.startAggregation(alignDateOnFormat(state.aggregate(), first), findInterval(state.aggregate()));
+		}
+
+		LogEventStore.getInstance().scan(filter, event -> {
+
 			final String pathSubjectId = state.inverse() ? event.getObjectId() : event.getSubjectId();
 			final String pathObjectId  = state.inverse() ? event.getSubjectId() : event.getObjectId();
 			final long timestamp       = event.getTimestamp();
 			final String entryAction   = event.getAction();
-			final String entryMessage  = event.getMessage();
+			final String entryMessage  = StringUtils.defaultString(event.getMessage());
 
 			// determine first timestamp
 			if (timestamp <= state.beginTimestamp()) {
@@ -436,80 +524,66 @@ public class LogResource extends Resource {
 				state.endTimestamp(timestamp);
 			}
 
-			if (state.overview()) {
+			// passes filter? action present or matching?
+			if (state.passesFilter(entryMessage) && state.correlates(pathSubjectId, pathObjectId, entryMessage)) {
 
-				if (entryAction != null) {
+				if (aggregate) {
 
-					state.countAction(entryAction);
+					state.count(timestamp, entryMessage);
 
 				} else {
 
-					state.countAction("null");
-				}
-
-			} else {
-
-				// passes filter? action present or matching?
-				if (state.passesFilter(entryMessage) && state.correlates(pathSubjectId, pathObjectId, entryMessage)) {
-
 					final Map<String, Object> map = new HashMap<>();
 
 					map.put(subjectProperty.jsonName(), pathSubjectId);
 					map.put(objectProperty.jsonName(), pathObjectId);
 					map.put(actionProperty.jsonName(), entryAction);
 					map.put(timestampProperty.jsonName(), timestamp);
-					map.put(messageProperty.jsonName(), entryMessage);
+					map.put(messageProperty.jsonName(), event.getMessage());
 
 					state.addEntry(map);
 				}
 			}
-		}
+		});
 	}
 
-	private int storeLogEntry(final Path path) throws IOException, FrameworkException {
+	private void storeLogEntry(final List<Event> batch, final List<Path> pending, final Path path) throws IOException {
 
-		final App app          = StructrApp.getInstance(securityContext);
 		final String fileName  = path.getFileName().toString();
-		int count              = 0;
 
 		if (fileName.length() == 64) {
 
 			final String subjectId = fileName.substring(0, 32);
 			final String objectId  = fileName.substring(32, 64);
 
-			for (final String line : Files.readAllLines(path, Charset.forName("utf-8"))) {
+			try (final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
 
-				final int pos1               = line.indexOf(",", 14);
+				String line = null;
 
-				final String part0           = line.substring(0, 13);
-				final String part1           = line.substring(14, pos1);
-				final String part2           = line.substring(pos1 + 1);
+				while ((line = reader.readLine()) != null) {
 
-				final long timestamp         = Long.valueOf(part0);
-				final String action          = part1;
-				final String message         = part2;
+					final int pos1               = line.indexOf(",", 14);
 
-				final PropertyMap properties = new PropertyMap();
+					final String part0           = line.substring(0, 13);
+					final String part1           = line.substring(14, pos1);
+					final String part2           = line.substring(pos1 + 1);
 
-				properties.put(LogEvent.messageProperty,             message);
-				properties.put(LogEvent.actionProperty,              action);
-				properties.put(LogEvent.subjectProperty,             subjectId);
-				properties.put(LogEvent.objectProperty,              objectId);
-				properties.put(LogEvent.timestampProperty,           new Date(timestamp));
-				properties.put(LogEvent.visibleToPublicUsers,        true);
-				properties.put(LogEvent.visibleToAuthenticatedUsers, true);
+					final long timestamp         = Long.valueOf(part0);
+					final String action          = part1;
+					final String message         = part2;
 
-				app.create(LogEvent.class, properties);
+					batch.add(new Event(timestamp, action, subjectId, objectId, message));
 
-				count++;
+					if (batch.size() >= BATCH_SIZE) {
+						storeBatch(batch, pending);
+					}
+				}
 			}
 
 		} else {
 
-			System.out.println("Skipping entry " + fileName);
+			logger.info("Skipping entry {}", fileName);
 		}
-
-		return count;
 	}
 
 	private String getDirectoryPath(final String uuid, final int depth) {
@@ -530,99 +604,28 @@ public class LogResource extends Resource {
 
 	private Result aggregate(final LogState state) throws FrameworkException {
 
-		// sort entries before aggregation
-		state.sortEntries();
-
-		final long startTimestamp                         = state.beginTimestamp();
-		final long endTimestamp                           = state.endTimestamp();
-		final GraphObjectMap result                       = new GraphObjectMap();
-		final long interval                               = findInterval(state.aggregate());
-		final long start                                  = alignDateOnFormat(state.aggregate(), startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toAggregatedCountMap(state);
-		final Set<String> countProperties                 = getCountProperties(countMap);
-
-		for (long current = start; current <= endTimestamp; current += interval) {
-
-			final Map<Long, Map<String, Object>> counts = countMap.subMap(current, true, current + interval, false);
-			final GraphObjectMap sum = new GraphObjectMap();
-
-			// initialize interval sums with 0 (so each
-			// interval contains all keys regardless of
-			// whether there are actual values or not)
-			for (final String key : countProperties) {
-				sum.put(new IntProperty(key), 0);
-			}
-
-			// evaluate counts
-			for (final Map<String, Object> count : counts.values()) {
-
-				for (final String key : countProperties) {
-
-					final IntProperty prop = new IntProperty(key);
-					Integer sumValue = sum.get(prop);
-					if (sumValue == null) {
-						sumValue = 0;
-					}
-
-					Integer entryValue = (Integer) count.get(key);
-					if (entryValue == null) {
-						entryValue = 0;
-					}
-
-					sum.put(prop, sumValue + entryValue);
-				}
-			}
+		final GraphObjectMap result                     = new GraphObjectMap();
+		final TreeMap<Long, Map<String, Integer>> counts = state.counts();
+		final Set<String> countProperties                = getCountProperties(counts);
+		final long endTimestamp                          = state.endTimestamp();
 
-			result.put(new GenericProperty(Long.toString(current)), sum);
+		if (counts.isEmpty() && !state.hasRange()) {
+			return new Result(result, false);
 		}
 
-		return new Result(result, false);
-	}
-
-	private Result histogram(final LogState state) throws FrameworkException {
-
-		// sort entries before creating the histogram
-		state.sortEntries();
-
-		final String dateFormat = state.aggregate();
-		final long startTimestamp = state.beginTimestamp();
-		final long endTimestamp = state.endTimestamp();
-		final GraphObjectMap result = new GraphObjectMap();
-		final long interval = findInterval(dateFormat);
-		final long start = alignDateOnFormat(dateFormat, startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toHistogramCountMap(state);
-		final Set<String> countProperties = getCountProperties(countMap);
+		for (long current = state.start(); current <= endTimestamp; current += state.interval()) {
 
-		for (long current = start; current <= endTimestamp; current += interval) {
-
-			final Map<Long, Map<String, Object>> counts = countMap.subMap(current, true, current + interval, false);
-			final GraphObjectMap sum = new GraphObjectMap();
+			final Map<String, Integer> count = counts.get(current);
+			final GraphObjectMap sum         = new GraphObjectMap();
 
 			// initialize interval sums with 0 (so each
 			// interval contains all keys regardless of
 			// whether there are actual values or not)
 			for (final String key : countProperties) {
-				sum.put(new IntProperty(key), 0);
-			}
-
-			// evaluate counts
-			for (final Map<String, Object> count : counts.values()) {
-
-				for (final String key : countProperties) {
 
-					final IntProperty prop = new IntProperty(key);
-					Integer sumValue = sum.get(prop);
-					if (sumValue == null) {
-						sumValue = 0;
-					}
-
-					Integer entryValue = (Integer) count.get(key);
-					if (entryValue == null) {
-						entryValue = 0;
-					}
+				final Integer value = count != null ? count.get(key) : null;
 
-					sum.put(prop, sumValue + entryValue);
-				}
+				sum.put(new IntProperty(key), value != null ? value : 0);
 			}
 
 			result.put(new GenericProperty(Long.toString(current)), sum);
@@ -677,138 +680,28 @@ public class LogResource extends Resource {
 		return max;
 	}
 
-	private TreeMap<Long, Map<String, Object>> toAggregatedCountMap(final LogState state) throws FrameworkException {
-
-		final TreeMap<Long, Map<String, Object>> countMap = new TreeMap<>();
-
-		for (final Map<String, Object> entry : state.entries()) {
-
-			final String message = (String) entry.get(messageProperty.jsonName());
-			final long timestamp = (Long) entry.get(timestampProperty.jsonName());
-			Map<String, Object> obj = countMap.get(timestamp);
-
-			if (obj == null) {
-				obj = new LinkedHashMap<>();
-			}
-
-			Integer count = (Integer) obj.get(totalProperty.jsonName());
-			if (count == null) {
-				count = 1;
-			} else {
-				count = count + 1;
-			}
-			obj.put(totalProperty.jsonName(), count);
-
-			// iterate over patterns
-			for (final Entry<String, Pattern> patternEntry : state.aggregationPatterns().entrySet()) {
-
-				if (patternEntry.getValue().matcher(message).matches()) {
-
-					final String key = patternEntry.getKey();
-
-					final int multiplier = getMultiplier(message, state);
-
-					Integer c = (Integer) obj.get(key);
-					if (c == null) {
-						c = multiplier;
-					} else {
-						c = c + multiplier;
-					}
-
-					obj.put(key, c);
-				}
-			}
-
-			countMap.put(timestamp, obj);
-		}
-
-		return countMap;
-	}
-
-	private TreeMap<Long, Map<String, Object>> toHistogramCountMap(final LogState state) throws FrameworkException {
-
-		final Pattern pattern = Pattern.compile(state.histogram());
-		final Matcher matcher = pattern.matcher("");
-		final TreeMap<Long, Map<String, Object>> countMap = new TreeMap<>();
-
-		for (final Map<String, Object> entry : state.entries()) {
-
-			final String message = (String) entry.get(messageProperty.jsonName());
-			final long timestamp = (Long) entry.get(timestampProperty.jsonName());
-			Map<String, Object> obj = countMap.get(timestamp);
+	private Set<String> getCountProperties(final Map<Long, Map<String, Integer>> counts) {
 
-			if (obj == null) {
-				obj = new LinkedHashMap<>();
-			}
-
-			Integer count = (Integer) obj.get(totalProperty.jsonName());
-			if (count == null) {
-				count = 1;
-			} else {
-				count = count + 1;
-			}
-			obj.put(totalProperty.jsonName(), count);
-
-			// iterate over patterns
-			matcher.reset(message);
-			if (matcher.matches()) {
-
-				final String key = matcher.group(1);
-
-				final int multiplier = getMultiplier(message, state);
-
-				Integer c = (Integer) obj.get(key);
-				if (c == null) {
-					c = multiplier;
-				} else {
-					c = c + multiplier;
-				}
-
-				obj.put(key, c);
-			}
-
-			countMap.put(timestamp, obj);
-		}
-
-		return countMap;
-	}
-
-	private int getMultiplier(final String message, final LogState state) {
-
-		int multiplier = 1;
-
-		if (state.multiplier != null) {
-
-			final Matcher matcher = Pattern.compile(state.multiplier).matcher(message);
-
-			if (matcher.matches()) {
-
-				final String g = matcher.group(1);
-				multiplier = Integer.parseInt(g);
-			}
+		final Set<String> result = new LinkedHashSet<>();
 
+		for (final Map<String, Integer> count : counts.values()) {
+			result.addAll(count.keySet());
 		}
 
-		return multiplier;
-
+		return result;
 	}
 
-	private Set<String> getCountProperties(final Map<Long, Map<String, Object>> entries) {
-
-		final Set<String> result = new LinkedHashSet<>();
-
-		for (final Map<String, Object> obj : entries.values()) {
+	private GraphObjectMap toGraphObject(final Event event) {
 
-			for (final Entry<String, Object> entry : obj.entrySet()) {
+		final GraphObjectMap map = new GraphObjectMap();
 
-				// collect the key names of integer values
-				if (entry.getValue() instanceof Integer) {
-					result.add(entry.getKey());
-				}
-			}
-		}
+		map.put(subjectProperty,   event.getSubjectId());
+		map.put(objectProperty,    event.getObjectId());
+		map.put(actionProperty,    event.getAction());
+		map.put(timestampProperty, new Date(event.getTimestamp()));
+		map.put(messageProperty,   event.getMessage());
 
-		return result;
+		return map;
 	}
 
 	private List<GraphObjectMap> wrap(final List<Map<String, Object>> entries) {
@@ -841,20 +734,24 @@ public class LogResource extends Resource {
 	private static class LogState {
 
 		private final Map<String, Pattern> aggregationPatterns       = new HashMap<>();
-		private final List<Map<String, Object>> entries              = new LinkedList<>();
-		private final Map<String, LinkedList<LogEvent>> correlations = new ConcurrentHashMap<>();
+		private final List<Map<String, Object>> entries              = new ArrayList<>();
+		private final Map<String, LinkedList<Event>> correlations    = new HashMap<>();
+		private final TreeMap<Long, Map<String, Integer>> counts     = new TreeMap<>();
 		private final Map<String, Integer> actions                   = new HashMap<>();
 		private long beginTimestamp                                  = Long.MAX_VALUE;
 		private long endTimestamp                                    = 0L;
+		private long start                                           = 0L;
+		private long interval                                        = 0L;
 		private String logAction                                     = null;
 		private String aggregate                                     = null;
 		private String histogram                                     = null;
-		private String multiplier                                    = null;
+		private Pattern histogramPattern                             = null;
+		private Pattern multiplier                                   = null;
 		private String correlate                                     = null;
 		private String correlationAction                             = null;
 		private String correlationOp                                 = null;
 		private Pattern correlationPattern                           = null;
-		private String[] filters                                     = null;
+		private List<Pattern> filters                                = null;
 		private boolean inverse                                      = false;
 		private boolean overview                                     = false;
 		private Range range                                          = null;
@@ -865,14 +762,20 @@ public class LogResource extends Resource {
 
 			aggregationPatterns.putAll(getAggregationPatterns(request));
 
+			final String multiplierPattern = request.getParameter("multiplier");
+
 			this.logAction  = request.getParameter(actionProperty.jsonName());
 			this.aggregate  = request.getParameter("aggregate");
 			this.histogram  = request.getParameter("histogram");
 			this.correlate  = request.getParameter("correlate");
-			this.multiplier = request.getParameter("multiplier");
+			this.multiplier = multiplierPattern != null ? Pattern.compile(multiplierPattern) : null;
 			this.filters    = getFilterPatterns(request);
 			this.range      = getRange(request);
 
+			if (StringUtils.isNotBlank(histogram)) {
+				this.histogramPattern = Pattern.compile(histogram);
+			}
+
 			if (StringUtils.isNotBlank(correlate)) {
 
 				final String[] parts = correlate.split(CORRELATION_SEPARATOR);
@@ -902,23 +805,76 @@ public class LogResource extends Resource {
 			entries.add(entry);
 		}
 
-		public void addCorrelationEntry(final String key, final LogEvent event) {
+		public void addCorrelationEntry(final String key, final Event event) {
 
 			logger.debug("No. of correllation entry lists: {}, adding action: {} {}", new Object[]{correlations.keySet().size(), key, event.getMessage()});
 
-			LinkedList<LogEvent> existingEventList = correlations.get(key);
+			// only subject and object are needed to check correlations
+			correlations.computeIfAbsent(key, k -> new LinkedList<>()).add(new Event(event.getTimestamp(), null, event.getSubjectId(), event.getObjectId(), null));
+		}
 
-			if (existingEventList == null) {
-				existingEventList = new LinkedList<>();
-			}
+		public Map<String, LinkedList<Event>> getCorrelations() {
+			return correlations;
+		}
 
-			existingEventList.add(event);
+		/**
+		 * Creates a filter for the requested action and time range.
+		 */
+		public Filter filter(final String subjectId, final String objectId) {
+			return new Filter(range != null ? range.start : null, range != null ? range.end : null, logAction, subjectId, objectId, true);
+		}
 
-			correlations.put(key, existingEventList);
+		public boolean hasRange() {
+			return range != null;
 		}
 
-		public Map<String, LinkedList<LogEvent>> getCorrelations() {
-			return correlations;
+		public void startAggregation(final long start, final long interval) {
+
+			this.start    = start;
+			this.interval = interval;
+		}
+
+		public long start() {
+			return start;
+		}
+
+		public long interval() {
+			return interval;
+		}
+
+		public TreeMap<Long, Map<String, Integer>> counts() {
+			return counts;
+		}
+
+		/**
+		 * Adds the given event to the counts of its interval.
+		 */
+		public void count(final long timestamp, final String message) {
+
+			final long key                 = start + Math.floorDiv(timestamp - start, interval) * interval;
+			final Map<String, Integer> obj = counts.computeIfAbsent(key, k -> new LinkedHashMap<>());
+
+			obj.merge(totalProperty.jsonName(), 1, Integer::sum);
+
+			if (histogramPattern != null) {
+
+				final Matcher matcher = histogramPattern.matcher(message);
+				if (matcher.matches()) {
+
+					obj.merge(matcher.group(1), getMultiplier(message), Integer::sum);
+				}
+
+			} else {
+
+				// iterate over patterns
+				for (final Entry<String, Pattern> patternEntry : aggregationPatterns.entrySet()) {
+
+					if (patternEntry.getValue().matcher(message).matches()) {
+
+						obj.merge(patternEntry.getKey(), getMultiplier(message), Integer::sum);
+					}
+				}
+			}
 		}
 
 		public Map<String, Integer> actions() {
@@ -948,6 +904,10 @@ public class LogResource extends Resource {
 			return actionCount;
 		}
 
+		public void actionCount(final int actionCount) {
+			this.actionCount = actionCount;
+		}
+
 		public boolean isRequestedActionOrNull(final String action) {
 			return logAction == null || logAction.equals(action);
 		}
@@ -1012,9 +972,9 @@ public class LogResource extends Resource {
 
 			boolean passes = true;
 
-			for (final String filter : filters) {
+			for (final Pattern filter : filters) {
 
-				passes &= Pattern.compile(filter).matcher(message).matches();
+				passes &= filter.matcher(message).matches();
 
 			}
 
@@ -1029,7 +989,7 @@ public class LogResource extends Resource {
 				return true;
 			}
 
-			LinkedList<LogEvent> correlationEntries;
+			LinkedList<Event> correlationEntries;
 
 			if (correlationOp != null && correlationPattern != null) {
 
@@ -1051,7 +1011,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (Event correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getSubjectId().equals(pathSubjectId)) {
 
@@ -1071,7 +1031,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (Event correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getObjectId().equals(pathObjectId)) {
 
@@ -1195,15 +1155,42 @@ public class LogResource extends Resource {
 			return patterns;
 		}
 
-		private String[] getFilterPatterns(final HttpServletRequest request) {
+		private List<Pattern> getFilterPatterns(final HttpServletRequest request) {
 
 			final String filterString = request.getParameter("filters");
 			if (StringUtils.isNotBlank(filterString)) {
-				return filterString.split(CORRELATION_SEPARATOR);
+
+				final List<Pattern> patterns = new ArrayList<>();
+
+				for (final String filter : filterString.split(CORRELATION_SEPARATOR)) {
+					patterns.add(Pattern.compile(filter));
+				}
+
+				return patterns;
 			}
 
 			return null;
 		}
+
+		private int getMultiplier(final String message) {
+
+			int multiplier = 1;
+
+			if (this.multiplier != null) {
+
+				final Matcher matcher = this.multiplier.matcher(message);
+
+				if (matcher.matches()) {
+
+					final String g = matcher.group(1);
+					multiplier = Integer.parseInt(g);
+				}
+
+			}
+
+			return multiplier;
+
+		}
 	}
 
 	private static String key(final String subjectId, final String objectId) {
@@ -1241,53 +1228,4 @@ public class LogResource extends Resource {
 			return timestamp1.compareTo(timestamp2);
 		}
 	}
-
-	private static class Context implements AutoCloseable {
-
-		private final App app   = StructrApp.getInstance();
-		private Tx tx           = null;
-		private int total       = 0;
-		private int count       = 0;
-		private int commitCount = 0;
-
-		public Context(final int commitCount) throws FrameworkException {
-
-			this.commitCount = commitCount;
-			this.tx          = app.tx(false, false, false);
-		}
-
-		public void commit(final boolean intermediate) throws FrameworkException {
-
-			if (count > commitCount) {
-
-				logger.info("Committing transaction after {} objects..", total);
-
-				tx.success();
-				tx.close();
-
-				if (intermediate) {
-
-					tx = app.tx(false, false, false);
-				}
-
-				count = 0;
-			}
-		}
-
-		public int getTotal() {
-			return total;
-		}
-
-		public void update(final int count) {
-			this.count += count;
-			this.total += count;
-		}
-
-		@Override
-		public void close() throws FrameworkException {
-
-			tx.success();
-			tx.close();
-		}
-	}
 }
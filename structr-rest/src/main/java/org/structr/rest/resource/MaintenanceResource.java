@@ -19,6 +19,8 @@
 package org.structr.rest.resource;
 
 import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -27,12 +29,15 @@ import org.slf4j.LoggerFactory;
 import org.structr.agent.Task;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.FlushCachesCommand;
 import org.structr.core.graph.MaintenanceCommand;
+import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
@@ -65,7 +70,29 @@ public class MaintenanceResource extends Resource {
 
 	@Override
 	public Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page) throws FrameworkException {
-		throw new NotAllowedException("GET not allowed on " + getResourceSignature());
+
+		if ((securityContext != null) && isSuperUser()) {
+
+			// report the progress of running bulk maintenance operations
+			final List<GraphObjectMap> resultList = new LinkedList<>();
+
+			for (final Map<String, Object> progress : NodeServiceCommand.getBulkOperationProgress()) {
+
+				final GraphObjectMap obj = new GraphObjectMap();
+
+				for (final Map.Entry<String, Object> entry : progress.entrySet()) {
+					obj.setProperty(new GenericProperty(entry.getKey()), entry.getValue());
+				}
+
+				resultList.add(obj);
+			}
+
+			return new Result(resultList, resultList.size(), true, false);
+
+		} else {
+
+			throw new NotAllowedException("Use of the maintenance endpoint is restricted to admin users");
+		}
 	}
 
 	@Override
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.resource;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.structr.api.util.QueryMetrics;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.Result;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.GenericProperty;
+import org.structr.core.property.PropertyKey;
+import org.structr.rest.RestMethodResult;
+import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.exception.IllegalPathException;
+import org.structr.rest.exception.NotAllowedException;
+
+/**
+ * Reports the aggregated execution statistics of the database statements,
+ * ordered by total execution time. DELETE resets the statistics.
+ */
+public class QueryMetricsResource extends Resource {
+
+	public enum UriPart {
+		_queryMetrics
+	}
+
+	@Override
+	public boolean checkAndConfigure(String part, SecurityContext securityContext, HttpServletRequest request) throws FrameworkException {
+
+		this.securityContext = securityContext;
+
+		return (UriPart._queryMetrics.name().equals(part));
+	}
+
+	@Override
+	public Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page) throws FrameworkException {
+
+		assertSuperUser();
+
+		final List<GraphObjectMap> resultList = new LinkedList<>();
+
+		for (final Map<String, Object> statistics : QueryMetrics.getInstance().getStatistics()) {
+
+			final GraphObjectMap obj = new GraphObjectMap();
+
+			for (final Map.Entry<String, Object> entry : statistics.entrySet()) {
+				obj.setProperty(new GenericProperty(entry.getKey()), entry.getValue());
+			}
+
+			resultList.add(obj);
+		}
+
+		return new Result(resultList, resultList.size(), true, false);
+	}
+
+	@Override
+	public RestMethodResult doPost(Map<String, Object> propertySet) throws FrameworkException {
+		throw new IllegalMethodException("POST not allowed on " + getResourceSignature());
+	}
+
+	@Override
+	public RestMethodResult doPut(Map<String, Object> propertySet) throws FrameworkException {
+		throw new IllegalMethodException("PUT not allowed on " + getResourceSignature());
+	}
+
+	@Override
+	public RestMethodResult doDelete() throws FrameworkException {
+
+		assertSuperUser();
+
+		QueryMetrics.getInstance().reset();
+
+		return new RestMethodResult(HttpServletResponse.SC_OK);
+	}
+
+	@Override
+	public Resource tryCombineWith(Resource next) throws FrameworkException {
+		throw new IllegalPathException(getResourceSignature() + " has no subresources");
+	}
+
+	@Override
+	public String getUriPart() {
+		return getResourceSignature();
+	}
+
+	@Override
+	public Class getEntityClass() {
+		return null;
+	}
+
+	@Override
+	public String getResourceSignature() {
+		return UriPart._queryMetrics.name();
+	}
+
+	@Override
+	public boolean isCollectionResource() throws FrameworkException {
+		return true;
+	}
+
+	// ----- private methods -----
+	private void assertSuperUser() throws FrameworkException {
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			if (securityContext == null || !securityContext.isSuperUser()) {
+				throw new NotAllowedException("Use of the query metrics endpoint is restricted to admin users");
+			}
+
+			tx.success();
+		}
+	}
+}
@@ -155,6 +155,30 @@ public abstract class Resource {
 	public void configurePropertyView(final Value<String> propertyView) {
 	}
 
+	/**
+	 * Returns all objects of this resource as they are read from the
+	 * database. Override this method in resources that can read their
+	 * results without materializing them. Default: the unpaged result of
+	 * doGet().
+	 *
+	 * @param sortKey
+	 * @param sortDescending
+	 * @return the objects of this resource
+	 * @throws FrameworkException
+	 */
+	public Iterable<? extends GraphObject> doGetStream(final PropertyKey sortKey, final boolean sortDescending) throws FrameworkException {
+
+		final Result result = doGet(sortKey, sortDescending, NodeFactory.DEFAULT_PAGE_SIZE, NodeFactory.DEFAULT_PAGE);
+		if (result != null) {
+
+			postProcessResultSet(result);
+
+			return result.getResults();
+		}
+
+		return null;
+	}
+
 	public void postProcessResultSet(final Result result) {
 	}
 
@@ -238,6 +262,26 @@ public abstract class Resource {
 
 		if (request != null) {
 
+			final String boundingBox = request.getParameter(SearchCommand.BOUNDING_BOX_SEARCH_KEYWORD);
+			if (StringUtils.isNotBlank(boundingBox)) {
+
+				final String[] parts = boundingBox.split("[,]+");
+				if (parts.length == 4) {
+
+					try {
+
+						query.boundingBox(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+
+					} catch (NumberFormatException nex) {
+						logger.warn("Unable to parse bounding box for search query {}", boundingBox);
+					}
+
+				} else {
+
+					logger.warn("Invalid bounding box {}, expected south,west,north,east", boundingBox);
+				}
+			}
+
 			final String distance = request.getParameter(SearchCommand.DISTANCE_SEARCH_KEYWORD);
 
 			if (!request.getParameterMap().isEmpty() && StringUtils.isNotBlank(distance)) {
@@ -26,7 +26,6 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.GraphObjectComparator;
-import org.structr.common.PagingHelper;
 import org.structr.common.ResultTransformer;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.EmptyPropertyToken;
@@ -119,64 +118,17 @@ public class TypeResource extends SortableResource {
 	@Override
 	public Result doGet(final PropertyKey sortKey, final boolean sortDescending, final int pageSize, final int page) throws FrameworkException {
 
-		boolean includeDeletedAndHidden        = true;
-		boolean publicOnly                     = false;
-		PropertyKey actualSortKey              = sortKey;
-		boolean actualSortOrder                = sortDescending;
-
 		if (rawType != null) {
 
-			if (entityClass == null) {
-				throw new NotFoundException("Type " + rawType + " does not exist");
-			}
-
-			collectSearchAttributes(query);
-
-			// default sort key & order
-			if (actualSortKey == null) {
-
-				try {
-
-					GraphObject templateEntity  = ((GraphObject)entityClass.newInstance());
-					PropertyKey sortKeyProperty = templateEntity.getDefaultSortKey();
-					actualSortOrder             = GraphObjectComparator.DESCENDING.equals(templateEntity.getDefaultSortOrder());
-
-					if (sortKeyProperty != null) {
-
-						actualSortKey = sortKeyProperty;
-
-					} else {
-
-						actualSortKey = AbstractNode.name;
-					}
-
-				} catch(Throwable t) {
-
-					// fallback to name
-					actualSortKey = AbstractNode.name;
-				}
-			}
+			prepareQuery(sortKey, sortDescending);
 
 			if (virtualType != null) {
 
-				final Result untransformedResult = query
-					.includeDeletedAndHidden(includeDeletedAndHidden)
-					.publicOnly(publicOnly)
-					.sort(actualSortKey)
-					.order(actualSortOrder)
-					.getResult();
-
-				final Result result = virtualType.transformOutput(securityContext, entityClass, untransformedResult);
-
-				return PagingHelper.subResult(result, pageSize, page);
+				return virtualType.transformPage(securityContext, entityClass, query, pageSize, page);
 
 			} else {
 
 				return query
-					.includeDeletedAndHidden(includeDeletedAndHidden)
-					.publicOnly(publicOnly)
-					.sort(actualSortKey)
-					.order(actualSortOrder)
 					.pageSize(pageSize)
 					.page(page)
 					.getResult();
@@ -191,6 +143,19 @@ public class TypeResource extends SortableResource {
 		return new Result(emptyList, null, isCollectionResource(), isPrimitiveArray());
 	}
 
+	@Override
+	public Iterable<? extends GraphObject> doGetStream(final PropertyKey sortKey, final boolean sortDescending) throws FrameworkException {
+
+		// virtual types transform their source objects page by page
+		if (rawType == null || virtualType != null) {
+			return super.doGetStream(sortKey, sortDescending);
+		}
+
+		prepareQuery(sortKey, sortDescending);
+
+		return query.getResultStream();
+	}
+
 	@Override
 	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
 
@@ -352,6 +317,51 @@ public class TypeResource extends SortableResource {
 	}
 
 	// ----- private methods -----
+	private void prepareQuery(final PropertyKey sortKey, final boolean sortDescending) throws FrameworkException {
+
+		boolean includeDeletedAndHidden        = true;
+		boolean publicOnly                     = false;
+		PropertyKey actualSortKey              = sortKey;
+		boolean actualSortOrder                = sortDescending;
+
+		if (entityClass == null) {
+			throw new NotFoundException("Type " + rawType + " does not exist");
+		}
+
+		collectSearchAttributes(query);
+
+		// default sort key & order
+		if (actualSortKey == null) {
+
+			try {
+
+				GraphObject templateEntity  = ((GraphObject)entityClass.newInstance());
+				PropertyKey sortKeyProperty = templateEntity.getDefaultSortKey();
+				actualSortOrder             = GraphObjectComparator.DESCENDING.equals(templateEntity.getDefaultSortOrder());
+
+				if (sortKeyProperty != null) {
+
+					actualSortKey = sortKeyProperty;
+
+				} else {
+
+					actualSortKey = AbstractNode.name;
+				}
+
+			} catch(Throwable t) {
+
+				// fallback to name
+				actualSortKey = AbstractNode.name;
+			}
+		}
+
+		query
+			.includeDeletedAndHidden(includeDeletedAndHidden)
+			.publicOnly(publicOnly)
+			.sort(actualSortKey)
+			.order(actualSortOrder);
+	}
+
 	private Relation getRelationshipTemplate() {
 
 		try {
@@ -27,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.Result;
 import org.structr.core.Value;
 import org.structr.core.property.PropertyKey;
@@ -83,6 +84,18 @@ public class ViewFilterResource extends WrappingResource {
 		throw new IllegalPathException("GET not allowed on " + getResourceSignature());
 	}
 
+	@Override
+	public Iterable<? extends GraphObject> doGetStream(PropertyKey sortKey, boolean sortDescending) throws FrameworkException {
+
+		if (wrappedResource != null) {
+
+			return wrappedResource.doGetStream(sortKey, sortDescending);
+
+		}
+
+		throw new IllegalPathException("GET not allowed on " + getResourceSignature());
+	}
+
 	@Override
 	public RestMethodResult doPost(Map<String, Object> propertySet) throws FrameworkException {
 
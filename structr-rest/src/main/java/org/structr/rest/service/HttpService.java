@@ -22,6 +22,7 @@ import ch.qos.logback.access.jetty.RequestLogImpl;
 import ch.qos.logback.access.servlet.TeeFilter;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -71,7 +72,9 @@ import org.structr.api.service.LicenseManager;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
 import org.structr.core.Services;
+import org.structr.core.graph.NodeService;
 import org.structr.rest.ResourceProvider;
+import org.structr.schema.SchemaService;
 import org.tuckey.web.filters.urlrewrite.UrlRewriteFilter;
 
 /**
@@ -278,10 +281,15 @@ public class HttpService implements RunnableService {
 			
 		}
 		
-		final StructrSessionDataStore sessionDataStore = new StructrSessionDataStore();
-		//sessionDataStore.setSavePeriodSec(60);
-	
-		sessionCache.setSessionDataStore(sessionDataStore);
+		if ("graph".equals(Settings.SessionStore.getValue())) {
+
+			sessionCache.setSessionDataStore(new StructrSessionDataStore());
+
+		} else {
+
+			sessionCache.setSessionDataStore(new LocalSessionDataStore(Settings.SessionSyncInterval.getValue()));
+		}
+
 		//sessionCache.setSaveOnCreate(true);
 		sessionCache.setSaveOnInactiveEviction(false);
 		sessionCache.setRemoveUnloadableSessions(true);
@@ -495,6 +503,11 @@ public class HttpService implements RunnableService {
 		return true;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return new LinkedHashSet<>(Arrays.asList(NodeService.class, SchemaService.class));
+	}
+
 	// ----- interface Feature -----
 	@Override
 	public String getModuleName() {
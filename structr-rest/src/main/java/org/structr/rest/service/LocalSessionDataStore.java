@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.service;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.xerces.impl.dv.util.Base64;
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.SessionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+import org.structr.rest.auth.AuthHelper;
+import org.structr.rest.auth.SessionHelper;
+
+/**
+ * Session data store that keeps the session data in memory.
+ *
+ * Storing a session only replaces the in-memory entry and marks the session
+ * as modified, no serialization and no transaction is needed on the request
+ * path. If a sync interval is set, the modified sessions of authenticated
+ * users are written to their principal nodes periodically in a single
+ * transaction, so that multiple stores of the same session within an
+ * interval result in a single write. The data on the principal nodes is
+ * only read if a session is not in memory, e.g. after a restart.
+ */
+public class LocalSessionDataStore extends AbstractSessionDataStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalSessionDataStore.class.getName());
+
+	private final Map<String, SessionData> sessions = new ConcurrentHashMap<>();
+	private final Set<String> modified              = ConcurrentHashMap.newKeySet();
+	private ScheduledExecutorService executor       = null;
+	private int syncInterval                        = 0;
+	private final App app;
+
+	public LocalSessionDataStore(final int syncInterval) {
+
+		this.app          = StructrApp.getInstance();
+		this.syncInterval = Math.max(0, syncInterval);
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+
+		super.doStart();
+
+		if (syncInterval > 0) {
+
+			executor = new ScheduledThreadPoolExecutor(1, r -> {
+
+				final Thread thread = new Thread(r, "SessionSync");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			executor.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.SECONDS);
+		}
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+
+		if (executor != null) {
+
+			executor.shutdownNow();
+			executor = null;
+		}
+
+		// write pending changes before shutdown
+		if (syncInterval > 0) {
+			sync();
+		}
+
+		super.doStop();
+	}
+
+	@Override
+	public void doStore(final String id, final SessionData data, final long lastSaveTime) throws Exception {
+
+		sessions.put(id, data);
+
+		if (syncInterval > 0) {
+			modified.add(id);
+		}
+	}
+
+	@Override
+	public Set<String> doGetExpired(final Set<String> candidates) {
+
+		final long now            = System.currentTimeMillis();
+		final Set<String> expired = new HashSet<>();
+
+		for (final String id : candidates) {
+
+			final SessionData data = sessions.get(id);
+			if (data == null || data.isExpired(now)) {
+
+				expired.add(id);
+			}
+		}
+
+		// sessions that are not in the session cache any more
+		for (final Map.Entry<String, SessionData> entry : sessions.entrySet()) {
+
+			if (entry.getValue().isExpired(now)) {
+
+				expired.add(entry.getKey());
+			}
+		}
+
+		return expired;
+	}
+
+	@Override
+	public boolean isPassivating() {
+		return false;
+	}
+
+	@Override
+	public boolean exists(final String id) throws Exception {
+
+		final SessionData data = sessions.get(id);
+		if (data != null) {
+
+			return !data.isExpired(System.currentTimeMillis());
+		}
+
+		if (syncInterval > 0) {
+
+			try (final Tx tx = app.tx(false, false, false)) {
+
+				final boolean exists = AuthHelper.getPrincipalForSessionId(id) != null;
+
+				tx.success();
+
+				return exists;
+
+			} catch (FrameworkException ex) {
+
+				logger.info("Unable to determine if session " + id + " exists.", ex);
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public SessionData load(final String id) throws Exception {
+
+		SessionData sessionData = sessions.get(id);
+
+		if (sessionData == null && syncInterval > 0) {
+
+			try (final Tx tx = app.tx(false, false, false)) {
+
+				final Principal user = AuthHelper.getPrincipalForSessionId(id);
+				if (user != null) {
+
+					final String sessionDataString = user.getSessionData();
+					if (sessionDataString != null) {
+
+						sessionData = SerializationUtils.deserialize(Base64.decode(sessionDataString));
+					}
+				}
+
+				tx.success();
+
+			} catch (FrameworkException ex) {
+
+				logger.info("Unable to load session data for session id " + id + ".", ex);
+			}
+
+			if (sessionData != null) {
+				sessions.putIfAbsent(id, sessionData);
+			}
+		}
+
+		return sessionData;
+	}
+
+	@Override
+	public boolean delete(final String id) throws Exception {
+
+		sessions.remove(id);
+		modified.remove(id);
+
+		try (final Tx tx = app.tx(false, false, false)) {
+
+			SessionHelper.clearSession(id);
+
+			tx.success();
+
+			return true;
+
+		} catch (FrameworkException ex) {
+
+			logger.info("Unable to delete session data for session id " + id + ".", ex);
+		}
+
+		return false;
+	}
+
+	// ----- private methods -----
+	private void sync() {
+
+		if (modified.isEmpty()) {
+			return;
+		}
+
+		final Set<String> ids = new HashSet<>();
+
+		for (final Iterator<String> it = modified.iterator(); it.hasNext();) {
+
+			ids.add(it.next());
+			it.remove();
+		}
+
+		try (final Tx tx = app.tx(false, false, false)) {
+
+			for (final String id : ids) {
+
+				final SessionData data = sessions.get(id);
+				if (data != null) {
+
+					final Principal user = AuthHelper.getPrincipalForSessionId(id);
+
+					// store sessions only for authenticated users
+					if (user != null) {
+
+						user.setSessionData(Base64.encode(SerializationUtils.serialize(data)));
+					}
+				}
+			}
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to sync session data: {}", t.getMessage());
+
+			// try again in the next interval
+			modified.addAll(ids);
+		}
+	}
+}
@@ -131,8 +131,8 @@ public class StructrHttpServiceConfig {
 		return authenticator;
 	}
 
-	// ----- private methods -----
-	private Class loadClass(final String name) {
+	// ----- package methods -----
+	Class loadClass(final String name) {
 
 		ClassLoader loader = NodeExtender.getClassLoader();
 		Class loadedClass  = null;
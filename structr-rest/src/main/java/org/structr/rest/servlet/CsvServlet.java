@@ -93,6 +93,9 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 	public static final char DEFAULT_FIELD_SEPARATOR_COLLECTION_CONTENTS = ',';
 	public static final char DEFAULT_QUOTE_CHARACTER_COLLECTION_CONTENTS = '"';
 
+	// number of rows after which the output is flushed
+	public static final int FLUSH_INTERVAL = 1000;
+
 
 	private static final String REMOVE_LINE_BREAK_PARAM = "nolinebreaks";
 	private static final String WRITE_BOM = "bom";
@@ -194,27 +197,44 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 				// Should a leading BOM be written?
 				writeBom = StringUtils.equals(request.getParameter(WRITE_BOM), "1");
 
-				// do action
-				result = resource.doGet(sortKey, sortDescending, pageSize, page);
-				if (result != null) {
+				Iterable<? extends GraphObject> rows = null;
+
+				if (pageSizeParameter == null && resource.isCollectionResource()) {
+
+					// an unpaged export is written while it is read from the database
+					rows = resource.doGetStream(sortKey, sortDescending);
+
+				} else {
+
+					// do action
+					result = resource.doGet(sortKey, sortDescending, pageSize, page);
+					if (result != null) {
+
+						result.setIsCollection(resource.isCollectionResource());
+						result.setIsPrimitiveArray(resource.isPrimitiveArray());
 
-					result.setIsCollection(resource.isCollectionResource());
-					result.setIsPrimitiveArray(resource.isPrimitiveArray());
+						PagingHelper.addPagingParameter(result, pageSize, page);
 
-					PagingHelper.addPagingParameter(result, pageSize, page);
+						// timing..
+						final double queryTimeEnd = System.nanoTime();
 
-					// timing..
-					final double queryTimeEnd = System.nanoTime();
+						// store property view that will be used to render the results
+						result.setPropertyView(propertyView.get(securityContext));
 
-					// store property view that will be used to render the results
-					result.setPropertyView(propertyView.get(securityContext));
+						// allow resource to modify result set
+						resource.postProcessResultSet(result);
 
-					// allow resource to modify result set
-					resource.postProcessResultSet(result);
+						DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
 
-					DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+						result.setQueryTime(decimalFormat.format((queryTimeEnd - queryTimeStart) / 1000000000.0));
 
-					result.setQueryTime(decimalFormat.format((queryTimeEnd - queryTimeStart) / 1000000000.0));
+						rows = result.getResults();
+					}
+				}
+
+				if (rows != null) {
+
+					response.setStatus(HttpServletResponse.SC_OK);
 
 					Writer writer = response.getWriter();
 
@@ -222,9 +242,9 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 						writeUtf8Bom(writer);
 					}
 
-					// gson.toJson(result, writer);
-					writeCsv(result, writer, propertyView.get(securityContext));
-					response.setStatus(HttpServletResponse.SC_OK);
+					// rows are written one by one and flushed periodically
+					writeCsv(rows, writer, propertyView.get(securityContext), true);
+
 					writer.flush();
 					writer.close();
 
@@ -629,9 +649,24 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 	 */
 	public static void writeCsv(final Result result, final Writer out, final String propertyView) throws IOException {
 
-		final List<GraphObject> list = result.getResults();
-		final StringBuilder row      = new StringBuilder();
-		boolean headerWritten        = false;
+		writeCsv(result.getResults(), out, propertyView, true);
+	}
+
+	/**
+	 * Writes the given objects to the output, the output is flushed
+	 * periodically instead of after each row.
+	 *
+	 * @param list
+	 * @param out
+	 * @param propertyView
+	 * @param writeHeader whether to write the column headers before the first row
+	 * @throws IOException
+	 */
+	public static void writeCsv(final Iterable<? extends GraphObject> list, final Writer out, final String propertyView, final boolean writeHeader) throws IOException {
+
+		final StringBuilder row = new StringBuilder();
+		boolean headerWritten   = !writeHeader;
+		int count               = 0;
 
 		for (final GraphObject obj : list) {
 
@@ -655,9 +690,6 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 				// append DOS-style line feed as defined in RFC 4180
 				out.append(row).append("\r\n");
 
-				// flush each line
-				out.flush();
-
 				headerWritten = true;
 
 			}
@@ -678,10 +710,13 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 			row.deleteCharAt(row.lastIndexOf("" + DEFAULT_FIELD_SEPARATOR));
 			out.append(row).append("\r\n");
 
-			// flush each line
-			out.flush();
+			// flush periodically so that the client receives data while the export is running
+			if (++count % FLUSH_INTERVAL == 0) {
+				out.flush();
+			}
 		}
 
+		out.flush();
 	}
 
 
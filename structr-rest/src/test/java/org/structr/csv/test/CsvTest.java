@@ -21,16 +21,24 @@ package org.structr.csv.test;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
 import com.jayway.restassured.internal.RestAssuredResponseImpl;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import static junit.framework.TestCase.assertEquals;
 import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.util.Iterables;
+import org.structr.common.PropertyView;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.rest.entity.TestOne;
 import org.structr.rest.service.HttpServiceServlet;
@@ -293,6 +301,103 @@ public class CsvTest extends StructrCsvTest {
 		assertEquals(expected, resultString);
 	}
 
+	/**
+	 * Test CSV output of more objects than the flush interval without paging
+	 */
+	@Test
+	public void test22CsvOutputWithoutPaging() {
+
+		final int count = CsvServlet.FLUSH_INTERVAL + 500;
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<count; i++) {
+
+				app.create(TestOne.class,
+					new NodeAttribute<>(TestOne.name,  "TestOne-" + StringUtils.leftPad(Integer.toString(i), 4, "0")),
+					new NodeAttribute<>(TestOne.anInt, i)
+				);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			fail("Unexpected exception");
+		}
+
+		final Object result = RestAssured
+
+			.given()
+				.contentType("application/csv; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("http://" + host + ":" + httpPort + csvUrl + testOneResource + "?sort=name");
+
+		final String[] lines = ((RestAssuredResponseImpl) result).asString().split("\r\n");
+
+		// one header line and one line per object, each object exactly once and in order
+		assertEquals(count + 1, lines.length);
+		assertEquals("\"id\";\"type\";\"name\";\"anInt\";\"aLong\";\"aDate\"", lines[0]);
+
+		for (int i=0; i<count; i++) {
+
+			final String name = "TestOne-" + StringUtils.leftPad(Integer.toString(i), 4, "0");
+			assertTrue("Unexpected row " + lines[i + 1], lines[i + 1].contains("\"" + name + "\";\"" + i + "\""));
+		}
+	}
+
+	/**
+	 * Test that CSV output without paging is written while the objects are
+	 * read from the database
+	 */
+	@Test
+	public void test23CsvOutputIsStreamed() {
+
+		final int count = CsvServlet.FLUSH_INTERVAL + 500;
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<count; i++) {
+
+				app.create(TestOne.class,
+					new NodeAttribute<>(TestOne.name,  "TestOne-" + StringUtils.leftPad(Integer.toString(i), 4, "0")),
+					new NodeAttribute<>(TestOne.anInt, i)
+				);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final Iterable<TestOne> stream     = app.nodeQuery(TestOne.class).sort(TestOne.name).getResultStream();
+			final FlushRecordingWriter writer  = new FlushRecordingWriter();
+			final List<Integer> flushedPerRead = new ArrayList<>();
+
+			assertFalse("Unpaged query result should not be materialized", stream instanceof Collection);
+
+			// record how much output was flushed each time the next object is read from the query
+			final Iterable<TestOne> observed = () -> Iterables.map(obj -> { flushedPerRead.add(writer.getFlushedLength()); return obj; }, stream.iterator());
+
+			CsvServlet.writeCsv(observed, writer, PropertyView.Public, true);
+
+			assertEquals(count, flushedPerRead.size());
+			assertEquals("No output expected before the first object is read", 0, (int)flushedPerRead.get(0));
+			assertTrue("Output should be flushed before the query is finished", flushedPerRead.get(CsvServlet.FLUSH_INTERVAL) > 0);
+			assertEquals(count + 1, writer.toString().split("\r\n").length);
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			fail("Unexpected exception");
+		}
+	}
+
 	/**
 	 * Test CSV import with default settings
 	 */
@@ -943,4 +1048,19 @@ public class CsvTest extends StructrCsvTest {
 //
 //	}
 //
+
+	// ----- nested classes -----
+	private static class FlushRecordingWriter extends StringWriter {
+
+		private int flushedLength = 0;
+
+		@Override
+		public void flush() {
+			flushedLength = getBuffer().length();
+		}
+
+		public int getFlushedLength() {
+			return flushedLength;
+		}
+	}
 }
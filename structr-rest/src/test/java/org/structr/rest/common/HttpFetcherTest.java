@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests the host-limited HTTP fetcher against a local HTTP server.
+ */
+public class HttpFetcherTest {
+
+	private static final String CONTENT = "content";
+
+	@Rule
+	public final TestHttpServer server = new TestHttpServer();
+
+	@Before
+	public void setup() {
+
+		server.handle("/page", 200, exchange -> TestHttpServer.respond(exchange, 200, CONTENT));
+		server.handle("/missing", exchange -> TestHttpServer.respond(exchange, 404, ""));
+		server.handle("/redirect", exchange -> {
+
+			exchange.getResponseHeaders().add("Location", "/page?redirected");
+			exchange.sendResponseHeaders(302, -1);
+			exchange.close();
+		});
+	}
+
+	@Test
+	public void testGet() throws Exception {
+
+		final HttpFetcher fetcher = new HttpFetcher("Test", 2, 2, 10);
+
+		try {
+
+			assertEquals(CONTENT, read(fetcher.get(server.getBaseUrl() + "/page", null)));
+			assertEquals(CONTENT, read(fetcher.get(server.getBaseUrl() + "/redirect", null)));
+
+			final HttpURLConnection missing = fetcher.get(server.getBaseUrl() + "/missing", null);
+
+			assertEquals(404, missing.getResponseCode());
+
+			HttpFetcher.discard(missing);
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testHostLimit() throws Exception {
+
+		final HttpFetcher fetcher          = new HttpFetcher("Test", 8, 2, 10);
+		final List<Future<String>> futures = new ArrayList<>();
+
+		try {
+
+			for (int i=0; i<6; i++) {
+
+				final String url = server.getBaseUrl() + "/page?" + i;
+
+				futures.add(fetcher.submit(url, () -> read(fetcher.get(url, null))));
+			}
+
+			for (final Future<String> future : futures) {
+				assertEquals(CONTENT, future.get());
+			}
+
+			assertEquals(6, server.getRequests());
+			server.assertHostLimit(2);
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testHostDelay() throws Exception {
+
+		final HttpFetcher fetcher          = new HttpFetcher("Test", 8, 2, 10);
+		final List<Future<String>> futures = new ArrayList<>();
+
+		try {
+
+			for (int i=0; i<4; i++) {
+
+				final String url = server.getBaseUrl() + "/page?" + i;
+
+				futures.add(fetcher.submit(url, 100, () -> read(fetcher.get(url, null))));
+			}
+
+			for (final Future<String> future : futures) {
+				assertEquals(CONTENT, future.get());
+			}
+
+			server.assertHostDelay(90);
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testInvalidAddress() throws Exception {
+
+		final HttpFetcher fetcher = new HttpFetcher("Test", 1, 1, 10);
+
+		try {
+
+			try {
+
+				fetcher.submit("not a url", () -> "").get();
+				fail("Invalid address should fail the future");
+
+			} catch (ExecutionException expected) {
+
+				assertTrue(expected.getCause() instanceof IOException);
+			}
+
+			// other requests are not affected
+			final String url = server.getBaseUrl() + "/page";
+
+			assertEquals(CONTENT, fetcher.submit(url, () -> read(fetcher.get(url, null))).get());
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelledTask() throws Exception {
+
+		final HttpFetcher fetcher    = new HttpFetcher("Test", 1, 1, 10);
+		final CountDownLatch started = new CountDownLatch(1);
+		final String url             = server.getBaseUrl() + "/page";
+
+		try {
+
+			final Future<Object> cancelled = fetcher.submit(url, () -> {
+
+				started.countDown();
+				Thread.sleep(10000);
+
+				return null;
+			});
+
+			final Future<Boolean> next = fetcher.submit(url, () -> Thread.currentThread().isInterrupted());
+
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			assertTrue(cancelled.cancel(true));
+
+			// the next task runs in the same thread and must not see the interrupt
+			assertFalse(next.get(10, TimeUnit.SECONDS));
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	// ----- private methods -----
+	private String read(final HttpURLConnection connection) throws IOException {
+
+		try (final InputStream is = connection.getInputStream()) {
+			return IOUtils.toString(is, StandardCharsets.UTF_8);
+		}
+	}
+}
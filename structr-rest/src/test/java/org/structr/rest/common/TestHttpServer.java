@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.common;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.rules.ExternalResource;
+
+/**
+ * Local HTTP server for tests of outbound requests, to be used as a JUnit
+ * rule. The server records the start time of each request and the maximum
+ * number of concurrent requests.
+ */
+public class TestHttpServer extends ExternalResource {
+
+	private final List<Long> starts           = Collections.synchronizedList(new ArrayList<>());
+	private final AtomicInteger concurrent    = new AtomicInteger();
+	private final AtomicInteger maxConcurrent = new AtomicInteger();
+	private final AtomicInteger requests      = new AtomicInteger();
+	private HttpServer server                 = null;
+	private String baseUrl                    = null;
+
+	@Override
+	protected void before() throws IOException {
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@Override
+	protected void after() {
+		server.stop(0);
+	}
+
+	/**
+	 * Registers the given handler for the given path. The handler is
+	 * called after the given delay, which is counted as part of the
+	 * request.
+	 *
+	 * @param path
+	 * @param delayMillis
+	 * @param handler
+	 */
+	public void handle(final String path, final long delayMillis, final HttpHandler handler) {
+
+		server.createContext(path, exchange -> {
+
+			starts.add(System.currentTimeMillis());
+			requests.incrementAndGet();
+			maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+
+			try {
+
+				Thread.sleep(delayMillis);
+
+				handler.handle(exchange);
+
+			} catch (InterruptedException iex) {
+
+				respond(exchange, 500, "");
+
+			} finally {
+
+				concurrent.decrementAndGet();
+			}
+		});
+	}
+
+	public void handle(final String path, final HttpHandler handler) {
+		handle(path, 0L, handler);
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public int getRequests() {
+		return requests.get();
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent.get();
+	}
+
+	/**
+	 * Asserts that no more than the given number of requests were served
+	 * concurrently, and that the limit was reached.
+	 *
+	 * @param limit
+	 */
+	public void assertHostLimit(final int limit) {
+		assertEquals("Requests to a single host should be limited", limit, maxConcurrent.get());
+	}
+
+	/**
+	 * Asserts that the requests were started at least the given number of
+	 * milliseconds apart.
+	 *
+	 * @param delayMillis
+	 */
+	public void assertHostDelay(final long delayMillis) {
+
+		final List<Long> sorted = new ArrayList<>(starts);
+		Collections.sort(sorted);
+
+		for (int i=1; i<sorted.size(); i++) {
+			assertTrue("Requests to a single host should be delayed", sorted.get(i) - sorted.get(i-1) >= delayMillis);
+		}
+	}
+
+	public static void respond(final HttpExchange exchange, final int status, final String content) throws IOException {
+		respond(exchange, status, null, content);
+	}
+
+	public static void respond(final HttpExchange exchange, final int status, final String contentType, final String content) throws IOException {
+
+		final byte[] data = content.getBytes(StandardCharsets.UTF_8);
+
+		if (contentType != null) {
+			exchange.getResponseHeaders().add("Content-Type", contentType);
+		}
+
+		exchange.sendResponseHeaders(status, data.length > 0 ? data.length : -1);
+
+		try (final OutputStream os = exchange.getResponseBody()) {
+			os.write(data);
+		}
+	}
+}
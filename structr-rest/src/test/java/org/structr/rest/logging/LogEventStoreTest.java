@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.rest.logging.LogEventStore.Event;
+import org.structr.rest.logging.LogEventStore.Filter;
+import org.structr.rest.logging.LogEventStore.Overview;
+
+/**
+ * Tests appending, scanning and compacting the log event store.
+ */
+public class LogEventStoreTest {
+
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	private File directory = null;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("structr-log-events").toFile();
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testAppendAndScan() throws IOException {
+
+		final long now = System.currentTimeMillis();
+
+		try (final LogEventStore store = new LogEventStore(directory, 0L)) {
+
+			store.append(Arrays.asList(
+				new Event(now - 2 * DAY, "read",  "subject1", "object1", "first"),
+				new Event(now - DAY,     "write", "subject1", "object2", null),
+				new Event(now,           "read",  "subject2", "object1", "third")
+			));
+
+			store.append(now, "read", "subject1", "object1", "fourth");
+
+			assertEquals(4, scan(store, new Filter(null, null, null, null, null, true)).size());
+			assertEquals(3, scan(store, new Filter(null, null, "read", null, null, false)).size());
+			assertEquals(2, scan(store, new Filter(null, null, "read", "subject1", null, false)).size());
+			assertEquals(0, scan(store, new Filter(null, null, "delete", null, null, false)).size());
+			assertEquals(3, scan(store, new Filter(now - DAY, null, null, null, null, false)).size());
+			assertEquals(1, scan(store, new Filter(now - DAY, now - DAY, null, null, null, false)).size());
+
+			final List<Event> messages = scan(store, new Filter(null, null, "read", "subject1", "object1", true));
+
+			assertEquals("first",  messages.get(0).getMessage());
+			assertEquals("fourth", messages.get(1).getMessage());
+
+			// messages are only read if requested
+			assertNull(scan(store, new Filter(null, null, "read", "subject1", "object1", false)).get(0).getMessage());
+
+			assertEquals(Long.valueOf(now - 2 * DAY), store.getFirstTimestamp(new Filter(null, null, null, null, null, false)));
+			assertEquals(Long.valueOf(now),           store.getFirstTimestamp(new Filter(null, null, null, "subject2", null, false)));
+		}
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+
+		final long now = System.currentTimeMillis();
+
+		try (final LogEventStore store = new LogEventStore(directory, 0L)) {
+
+			for (int i=0; i<100; i++) {
+				store.append(now - (i % 3) * DAY, i % 2 == 0 ? "even" : "odd", "subject" + i, "object", "message " + i);
+			}
+		}
+
+		try (final LogEventStore store = new LogEventStore(directory, 0L)) {
+
+			final Overview overview = store.getOverview();
+
+			assertEquals(100, overview.getCount());
+			assertEquals(Integer.valueOf(50), overview.getActions().get("even"));
+			assertEquals(Integer.valueOf(50), overview.getActions().get("odd"));
+			assertEquals(now - 2 * DAY, overview.getFirstEntry());
+			assertEquals(now, overview.getLastEntry());
+
+			final List<Event> events = scan(store, new Filter(null, null, null, "subject42", null, true));
+
+			assertEquals(1, events.size());
+			assertEquals("message 42", events.get(0).getMessage());
+
+			// appending to a reopened partition keeps the existing events
+			store.append(now, "even", "subject42", "object", "again");
+
+			assertEquals(2, scan(store, new Filter(null, null, null, "subject42", null, true)).size());
+			assertEquals(101, store.getOverview().getCount());
+		}
+	}
+
+	@Test
+	public void testCompact() throws IOException {
+
+		final long now = System.currentTimeMillis();
+
+		try (final LogEventStore store = new LogEventStore(directory, 0L)) {
+
+			store.append(now - 10 * DAY, "read", "subject", "object", "old");
+			store.append(now,            "read", "subject", "object", "new");
+		}
+
+		assertEquals(2, directory.listFiles(File::isDirectory).length);
+
+		// a store without retention keeps all events
+		try (final LogEventStore store = new LogEventStore(directory, 0L)) {
+
+			store.compact();
+
+			assertEquals(2, store.getOverview().getCount());
+		}
+
+		try (final LogEventStore store = new LogEventStore(directory, 5 * DAY)) {
+
+			final List<Event> events = scan(store, new Filter(null, null, null, null, null, true));
+
+			assertEquals(1, events.size());
+			assertEquals("new", events.get(0).getMessage());
+			assertEquals(1, store.getOverview().getCount());
+		}
+
+		assertEquals(1, directory.listFiles(File::isDirectory).length);
+	}
+
+	@Test
+	public void testIncompleteRowIsDiscarded() throws IOException {
+
+		final long now = System.currentTimeMillis();
+
+		try (final LogEventStore store = new LogEventStore(directory, 0L)) {
+
+			store.append(now, "read", "subject", "object", "one");
+			store.append(now, "read", "subject", "object", "two");
+		}
+
+		// simulate a crash while writing a row: the time column has an extra partial value
+		final File partition = directory.listFiles(File::isDirectory)[0];
+		final File column    = new File(partition, "time.col");
+
+		Files.write(column.toPath(), new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+		try (final LogEventStore store = new LogEventStore(directory, 0L)) {
+
+			final List<Event> events = scan(store, new Filter(null, null, null, null, null, true));
+
+			assertEquals(2, events.size());
+			assertEquals("two", events.get(1).getMessage());
+			assertEquals(0, column.length() % 8);
+			assertEquals(2, store.getOverview().getCount());
+		}
+	}
+
+	// ----- private methods -----
+	private List<Event> scan(final LogEventStore store, final Filter filter) throws IOException {
+
+		final List<Event> events = new ArrayList<>();
+
+		store.scan(filter, events::add);
+
+		return events;
+	}
+}
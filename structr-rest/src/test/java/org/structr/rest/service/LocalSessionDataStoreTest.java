@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.eclipse.jetty.server.session.SessionContext;
+import org.eclipse.jetty.server.session.SessionData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+import org.structr.rest.auth.AuthHelper;
+import org.structr.rest.common.StructrRestTest;
+
+/**
+ * Tests storing, loading, expiring and syncing sessions in the local
+ * session data store.
+ */
+public class LocalSessionDataStoreTest extends StructrRestTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalSessionDataStoreTest.class.getName());
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+
+		final LocalSessionDataStore store = start(0);
+
+		try {
+
+			final SessionData data = newSessionData("session1", System.currentTimeMillis(), 60000L);
+
+			data.setAttribute("key", "value");
+
+			store.store("session1", data);
+
+			final SessionData loaded = store.load("session1");
+
+			assertNotNull("Stored session should be loaded", loaded);
+			assertEquals("Invalid session attribute", "value", loaded.getAttribute("key"));
+			assertTrue("Stored session should exist", store.exists("session1"));
+
+			assertNull("Unknown session must not be loaded", store.load("unknown"));
+			assertFalse("Unknown session must not exist", store.exists("unknown"));
+
+		} finally {
+
+			store.stop();
+		}
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+
+		final LocalSessionDataStore store = start(0);
+		final long now                    = System.currentTimeMillis();
+
+		try {
+
+			store.store("fresh",   newSessionData("fresh",   now,          60000L));
+			store.store("expired", newSessionData("expired", now - 10000L, 1000L));
+
+			final Set<String> expired = store.getExpired(new HashSet<>(Arrays.asList("fresh", "unknown")));
+
+			assertEquals("Expired sessions and unknown candidates should be returned", new HashSet<>(Arrays.asList("expired", "unknown")), expired);
+
+			assertTrue("Fresh session should exist",      store.exists("fresh"));
+			assertFalse("Expired session must not exist", store.exists("expired"));
+
+		} finally {
+
+			store.stop();
+		}
+	}
+
+	@Test
+	public void testDelete() throws Exception {
+
+		final LocalSessionDataStore store = start(0);
+
+		try {
+
+			store.store("session1", newSessionData("session1", System.currentTimeMillis(), 60000L));
+
+			assertTrue("Session should be deleted", store.delete("session1"));
+
+			assertNull("Deleted session must not be loaded", store.load("session1"));
+			assertFalse("Deleted session must not exist",    store.exists("session1"));
+			assertTrue("Deleted session should not be expired again", store.getExpired(Collections.emptySet()).isEmpty());
+
+		} finally {
+
+			store.stop();
+		}
+	}
+
+	@Test
+	public void testSyncAndReload() throws Exception {
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal user = app.create(Principal.class, "tester");
+
+			user.addSessionId("session1");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final LocalSessionDataStore store = start(3600);
+		final long now                    = System.currentTimeMillis();
+		final SessionData data            = newSessionData("session1", now, 60000L);
+
+		data.setAttribute("key", "value");
+
+		store.store("session1",  data);
+		store.store("anonymous", newSessionData("anonymous", now, 60000L));
+
+		assertNull("Session must not be written before the sync interval expires", getSessionData("session1"));
+
+		// pending changes are written on shutdown
+		store.stop();
+
+		assertNotNull("Session should be written on shutdown", getSessionData("session1"));
+
+		// a new store does not have the sessions in memory, e.g. after a restart
+		final LocalSessionDataStore restarted = start(3600);
+
+		try {
+
+			final SessionData loaded = restarted.load("session1");
+
+			assertNotNull("Session of an authenticated user should be loaded from the graph", loaded);
+			assertEquals("Invalid session attribute", "value", loaded.getAttribute("key"));
+			assertTrue("Session of an authenticated user should exist", restarted.exists("session1"));
+
+			assertNull("Anonymous session must not be stored in the graph", restarted.load("anonymous"));
+
+			assertTrue("Session should be deleted", restarted.delete("session1"));
+			assertNull("Deleted session must not be loaded from the graph", restarted.load("session1"));
+
+		} finally {
+
+			restarted.stop();
+		}
+	}
+
+	// ----- private methods -----
+	private LocalSessionDataStore start(final int syncInterval) throws Exception {
+
+		final LocalSessionDataStore store = new LocalSessionDataStore(syncInterval);
+
+		store.initialize(new SessionContext("node0", null));
+		store.start();
+
+		return store;
+	}
+
+	private SessionData newSessionData(final String id, final long created, final long maxInactiveMs) {
+
+		final SessionData data = new SessionData(id, "", "0.0.0.0", created, created, created, maxInactiveMs);
+
+		data.calcAndSetExpiry(created);
+
+		return data;
+	}
+
+	private String getSessionData(final String sessionId) {
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal user = AuthHelper.getPrincipalForSessionId(sessionId);
+
+			tx.success();
+
+			return user != null ? user.getSessionData() : null;
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		return null;
+	}
+}
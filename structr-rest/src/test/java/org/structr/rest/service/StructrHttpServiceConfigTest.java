@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.service;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.SchemaNode;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.StringProperty;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.schema.compiler.NodeExtender;
+
+/**
+ * Test that dynamic types are loaded from the class loader of the
+ * last schema compilation.
+ */
+public class StructrHttpServiceConfigTest extends StructrRestTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(StructrHttpServiceConfigTest.class.getName());
+
+	@Test
+	public void testLoadClassUsesCurrentClassLoader() {
+
+		final StructrHttpServiceConfig config = new StructrHttpServiceConfig();
+		final String name                     = "org.structr.dynamic.LoaderTest";
+		SchemaNode schemaNode                 = null;
+
+		try (final Tx tx = app.tx()) {
+
+			schemaNode = app.create(SchemaNode.class, "LoaderTest");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final Class type = config.loadClass(name);
+
+		assertNotNull(type);
+		assertSame(NodeExtender.getClassLoader(), type.getClassLoader());
+
+		try (final Tx tx = app.tx()) {
+
+			schemaNode.setProperty(new StringProperty("_extra"), "String");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final Class newType = config.loadClass(name);
+
+		assertNotNull(newType);
+		assertNotSame(type, newType);
+		assertSame(NodeExtender.getClassLoader(), newType.getClassLoader());
+		assertSame(StructrApp.getConfiguration().getNodeEntityClass("LoaderTest"), newType);
+		assertNotNull(StructrApp.key(newType, "extra"));
+	}
+}
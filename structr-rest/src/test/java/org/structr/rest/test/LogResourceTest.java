@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.LogEventStore.Event;
+import org.structr.rest.logging.LogEventStore.Filter;
+import org.structr.rest.logging.entity.LogEvent;
+
+/**
+ * Tests the migration of log event nodes and the transactional behaviour
+ * of the log event store.
+ */
+public class LogResourceTest extends StructrRestTest {
+
+	@Test
+	public void test01MigrateLogEvents() {
+
+		final int count = 2500;
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<count; i++) {
+
+				app.create(LogEvent.class,
+					new NodeAttribute<>(LogEvent.actionProperty,    "migrate"),
+					new NodeAttribute<>(LogEvent.messageProperty,   "message " + i),
+					new NodeAttribute<>(LogEvent.timestampProperty, new Date()),
+					new NodeAttribute<>(LogEvent.subjectProperty,   "migration-subject"),
+					new NodeAttribute<>(LogEvent.objectProperty,    "migration-object")
+				);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+				.body("{}")
+			.expect()
+				.statusCode(200)
+			.when()
+				.post("/log?migrate=true");
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Migrated log event nodes should be deleted", 0, app.nodeQuery(LogEvent.class).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+
+		final List<Event> events = scan("migration-subject");
+		final Set<String> messages = new HashSet<>();
+
+		for (final Event event : events) {
+			messages.add(event.getMessage());
+		}
+
+		assertEquals("All log events should be migrated", count, events.size());
+		assertEquals("Log events should be migrated exactly once", count, messages.size());
+	}
+
+	@Test
+	public void test02AppendAfterCommit() {
+
+		final LogEventStore store = LogEventStore.getInstance();
+
+		try (final Tx tx = app.tx()) {
+
+			store.appendAfterCommit(Collections.singletonList(new Event(System.currentTimeMillis(), "test", "rollback-subject", "object", "rolled back")));
+
+			// no tx.success(), the transaction is rolled back
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+
+		assertEquals("Events of a rolled back transaction should not be stored", 0, scan("rollback-subject").size());
+
+		try (final Tx tx = app.tx()) {
+
+			store.appendAfterCommit(Collections.singletonList(new Event(System.currentTimeMillis(), "test", "commit-subject", "object", "committed")));
+
+			assertEquals("Events should not be stored before the transaction is committed", 0, scan("commit-subject").size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+
+		assertEquals("Events of a committed transaction should be stored", 1, scan("commit-subject").size());
+	}
+
+	// ----- private methods -----
+	private List<Event> scan(final String subject) {
+
+		final List<Event> events = new ArrayList<>();
+
+		try {
+
+			LogEventStore.getInstance().scan(new Filter(null, null, null, subject, null, true), events::add);
+
+		} catch (IOException ioex) {
+			fail("Unexpected exception");
+		}
+
+		return events;
+	}
+}
@@ -25,6 +25,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardWatchEventKinds;
+import org.structr.core.graph.NodeService;
+import org.structr.schema.SchemaService;
 import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
@@ -294,6 +296,11 @@ public class DirectoryWatchService extends Thread implements RunnableService {
 		return false;
 	}
 
+	@Override
+	public Set<Class> getDependencies() {
+		return new LinkedHashSet<>(Arrays.asList(NodeService.class, SchemaService.class));
+	}
+
 	@Override
 	public String getModuleName() {
 		return "ui";
@@ -23,6 +23,7 @@ import java.util.Set;
 import org.structr.api.service.LicenseManager;
 import org.structr.core.entity.AbstractSchemaNode;
 import org.structr.core.function.Functions;
+import org.structr.core.scheduler.JobQueueManager;
 import org.structr.module.StructrModule;
 import org.structr.schema.action.Actions;
 import org.structr.web.function.AddHeaderFunction;
@@ -55,6 +56,9 @@ import org.structr.web.function.StripHtmlFunction;
 import org.structr.web.function.ToGraphObjectFunction;
 import org.structr.web.function.ToJsonFunction;
 import org.structr.web.function.UnescapeHtmlFunction;
+import org.structr.web.importer.CSVFileImportJob;
+import org.structr.web.importer.ScriptJob;
+import org.structr.web.importer.XMLFileImportJob;
 
 /**
  */
@@ -104,6 +108,13 @@ public class UiModule implements StructrModule {
 		Functions.put(enterpriseEdition, LicenseManager.Enterprise, "parse",                    new ParseFunction());
 		Functions.put(enterpriseEdition, LicenseManager.Enterprise, "createArchive", 		new CreateArchiveFunction());
 		Functions.put(enterpriseEdition, LicenseManager.Enterprise, "schedule",                 new ScheduleFunction());
+
+		// restore unfinished jobs from the job journal after a restart
+		final JobQueueManager jobQueueManager = JobQueueManager.getInstance();
+
+		jobQueueManager.registerJobFactory("CSV",    CSVFileImportJob::restore);
+		jobQueueManager.registerJobFactory("XML",    XMLFileImportJob::restore);
+		jobQueueManager.registerJobFactory("SCRIPT", ScriptJob::restore);
 	}
 
 	@Override
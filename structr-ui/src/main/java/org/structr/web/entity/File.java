@@ -296,6 +296,15 @@ public interface File extends AbstractFile, Indexable, Linkable, JavaScriptSourc
 
 	static void onNodeDeletion(final File thisFile) {
 
+		try {
+
+			StructrApp.getInstance(thisFile.getSecurityContext()).getFulltextIndexer().removeFromFulltextIndex(thisFile.getUuid());
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("Unable to remove {} from fulltext index: {}", thisFile.getUuid(), fex.getMessage());
+		}
+
 		// only delete mounted files
 		if (!thisFile.isExternal()) {
 
@@ -334,7 +343,7 @@ public interface File extends AbstractFile, Indexable, Linkable, JavaScriptSourc
 		if (text != null) {
 
 			final FulltextIndexer indexer = StructrApp.getInstance(thisFile.getSecurityContext()).getFulltextIndexer();
-			return indexer.getContextObject(searchTerm, text, contextLength);
+			return indexer.getContextObject(searchTerm, thisFile.getUuid(), text, contextLength);
 		}
 
 		return null;
@@ -18,18 +18,25 @@
  */
 package org.structr.web.function;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.app.StructrApp;
-import org.structr.core.graph.NodeAttribute;
-import org.structr.core.property.PropertyMap;
+import org.structr.core.GraphObjectMap;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.LogEventStore.Event;
 import org.structr.rest.logging.entity.LogEvent;
 import org.structr.schema.action.ActionContext;
 import org.structr.web.entity.dom.DOMNode;
 
 /**
+ * Stores a log event in the {@link LogEventStore}. The event is written
+ * when the current transaction is committed, and it is discarded if the
+ * transaction is rolled back.
  *
+ * Log events are not nodes, so this function returns a map with the
+ * properties of the event (action, message, timestamp, subject and
+ * object) instead of a LogEvent node.
  */
 public class LogEventFunction extends UiFunction {
 
@@ -46,29 +53,12 @@ public class LogEventFunction extends UiFunction {
 
 		if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 4)) {
 
-			final String action = sources[0].toString();
+			final String action  = sources[0].toString();
 			final String message = sources[1].toString();
+			final String subject = sources.length > 2 ? sources[2].toString() : null;
+			final String object  = sources.length > 3 ? sources[3].toString() : null;
 
-			final LogEvent logEvent = StructrApp.getInstance().create(LogEvent.class,
-				new NodeAttribute(LogEvent.actionProperty, action),
-				new NodeAttribute(LogEvent.messageProperty, message),
-				new NodeAttribute(LogEvent.timestampProperty, new Date())
-			);
-
-			switch (sources.length) {
-
-				case 4:
-					final String object = sources[3].toString();
-					logEvent.setProperties(logEvent.getSecurityContext(), new PropertyMap(LogEvent.objectProperty, object));
-					// no break, next case should be included
-
-				case 3:
-					final String subject = sources[2].toString();
-					logEvent.setProperties(logEvent.getSecurityContext(), new PropertyMap(LogEvent.subjectProperty, subject));
-					break;
-			}
-
-			return logEvent;
+			return logEvent(action, message, subject, object);
 
 		} else if (sources.length == 1 && sources[0] instanceof Map) {
 
@@ -80,13 +70,7 @@ public class LogEventFunction extends UiFunction {
 			final String subject = DOMNode.objectToString(map.get("subject"));
 			final String object  = DOMNode.objectToString(map.get("object"));
 
-			return StructrApp.getInstance().create(LogEvent.class,
-				new NodeAttribute(LogEvent.actionProperty, action),
-				new NodeAttribute(LogEvent.messageProperty, message),
-				new NodeAttribute(LogEvent.timestampProperty, new Date()),
-				new NodeAttribute(LogEvent.subjectProperty, subject),
-				new NodeAttribute(LogEvent.objectProperty, object)
-			);
+			return logEvent(action, message, subject, object);
 
 		} else {
 
@@ -97,6 +81,24 @@ public class LogEventFunction extends UiFunction {
 		return "";
 	}
 
+	// ----- private methods -----
+	private GraphObjectMap logEvent(final String action, final String message, final String subject, final String object) throws FrameworkException {
+
+		final long timestamp = System.currentTimeMillis();
+
+		LogEventStore.getInstance().appendAfterCommit(Collections.singletonList(new Event(timestamp, action, subject, object, message)));
+
+		final GraphObjectMap result = new GraphObjectMap();
+
+		result.put(LogEvent.actionProperty,    action);
+		result.put(LogEvent.messageProperty,   message);
+		result.put(LogEvent.timestampProperty, new Date(timestamp));
+		result.put(LogEvent.subjectProperty,   subject);
+		result.put(LogEvent.objectProperty,    object);
+
+		return result;
+	}
+
 	@Override
 	public String usage(boolean inJavaScriptContext) {
 		return (inJavaScriptContext ? ERROR_MESSAGE_LOG_EVENT_JS : ERROR_MESSAGE_LOG_EVENT);
@@ -104,6 +106,6 @@ public class LogEventFunction extends UiFunction {
 
 	@Override
 	public String shortDescription() {
-		return "Logs an event to the Structr log";
+		return "Logs an event to the Structr log and returns a map with the properties of the event";
 	}
 }
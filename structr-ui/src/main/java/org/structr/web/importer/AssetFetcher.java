@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.Future;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.rest.common.HttpFetcher;
+import org.structr.web.common.FileHelper;
+
+/**
+ * Downloads the assets of imported pages concurrently.
+ *
+ * Downloads are executed by an {@link HttpFetcher}, which limits the
+ * number of concurrent downloads from the same host. Each asset is written
+ * to a temporary file and its checksum is computed in the download thread,
+ * so that the importer only needs to create the file node.
+ */
+public class AssetFetcher {
+
+	private static final Logger logger   = LoggerFactory.getLogger(AssetFetcher.class.getName());
+	private static AssetFetcher instance = null;
+
+	private HttpFetcher fetcher = null;
+
+	public AssetFetcher(final HttpFetcher fetcher) {
+		this.fetcher = fetcher;
+	}
+
+	public static synchronized AssetFetcher getInstance() {
+
+		if (instance == null) {
+
+			instance = new AssetFetcher(HttpFetcher.getInstance());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Schedules the download of the given URL into a temporary file. The
+	 * future fails with an IOException if the asset can not be downloaded.
+	 *
+	 * @param url
+	 * @return the future download
+	 */
+	public Future<Download> fetch(final URL url) {
+		return fetcher.submit(url.toString(), () -> execute(url));
+	}
+
+	// ----- private methods -----
+	private Download execute(final URL url) throws IOException {
+
+		final java.io.File tmpFile = Files.createTempFile("structr", "download").toFile();
+
+		try {
+
+			logger.info("Starting download from {}", url);
+
+			final HttpURLConnection connection = fetcher.get(url.toString(), null);
+			final int status                   = connection.getResponseCode();
+
+			if (status < 200 || status >= 300) {
+
+				HttpFetcher.discard(connection);
+				throw new IOException("Unable to download from " + url + ": status code was " + status);
+			}
+
+			try (final InputStream is = connection.getInputStream(); final OutputStream os = Files.newOutputStream(tmpFile.toPath())) {
+
+				IOUtils.copy(is, os);
+			}
+
+			final Download download = new Download(tmpFile, FileHelper.getChecksum(tmpFile), tmpFile.length());
+
+			// the importer does not wait for a cancelled download
+			if (Thread.currentThread().isInterrupted()) {
+
+				download.delete();
+				throw new IOException("Download from " + url + " was cancelled");
+			}
+
+			return download;
+
+		} catch (IOException ioex) {
+
+			tmpFile.delete();
+			throw ioex;
+		}
+	}
+
+	// ----- nested classes -----
+	public static class Download {
+
+		private java.io.File file = null;
+		private long checksum     = 0L;
+		private long size         = 0L;
+
+		public Download(final java.io.File file, final long checksum, final long size) {
+
+			this.file     = file;
+			this.checksum = checksum;
+			this.size     = size;
+		}
+
+		public java.io.File getFile() {
+			return file;
+		}
+
+		public long getChecksum() {
+			return checksum;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public void delete() {
+			file.delete();
+		}
+	}
+}
@@ -24,11 +24,16 @@ import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.common.AccessMode;
 import org.structr.common.ResultTransformer;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -51,6 +56,21 @@ public class CSVFileImportJob extends FileImportJob {
 		super(file, user, configuration);
 	}
 
+	public static CSVFileImportJob restore(final Principal user, final Map<String, Object> configuration, final Map<String, Object> state) throws FrameworkException {
+
+		final File file = StructrApp.getInstance().get(File.class, (String)state.get("fileUuid"));
+		if (file != null) {
+
+			final CSVFileImportJob job = new CSVFileImportJob(file, user, configuration);
+
+			job.restoreState(state);
+
+			return job;
+		}
+
+		return null;
+	}
+
 	@Override
 	public boolean runInitialChecks () throws FrameworkException {
 
@@ -88,6 +108,7 @@ public class CSVFileImportJob extends FileImportJob {
 			final String quoteChar                   = getOrDefault(configuration.get("quoteChar"), "\"");
 			final String range                       = getOrDefault(configuration.get("range"), "");
 			final Integer commitInterval             = parseInt(configuration.get("commitInterval"), 1000);
+			final int workers                        = getWorkerCount();
 
 			logger.info("Importing CSV from {} ({}) to {} using {}", filePath, fileUuid, targetType, configuration);
 
@@ -95,70 +116,105 @@ public class CSVFileImportJob extends FileImportJob {
 			final SimpleDateFormat df      = new SimpleDateFormat("yyyyMMddHHMM");
 			final String importTypeName    = "ImportFromCsv" + df.format(System.currentTimeMillis());
 
-			final SecurityContext threadContext = SecurityContext.getInstance(user, AccessMode.Backend);
+			final SecurityContext threadContext = createImportContext();
 			final App app                       = StructrApp.getInstance(threadContext);
 
-			// disable transaction notifications
-			threadContext.disableModificationOfAccessTime();
-			threadContext.ignoreResultCount(true);
-			threadContext.setDoTransactionNotifications(false);
-			threadContext.disableEnsureCardinality();
+			try {
 
-			try (final InputStream is = getFileInputStream(threadContext)) {
+				final Character fieldSeparator = delimiter.charAt(0);
+				final Character quoteCharacter = StringUtils.isNotEmpty(quoteChar) ? quoteChar.charAt(0) : null;
+				final Class targetEntityType   = StructrApp.getConfiguration().getNodeEntityClass(targetType);
 
-				if (is == null) {
-					return;
-				}
+				// ranges refer to the whole file, so they can only be applied by a single reader
+				final java.io.File fileOnDisk  = workers > 1 && StringUtils.isBlank(range) ? getFileOnDisk(threadContext) : null;
+
+				checkpointWorkers(fileOnDisk != null ? workers : 1);
 
-				final long startTime = System.currentTimeMillis();
+				if (fileOnDisk != null) {
 
-				reportBegin();
+					final long startTime                 = System.currentTimeMillis();
+					final List<CSVPartition> partitions  = CSVPartition.partition(fileOnDisk, workers, quoteCharacter);
 
-				final ResultTransformer mapper     = builder.createMapping(app, targetType, importTypeName, importMappings, transforms);
-				final Class targetEntityType       = StructrApp.getConfiguration().getNodeEntityClass(targetType);
-				final Character fieldSeparator     = delimiter.charAt(0);
-				final Character quoteCharacter     = StringUtils.isNotEmpty(quoteChar) ? quoteChar.charAt(0) : null;
-				final Iterable<JsonInput> iterable = CsvHelper.cleanAndParseCSV(threadContext, new InputStreamReader(is, "utf-8"), targetEntityType, fieldSeparator, quoteCharacter, range, reverse(importMappings));
-				final Iterator<JsonInput> iterator = iterable.iterator();
-				int chunks                         = 0;
-				int overallCount                   = 0;
+					reportBegin();
 
-				while (iterator.hasNext()) {
+					final ResultTransformer mapper = builder.createMapping(app, targetType, importTypeName, importMappings, transforms);
 
-					int count = 0;
+					logger.info("Importing CSV from {} in {} partitions using {} worker threads", filePath, partitions.size(), workers);
 
-					try (final Tx tx = app.tx()) {
+					importPartitions(partitions, workers, mapper, targetEntityType, fieldSeparator, quoteCharacter, reverse(importMappings), commitInterval);
 
-						final long chunkStartTime = System.currentTimeMillis();
+					if (shouldAbort()) {
+						return;
+					}
+
+					importFinished(startTime, getOverallWorkerCount());
+
+				} else {
 
-						while (iterator.hasNext() && count++ < commitInterval) {
+					try (final InputStream is = getFileInputStream(threadContext)) {
 
-							final JsonInput input = iterator.next();
+						if (is == null) {
+							return;
+						}
+
+						final long startTime = System.currentTimeMillis();
+
+						reportBegin();
 
-							mapper.transformInput(threadContext, targetEntityType, input);
+						final ResultTransformer mapper     = builder.createMapping(app, targetType, importTypeName, importMappings, transforms);
+						final Iterable<JsonInput> iterable = CsvHelper.cleanAndParseCSV(threadContext, new InputStreamReader(is, "utf-8"), targetEntityType, fieldSeparator, quoteCharacter, range, reverse(importMappings));
+						final Iterator<JsonInput> iterator = iterable.iterator();
+						final int resumeOffset             = getResumeOffset();
+						int chunks                         = processedChunks;
+						int overallCount                   = 0;
 
-							app.create(targetEntityType, PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
+						// skip objects that were imported before the job was interrupted
+						while (overallCount < resumeOffset && iterator.hasNext()) {
 
+							iterator.next();
 							overallCount++;
 						}
 
-						tx.success();
+						while (iterator.hasNext()) {
 
-						chunks++;
+							int count = 0;
 
-						chunkFinished(chunkStartTime, chunks, commitInterval, overallCount);
+							try (final Tx tx = app.tx()) {
 
-					}
+								final long chunkStartTime = System.currentTimeMillis();
 
-					// do this outside of the transaction!
-					shouldPause();
-					if (shouldAbort()) {
-						return;
-					}
+								while (iterator.hasNext() && count++ < commitInterval) {
 
-				}
+									final JsonInput input = iterator.next();
+
+									mapper.transformInput(threadContext, targetEntityType, input);
+
+									app.create(targetEntityType, PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
+
+									overallCount++;
+								}
+
+								tx.success();
+
+								chunks++;
+
+								chunkFinished(chunkStartTime, chunks, commitInterval, overallCount);
+
+							}
 
-				importFinished(startTime, overallCount);
+							checkpointProgress(overallCount);
+
+							// do this outside of the transaction!
+							shouldPause();
+							if (shouldAbort()) {
+								return;
+							}
+
+						}
+
+						importFinished(startTime, overallCount);
+					}
+				}
 
 			} catch (IOException | FrameworkException fex) {
 
@@ -192,4 +248,93 @@ public class CSVFileImportJob extends FileImportJob {
 	public String getJobExceptionMessageType() {
 		return "FILE_IMPORT_EXCEPTION";
 	}
+
+	// ----- private methods -----
+	private void importPartitions(final List<CSVPartition> partitions, final int workers, final ResultTransformer mapper, final Class targetEntityType, final Character fieldSeparator, final Character quoteCharacter, final Map<String, String> propertyMapping, final int commitInterval) throws FrameworkException {
+
+		final ExecutorService executor      = Executors.newFixedThreadPool(workers);
+		final List<Future<Integer>> results = new LinkedList<>();
+
+		try {
+
+			for (final CSVPartition partition : partitions) {
+
+				results.add(executor.submit(() -> {
+
+					final SecurityContext workerContext = createImportContext();
+					final App app                       = StructrApp.getInstance(workerContext);
+					final String partitionKey           = String.valueOf(partition.getStart());
+					final int resumeOffset              = getResumeOffset(partitionKey);
+					int partitionCount                  = 0;
+
+					try (final InputStream is = partition.getInputStream()) {
+
+						final Iterable<JsonInput> iterable = CsvHelper.cleanAndParseCSV(workerContext, new InputStreamReader(is, "utf-8"), targetEntityType, fieldSeparator, quoteCharacter, null, propertyMapping);
+						final Iterator<JsonInput> iterator = iterable.iterator();
+
+						// skip objects that were imported before the job was interrupted
+						while (partitionCount < resumeOffset && iterator.hasNext()) {
+
+							iterator.next();
+							partitionCount++;
+						}
+
+						while (iterator.hasNext() && !isAbortRequested()) {
+
+							final long chunkStartTime = System.currentTimeMillis();
+							int count                 = 0;
+
+							try (final Tx tx = app.tx()) {
+
+								while (iterator.hasNext() && count < commitInterval) {
+
+									final JsonInput input = iterator.next();
+
+									mapper.transformInput(workerContext, targetEntityType, input);
+
+									app.create(targetEntityType, PropertyMap.inputTypeToJavaType(workerContext, targetEntityType, input));
+
+									count++;
+								}
+
+								tx.success();
+							}
+
+							partitionCount += count;
+
+							workerChunkFinished(chunkStartTime, count);
+							checkpointPartition(partitionKey, partitionCount);
+
+							// do this outside of the transaction!
+							shouldPause();
+						}
+					}
+
+					return partitionCount;
+				}));
+			}
+
+			for (final Future<Integer> result : results) {
+
+				try {
+
+					result.get();
+
+				} catch (InterruptedException | ExecutionException ex) {
+
+					final Throwable cause = ex.getCause();
+
+					if (cause instanceof FrameworkException) {
+						throw (FrameworkException)cause;
+					}
+
+					throw new FrameworkException(500, "CSV import partition failed: " + (cause != null ? cause.getMessage() : ex.getMessage()));
+				}
+			}
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.importer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.LinkedList;
+import java.util.List;
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * A byte range of a CSV file that starts and ends on a record boundary.
+ * The header line of the file is prepended to the content of each
+ * partition so that every partition can be parsed on its own.
+ */
+class CSVPartition {
+
+	private java.io.File file = null;
+	private byte[] header     = null;
+	private long start        = 0L;
+	private long end          = 0L;
+
+	private CSVPartition(final java.io.File file, final byte[] header, final long start, final long end) {
+
+		this.file   = file;
+		this.header = header;
+		this.start  = start;
+		this.end    = end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public InputStream getInputStream() throws IOException {
+
+		final FileInputStream fis = new FileInputStream(file);
+
+		fis.getChannel().position(start);
+
+		return new SequenceInputStream(new ByteArrayInputStream(header), new BoundedInputStream(fis, end - start));
+	}
+
+	/**
+	 * Splits the given file into at most <code>count</code> partitions of
+	 * roughly equal size. Partition boundaries are only placed on line
+	 * breaks outside of quoted fields, so a record is never split.
+	 *
+	 * @param file the CSV file
+	 * @param count the desired number of partitions
+	 * @param quoteChar the quote character, or null
+	 *
+	 * @return a list of partitions
+	 * @throws IOException
+	 */
+	public static List<CSVPartition> partition(final java.io.File file, final int count, final Character quoteChar) throws IOException {
+
+		final List<CSVPartition> partitions = new LinkedList<>();
+		final ByteArrayOutputStream header  = new ByteArrayOutputStream();
+		final int quote                     = quoteChar != null ? quoteChar : -1;
+		final long length                   = file.length();
+		long partitionSize                  = 0L;
+		long partitionStart                 = 0L;
+		boolean inQuotes                    = false;
+		boolean inHeader                    = true;
+		long position                       = 0L;
+		int b                               = 0;
+
+		try (final InputStream is = new BufferedInputStream(new FileInputStream(file), 65536)) {
+
+			while ((b = is.read()) != -1) {
+
+				position++;
+
+				if (inHeader) {
+					header.write(b);
+				}
+
+				if (b == quote) {
+
+					// doubled quotes toggle twice, which keeps the state intact
+					inQuotes = !inQuotes;
+
+				} else if (b == '\n' && !inQuotes) {
+
+					if (inHeader) {
+
+						inHeader       = false;
+						partitionStart = position;
+						partitionSize  = Math.max(1L, (length - position) / Math.max(1, count));
+
+					} else if (position - partitionStart >= partitionSize && partitions.size() < count - 1) {
+
+						partitions.add(new CSVPartition(file, header.toByteArray(), partitionStart, position));
+						partitionStart = position;
+					}
+				}
+			}
+		}
+
+		if (!inHeader && partitionStart < position) {
+			partitions.add(new CSVPartition(file, header.toByteArray(), partitionStart, position));
+		}
+
+		return partitions;
+	}
+}
@@ -24,8 +24,12 @@ import java.text.DecimalFormatSymbols;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
@@ -46,6 +50,12 @@ abstract class FileImportJob extends ScheduledJob {
 	protected Long fileSize;
 	protected Integer processedChunks = 0;
 
+	protected final Map<String, Object> resumeState = new ConcurrentHashMap<>();
+
+	private final Map<String, Integer> partitionProgress = new ConcurrentHashMap<>();
+	private final AtomicInteger overallWorkerCount       = new AtomicInteger(0);
+	private int workerChunks                             = 0;
+
 	public FileImportJob (final File file, final Principal user, final Map<String, Object> configuration) {
 
 		super(file.getUuid(), user, configuration);
@@ -76,6 +86,32 @@ abstract class FileImportJob extends ScheduledJob {
 		return processedChunks;
 	}
 
+	/**
+	 * Restores the progress of an interrupted job from its journal state.
+	 *
+	 * @param state the journal state
+	 */
+	public void restoreState(final Map<String, Object> state) {
+
+		if (state != null) {
+
+			resumeState.putAll(state);
+
+			processedChunks = parseInt(state.get("processedChunks"), 0);
+			workerChunks    = processedChunks;
+		}
+	}
+
+	@Override
+	public Map<String, Object> getJournalState() {
+
+		final Map<String, Object> state = new LinkedHashMap<>(resumeState);
+
+		state.put("fileUuid", fileUuid);
+
+		return state;
+	}
+
 	@Override
 	public Map<String, Object> getStatusData (final JobStatusMessageSubtype subtype) {
 
@@ -111,7 +147,133 @@ abstract class FileImportJob extends ScheduledJob {
 		return jobInfo;
 	}
 
-	protected void chunkFinished(final long chunkStartTime, final int currentChunkNo, final int chunkSize, final int overallCount) {
+	/**
+	 * Returns the number of worker threads for this job, either from the
+	 * job configuration ("workers") or from the global default.
+	 *
+	 * @return the number of worker threads, at least 1
+	 */
+	protected int getWorkerCount() {
+
+		// a resumed job must use the same partitioning as before
+		final int configured = parseInt(configuration.get("workers"), Settings.ImportWorkerThreads.getValue());
+
+		return Math.max(1, parseInt(resumeState.get("workers"), configured));
+	}
+
+	/**
+	 * Records the worker count of this run so that a resumed job uses
+	 * the same partitioning.
+	 *
+	 * @param workers the number of worker threads
+	 */
+	protected void checkpointWorkers(final int workers) {
+
+		final Map<String, Object> state = new LinkedHashMap<>();
+
+		state.put("workers", workers);
+
+		resumeState.putAll(state);
+		checkpoint(state);
+	}
+
+	/**
+	 * Records the number of objects imported so far, i.e. the position of
+	 * the last committed chunk.
+	 *
+	 * @param processedObjects the number of imported objects
+	 */
+	protected void checkpointProgress(final int processedObjects) {
+
+		final Map<String, Object> state = new LinkedHashMap<>();
+
+		state.put("processedChunks",  processedChunks);
+		state.put("processedObjects", processedObjects);
+
+		resumeState.putAll(state);
+		checkpoint(state);
+	}
+
+	/**
+	 * Records the number of objects imported from a single partition.
+	 *
+	 * @param partitionKey the key of the partition
+	 * @param processedObjects the number of objects imported from the partition
+	 */
+	protected synchronized void checkpointPartition(final String partitionKey, final int processedObjects) {
+
+		partitionProgress.put(partitionKey, processedObjects);
+
+		final Map<String, Object> state = new LinkedHashMap<>();
+
+		state.put("processedChunks", processedChunks);
+		state.put("partitions",      new LinkedHashMap<>(partitionProgress));
+
+		resumeState.putAll(state);
+		checkpoint(state);
+	}
+
+	/**
+	 * Returns the number of objects that were already imported by an
+	 * earlier run of this job and must be skipped.
+	 *
+	 * @return the number of objects to skip
+	 */
+	protected int getResumeOffset() {
+		return parseInt(resumeState.get("processedObjects"), 0);
+	}
+
+	protected int getResumeOffset(final String partitionKey) {
+
+		final Object partitions = resumeState.get("partitions");
+		if (partitions instanceof Map) {
+
+			final int offset = parseInt(((Map)partitions).get(partitionKey), 0);
+
+			partitionProgress.putIfAbsent(partitionKey, offset);
+
+			return offset;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Creates a security context for an import thread. Every worker
+	 * thread must use its own context.
+	 *
+	 * @return the security context
+	 */
+	protected SecurityContext createImportContext() {
+
+		final SecurityContext ctx = SecurityContext.getInstance(user, AccessMode.Backend);
+
+		// disable transaction notifications
+		ctx.disableModificationOfAccessTime();
+		ctx.ignoreResultCount(true);
+		ctx.setDoTransactionNotifications(false);
+		ctx.disableEnsureCardinality();
+
+		return ctx;
+	}
+
+	/**
+	 * Reports a chunk committed by one of several worker threads. Chunks
+	 * are numbered in the order they are reported, so progress messages
+	 * stay monotonic even though the workers commit independently.
+	 *
+	 * @param chunkStartTime the start time of the chunk
+	 * @param chunkSize the number of objects in the chunk
+	 */
+	protected synchronized void workerChunkFinished(final long chunkStartTime, final int chunkSize) {
+		chunkFinished(chunkStartTime, ++workerChunks, chunkSize, overallWorkerCount.addAndGet(chunkSize));
+	}
+
+	protected int getOverallWorkerCount() {
+		return overallWorkerCount.get();
+	}
+
+	protected synchronized void chunkFinished(final long chunkStartTime, final int currentChunkNo, final int chunkSize, final int overallCount) {
 
 		processedChunks                   = currentChunkNo;
 
@@ -185,4 +347,33 @@ abstract class FileImportJob extends ScheduledJob {
 
 		return is;
 	}
+
+	/**
+	 * Returns the file on disk if the file content can be read directly,
+	 * i.e. without template processing.
+	 *
+	 * @param ctx the security context
+	 * @return the file on disk, or null
+	 */
+	protected java.io.File getFileOnDisk(final SecurityContext ctx) {
+
+		final App app = StructrApp.getInstance(ctx);
+
+		try (final Tx tx = app.tx()) {
+
+			final File file               = app.get(File.class, fileUuid);
+			final java.io.File fileOnDisk = file != null && !file.isTemplate() ? file.getFileOnDisk(false) : null;
+
+			tx.success();
+
+			if (fileOnDisk != null && fileOnDisk.exists()) {
+				return fileOnDisk;
+			}
+
+		} catch (FrameworkException fex) {
+			logger.warn("Unable to determine file on disk for {}: {}", filePath, fex.getMessage());
+		}
+
+		return null;
+	}
 }
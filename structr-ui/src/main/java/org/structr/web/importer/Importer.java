@@ -21,6 +21,7 @@ package org.structr.web.importer;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -37,6 +38,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.io.IOUtils;
@@ -55,6 +58,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.CaseHelper;
 import org.structr.common.PathHelper;
+import org.structr.common.Permission;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -138,7 +142,8 @@ public class Importer {
 	private String address;
 	private String code;
 
-	private Map<String, Linkable> alreadyDownloaded = new HashMap<>();
+	private Map<String, Linkable> alreadyDownloaded              = new HashMap<>();
+	private Map<String, Future<AssetFetcher.Download>> downloads = null;
 
 	/**
 	 * Construct an instance of the importer to either read the given code, or download code from the given address.
@@ -326,12 +331,12 @@ public class Importer {
 
 	public void createChildNodes(final DOMNode parent, final Page page, final boolean removeHashAttribute) throws FrameworkException {
 
-		createChildNodes(parsedDocument.body(), parent, page, removeHashAttribute, 0);
+		createChildNodes(parsedDocument.body(), parent, page, removeHashAttribute);
 	}
 
 	public void createChildNodesWithHtml(final DOMNode parent, final Page page, final boolean removeHashAttribute) throws FrameworkException {
 
-		createChildNodes(parsedDocument, parent, page, removeHashAttribute, 0);
+		createChildNodes(parsedDocument, parent, page, removeHashAttribute);
 	}
 
 	public void importDataComments() throws FrameworkException {
@@ -438,27 +443,40 @@ public class Importer {
 			}
 		}
 
-		// compare all new nodes with all existing nodes
+		// index existing nodes by their id hash, only nodes with the same
+		// id hash can have been moved or modified
+		final Map<String, List<Map.Entry<String, DOMNode>>> idHashMappedExistingNodes = new HashMap<>();
+
+		for (final Map.Entry<String, DOMNode> existingNodeEntry : indexMappedExistingNodes.entrySet()) {
+
+			idHashMappedExistingNodes.computeIfAbsent(existingNodeEntry.getValue().getIdHash(), k -> new LinkedList<>()).add(existingNodeEntry);
+		}
+
+		// compare all new nodes with the existing nodes with the same id hash
 		for (final Map.Entry<String, DOMNode> newNodeEntry : indexMappedNewNodes.entrySet()) {
 
 			final String newTreeIndex = newNodeEntry.getKey();
 			final DOMNode newNode = newNodeEntry.getValue();
 
-			for (final Map.Entry<String, DOMNode> existingNodeEntry : indexMappedExistingNodes.entrySet()) {
+			final List<Map.Entry<String, DOMNode>> existingNodeEntries = idHashMappedExistingNodes.get(newNode.getIdHashOrProperty());
+			if (existingNodeEntries == null) {
+
+				continue;
+			}
+
+			for (final Map.Entry<String, DOMNode> existingNodeEntry : existingNodeEntries) {
 
 				final String existingTreeIndex = existingNodeEntry.getKey();
 				final DOMNode existingNode = existingNodeEntry.getValue();
 				DOMNode newParent = null;
-				int equalityBitmask = 0;
+
+				// same node (2)
+				int equalityBitmask = 2;
 
 				if (newTreeIndex.equals(existingTreeIndex)) {
 					equalityBitmask |= 1;
 				}
 
-				if (newNode.getIdHashOrProperty().equals(existingNode.getIdHash())) {
-					equalityBitmask |= 2;
-				}
-
 				if (newNode.contentEquals(existingNode)) {
 					equalityBitmask |= 4;
 				}
@@ -473,12 +491,6 @@ public class Importer {
 						changeSet.add(new MoveOperation(hashMappedExistingNodes, getHashOrNull(newParent), getSiblingHashes(newNode), newNode, existingNode));
 						break;
 
-					case 5: // same tree index (1), NOT same node, same content (5) => node was deleted and restored, maybe the identification information was lost
-						break;
-
-					case 4: // NOT same tree index, NOT same node, same content (4) => different node, content is equal by chance?
-						break;
-
 					case 3: // same tree index, same node, NOT same content => node was modified but not moved
 						changeSet.add(new UpdateOperation(hashMappedExistingNodes, existingNode, newNode));
 						break;
@@ -488,12 +500,6 @@ public class Importer {
 						changeSet.add(new UpdateOperation(hashMappedExistingNodes, existingNode, newNode));
 						changeSet.add(new MoveOperation(hashMappedExistingNodes, getHashOrNull(newParent), getSiblingHashes(newNode), newNode, existingNode));
 						break;
-
-					case 1: // same tree index (1), NOT same node, NOT same content => ignore
-						break;
-
-					case 0: // NOT same tree index, NOT same node, NOT same content => ignore
-						break;
 				}
 			}
 		}
@@ -526,7 +532,29 @@ public class Importer {
 
 	// ----- private methods -----
 	private DOMNode createChildNodes(final Node startNode, final DOMNode parent, final Page page) throws FrameworkException {
-		return createChildNodes(startNode, parent, page, false, 0);
+		return createChildNodes(startNode, parent, page, false);
+	}
+
+	private DOMNode createChildNodes(final Node startNode, final DOMNode parent, final Page page, final boolean removeHashAttribute) throws FrameworkException {
+
+		// nested calls, e.g. for shared components, use the downloads of the outermost call
+		if (downloads != null) {
+			return createChildNodes(startNode, parent, page, removeHashAttribute, 0);
+		}
+
+		downloads = new HashMap<>();
+
+		try {
+
+			prefetchAssets(startNode);
+
+			return createChildNodes(startNode, parent, page, removeHashAttribute, 0);
+
+		} finally {
+
+			discardDownloads();
+			downloads = null;
+		}
 	}
 
 	private DOMNode createChildNodes(final Node startNode, final DOMNode parent, final Page page, final boolean removeHashAttribute, final int depth) throws FrameworkException {
@@ -1096,14 +1124,43 @@ public class Importer {
 	}
 
 	/**
-	 * Check whether a file with given path and checksum already exists
+	 * Check whether a file with given checksum and size already exists,
+	 * files with the given path are preferred.
+	 *
+	 * The lookup runs in the security context of the importing user, so
+	 * only files that this user can read are reused. A file with the same
+	 * content that the user can not see is never linked into the page, a
+	 * new file is created instead.
+	 *
+	 * Files at other paths are only reused if they are as visible as the
+	 * files of this import, because changing their visibility would
+	 * affect the pages that already use them. The file at the given path
+	 * is also reused if the user can change its visibility.
 	 */
-	private File fileExists(final String path, final long checksum) throws FrameworkException {
+	private File fileExists(final String path, final long checksum, final long size) throws FrameworkException {
 
 		final PropertyKey<Long> checksumKey = StructrApp.key(File.class, "checksum");
 		final PropertyKey<String> pathKey   = StructrApp.key(File.class, "path");
+		final PropertyKey<Long> sizeKey     = StructrApp.key(File.class, "size");
+		File existingFile                   = null;
+
+		for (final File file : app.nodeQuery(File.class).and(checksumKey, checksum).getAsList()) {
+
+			final boolean hasImportVisibility = file.isVisibleToPublicUsers() == publicVisible && file.isVisibleToAuthenticatedUsers() == authVisible;
+
+			if (path.equals(file.getProperty(pathKey))) {
+
+				if (hasImportVisibility || file.isGranted(Permission.write, securityContext)) {
+					return file;
+				}
+
+			} else if (existingFile == null && hasImportVisibility && Long.valueOf(size).equals(file.getProperty(sizeKey))) {
+
+				existingFile = file;
+			}
+		}
 
-		return app.nodeQuery(File.class).and(pathKey, path).and(checksumKey, checksum).getFirst();
+		return existingFile;
 	}
 
 	private Linkable downloadFile(final String downloadAddress, final URL base) {
@@ -1113,30 +1170,24 @@ public class Importer {
 			return alreadyDownloaded.get(downloadAddress);
 		}
 
-		long size;
-		long checksum;
+		final long size;
+		final long checksum;
 		URL downloadUrl;
 		String contentType;
 		java.io.File tmpFile;
 
-		try {
-			// create temporary file on disk
-			final Path tmpFilePath = Files.createTempFile("structr", "download");
-			tmpFile = tmpFilePath.toFile();
-
-		} catch (IOException ioex) {
-
-			logger.error("Unable to create temporary file for download, aborting.");
-			return null;
-		}
+		AssetFetcher.Download download = null;
 
 		try {
 
 			downloadUrl = new URL(base, downloadAddress);
 
-			logger.info("Starting download from {}", downloadUrl);
+			// same file referenced with a different address
+			if (alreadyDownloaded.containsKey(downloadUrl.toString())) {
+				return alreadyDownloaded.get(downloadUrl.toString());
+			}
 
-			copyURLToFile(downloadUrl.toString(), tmpFile);
+			download = fetch(downloadUrl);
 
 		} catch (IOException ioe) {
 
@@ -1164,7 +1215,7 @@ public class Importer {
 					downloadUrl = new URL(new URL(originalUrl, address.concat("/")), downloadAddress);
 				}
 
-				copyURLToFile(downloadUrl.toString(), tmpFile);
+				download = fetch(downloadUrl);
 
 			} catch (MalformedURLException ex) {
 				logger.error("Could not resolve address {}", address.concat("/"));
@@ -1178,6 +1229,10 @@ public class Importer {
 
 		}
 
+		tmpFile  = download.getFile();
+		checksum = download.getChecksum();
+		size     = download.getSize();
+
 		//downloadAddress = StringUtils.substringBefore(downloadAddress, "?");
 		final String fileName = PathHelper.getName(downloadAddress);
 
@@ -1185,6 +1240,7 @@ public class Importer {
 
 			logger.warn("Can't figure out filename from download address {}, aborting.", downloadAddress);
 
+			download.delete();
 			return null;
 		}
 
@@ -1193,12 +1249,12 @@ public class Importer {
 		try {
 
 			contentType = FileHelper.getContentMimeType(tmpFile, fileName);
-			checksum    = FileHelper.getChecksum(tmpFile);
-			size        = tmpFile.length();
 
 		} catch (IOException ioe) {
 
-			logger.warn("Unable to determine MIME type, size or checksum of {}", tmpFile);
+			logger.warn("Unable to determine MIME type of {}", tmpFile);
+
+			download.delete();
 			return null;
 		}
 
@@ -1245,7 +1301,8 @@ public class Importer {
 
 			final String fullPath = path + fileName;
 
-			File fileNode = fileExists(fullPath, checksum);
+			// reuse existing files with the same content
+			File fileNode = fileExists(fullPath, checksum, size);
 			if (fileNode == null) {
 
 				if (ImageHelper.isImageType(fileName)) {
@@ -1263,17 +1320,29 @@ public class Importer {
 				// rename / move file to final location
 				Files.move(tmpFile.toPath(), imagePath);
 
-				if (contentType.equals("text/css")) {
-
-					processCssFileNode(fileNode, downloadUrl);
-				}
-
 			} else {
 
 				tmpFile.delete();
+
+				// a reused file is visible like the files created by this import
+				if (fileNode.isVisibleToPublicUsers() != publicVisible || fileNode.isVisibleToAuthenticatedUsers() != authVisible) {
+
+					final PropertyMap changedProperties = new PropertyMap();
+					changedProperties.put(AbstractNode.visibleToAuthenticatedUsers, authVisible);
+					changedProperties.put(AbstractNode.visibleToPublicUsers, publicVisible);
+					fileNode.setProperties(securityContext, changedProperties);
+				}
 			}
 
 			alreadyDownloaded.put(downloadAddress, fileNode);
+			alreadyDownloaded.put(downloadUrl.toString(), fileNode);
+
+			// the assets of a reused stylesheet are imported as well
+			if (contentType.equals("text/css")) {
+
+				processCssFileNode(fileNode, downloadUrl);
+			}
+
 			return fileNode;
 
 		} catch (final FrameworkException | IOException ex) {
@@ -1328,6 +1397,8 @@ public class Importer {
 
 	private void processCss(final String css, final URL base) throws IOException {
 
+		final List<String> urls = new LinkedList<>();
+
 		Pattern pattern = Pattern.compile("(url\\(['|\"]?)([^'|\"|)]*)");
 		Matcher matcher = pattern.matcher(css);
 
@@ -1336,7 +1407,7 @@ public class Importer {
 			String url = matcher.group(2);
 
 			logger.info("Trying to download from URL found in CSS: {}", url);
-			downloadFile(url, base);
+			urls.add(url);
 
 		}
 
@@ -1348,24 +1419,115 @@ public class Importer {
 			String url = matcher.group(3);
 
 			logger.info("Trying to download file referenced by @import found in CSS: {}", url);
+			urls.add(url);
+
+		}
+
+		// start all downloads before the first file node is created
+		for (final String url : urls) {
+			prefetch(url, base);
+		}
+
+		for (final String url : urls) {
 			downloadFile(url, base);
+		}
+	}
 
+	/**
+	 * Starts the download of all assets referenced by the elements below
+	 * the given node, so that the assets are downloaded concurrently while
+	 * the nodes are created.
+	 */
+	private void prefetchAssets(final Node startNode) {
+
+		if (isDeployment || !(startNode instanceof Element)) {
+			return;
 		}
 
+		for (final Element element : ((Element)startNode).getAllElements()) {
+
+			final String tag                 = element.nodeName();
+			final String downloadAddressAttr = srcElements.contains(tag)
+				? "src" : hrefElements.contains(tag)
+				? "href" : null;
+
+			if (downloadAddressAttr != null && StringUtils.isNotBlank(element.attr(downloadAddressAttr))) {
+
+				prefetch(element.attr(downloadAddressAttr), originalUrl);
+			}
+		}
+	}
+
+	private void prefetch(final String downloadAddress, final URL base) {
+
+		if (downloads != null && !alreadyDownloaded.containsKey(downloadAddress)) {
+
+			try {
+
+				final URL url = new URL(base, downloadAddress);
+
+				downloads.computeIfAbsent(url.toString(), k -> AssetFetcher.getInstance().fetch(url));
+
+			} catch (MalformedURLException ex) {
+				// will be handled in downloadFile
+			}
+		}
 	}
 
-	private void copyURLToFile(final String address, final java.io.File fileOnDisk) throws IOException {
+	/**
+	 * Waits for the download of the given URL, which is started if it was
+	 * not prefetched.
+	 */
+	private AssetFetcher.Download fetch(final URL url) throws IOException {
+
+		Future<AssetFetcher.Download> future = downloads != null ? downloads.remove(url.toString()) : null;
+		if (future == null) {
+
+			future = AssetFetcher.getInstance().fetch(url);
+		}
 
 		try {
 
-			HttpHelper.streamURLToFile(address, fileOnDisk);
+			return future.get();
 
-		} catch (FrameworkException ex) {
+		} catch (InterruptedException iex) {
 
-			logger.warn(null, ex);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while downloading from " + url);
 
+		} catch (ExecutionException eex) {
+
+			final Throwable cause = eex.getCause();
+			if (cause instanceof IOException) {
+
+				throw (IOException)cause;
+			}
+
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Cancels the prefetched downloads that were not used and deletes
+	 * their temporary files.
+	 */
+	private void discardDownloads() {
+
+		for (final Future<AssetFetcher.Download> future : downloads.values()) {
+
+			if (!future.cancel(true)) {
+
+				try {
+
+					future.get().delete();
+
+				} catch (Throwable t) {
+					// download failed, nothing to delete
+				}
+			}
 		}
 
+		downloads.clear();
 	}
 
 	public static DOMNode findSharedComponentByName(final String name) throws FrameworkException {
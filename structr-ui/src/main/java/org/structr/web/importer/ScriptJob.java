@@ -23,9 +23,11 @@ import java.util.Map;
 import org.mozilla.javascript.Script;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.common.error.UnlicensedException;
 import org.structr.core.entity.Principal;
 import org.structr.core.graph.TransactionCommand;
 import org.structr.core.scheduler.ScheduledJob;
@@ -39,6 +41,7 @@ public class ScriptJob extends ScheduledJob {
 
 	private static final Logger logger = LoggerFactory.getLogger(ScriptJob.class);
 	private Object script              = null;
+	private int attempt                = 0;
 
 	public ScriptJob(final Principal user, final Map<String, Object> configuration, final Object script) {
 
@@ -47,36 +50,80 @@ public class ScriptJob extends ScheduledJob {
 		this.script  = script;
 	}
 
+	public static ScriptJob restore(final Principal user, final Map<String, Object> configuration, final Map<String, Object> state) {
+
+		final Object script = state.get("script");
+		if (script instanceof String) {
+
+			final ScriptJob job = new ScriptJob(user, configuration, script);
+
+			job.attempt = job.parseInt(state.get("attempt"), 0);
+
+			return job;
+		}
+
+		return null;
+	}
+
 	@Override
 	public boolean runInitialChecks() throws FrameworkException {
 		return true;
 	}
 
+	@Override
+	public Map<String, Object> getJournalState() {
+
+		// compiled JavaScript functions cannot be restored after a restart
+		if (script instanceof String) {
+
+			final Map<String, Object> state = new LinkedHashMap<>();
+
+			state.put("script",  script);
+			state.put("attempt", attempt);
+
+			return state;
+		}
+
+		return null;
+	}
+
 	@Override
 	public Runnable getRunnable() {
 
 		return () -> {
 
-			try {
+			final int maxRetries = parseInt(configuration.get("retries"), Settings.ScriptJobRetries.getValue());
+			final int backoff    = parseInt(configuration.get("backoff"), Settings.ScriptJobBackoff.getValue());
+			boolean retry        = false;
 
-				final SecurityContext securityContext = SecurityContext.getInstance(user, AccessMode.Backend);
-				final ActionContext actionContext     = new ActionContext(securityContext);
-				final long startTime                  = System.currentTimeMillis();
+			try {
 
 				reportBegin();
 
-				// called from JavaScript?
-				if (script instanceof Script) {
+				try {
+
+					evaluateScript();
+
+				} catch (FrameworkException | UnlicensedException ex) {
+
+					if (attempt >= maxRetries) {
+						throw ex;
+					}
 
-					Scripting.evaluateJavascript(actionContext, null, new Snippet((Script)script));
+					attempt++;
 
-				} else if (script instanceof String) {
+					// exponential backoff, capped at 1024 times the base delay
+					final long delay = (long)backoff << Math.min(attempt - 1, 10);
 
-					Scripting.evaluate(actionContext, null, (String)script, jobName);
+					logger.warn("Script job {} failed: {}, retrying in {} ms (attempt {} of {})", jobId(), ex.getMessage(), delay, attempt, maxRetries);
 
-				} else if (script != null) {
+					checkpoint(getJournalState());
 
-					logger.warn("Unable to schedule script of type {}, ignoring", script.getClass().getName());
+					// do not block a job slot while waiting
+					retry = true;
+					retryJob(delay);
+
+					return;
 				}
 
 				reportFinished();
@@ -87,7 +134,9 @@ public class ScriptJob extends ScheduledJob {
 
 			} finally {
 
-				jobFinished();
+				if (!retry) {
+					jobFinished();
+				}
 			}
 		};
 	}
@@ -135,6 +184,26 @@ public class ScriptJob extends ScheduledJob {
 	}
 
 	// ----- private methods -----
+	private void evaluateScript() throws FrameworkException, UnlicensedException {
+
+		final SecurityContext securityContext = SecurityContext.getInstance(user, AccessMode.Backend);
+		final ActionContext actionContext     = new ActionContext(securityContext);
+
+		// called from JavaScript?
+		if (script instanceof Script) {
+
+			Scripting.evaluateJavascript(actionContext, null, new Snippet((Script)script));
+
+		} else if (script instanceof String) {
+
+			Scripting.evaluate(actionContext, null, (String)script, jobName);
+
+		} else if (script != null) {
+
+			logger.warn("Unable to schedule script of type {}, ignoring", script.getClass().getName());
+		}
+	}
+
 	private void reportException(Exception ex) {
 
 		final Map<String, Object> data = new LinkedHashMap<>();
@@ -22,12 +22,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.xml.stream.XMLStreamException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
@@ -83,19 +92,11 @@ public class XMLFileImportJob extends FileImportJob {
 
 			logger.info("Importing XML from {} ({})..", filePath, fileUuid);
 
-			final SecurityContext threadContext = SecurityContext.getInstance(user, AccessMode.Backend);
+			final SecurityContext threadContext = createXMLImportContext();
 			final App app                       = StructrApp.getInstance(threadContext);
+			final int workers                   = getWorkerCount();
 			int overallCount                    = 0;
 
-			// disable transaction notifications
-			threadContext.disableModificationOfAccessTime();
-			threadContext.ignoreResultCount(true);
-			threadContext.setDoTransactionNotifications(false);
-			threadContext.disableEnsureCardinality();
-
-			// experimental: instruct deserialization strategies to set properties on related nodes
-			threadContext.setAttribute("setNestedProperties", true);
-
 			try (final InputStream is = getFileInputStream(threadContext)) {
 
 				try (final Reader reader = new InputStreamReader(is)) {
@@ -104,10 +105,31 @@ public class XMLFileImportJob extends FileImportJob {
 
 					final Iterator<Map<String, Object>> iterator = new XMLHandler(configuration, reader);
 					final int batchSize                          = 100;
-					int chunks                                   = 0;
+					final int resumeOffset                       = getResumeOffset();
+					int chunks                                   = processedChunks;
 
 					final long startTime = System.currentTimeMillis();
 
+					// skip objects that were imported before the job was interrupted
+					while (overallCount < resumeOffset && iterator.hasNext()) {
+
+						iterator.next();
+						overallCount++;
+					}
+
+					if (workers > 1) {
+
+						importBatches(iterator, workers, batchSize, overallCount);
+
+						if (shouldAbort()) {
+							return;
+						}
+
+						importFinished(startTime, getOverallWorkerCount());
+
+						return;
+					}
+
 					while (iterator.hasNext()) {
 
 						final long chunkStartTime = System.currentTimeMillis();
@@ -131,6 +153,8 @@ public class XMLFileImportJob extends FileImportJob {
 
 						}
 
+						checkpointProgress(overallCount);
+
 						// do this outside of the transaction!
 						shouldPause();
 						if (shouldAbort()) {
@@ -170,4 +194,226 @@ public class XMLFileImportJob extends FileImportJob {
 	public String getJobExceptionMessageType() {
 		return "FILE_IMPORT_EXCEPTION";
 	}
+
+	public static XMLFileImportJob restore(final Principal user, final Map<String, Object> configuration, final Map<String, Object> state) throws FrameworkException {
+
+		final File file = StructrApp.getInstance().get(File.class, (String)state.get("fileUuid"));
+		if (file != null) {
+
+			final XMLFileImportJob job = new XMLFileImportJob(file, user, configuration);
+
+			job.restoreState(state);
+
+			return job;
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private SecurityContext createXMLImportContext() {
+
+		final SecurityContext ctx = createImportContext();
+
+		// experimental: instruct deserialization strategies to set properties on related nodes
+		ctx.setAttribute("setNestedProperties", true);
+
+		return ctx;
+	}
+
+	/**
+	 * Parses the XML on the calling thread and hands batches of objects
+	 * to a pool of worker threads, each committing its own transaction.
+	 * The bounded batch queue blocks the parser when the workers fall
+	 * behind. Batches can commit out of order, so only the contiguous
+	 * prefix of committed batches is recorded as a checkpoint. Any error
+	 * in a worker is recorded and stops the parser, and a worker that
+	 * terminates unexpectedly aborts the import instead of leaving the
+	 * parser blocked on the full queue.
+	 */
+	private void importBatches(final Iterator<Map<String, Object>> iterator, final int workers, final int batchSize, final int offset) throws FrameworkException {
+
+		final BlockingQueue<Batch> batches     = new ArrayBlockingQueue<>(workers * 2);
+		final Batch endOfInput                 = new Batch(-1, new ArrayList<>());
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		final ExecutorService executor         = Executors.newFixedThreadPool(workers);
+		final List<Future<?>> futures          = new ArrayList<>(workers);
+		final BatchWatermark watermark         = new BatchWatermark(offset);
+		int batchIndex                         = 0;
+
+		try {
+
+			for (int i=0; i<workers; i++) {
+
+				futures.add(executor.submit(() -> {
+
+					final SecurityContext workerContext = createXMLImportContext();
+					final App app                       = StructrApp.getInstance(workerContext);
+
+					try {
+
+						Batch batch = null;
+
+						while ((batch = batches.take()) != endOfInput) {
+
+							// keep draining the queue after an error so the parser is never blocked
+							if (error.get() != null || isAbortRequested()) {
+								continue;
+							}
+
+							try {
+
+								final long chunkStartTime = System.currentTimeMillis();
+
+								try (final Tx tx = app.tx()) {
+
+									for (final Map<String, Object> input : batch.objects) {
+										app.create(AbstractNode.class, PropertyMap.inputTypeToJavaType(workerContext, input));
+									}
+
+									tx.success();
+								}
+
+								workerChunkFinished(chunkStartTime, batch.objects.size());
+
+								final int committed = watermark.committed(batch);
+								if (committed >= 0) {
+
+									checkpointProgress(committed);
+								}
+
+								// do this outside of the transaction!
+								shouldPause();
+
+							} catch (Throwable t) {
+
+								error.compareAndSet(null, t);
+							}
+						}
+
+					} catch (InterruptedException iex) {
+
+						error.compareAndSet(null, iex);
+						logger.warn("Interrupted while waiting for XML import batch");
+					}
+				}));
+			}
+
+			try {
+
+				while (iterator.hasNext() && error.get() == null && !isAbortRequested()) {
+
+					final List<Map<String, Object>> objects = new ArrayList<>(batchSize);
+
+					while (iterator.hasNext() && objects.size() < batchSize) {
+						objects.add(iterator.next());
+					}
+
+					if (!enqueue(batches, new Batch(batchIndex++, objects), futures, error)) {
+						break;
+					}
+
+					shouldPause();
+				}
+
+				boolean allWorkersNotified = true;
+
+				for (int i=0; i<workers && allWorkersNotified; i++) {
+					allWorkersNotified = enqueue(batches, endOfInput, futures, error);
+				}
+
+				// only wait for the workers if they can all see the end of the input
+				if (allWorkersNotified) {
+
+					executor.shutdown();
+					executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+				}
+
+			} catch (InterruptedException iex) {
+				logger.warn("Interrupted while importing XML from {}", filePath);
+			}
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+
+		final Throwable t = error.get();
+		if (t instanceof FrameworkException) {
+
+			throw (FrameworkException)t;
+
+		} else if (t != null && !(t instanceof InterruptedException)) {
+
+			logger.error("Unable to import XML from {}", filePath, t);
+			throw new FrameworkException(500, "Unable to import XML from " + filePath + ": " + t.getMessage());
+		}
+	}
+
+	/**
+	 * Puts the given batch into the queue, waiting for free space as long
+	 * as all workers are still running. Workers keep draining the queue
+	 * after an error, so only a terminated worker can leave the queue full
+	 * forever. Returns false if the batch could not be queued.
+	 */
+	private boolean enqueue(final BlockingQueue<Batch> batches, final Batch batch, final List<Future<?>> futures, final AtomicReference<Throwable> error) throws InterruptedException {
+
+		while (!batches.offer(batch, 1, TimeUnit.SECONDS)) {
+
+			for (final Future<?> future : futures) {
+
+				if (future.isDone()) {
+
+					error.compareAndSet(null, new IllegalStateException("XML import worker terminated unexpectedly"));
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	// ----- nested classes -----
+	private static class Batch {
+
+		private List<Map<String, Object>> objects = null;
+		private int index                         = 0;
+
+		public Batch(final int index, final List<Map<String, Object>> objects) {
+
+			this.objects = objects;
+			this.index   = index;
+		}
+	}
+
+	private static class BatchWatermark {
+
+		private final Map<Integer, Integer> pending = new HashMap<>();
+		private int nextIndex                       = 0;
+		private int committed                       = 0;
+
+		public BatchWatermark(final int offset) {
+			this.committed = offset;
+		}
+
+		/**
+		 * Registers a committed batch and returns the number of objects in
+		 * the contiguous prefix of committed batches, or -1 if the prefix
+		 * did not change.
+		 */
+		public synchronized int committed(final Batch batch) {
+
+			pending.put(batch.index, batch.objects.size());
+
+			if (!pending.containsKey(nextIndex)) {
+				return -1;
+			}
+
+			while (pending.containsKey(nextIndex)) {
+				committed += pending.remove(nextIndex++);
+			}
+
+			return committed;
+		}
+	}
 }
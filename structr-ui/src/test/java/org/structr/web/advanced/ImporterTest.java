@@ -18,20 +18,34 @@
  */
 package org.structr.web.advanced;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
+import org.structr.common.AccessMode;
 import org.structr.common.PathHelper;
+import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
+import org.structr.rest.common.TestHttpServer;
 import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
 import org.structr.web.common.RenderContext;
 import org.structr.web.entity.File;
+import org.structr.web.entity.User;
 import org.structr.web.entity.dom.Page;
 import org.structr.web.entity.html.Script;
 import org.structr.web.importer.Importer;
@@ -44,6 +58,9 @@ public class ImporterTest extends StructrUiTest {
 
 	private static final Logger logger = LoggerFactory.getLogger(ImporterTest.class.getName());
 
+	@Rule
+	public final TestHttpServer server = new TestHttpServer();
+
 	@Test
 	public void testBootstrapJumbotronEditModeNone() {
 
@@ -380,6 +397,221 @@ public class ImporterTest extends StructrUiTest {
 		}
 	}
 
+	@Test
+	public void testAssetsAreOnlyReusedIfVisible() {
+
+		final String css = "body { color: red; }";
+
+		server.handle("/page",      exchange -> TestHttpServer.respond(exchange, 200, "text/html", "<html><head><link href=\"/style.css\" rel=\"stylesheet\"></head><body></body></html>"));
+		server.handle("/style.css", exchange -> TestHttpServer.respond(exchange, 200, "text/css", css));
+
+		Principal user = null;
+		File hidden    = null;
+
+		try (final Tx tx = app.tx()) {
+
+			user   = createTestNode(User.class, new NodeAttribute<>(AbstractNode.name, "importer"));
+			hidden = FileHelper.createFile(securityContext, css.getBytes(StandardCharsets.UTF_8), "text/css", File.class, "hidden.css");
+
+			tx.success();
+
+		} catch (Throwable t) {
+			fail("Unexpected exception");
+		}
+
+		final SecurityContext userContext = SecurityContext.getInstance(user, AccessMode.Backend);
+
+		try (final Tx tx = StructrApp.getInstance(userContext).tx()) {
+
+			final Importer importer = new Importer(userContext, null, server.getBaseUrl() + "/page", "testpage", false, false);
+
+			importer.parse();
+			importer.readPage();
+
+			tx.success();
+
+		} catch (Throwable t) {
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<File> files = app.nodeQuery(File.class).and(StructrApp.key(File.class, "checksum"), hidden.getProperty(StructrApp.key(File.class, "checksum"))).getAsList();
+
+			assertEquals("A file the importing user can not see should not be reused", 2, files.size());
+
+			for (final File file : files) {
+
+				if (!file.getUuid().equals(hidden.getUuid())) {
+
+					assertEquals("style.css", file.getName());
+					assertEquals(user.getUuid(), file.getProperty(AbstractNode.owner).getUuid());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testReusedAssetGetsImportVisibility() {
+
+		final String css = "body { color: red; }";
+
+		server.handle("/page",      exchange -> TestHttpServer.respond(exchange, 200, "text/html", "<html><head><link href=\"/style.css\" rel=\"stylesheet\"></head><body></body></html>"));
+		server.handle("/style.css", exchange -> TestHttpServer.respond(exchange, 200, "text/css", css));
+
+		File existing = null;
+		File copy     = null;
+
+		try (final Tx tx = app.tx()) {
+
+			existing = FileHelper.createFile(securityContext, css.getBytes(StandardCharsets.UTF_8), "text/css", File.class, "style.css");
+			copy     = FileHelper.createFile(securityContext, css.getBytes(StandardCharsets.UTF_8), "text/css", File.class, "copy.css");
+
+			tx.success();
+
+		} catch (Throwable t) {
+			fail("Unexpected exception");
+		}
+
+		importPage(server.getBaseUrl() + "/page");
+
+		try (final Tx tx = app.tx()) {
+
+			final List<File> files = app.nodeQuery(File.class).and(StructrApp.key(File.class, "checksum"), existing.getProperty(StructrApp.key(File.class, "checksum"))).getAsList();
+
+			assertEquals("The file at the import path should be reused", 2, files.size());
+
+			for (final File file : files) {
+
+				if (file.getUuid().equals(existing.getUuid())) {
+
+					assertTrue("A reused file should be visible like the imported page", file.isVisibleToPublicUsers());
+					assertTrue("A reused file should be visible like the imported page", file.isVisibleToAuthenticatedUsers());
+
+				} else {
+
+					assertEquals(copy.getUuid(), file.getUuid());
+					assertFalse("The visibility of a file at another path should not change", file.isVisibleToPublicUsers());
+					assertFalse("The visibility of a file at another path should not change", file.isVisibleToAuthenticatedUsers());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testAssetsWithOtherVisibilityAreNotReused() {
+
+		final String css = "body { color: red; }";
+
+		server.handle("/page",      exchange -> TestHttpServer.respond(exchange, 200, "text/html", "<html><head><link href=\"/style.css\" rel=\"stylesheet\"></head><body></body></html>"));
+		server.handle("/style.css", exchange -> TestHttpServer.respond(exchange, 200, "text/css", css));
+
+		File copy = null;
+
+		try (final Tx tx = app.tx()) {
+
+			copy = FileHelper.createFile(securityContext, css.getBytes(StandardCharsets.UTF_8), "text/css", File.class, "copy.css");
+
+			tx.success();
+
+		} catch (Throwable t) {
+			fail("Unexpected exception");
+		}
+
+		importPage(server.getBaseUrl() + "/page");
+
+		try (final Tx tx = app.tx()) {
+
+			final List<File> files = app.nodeQuery(File.class).and(StructrApp.key(File.class, "checksum"), copy.getProperty(StructrApp.key(File.class, "checksum"))).getAsList();
+
+			assertEquals("A file with a different visibility at another path should not be reused", 2, files.size());
+
+			for (final File file : files) {
+
+				if (file.getUuid().equals(copy.getUuid())) {
+
+					assertFalse(file.isVisibleToPublicUsers());
+					assertFalse(file.isVisibleToAuthenticatedUsers());
+
+				} else {
+
+					assertEquals("style.css", file.getName());
+					assertTrue(file.isVisibleToPublicUsers());
+					assertTrue(file.isVisibleToAuthenticatedUsers());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testReusedStylesheetIsProcessed() {
+
+		final String css = "body { background: url(font.woff); }";
+
+		server.handle("/page",      exchange -> TestHttpServer.respond(exchange, 200, "text/html", "<html><head><link href=\"/style.css\" rel=\"stylesheet\"></head><body></body></html>"));
+		server.handle("/style.css", exchange -> TestHttpServer.respond(exchange, 200, "text/css", css));
+		server.handle("/font.woff", exchange -> TestHttpServer.respond(exchange, 200, "application/font-woff", "font"));
+
+		try (final Tx tx = app.tx()) {
+
+			final File existing = FileHelper.createFile(securityContext, css.getBytes(StandardCharsets.UTF_8), "text/css", File.class, "style.css");
+
+			existing.setProperty(AbstractNode.visibleToPublicUsers, true);
+			existing.setProperty(AbstractNode.visibleToAuthenticatedUsers, true);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			fail("Unexpected exception");
+		}
+
+		importPage(server.getBaseUrl() + "/page");
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("The existing stylesheet should be reused", 1, app.nodeQuery(File.class).andName("style.css").getAsList().size());
+			assertNotNull("Assets referenced by a reused stylesheet should be imported", app.nodeQuery(File.class).andName("font.woff").getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception");
+		}
+	}
+
+	private void importPage(final String address) {
+
+		try (final Tx tx = app.tx()) {
+
+			final Importer importer = new Importer(securityContext, null, address, "testpage", true, true);
+
+			importer.parse();
+			importer.readPage();
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception");
+		}
+	}
+
 	private String testImport(final String address, final RenderContext.EditMode editMode) {
 
 		String sourceHtml = null;
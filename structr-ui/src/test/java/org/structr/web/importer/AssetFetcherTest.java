@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.importer;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.structr.rest.common.HttpFetcher;
+import org.structr.rest.common.TestHttpServer;
+import org.structr.web.importer.AssetFetcher.Download;
+
+/**
+ * Tests the asset fetcher against a local HTTP server.
+ */
+public class AssetFetcherTest {
+
+	private static final String CONTENT = "body { background: url(image.png); }";
+
+	@Rule
+	public final TestHttpServer server = new TestHttpServer();
+
+	@Before
+	public void setup() {
+
+		server.handle("/asset", 200, exchange -> TestHttpServer.respond(exchange, 200, CONTENT));
+		server.handle("/slow", 2000, exchange -> TestHttpServer.respond(exchange, 200, CONTENT));
+		server.handle("/missing", exchange -> TestHttpServer.respond(exchange, 404, ""));
+		server.handle("/redirect", exchange -> {
+
+			exchange.getResponseHeaders().add("Location", "/asset?redirected");
+			exchange.sendResponseHeaders(302, -1);
+			exchange.close();
+		});
+	}
+
+	@Test
+	public void testFetch() throws Exception {
+
+		final HttpFetcher fetcher       = new HttpFetcher("Test", 2, 2, 10);
+		final AssetFetcher assetFetcher = new AssetFetcher(fetcher);
+
+		try {
+
+			final Download first    = assetFetcher.fetch(new URL(server.getBaseUrl() + "/asset?1")).get();
+			final Download redirect = assetFetcher.fetch(new URL(server.getBaseUrl() + "/redirect")).get();
+
+			assertEquals(CONTENT, new String(Files.readAllBytes(first.getFile().toPath()), StandardCharsets.UTF_8));
+			assertEquals(CONTENT.length(), first.getSize());
+
+			// same content => same checksum
+			assertEquals(first.getChecksum(), redirect.getChecksum());
+
+			first.delete();
+			redirect.delete();
+
+			assertFalse(first.getFile().exists());
+
+			try {
+
+				assetFetcher.fetch(new URL(server.getBaseUrl() + "/missing")).get();
+				fail("Error status should fail the download");
+
+			} catch (ExecutionException expected) {
+
+				assertTrue(expected.getCause() instanceof IOException);
+			}
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testDownloadAfterCancelledDownload() throws Exception {
+
+		final HttpFetcher fetcher       = new HttpFetcher("Test", 1, 1, 10);
+		final AssetFetcher assetFetcher = new AssetFetcher(fetcher);
+
+		try {
+
+			final Future<Download> cancelled = assetFetcher.fetch(new URL(server.getBaseUrl() + "/slow"));
+			final Future<Download> next      = assetFetcher.fetch(new URL(server.getBaseUrl() + "/asset"));
+
+			// wait until the first download is running
+			Thread.sleep(500);
+
+			assertTrue(cancelled.cancel(true));
+
+			// the next download runs in the same thread and must not fail as cancelled
+			final Download download = next.get(10, TimeUnit.SECONDS);
+
+			assertEquals(CONTENT.length(), download.getSize());
+
+			download.delete();
+
+		} finally {
+
+			fetcher.shutdown();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class CSVPartitionTest {
+
+	@Test
+	public void testPartitionBoundaries() {
+
+		try {
+
+			final File file          = File.createTempFile("structr", ".csv");
+			final StringBuilder buf  = new StringBuilder("name;description\n");
+
+			for (int i=0; i<100; i++) {
+
+				// every fifth record contains a quoted line break
+				if (i % 5 == 0) {
+					buf.append("name").append(i).append(";\"multi\nline ").append(i).append("\"\n");
+				} else {
+					buf.append("name").append(i).append(";single line ").append(i).append("\n");
+				}
+			}
+
+			Files.write(file.toPath(), buf.toString().getBytes(StandardCharsets.UTF_8));
+
+			final List<CSVPartition> partitions = CSVPartition.partition(file, 4, '"');
+			final StringBuilder joined          = new StringBuilder();
+			long lastEnd                        = -1L;
+
+			assertEquals("Invalid number of partitions", 4, partitions.size());
+
+			for (final CSVPartition partition : partitions) {
+
+				if (lastEnd >= 0) {
+					assertEquals("Partitions must be contiguous", lastEnd, partition.getStart());
+				}
+
+				try (final InputStream is = partition.getInputStream()) {
+
+					final String content = IOUtils.toString(is, StandardCharsets.UTF_8);
+
+					assertTrue("Partition must start with header", content.startsWith("name;description\n"));
+					assertTrue("Partition must start on a record boundary", content.substring(17).startsWith("name"));
+
+					joined.append(content.substring(17));
+				}
+
+				lastEnd = partition.getEnd();
+			}
+
+			assertEquals("Partitions must cover the whole file", buf.substring(17), joined.toString());
+
+			file.delete();
+
+		} catch (IOException ioex) {
+			fail("Unexpected exception: " + ioex.getMessage());
+		}
+	}
+}